@@ -0,0 +1,282 @@
+package de.tbressler.waterrower;
+
+import de.tbressler.waterrower.log.Log;
+import de.tbressler.waterrower.model.ErrorCode;
+import de.tbressler.waterrower.model.ModelInformation;
+import de.tbressler.waterrower.workout.Workout;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.log.Log.LIBRARY;
+import static de.tbressler.waterrower.model.ErrorCode.DEVICE_NOT_SUPPORTED;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * An opt-in supervisor, which reconnects the WaterRower automatically if the connection was lost
+ * (e.g. after a ping timeout or if the USB connection dropped).
+ *
+ * The reconnect attempts are delayed by an exponential backoff with jitter. Each reconnect replays
+ * the handshake with the monitor (start communication and model information). After the monitor
+ * was confirmed, the existing subscriptions are polled again and, if enabled, the active workout
+ * is sent again.
+ *
+ * The supervisor doesn't reconnect if the connected device is not supported. A device which didn't
+ * confirm its model in time (handshake timeout) is reconnected anyway. Please stop the
+ * supervisor before disconnecting the WaterRower deliberately.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class ReconnectSupervisor {
+
+    /* The supervised WaterRower. */
+    private final WaterRower waterRower;
+
+    /* The executor service for the reconnect attempts. */
+    private final ScheduledExecutorService executorService;
+
+    /* The delay before the first reconnect attempt. */
+    private final Duration initialBackoff;
+
+    /* The max. delay between reconnect attempts. */
+    private final Duration maxBackoff;
+
+    /* True if the active workout should be sent again after a reconnect. */
+    private final boolean resumeWorkout;
+
+    /* Returns random numbers between 0 (inclusive) and 1 (exclusive) for the jitter. */
+    private final DoubleSupplier random;
+
+    /* The address of the WaterRower or null, if the supervisor is stopped. */
+    private volatile SocketAddress address;
+
+    /* True if a reconnect attempt is scheduled or running. */
+    private final AtomicBoolean isReconnecting = new AtomicBoolean(false);
+
+    /* True if the connected device is not supported. */
+    private volatile boolean isDeviceNotSupported = false;
+
+    /* The number of reconnect attempts since the last successful connect. */
+    private final AtomicInteger attempts = new AtomicInteger();
+
+
+    /* Listener for the connection to the WaterRower. */
+    private final IWaterRowerConnectionListener listener = new IWaterRowerConnectionListener() {
+
+        @Override
+        public void onConnected(ModelInformation modelInformation) {
+            handleOnConnected();
+        }
+
+        @Override
+        public void onDisconnected() {
+            scheduleReconnect();
+        }
+
+        @Override
+        public void onError(ErrorCode errorCode) {
+            // A handshake timeout is reported as DEVICE_NOT_SUPPORTED too, but is retried:
+            if ((errorCode == DEVICE_NOT_SUPPORTED) && waterRower.isDeviceRejected()) {
+                isDeviceNotSupported = true;
+                return;
+            }
+            scheduleReconnect();
+        }
+
+    };
+
+
+    /**
+     * An opt-in supervisor, which reconnects the WaterRower automatically if the connection was lost.
+     *
+     * @param waterRower The WaterRower, must not be null.
+     * @param executorService The executor service for the reconnect attempts, must not be null.
+     * @param initialBackoff The delay before the first reconnect attempt, must not be null.
+     *                       Recommended = 1 second.
+     * @param maxBackoff The max. delay between reconnect attempts, must not be null.
+     *                   Recommended = 30 seconds.
+     * @param resumeWorkout True if the active workout should be sent again after a reconnect.
+     *                      Please note: The monitor starts the workout from the beginning.
+     */
+    public ReconnectSupervisor(WaterRower waterRower, ScheduledExecutorService executorService, Duration initialBackoff, Duration maxBackoff, boolean resumeWorkout) {
+        this(waterRower, executorService, initialBackoff, maxBackoff, resumeWorkout, () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * An opt-in supervisor, which reconnects the WaterRower automatically if the connection was lost.
+     *
+     * @param waterRower The WaterRower, must not be null.
+     * @param executorService The executor service for the reconnect attempts, must not be null.
+     * @param initialBackoff The delay before the first reconnect attempt, must not be null.
+     * @param maxBackoff The max. delay between reconnect attempts, must not be null.
+     * @param resumeWorkout True if the active workout should be sent again after a reconnect.
+     * @param random Returns random numbers between 0 (inclusive) and 1 (exclusive) for the jitter,
+     *               must not be null.
+     */
+    ReconnectSupervisor(WaterRower waterRower, ScheduledExecutorService executorService, Duration initialBackoff, Duration maxBackoff, boolean resumeWorkout, DoubleSupplier random) {
+        this.waterRower = requireNonNull(waterRower);
+        this.executorService = requireNonNull(executorService);
+        this.initialBackoff = requireNonNull(initialBackoff);
+        this.maxBackoff = requireNonNull(maxBackoff);
+        if (initialBackoff.isNegative() || initialBackoff.isZero())
+            throw new IllegalArgumentException("The initial backoff must be greater than 0!");
+        if (maxBackoff.compareTo(initialBackoff) < 0)
+            throw new IllegalArgumentException("The max. backoff must not be less than the initial backoff!");
+        this.resumeWorkout = resumeWorkout;
+        this.random = requireNonNull(random);
+
+        this.waterRower.addConnectionListener(listener);
+    }
+
+
+    /**
+     * Starts the supervision of the connection to the given address. The supervisor doesn't
+     * connect itself, please connect the WaterRower as usual.
+     *
+     * @param address The address of the WaterRower (e.g. the serial port), must not be null.
+     */
+    public void start(SocketAddress address) {
+        Log.debug(LIBRARY, "Start supervising the connection to '{}'.", address);
+
+        isDeviceNotSupported = false;
+        attempts.set(0);
+        this.address = requireNonNull(address);
+    }
+
+    /**
+     * Stops the supervision. Scheduled reconnect attempts are skipped.
+     */
+    public void stop() {
+        Log.debug(LIBRARY, "Stop supervising the connection.");
+
+        this.address = null;
+    }
+
+    /**
+     * Returns true if the supervisor is started.
+     *
+     * @return True if started.
+     */
+    public boolean isActive() {
+        return (address != null);
+    }
+
+    /**
+     * Returns the number of reconnect attempts since the last successful connect.
+     *
+     * @return The number of reconnect attempts.
+     */
+    public int getAttempts() {
+        return attempts.get();
+    }
+
+
+    /* Handles a successful (re)connect. */
+    private void handleOnConnected() {
+        boolean wasReconnected = (attempts.getAndSet(0) > 0);
+        isReconnecting.set(false);
+
+        if (!wasReconnected || !resumeWorkout || !isActive())
+            return;
+
+        Workout workout = waterRower.getActiveWorkout();
+        if (workout == null)
+            return;
+
+        try {
+
+            Log.debug(LIBRARY, "Reconnected. Resuming the active workout.");
+            waterRower.startWorkout(workout);
+
+        } catch (IOException e) {
+            Log.error("Couldn't resume the active workout!", e);
+        }
+    }
+
+    /* Schedules a reconnect attempt, if none is scheduled yet. */
+    private void scheduleReconnect() {
+        if (!isActive() || isDeviceNotSupported)
+            return;
+        if (!isReconnecting.compareAndSet(false, true))
+            return;
+        scheduleNextAttempt();
+    }
+
+    /* Schedules the next reconnect attempt with backoff. */
+    private void scheduleNextAttempt() {
+        long delay = getBackoff(attempts.getAndIncrement());
+
+        Log.debug(LIBRARY, "Reconnecting in {} ms.", delay);
+
+        executorService.schedule(this::reconnect, delay, MILLISECONDS);
+    }
+
+    /* Returns the delay of the given attempt in ms, an exponential backoff with jitter. */
+    long getBackoff(int attempt) {
+        long backoff = initialBackoff.toMillis() << Math.min(attempt, 30);
+        if ((backoff <= 0) || (backoff > maxBackoff.toMillis()))
+            backoff = maxBackoff.toMillis();
+
+        // Equal jitter, the delay is between the half and the full backoff:
+        return (backoff / 2) + (long) (random.getAsDouble() * (backoff - (backoff / 2)));
+    }
+
+    /* Executes a reconnect attempt. */
+    private void reconnect() {
+        SocketAddress currentAddress = address;
+        if ((currentAddress == null) || isDeviceNotSupported) {
+            isReconnecting.set(false);
+            return;
+        }
+
+        try {
+
+            Log.debug(LIBRARY, "Reconnecting to '{}' (attempt {}).", currentAddress, attempts.get());
+
+            closeLostConnection();
+            waterRower.connect(currentAddress);
+
+            // The handshake continues asynchronously, a failure is reported by the listener:
+            isReconnecting.set(false);
+
+        } catch (IOException e) {
+            Log.warn(LIBRARY, "Reconnect failed! {}", e.getMessage());
+            scheduleNextAttempt();
+        } catch (RuntimeException e) {
+            Log.error("Reconnect failed, due to errors!", e);
+            scheduleNextAttempt();
+        }
+    }
+
+    /* Closes the lost connection, if it was not closed yet (e.g. after a ping timeout). The
+     * connector is disconnected even if the exit message can't be sent. */
+    private void closeLostConnection() {
+        try {
+            waterRower.disconnect();
+        } catch (IOException e) {
+            // Already disconnected.
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("address", address)
+                .add("attempts", attempts.get())
+                .add("initialBackoff", initialBackoff)
+                .add("maxBackoff", maxBackoff)
+                .add("resumeWorkout", resumeWorkout)
+                .toString();
+    }
+
+}
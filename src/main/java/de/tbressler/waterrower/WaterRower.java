@@ -1,15 +1,18 @@
 package de.tbressler.waterrower;
 
 import de.tbressler.waterrower.io.IRxtxConnectionListener;
+import de.tbressler.waterrower.io.MemoryReadService;
 import de.tbressler.waterrower.io.RxtxConnectionListener;
 import de.tbressler.waterrower.io.WaterRowerConnector;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
-import de.tbressler.waterrower.io.msg.in.ErrorMessage;
+import de.tbressler.waterrower.io.msg.Memory;
+import de.tbressler.waterrower.io.msg.in.DataMemoryMessage;
 import de.tbressler.waterrower.io.msg.in.HardwareTypeMessage;
 import de.tbressler.waterrower.io.msg.in.ModelInformationMessage;
 import de.tbressler.waterrower.io.msg.out.*;
 import de.tbressler.waterrower.log.Log;
 import de.tbressler.waterrower.model.ErrorCode;
+import de.tbressler.waterrower.model.MemoryLocation;
 import de.tbressler.waterrower.model.ModelInformation;
 import de.tbressler.waterrower.subscriptions.ISubscription;
 import de.tbressler.waterrower.subscriptions.SubscriptionPollingService;
@@ -19,12 +22,15 @@ import de.tbressler.waterrower.watchdog.PingWatchdog;
 import de.tbressler.waterrower.workout.Workout;
 import de.tbressler.waterrower.workout.WorkoutInterval;
 import de.tbressler.waterrower.workout.WorkoutUnit;
-import io.netty.channel.rxtx.RxtxDeviceAddress;
 
 import java.io.IOException;
+import java.net.SocketAddress;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import static de.tbressler.waterrower.io.msg.MessageTypeId.typeOf;
 import static de.tbressler.waterrower.io.msg.out.ConfigureWorkoutMessage.MessageType.*;
 import static de.tbressler.waterrower.log.Log.LIBRARY;
 import static de.tbressler.waterrower.model.ErrorCode.*;
@@ -49,6 +55,9 @@ public class WaterRower {
     /* Polls and handles subscriptions. */
     private final SubscriptionPollingService subscriptionPollingService;
 
+    /* Reads memory locations with a request/response API. */
+    private final MemoryReadService memoryReadService;
+
     /* Watchdog that checks if a ping is received periodically. */
     private final PingWatchdog pingWatchdog;
 
@@ -56,6 +65,12 @@ public class WaterRower {
      * compatibility with the library. */
     private final DeviceVerificationWatchdog deviceVerificationWatchdog;
 
+    /* True if the connected device was rejected, because it is not a supported WaterRower. */
+    private volatile boolean isDeviceRejected = false;
+
+    /* The last workout, which was sent to the WaterRower, or null. */
+    private volatile Workout activeWorkout;
+
     /* All listeners. */
     private List<IWaterRowerConnectionListener> listeners = new ArrayList<>();
 
@@ -110,7 +125,8 @@ public class WaterRower {
         this(configurator.getWaterRowerConnector(),
                 configurator.getPingWatchdog(),
                 configurator.getDeviceVerificationWatchdog(),
-                configurator.getSubscriptionPollingService());
+                configurator.getSubscriptionPollingService(),
+                configurator.getMemoryReadService());
     }
 
     /**
@@ -127,11 +143,14 @@ public class WaterRower {
      *                                   library. Must not be null.
      * @param subscriptionPollingService The subscription polling service, which polls and
      *                                   handles the subscriptions. Must not be null.
+     * @param memoryReadService The service, which reads memory locations with a request/response
+     *                          API. Must not be null.
      */
     WaterRower(WaterRowerConnector connector,
                   PingWatchdog pingWatchdog,
                   DeviceVerificationWatchdog deviceVerificationWatchdog,
-                  SubscriptionPollingService subscriptionPollingService) {
+                  SubscriptionPollingService subscriptionPollingService,
+                  MemoryReadService memoryReadService) {
 
         this.connector = requireNonNull(connector);
         this.connector.addConnectionListener(connectionListener);
@@ -143,21 +162,26 @@ public class WaterRower {
         this.deviceVerificationWatchdog.setTimeoutListener(timeoutListener);
 
         this.subscriptionPollingService = requireNonNull(subscriptionPollingService);
+
+        this.memoryReadService = requireNonNull(memoryReadService);
     }
 
 
     /**
      * Connect to the rowing computer.
      *
-     * @param address The serial port, must not be null.
+     * @param address The serial port (RxtxDeviceAddress) or the address of a serial-to-TCP bridge
+     *                (InetSocketAddress), must not be null. The type of address must match the
+     *                transport of the initializer.
      *
      * @throws IOException If connect fails.
      */
-    public void connect(RxtxDeviceAddress address) throws IOException {
+    public void connect(SocketAddress address) throws IOException {
         Log.debug(LIBRARY, "Connecting...");
 
         if (connector.isConnected())
             throw new IOException("Already connected! Can not connect again.");
+        isDeviceRejected = false;
         connector.connect(requireNonNull(address));
     }
 
@@ -196,59 +220,70 @@ public class WaterRower {
     /* Handles all the low level messages like ping, hardware type, ... */
     private void handleLowLevelMessages(AbstractMessage msg) throws IOException {
 
-        if (msg instanceof HardwareTypeMessage) {
+        switch (typeOf(msg)) {
 
-            if (((HardwareTypeMessage) msg).isWaterRower()) {
+            case HARDWARE_TYPE:
 
-                Log.debug(LIBRARY, "Connected with WaterRower. Sending poll for model information.");
+                if (((HardwareTypeMessage) msg).isWaterRower()) {
 
-                connector.send(new RequestModelInformationMessage());
+                    Log.debug(LIBRARY, "Connected with WaterRower. Sending poll for model information.");
 
-            } else {
+                    connector.send(new RequestModelInformationMessage());
 
-                Log.warn(LIBRARY, "The connected device is not a WaterRower!");
+                } else {
 
-                fireOnError(DEVICE_NOT_SUPPORTED);
-            }
+                    Log.warn(LIBRARY, "The connected device is not a WaterRower!");
 
-        } else if (msg instanceof ModelInformationMessage) {
+                    isDeviceRejected = true;
+                    fireOnError(DEVICE_NOT_SUPPORTED);
+                }
+                break;
 
-            ModelInformation modelInformation = ((ModelInformationMessage) msg).getModelInformation();
+            case MODEL_INFORMATION:
 
-            Log.debug(LIBRARY, "Received model information from connected WaterRower:\n" +
-                    " Model: " + modelInformation);
+                ModelInformation modelInformation = ((ModelInformationMessage) msg).getModelInformation();
 
-            if (isSupportedWaterRower(modelInformation)) {
+                Log.debug(LIBRARY, "Received model information from connected WaterRower:\n" +
+                        " Model: " + modelInformation);
 
-                Log.debug(LIBRARY, "Monitor type and firmware are supported by this library. Successfully connected with WaterRower.");
+                if (isSupportedWaterRower(modelInformation)) {
 
-                // Set device model confirmed and stop watchdog:
-                deviceVerificationWatchdog.setDeviceConfirmed(true);
-                deviceVerificationWatchdog.stop();
+                    Log.debug(LIBRARY, "Monitor type and firmware are supported by this library. Successfully connected with WaterRower.");
 
-                // Start ping watchdog.
-                pingWatchdog.start();
+                    // Set device model confirmed and stop watchdog:
+                    deviceVerificationWatchdog.setDeviceConfirmed(true);
+                    deviceVerificationWatchdog.stop();
 
-                // Start subscription polling service.
-                subscriptionPollingService.start();
+                    // Start ping watchdog.
+                    pingWatchdog.start();
 
-                fireOnConnected(modelInformation);
+                    // Start subscription polling service.
+                    subscriptionPollingService.start();
 
-            } else {
+                    fireOnConnected(modelInformation);
 
-                Log.warn(LIBRARY, "The monitor type and/or firmware of the connected WaterRower are not supported by this library!");
+                } else {
 
-                deviceVerificationWatchdog.setDeviceConfirmed(false);
-                deviceVerificationWatchdog.stop();
+                    Log.warn(LIBRARY, "The monitor type and/or firmware of the connected WaterRower are not supported by this library!");
 
-                fireOnError(DEVICE_NOT_SUPPORTED);
-            }
+                    deviceVerificationWatchdog.setDeviceConfirmed(false);
+                    deviceVerificationWatchdog.stop();
+
+                    isDeviceRejected = true;
+                    fireOnError(DEVICE_NOT_SUPPORTED);
+                }
+                break;
 
-        } else if (msg instanceof ErrorMessage) {
+            case ERROR:
 
-            Log.debug(LIBRARY, "Error message received from WaterRower monitor.");
+                Log.debug(LIBRARY, "Error message received from WaterRower monitor.");
 
-            fireOnError(ERROR_MESSAGE_RECEIVED);
+                fireOnError(ERROR_MESSAGE_RECEIVED);
+                break;
+
+            default:
+                // Other messages are handled by the subscriptions.
+                break;
         }
     }
 
@@ -264,6 +299,18 @@ public class WaterRower {
         return deviceVerificationWatchdog.isDeviceConfirmed();
     }
 
+    /**
+     * Returns true if the connected device was rejected, because the hardware type or the model
+     * information didn't match a supported WaterRower. Returns false if the device didn't confirm
+     * its model in time (e.g. a handshake timeout), because this error is also reported as
+     * DEVICE_NOT_SUPPORTED.
+     *
+     * @return True if the device was rejected.
+     */
+    boolean isDeviceRejected() {
+        return isDeviceRejected;
+    }
+
 
     /**
      * Disconnects from the rowing computer.
@@ -276,9 +323,14 @@ public class WaterRower {
 
         stopInternalServices();
 
-        // Be polite and send a goodbye.
-        if (isConnected())
-            connector.send(new ExitCommunicationMessage());
+        // Be polite and send a goodbye. The connector is disconnected anyway, e.g. if the
+        // connection was already closed by the remote side:
+        try {
+            if (isConnected())
+                connector.send(new ExitCommunicationMessage());
+        } catch (IOException e) {
+            Log.warn(LIBRARY, "Couldn't send 'exit communication' message! {}", e.getMessage());
+        }
 
         // Disconnect.
         connector.disconnect();
@@ -313,6 +365,7 @@ public class WaterRower {
     public void performReset() throws IOException {
         checkIfConnected();
         connector.send(new ResetMessage());
+        activeWorkout = null;
     }
 
 
@@ -332,6 +385,18 @@ public class WaterRower {
         } else {
             sendIntervalWorkout(workout);
         }
+
+        activeWorkout = workout;
+    }
+
+    /**
+     * Returns the last workout, which was sent to the WaterRower. Returns null if no workout was
+     * sent or the WaterRower was reset afterwards.
+     *
+     * @return The active workout or null.
+     */
+    public Workout getActiveWorkout() {
+        return activeWorkout;
     }
 
     /* Sends a single workout to the WaterRower. */
@@ -404,6 +469,34 @@ public class WaterRower {
     }
 
 
+    /**
+     * Reads the given memory location once, without a subscription. The future fails with a
+     * TimeoutException if no response is received within the timeout interval and with an
+     * IOException if the connection is lost.
+     *
+     * @param memory Single, double or triple memory, must not be null.
+     * @param location The memory location, must not be null.
+     * @return The future, which is completed with the received data memory message.
+     */
+    public CompletableFuture<DataMemoryMessage> readMemory(Memory memory, MemoryLocation location) {
+        return memoryReadService.read(requireNonNull(memory), requireNonNull(location));
+    }
+
+    /**
+     * Reads the given memory location once, without a subscription. The future fails with a
+     * TimeoutException if no response is received within the given timeout and with an
+     * IOException if the connection is lost.
+     *
+     * @param memory Single, double or triple memory, must not be null.
+     * @param location The memory location, must not be null.
+     * @param timeout The timeout, must not be null.
+     * @return The future, which is completed with the received data memory message.
+     */
+    public CompletableFuture<DataMemoryMessage> readMemory(Memory memory, MemoryLocation location, Duration timeout) {
+        return memoryReadService.read(requireNonNull(memory), requireNonNull(location), requireNonNull(timeout));
+    }
+
+
     /**
      * Subscribe to events. This will start the polling for the given data.
      *
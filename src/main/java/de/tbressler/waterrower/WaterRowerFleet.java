@@ -0,0 +1,189 @@
+package de.tbressler.waterrower;
+
+import de.tbressler.waterrower.io.ChannelTransport;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+
+/**
+ * A fleet of WaterRowers in one JVM (e.g. all rowers of a gym).
+ *
+ * All WaterRowers of the fleet share one event loop group and one bounded scheduled thread pool,
+ * which is used for the subscription polling and the watchdogs. Each WaterRower still has its own
+ * connection, message parser, subscriptions and watchdogs, so an error or a disconnect of one
+ * device doesn't affect the other devices of the fleet.
+ *
+ * The number of threads of the fleet is bounded by the size of the thread pool plus the threads
+ * of the event loop group. Please note: The RXTX transport uses blocking I/O, which needs one
+ * thread of the event loop group for each open serial port.
+ *
+ * The WaterRowers of the fleet are built with WaterRowerInitializer.Builder, so the options of a
+ * single WaterRower (e.g. recycling of messages, batching or adaptive polling) can be used for the
+ * WaterRowers of a fleet too. Stateful options (e.g. the activity monitor or the bandwidth budget
+ * of the serial line) must not be shared by the WaterRowers, each WaterRower needs its own instance.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class WaterRowerFleet {
+
+    /* The polling interval for the subscriptions. */
+    private final Duration pollingInterval;
+
+    /* The timeout interval for messages. */
+    private final Duration timeoutInterval;
+
+    /* The shared transport (event loop group and type of channel). */
+    private final ChannelTransport transport;
+
+    /* The shared executor service for the subscription polling and the watchdogs. */
+    private final ScheduledExecutorService executorService;
+
+    /* The number of WaterRowers created by the fleet. */
+    private final AtomicInteger size = new AtomicInteger();
+
+
+    /**
+     * A fleet of WaterRowers, which uses the RXTX transport.
+     *
+     * @param pollingInterval The polling interval for the subscriptions, must not be null.
+     *                        Recommended = 1 second.
+     * @param timeoutInterval The timeout interval for messages, if a message was not received from a WaterRower
+     *                        during this interval a timeout error will get fired, must not be null.
+     *                        Recommended = 1 second.
+     * @param threadPoolSize The number of threads of the shared pool, which is used by all WaterRowers of the
+     *                       fleet for the subscription polling and the watchdogs.
+     *                       Recommended = 5.
+     */
+    public WaterRowerFleet(Duration pollingInterval, Duration timeoutInterval, int threadPoolSize) {
+        this(pollingInterval, timeoutInterval, threadPoolSize, ChannelTransport.rxtx());
+    }
+
+    /**
+     * A fleet of WaterRowers.
+     *
+     * @param pollingInterval The polling interval for the subscriptions, must not be null.
+     *                        Recommended = 1 second.
+     * @param timeoutInterval The timeout interval for messages, if a message was not received from a WaterRower
+     *                        during this interval a timeout error will get fired, must not be null.
+     *                        Recommended = 1 second.
+     * @param threadPoolSize The number of threads of the shared pool, which is used by all WaterRowers of the
+     *                       fleet for the subscription polling and the watchdogs.
+     *                       Recommended = 5.
+     * @param transport The shared transport of the connections, must not be null.
+     */
+    public WaterRowerFleet(Duration pollingInterval, Duration timeoutInterval, int threadPoolSize, ChannelTransport transport) {
+        this.pollingInterval = requireNonNull(pollingInterval);
+        this.timeoutInterval = requireNonNull(timeoutInterval);
+        this.transport = requireNonNull(transport);
+        if (threadPoolSize < 1)
+            throw new IllegalArgumentException("The number of thread must be at least 1!");
+        this.executorService = newScheduledThreadPool(threadPoolSize);
+    }
+
+
+    /**
+     * Returns a new builder for a WaterRower of the fleet, with the polling interval, the timeout
+     * interval, the thread pool and the transport of the fleet. The other options of the WaterRower
+     * can be set with the builder, before it is passed to newWaterRower(Builder).
+     *
+     * @return The builder, never null.
+     */
+    public WaterRowerInitializer.Builder newInitializerBuilder() {
+        return new WaterRowerInitializer.Builder(pollingInterval, timeoutInterval)
+                .executorService(executorService)
+                .transport(transport);
+    }
+
+    /**
+     * Returns a new WaterRower, which uses the shared event loop group and thread pool of the fleet.
+     *
+     * @return The WaterRower, never null.
+     */
+    public WaterRower newWaterRower() {
+        return newWaterRower(newInitializerBuilder());
+    }
+
+    /**
+     * Returns a new WaterRower with the options of the given builder. The WaterRower always uses the
+     * shared event loop group and thread pool of the fleet, a thread pool or transport of the builder
+     * is replaced.
+     *
+     * @param builder The builder of the WaterRower, must not be null (see newInitializerBuilder()).
+     * @return The WaterRower, never null.
+     */
+    public WaterRower newWaterRower(WaterRowerInitializer.Builder builder) {
+        return new WaterRower(newInitializer(builder));
+    }
+
+    /* Returns a new initializer for a single WaterRower of the fleet. */
+    WaterRowerInitializer newInitializer() {
+        return newInitializer(newInitializerBuilder());
+    }
+
+    /* Returns a new initializer for a single WaterRower of the fleet, with the options of the builder. */
+    WaterRowerInitializer newInitializer(WaterRowerInitializer.Builder builder) {
+        requireNonNull(builder);
+        if (executorService.isShutdown())
+            throw new IllegalStateException("The fleet was already shut down!");
+        WaterRowerInitializer initializer = builder
+                .executorService(executorService)
+                .transport(transport)
+                .build();
+        size.incrementAndGet();
+        return initializer;
+    }
+
+    /**
+     * Returns the number of WaterRowers, which were created by the fleet.
+     *
+     * @return The number of WaterRowers.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Shuts down the shared thread pool and the shared event loop group. The WaterRowers of the
+     * fleet should be disconnected before.
+     */
+    public void shutdown() {
+        executorService.shutdownNow();
+        transport.getGroup().shutdownGracefully();
+    }
+
+    /**
+     * Returns true if the fleet was shut down.
+     *
+     * @return True if the fleet was shut down.
+     */
+    public boolean isShutdown() {
+        return executorService.isShutdown();
+    }
+
+
+    /* Returns the shared executor service. */
+    ScheduledExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /* Returns the shared transport. */
+    ChannelTransport getTransport() {
+        return transport;
+    }
+
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("size", size.get())
+                .add("transport", transport)
+                .toString();
+    }
+
+}
@@ -1,8 +1,14 @@
 package de.tbressler.waterrower;
 
+import de.tbressler.waterrower.io.ChannelTransport;
+import de.tbressler.waterrower.io.MemoryReadService;
+import de.tbressler.waterrower.io.OutboundQueue;
 import de.tbressler.waterrower.io.RxtxChannelInitializer;
 import de.tbressler.waterrower.io.RxtxCommunicationService;
+import de.tbressler.waterrower.io.SerialLineBudget;
 import de.tbressler.waterrower.io.WaterRowerConnector;
+import de.tbressler.waterrower.io.codec.RxtxMessageParser;
+import de.tbressler.waterrower.subscriptions.ActivityMonitor;
 import de.tbressler.waterrower.subscriptions.SubscriptionPollingService;
 import de.tbressler.waterrower.watchdog.DeviceVerificationWatchdog;
 import de.tbressler.waterrower.watchdog.PingWatchdog;
@@ -28,6 +34,9 @@ public class WaterRowerInitializer {
     /* Polls and handles subscriptions. */
     private final SubscriptionPollingService subscriptionPollingService;
 
+    /* Reads memory locations with a request/response API. */
+    private final MemoryReadService memoryReadService;
+
     /* Watchdog that checks if a ping is received periodically. */
     private final PingWatchdog pingWatchdog;
 
@@ -39,6 +48,8 @@ public class WaterRowerInitializer {
     /**
      * Initializes the dependencies of the WaterRower class based on the given parameters.
      *
+     * Please use the builder (see WaterRowerInitializer.Builder) for the other options.
+     *
      * @param pollingInterval The polling interval for the subscriptions, must not be null.
      *                        Recommended = 1 second.
      * @param timeoutInterval The timeout interval for messages, if a message was not received from the WaterRower
@@ -49,24 +60,42 @@ public class WaterRowerInitializer {
      *                       Recommended = 5.
      */
     public WaterRowerInitializer(Duration pollingInterval, Duration timeoutInterval, int threadPoolSize) {
-        requireNonNull(pollingInterval);
-        requireNonNull(timeoutInterval);
-        if (threadPoolSize < 1)
-            throw new IllegalArgumentException("The number of thread must be at least 1!");
+        this(new Builder(pollingInterval, timeoutInterval).threadPoolSize(threadPoolSize));
+    }
+
+    /* Initializes the dependencies of the WaterRower class based on the options of the builder. */
+    private WaterRowerInitializer(Builder builder) {
+        ScheduledExecutorService executorService = (builder.executorService != null) ? builder.executorService : newExecutorService(builder.threadPoolSize);
+        ChannelTransport transport = (builder.transport != null) ? builder.transport : ChannelTransport.rxtx();
 
         Bootstrap bootstrap = new Bootstrap();
 
-        RxtxCommunicationService communicationService = new RxtxCommunicationService(bootstrap, new RxtxChannelInitializer());
+        RxtxChannelInitializer channelInitializer = new RxtxChannelInitializer(new RxtxMessageParser(builder.recycleMessages));
 
-        ScheduledExecutorService executorService = Executors.newScheduledThreadPool(threadPoolSize);
+        RxtxCommunicationService communicationService = new RxtxCommunicationService(bootstrap, channelInitializer, transport);
 
         connector = new WaterRowerConnector(communicationService);
 
-        subscriptionPollingService = new SubscriptionPollingService(pollingInterval, connector, executorService);
+        subscriptionPollingService = new SubscriptionPollingService(builder.pollingInterval, connector, executorService);
+        subscriptionPollingService.setMaxBatchSize(builder.maxBatchSize);
+        subscriptionPollingService.setBudget(builder.budget);
+        subscriptionPollingService.setPipelineWindow(builder.pipelineWindow);
+        subscriptionPollingService.setActivityMonitor(builder.activityMonitor);
+        subscriptionPollingService.setReadMerging(builder.readMerging);
+        subscriptionPollingService.setRecycleMessages(builder.recycleMessages);
+
+        memoryReadService = new MemoryReadService(connector, executorService, builder.timeoutInterval);
 
-        pingWatchdog = new PingWatchdog(timeoutInterval, executorService);
+        pingWatchdog = new PingWatchdog(builder.timeoutInterval, executorService);
 
-        deviceVerificationWatchdog = new DeviceVerificationWatchdog(timeoutInterval, executorService);
+        deviceVerificationWatchdog = new DeviceVerificationWatchdog(builder.timeoutInterval, executorService);
+    }
+
+    /* Returns a new executor service with the given number of threads. */
+    private static ScheduledExecutorService newExecutorService(int threadPoolSize) {
+        if (threadPoolSize < 1)
+            throw new IllegalArgumentException("The number of thread must be at least 1!");
+        return Executors.newScheduledThreadPool(threadPoolSize);
     }
 
 
@@ -79,6 +108,25 @@ public class WaterRowerInitializer {
         return connector;
     }
 
+    /**
+     * Returns the queue of the outbound messages, which reports the queueing latency of each
+     * priority class (control, interactive and poll).
+     *
+     * @return The outbound queue, never null.
+     */
+    public OutboundQueue getOutboundQueue() {
+        return connector.getOutboundQueue();
+    }
+
+    /**
+     * Returns the service, which reads memory locations with a request/response API.
+     *
+     * @return The memory read service, never null.
+     */
+    MemoryReadService getMemoryReadService() {
+        return memoryReadService;
+    }
+
     /**
      * Returns the watchdog that checks if a ping was received periodically.
      *
@@ -99,12 +147,199 @@ public class WaterRowerInitializer {
     }
 
     /**
-     * Returns the subscription polling service, which polls and handles the subscriptions.
+     * Returns the subscription polling service, which polls and handles the subscriptions (e.g. to
+     * read the number of deferred and dropped polls).
      *
      * @return The subscription polling service, never null.
      */
-    SubscriptionPollingService getSubscriptionPollingService() {
+    public SubscriptionPollingService getSubscriptionPollingService() {
         return subscriptionPollingService;
     }
 
+
+    /**
+     * Builds a WaterRowerInitializer. All options are optional, except of the polling interval
+     * and the timeout interval.
+     *
+     * @author Tobias Bressler
+     * @version 1.0
+     */
+    public static class Builder {
+
+        /* The polling interval for the subscriptions. */
+        private final Duration pollingInterval;
+
+        /* The timeout interval for messages. */
+        private final Duration timeoutInterval;
+
+        /* The number of threads of the pool, if no executor service is given. */
+        private int threadPoolSize = 5;
+
+        /* The executor service for the subscription polling and the watchdogs or null. */
+        private ScheduledExecutorService executorService;
+
+        /* True if received memory messages should be recycled. */
+        private boolean recycleMessages = false;
+
+        /* The max. number of poll messages, which are written with a single write and flush. */
+        private int maxBatchSize = 1;
+
+        /* The transport of the connection or null, if RXTX should be used. */
+        private ChannelTransport transport;
+
+        /* The bandwidth budget of the serial line or null. */
+        private SerialLineBudget budget;
+
+        /* The max. number of outstanding reads of the pipeline, 0 if polled in cycles. */
+        private int pipelineWindow = 0;
+
+        /* The activity monitor of the adaptive polling or null. */
+        private ActivityMonitor activityMonitor;
+
+        /* True if the reads of adjacent memory locations are merged. */
+        private boolean readMerging = true;
+
+
+        /**
+         * Builds a WaterRowerInitializer.
+         *
+         * @param pollingInterval The polling interval for the subscriptions, must not be null. In pipelined mode
+         *                        this is also the timeout of an outstanding read.
+         *                        Recommended = 1 second.
+         * @param timeoutInterval The timeout interval for messages, if a message was not received from the
+         *                        WaterRower during this interval a timeout error will get fired, must not be null.
+         *                        Recommended = 1 second.
+         */
+        public Builder(Duration pollingInterval, Duration timeoutInterval) {
+            this.pollingInterval = requireNonNull(pollingInterval);
+            this.timeoutInterval = requireNonNull(timeoutInterval);
+        }
+
+        /**
+         * Sets the number of threads to keep in the pool, which should be used by the WaterRower service even if
+         * they are idle. Not used, if an executor service is given.
+         *
+         * @param threadPoolSize The number of threads, must be at least 1. Default = 5.
+         * @return The builder.
+         */
+        public Builder threadPoolSize(int threadPoolSize) {
+            if (threadPoolSize < 1)
+                throw new IllegalArgumentException("The number of thread must be at least 1!");
+            this.threadPoolSize = threadPoolSize;
+            return this;
+        }
+
+        /**
+         * Sets the executor service for the subscription polling and the watchdogs. The executor service can be
+         * shared by many WaterRowers, each WaterRower still gets its own connection, parser, subscriptions and
+         * watchdogs.
+         *
+         * @param executorService The executor service, must not be null. Default = a new pool with the given
+         *                        number of threads.
+         * @return The builder.
+         */
+        public Builder executorService(ScheduledExecutorService executorService) {
+            this.executorService = requireNonNull(executorService);
+            return this;
+        }
+
+        /**
+         * Sets if received memory messages should be recycled. Subscriptions must not keep references to
+         * received messages in this mode.
+         *
+         * @param recycleMessages True if received memory messages should be recycled. Default = false.
+         * @return The builder.
+         */
+        public Builder recycleMessages(boolean recycleMessages) {
+            this.recycleMessages = recycleMessages;
+            return this;
+        }
+
+        /**
+         * Sets the max. number of poll messages, which are written to the WaterRower with a single write and
+         * flush.
+         *
+         * @param maxBatchSize The max. batch size, must be at least 1. If 1, the messages of a polling cycle
+         *                     are sent one by one. Default = 1.
+         * @return The builder.
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the transport (event loop group and type of channel) of the connection. The event loop group can
+         * be shared with other WaterRowers.
+         *
+         * @param transport The transport, must not be null. Default = ChannelTransport.rxtx().
+         * @return The builder.
+         */
+        public Builder transport(ChannelTransport transport) {
+            this.transport = requireNonNull(transport);
+            return this;
+        }
+
+        /**
+         * Sets the bandwidth budget of the serial line, which limits the outbound polling traffic.
+         *
+         * @param budget The bandwidth budget or null, if the polling traffic should not be limited.
+         *               Default = null.
+         * @return The builder.
+         */
+        public Builder budget(SerialLineBudget budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * Sets the window of the pipelined polling. The memory locations of the subscriptions are polled with a
+         * pipeline, which keeps the given number of reads outstanding and sends the next read as soon as a
+         * response was received.
+         *
+         * @param pipelineWindow The max. number of outstanding reads of the pipeline, must not be negative.
+         *                       If 0, the memory locations are polled in cycles of the polling interval.
+         *                       Default = 0. Recommended for pipelined polling = 4.
+         * @return The builder.
+         */
+        public Builder pipelineWindow(int pipelineWindow) {
+            this.pipelineWindow = pipelineWindow;
+            return this;
+        }
+
+        /**
+         * Sets the activity monitor of the adaptive polling, the polling cycles are stretched while the rower
+         * is inactive. The activity monitor must not be shared by many WaterRowers.
+         *
+         * @param activityMonitor The activity monitor or null, if the subscriptions should always be polled at
+         *                        the full rate. Default = null.
+         * @return The builder.
+         */
+        public Builder activityMonitor(ActivityMonitor activityMonitor) {
+            this.activityMonitor = activityMonitor;
+            return this;
+        }
+
+        /**
+         * Sets if the reads of adjacent memory locations are merged into double or triple reads.
+         *
+         * @param readMerging True if the reads should be merged. Default = true.
+         * @return The builder.
+         */
+        public Builder readMerging(boolean readMerging) {
+            this.readMerging = readMerging;
+            return this;
+        }
+
+        /**
+         * Returns a new WaterRowerInitializer with the options of this builder.
+         *
+         * @return The initializer, never null.
+         */
+        public WaterRowerInitializer build() {
+            return new WaterRowerInitializer(this);
+        }
+
+    }
+
 }
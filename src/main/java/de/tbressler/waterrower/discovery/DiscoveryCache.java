@@ -0,0 +1,187 @@
+package de.tbressler.waterrower.discovery;
+
+import de.tbressler.waterrower.log.Log;
+import de.tbressler.waterrower.model.ModelInformation;
+import de.tbressler.waterrower.model.MonitorType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.log.Log.LIBRARY;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A cache for the results of the port discovery, which is kept in a file across restarts.
+ *
+ * The cache maps the name of a port (e.g. "/dev/ttyACM0") to the model information of the
+ * WaterRower, which was verified at this port. The file is a properties file with one line per
+ * port, e.g. "/dev/ttyACM0=WATER_ROWER_S4;02.10". Invalid lines are skipped while loading.
+ *
+ * The numbers of the ports change with the plug order and with reboots, so an entry is only a
+ * hint where a WaterRower was found before. The discovery probes the cached ports first and
+ * removes the entries, which couldn't be verified again (see SerialPortDiscovery).
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class DiscoveryCache {
+
+    /* The separator between monitor type and firmware version. */
+    private static final String SEPARATOR = ";";
+
+
+    /* The file of the cache. */
+    private final Path file;
+
+    /* The cached model information, by name of the port. */
+    private final Map<String, ModelInformation> entries = new HashMap<>();
+
+
+    /**
+     * A cache for the results of the port discovery, which is kept in a file across restarts.
+     *
+     * @param file The file of the cache, must not be null. The file is created when the cache is
+     *             stored the first time.
+     */
+    public DiscoveryCache(Path file) {
+        this.file = requireNonNull(file);
+    }
+
+
+    /**
+     * Loads the cache from the file. Replaces all entries of the cache. If the file doesn't exist,
+     * the cache is empty.
+     *
+     * @throws IOException If the file couldn't be read.
+     */
+    public synchronized void load() throws IOException {
+        entries.clear();
+
+        if (!Files.exists(file))
+            return;
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+
+        for (String port : properties.stringPropertyNames()) {
+            ModelInformation modelInformation = parse(properties.getProperty(port));
+            if (modelInformation == null) {
+                Log.warn(LIBRARY, "Skipping invalid entry of the discovery cache for port '{}'.", port);
+                continue;
+            }
+            entries.put(port, modelInformation);
+        }
+    }
+
+    /**
+     * Stores the cache to the file.
+     *
+     * @throws IOException If the file couldn't be written.
+     */
+    public synchronized void store() throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, ModelInformation> entry : entries.entrySet()) {
+            ModelInformation modelInformation = entry.getValue();
+            properties.setProperty(entry.getKey(), modelInformation.getMonitorType().name() + SEPARATOR + modelInformation.getFirmwareVersion());
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null)
+            Files.createDirectories(parent);
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            properties.store(out, "WaterRower discovery cache");
+        }
+    }
+
+    /* Returns the model information of the given value or null, if the value is invalid. */
+    private static ModelInformation parse(String value) {
+        int index = value.indexOf(SEPARATOR);
+        if (index < 0)
+            return null;
+        try {
+            MonitorType monitorType = MonitorType.valueOf(value.substring(0, index));
+            return new ModelInformation(monitorType, value.substring(index + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Returns the cached model information of the given port.
+     *
+     * @param port The name of the port, must not be null.
+     * @return The model information or null, if the port is not cached.
+     */
+    public synchronized ModelInformation get(String port) {
+        return entries.get(requireNonNull(port));
+    }
+
+    /**
+     * Caches the model information of the given port.
+     *
+     * @param port The name of the port, must not be null.
+     * @param modelInformation The model information, must not be null.
+     */
+    public synchronized void put(String port, ModelInformation modelInformation) {
+        entries.put(requireNonNull(port), requireNonNull(modelInformation));
+    }
+
+    /**
+     * Removes the given port from the cache.
+     *
+     * @param port The name of the port, must not be null.
+     */
+    public synchronized void remove(String port) {
+        entries.remove(requireNonNull(port));
+    }
+
+    /**
+     * Removes all ports from the cache, which are not contained in the given ports (e.g. because
+     * the devices were unplugged).
+     *
+     * @param ports The names of the ports to keep, must not be null.
+     */
+    public synchronized void retainAll(Collection<String> ports) {
+        requireNonNull(ports);
+        entries.keySet().retainAll(ports);
+    }
+
+    /**
+     * Removes all ports from the cache, so the order of the probes of the next discovery doesn't
+     * depend on previous discoveries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of cached ports.
+     *
+     * @return The number of cached ports.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+
+    @Override
+    public synchronized String toString() {
+        return toStringHelper(this)
+                .add("file", file)
+                .add("size", entries.size())
+                .toString();
+    }
+
+}
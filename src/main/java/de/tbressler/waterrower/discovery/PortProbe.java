@@ -0,0 +1,234 @@
+package de.tbressler.waterrower.discovery;
+
+import de.tbressler.waterrower.io.IRxtxConnectionListener;
+import de.tbressler.waterrower.io.RxtxConnectionListener;
+import de.tbressler.waterrower.io.WaterRowerConnector;
+import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.in.HardwareTypeMessage;
+import de.tbressler.waterrower.io.msg.in.ModelInformationMessage;
+import de.tbressler.waterrower.io.msg.out.ExitCommunicationMessage;
+import de.tbressler.waterrower.io.msg.out.RequestModelInformationMessage;
+import de.tbressler.waterrower.io.msg.out.StartCommunicationMessage;
+import de.tbressler.waterrower.log.Log;
+import de.tbressler.waterrower.model.ModelInformation;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static de.tbressler.waterrower.io.msg.MessageTypeId.typeOf;
+import static de.tbressler.waterrower.log.Log.LIBRARY;
+import static de.tbressler.waterrower.utils.Compatibility.isSupportedWaterRower;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Probes a single port for a WaterRower S4/S5 monitor.
+ *
+ * The probe connects to the port and runs the handshake of the monitor: "USB" (start
+ * communication), "_WR_" (hardware type) and "IV?" (model information). The probe is successful
+ * if the monitor type and firmware are supported by this library. Afterwards the connection is
+ * closed again, so the port can be used by a WaterRower.
+ *
+ * A probe can only be used once.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class PortProbe {
+
+    /* The connector to the port. */
+    private final WaterRowerConnector connector;
+
+    /* The executor service for the connect and the timeout. */
+    private final ScheduledExecutorService executorService;
+
+    /* The timeout of the handshake. */
+    private final Duration timeout;
+
+    /* The result of the probe. */
+    private final CompletableFuture<ModelInformation> result = new CompletableFuture<>();
+
+    /* True if the probe was started. */
+    private final AtomicBoolean isStarted = new AtomicBoolean(false);
+
+    /* True if the probe is finished. */
+    private final AtomicBoolean isFinished = new AtomicBoolean(false);
+
+    /* The timeout of the handshake or null, if not scheduled yet. */
+    private volatile ScheduledFuture<?> timeoutFuture;
+
+
+    /* Listener for the connection to the port, which runs the handshake. */
+    private final IRxtxConnectionListener listener = new RxtxConnectionListener() {
+
+        @Override
+        public void onConnected() {
+            handleOnConnected();
+        }
+
+        @Override
+        public void onMessageReceived(AbstractMessage msg) {
+            handleOnMessageReceived(msg);
+        }
+
+        @Override
+        public void onDisconnected() {
+            fail(new IOException("Connection was closed!"));
+        }
+
+        @Override
+        public void onError() {
+            fail(new IOException("Connection failed!"));
+        }
+
+    };
+
+
+    /**
+     * Probes a single port for a WaterRower S4/S5 monitor.
+     *
+     * @param connector The connector to the port, must not be null. The connector must not be
+     *                  used by a WaterRower.
+     * @param executorService The executor service for the connect and the timeout, must not be
+     *                        null.
+     * @param timeout The timeout of the handshake, must not be null. Recommended = 2 seconds.
+     */
+    public PortProbe(WaterRowerConnector connector, ScheduledExecutorService executorService, Duration timeout) {
+        this.connector = requireNonNull(connector);
+        this.executorService = requireNonNull(executorService);
+        this.timeout = requireNonNull(timeout);
+    }
+
+
+    /**
+     * Probes the given address. The connect and the handshake are executed asynchronously.
+     *
+     * @param address The address of the port, must not be null.
+     * @return The future, which is completed with the model information of the monitor or
+     *         completed exceptionally if no supported monitor was found.
+     */
+    public CompletableFuture<ModelInformation> probe(SocketAddress address) {
+        requireNonNull(address);
+
+        if (!isStarted.compareAndSet(false, true))
+            throw new IllegalStateException("The probe was already started!");
+
+        connector.addConnectionListener(listener);
+
+        timeoutFuture = executorService.schedule(() -> fail(new TimeoutException("No handshake with a WaterRower at '" + address + "'!")), timeout.toMillis(), MILLISECONDS);
+
+        executorService.execute(() -> {
+            try {
+
+                Log.debug(LIBRARY, "Probing '{}'.", address);
+                connector.connect(address);
+
+                // The probe timed out while connecting:
+                if (isFinished.get())
+                    closePort();
+
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+
+        return result;
+    }
+
+
+    /* Starts the handshake after the connect. */
+    private void handleOnConnected() {
+        try {
+            connector.send(new StartCommunicationMessage());
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /* Continues the handshake with the received message. */
+    private void handleOnMessageReceived(AbstractMessage msg) {
+        try {
+
+            switch (typeOf(msg)) {
+
+                case HARDWARE_TYPE:
+                    if (((HardwareTypeMessage) msg).isWaterRower())
+                        connector.send(new RequestModelInformationMessage());
+                    else
+                        fail(new IOException("The device is not a WaterRower!"));
+                    break;
+
+                case MODEL_INFORMATION:
+                    ModelInformation modelInformation = ((ModelInformationMessage) msg).getModelInformation();
+                    if (isSupportedWaterRower(modelInformation))
+                        succeed(modelInformation);
+                    else
+                        fail(new IOException("The monitor type and/or firmware are not supported! " + modelInformation));
+                    break;
+
+                default:
+                    // Other messages are ignored during the handshake.
+                    break;
+            }
+
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /* Completes the probe successfully. */
+    private void succeed(ModelInformation modelInformation) {
+        if (!isFinished.compareAndSet(false, true))
+            return;
+
+        // Be polite and send a goodbye.
+        try {
+            connector.send(new ExitCommunicationMessage());
+        } catch (IOException e) {
+            Log.warn(LIBRARY, "Couldn't send 'exit communication' message! {}", e.getMessage());
+        }
+
+        finish(() -> result.complete(modelInformation));
+    }
+
+    /* Completes the probe exceptionally. */
+    private void fail(Throwable cause) {
+        if (!isFinished.compareAndSet(false, true))
+            return;
+
+        finish(() -> result.completeExceptionally(cause));
+    }
+
+    /* Cancels the timeout, closes the connection to the port and completes the result afterwards,
+     * so the port is free again. The connection is closed by the executor service, because the
+     * handshake is executed by the event loop of the channel. */
+    private void finish(Runnable completion) {
+        ScheduledFuture<?> timeoutFuture = this.timeoutFuture;
+        if (timeoutFuture != null)
+            timeoutFuture.cancel(false);
+
+        executorService.execute(() -> {
+            closePort();
+            completion.run();
+        });
+    }
+
+    /* Closes the connection to the port, if it is open. */
+    private void closePort() {
+        if (!connector.isConnected())
+            return;
+
+        try {
+            connector.disconnect();
+        } catch (IOException e) {
+            Log.warn(LIBRARY, "Couldn't close the probed port! {}", e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,259 @@
+package de.tbressler.waterrower.discovery;
+
+import de.tbressler.waterrower.io.ChannelTransport;
+import de.tbressler.waterrower.io.RxtxChannelInitializer;
+import de.tbressler.waterrower.io.RxtxCommunicationService;
+import de.tbressler.waterrower.io.WaterRowerConnector;
+import de.tbressler.waterrower.io.codec.RxtxMessageParser;
+import de.tbressler.waterrower.log.Log;
+import de.tbressler.waterrower.model.ModelInformation;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.rxtx.RxtxDeviceAddress;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.log.Log.LIBRARY;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Discovers WaterRower S4/S5 monitors at the serial ports of this computer.
+ *
+ * The discovery enumerates the candidate ports (the USB serial devices "/dev/ttyACM*" and
+ * "/dev/ttyUSB*") and probes them concurrently with the handshake of the monitor (see PortProbe).
+ * The number of concurrent probes is bounded, because each probe with RXTX needs a thread of the
+ * event loop group. So the discovery of many monitors takes about the time of a single handshake
+ * per batch of concurrent probes, instead of a handshake per port.
+ *
+ * If a cache is given, the ports which were verified by a previous discovery are probed first, so
+ * the known WaterRowers are verified with the first batch of probes. The numbers of the ports
+ * change with the plug order and with reboots, so a cached port is never taken as verified without
+ * a probe. Cached ports which fail the probe or which don't exist anymore are removed from the
+ * cache. The cache is stored after each discovery.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class SerialPortDiscovery {
+
+    /* The directory of the devices. */
+    private static final Path DEVICE_DIRECTORY = Paths.get("/dev");
+
+    /* The pattern of the candidate ports (USB serial devices). */
+    private static final Pattern CANDIDATE_PORT = Pattern.compile("tty(ACM|USB)\\d+");
+
+
+    /* Returns the names of the candidate ports. */
+    private final Supplier<List<String>> portLister;
+
+    /* Probes the port with the given name. */
+    private final Function<String, CompletableFuture<ModelInformation>> prober;
+
+    /* The max. number of concurrent probes. */
+    private final int maxParallelProbes;
+
+    /* The cache of the verified ports or null. */
+    private final DiscoveryCache cache;
+
+
+    /**
+     * Discovers WaterRower S4/S5 monitors at the serial ports of this computer.
+     *
+     * @param executorService The executor service for the probes, must not be null.
+     * @param transport The RXTX transport for the probes, must not be null.
+     * @param timeout The timeout of the handshake of a single probe, must not be null.
+     *                Recommended = 2 seconds.
+     * @param maxParallelProbes The max. number of concurrent probes, must be at least 1.
+     *                          Recommended = 8.
+     * @param cache The cache of the verified ports, which is kept across restarts and defines the
+     *              order of the probes. Can be null, if the ports should be probed in the order
+     *              of their names.
+     */
+    public SerialPortDiscovery(ScheduledExecutorService executorService, ChannelTransport transport, Duration timeout, int maxParallelProbes, DiscoveryCache cache) {
+        this(() -> listCandidatePorts(DEVICE_DIRECTORY),
+                newProber(requireNonNull(executorService), requireNonNull(transport), requireNonNull(timeout)),
+                maxParallelProbes,
+                cache);
+    }
+
+    /**
+     * Discovers WaterRower S4/S5 monitors.
+     *
+     * @param portLister Returns the names of the candidate ports, must not be null.
+     * @param prober Probes the port with the given name, must not be null.
+     * @param maxParallelProbes The max. number of concurrent probes, must be at least 1.
+     * @param cache The cache of the verified ports or null.
+     */
+    SerialPortDiscovery(Supplier<List<String>> portLister, Function<String, CompletableFuture<ModelInformation>> prober, int maxParallelProbes, DiscoveryCache cache) {
+        this.portLister = requireNonNull(portLister);
+        this.prober = requireNonNull(prober);
+        if (maxParallelProbes < 1)
+            throw new IllegalArgumentException("The max. number of parallel probes must be at least 1!");
+        this.maxParallelProbes = maxParallelProbes;
+        this.cache = cache;
+    }
+
+    /* Returns a prober, which probes a serial port with a new connection. */
+    private static Function<String, CompletableFuture<ModelInformation>> newProber(ScheduledExecutorService executorService, ChannelTransport transport, Duration timeout) {
+        return port -> {
+            RxtxChannelInitializer channelInitializer = new RxtxChannelInitializer(new RxtxMessageParser());
+            RxtxCommunicationService communicationService = new RxtxCommunicationService(new Bootstrap(), channelInitializer, transport);
+            PortProbe probe = new PortProbe(new WaterRowerConnector(communicationService), executorService, timeout);
+            return probe.probe(new RxtxDeviceAddress(port));
+        };
+    }
+
+
+    /**
+     * Returns the names of the candidate ports in the given directory (e.g. "/dev/ttyACM0").
+     *
+     * @param directory The directory of the devices, must not be null.
+     * @return The sorted names of the candidate ports, never null.
+     */
+    static List<String> listCandidatePorts(Path directory) {
+        requireNonNull(directory);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> CANDIDATE_PORT.matcher(file.getFileName().toString()).matches())
+                    .map(Path::toString)
+                    .sorted()
+                    .collect(toList());
+        } catch (IOException e) {
+            Log.warn(LIBRARY, "Couldn't list the serial ports! {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Returns the names of the candidate ports (e.g. "/dev/ttyACM0").
+     *
+     * @return The sorted names of the candidate ports, never null.
+     */
+    public List<String> listCandidatePorts() {
+        return portLister.get();
+    }
+
+
+    /**
+     * Discovers the WaterRower monitors at the candidate ports. The ports are probed
+     * asynchronously.
+     *
+     * @return The future, which is completed with the model information of the verified monitors,
+     *         sorted by the name of the port.
+     */
+    public CompletableFuture<Map<String, ModelInformation>> discover() {
+        Map<String, ModelInformation> results = new ConcurrentHashMap<>();
+        Queue<String> pendingPorts = new ConcurrentLinkedQueue<>();
+        List<String> candidatePorts = listCandidatePorts();
+
+        // The ports which were verified before are probed first:
+        if (cache != null) {
+            cache.retainAll(candidatePorts);
+            for (String port : candidatePorts) {
+                if (cache.get(port) != null)
+                    pendingPorts.add(port);
+            }
+        }
+        int cachedPorts = pendingPorts.size();
+        for (String port : candidatePorts) {
+            if ((cache == null) || (cache.get(port) == null))
+                pendingPorts.add(port);
+        }
+
+        Log.debug(LIBRARY, "Discovering WaterRowers: probing {} port(s), {} cached port(s) first.", pendingPorts.size(), cachedPorts);
+
+        int workers = Math.min(maxParallelProbes, pendingPorts.size());
+        CompletableFuture<?>[] probes = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++)
+            probes[i] = probeNext(pendingPorts, results);
+
+        return CompletableFuture.allOf(probes).thenApply(v -> {
+            storeCache();
+            return new TreeMap<>(results);
+        });
+    }
+
+    /* Probes the next pending port, the next port is probed after the probe is finished. */
+    private CompletableFuture<Void> probeNext(Queue<String> pendingPorts, Map<String, ModelInformation> results) {
+        String port = pendingPorts.poll();
+        if (port == null)
+            return completedFuture(null);
+
+        return probe(port).thenCompose(modelInformation -> {
+            if (modelInformation != null)
+                results.put(port, modelInformation);
+            updateCache(port, modelInformation);
+            return probeNext(pendingPorts, results);
+        });
+    }
+
+    /* Caches the result of the probe, a port without WaterRower is removed from the cache. */
+    private void updateCache(String port, ModelInformation modelInformation) {
+        if (cache == null)
+            return;
+        if (modelInformation != null)
+            cache.put(port, modelInformation);
+        else
+            cache.remove(port);
+    }
+
+    /* Probes the given port, the future is completed with null if no WaterRower was found. */
+    private CompletableFuture<ModelInformation> probe(String port) {
+        CompletableFuture<ModelInformation> probe;
+        try {
+            probe = prober.apply(port);
+        } catch (RuntimeException e) {
+            probe = new CompletableFuture<>();
+            probe.completeExceptionally(e);
+        }
+
+        return probe.handle((modelInformation, e) -> {
+            if (e == null) {
+                Log.debug(LIBRARY, "WaterRower found at '{}': {}", port, modelInformation);
+                return modelInformation;
+            }
+            Log.debug(LIBRARY, "No WaterRower found at '{}': {}", port, e.getMessage());
+            return null;
+        });
+    }
+
+    /* Stores the cache, if available. */
+    private void storeCache() {
+        if (cache == null)
+            return;
+        try {
+            cache.store();
+        } catch (IOException e) {
+            Log.warn(LIBRARY, "Couldn't store the discovery cache! {}", e.getMessage());
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("maxParallelProbes", maxParallelProbes)
+                .add("cache", cache)
+                .toString();
+    }
+
+}
@@ -0,0 +1,127 @@
+package de.tbressler.waterrower.io;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.oio.OioEventLoopGroup;
+import io.netty.channel.rxtx.RxtxChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The transport of a connection to the WaterRower S4/S5 monitor. The transport defines the event
+ * loop group and the type of channel, which are used to open the connection.
+ *
+ * The default transport is RXTX, which uses blocking I/O with one thread per serial port. Other
+ * channel implementations (e.g. for non-blocking file descriptors or sockets) can be used with
+ * the same pipeline, in this case a single event loop group can be shared by many connections.
+ *
+ * The TCP transport connects to a serial-to-TCP bridge (e.g. ser2net), which exposes the serial
+ * line of a monitor over a socket. It uses non-blocking I/O, so a single event loop can serve the
+ * connections to many remote monitors.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class ChannelTransport {
+
+    /* The event loop group. */
+    private final EventLoopGroup group;
+
+    /* The type of channel. */
+    private final Class<? extends Channel> channelClass;
+
+
+    /**
+     * The transport of a connection to the WaterRower S4/S5 monitor.
+     *
+     * @param group The event loop group, must not be null. The group must be compatible with the
+     *              type of channel (e.g. NioEventLoopGroup for NioSocketChannel).
+     * @param channelClass The type of channel, must not be null.
+     */
+    public ChannelTransport(EventLoopGroup group, Class<? extends Channel> channelClass) {
+        this.group = requireNonNull(group);
+        this.channelClass = requireNonNull(channelClass);
+    }
+
+
+    /**
+     * Returns a new RXTX transport for a serial port, with an own event loop group.
+     *
+     * @return The transport, never null.
+     */
+    @SuppressWarnings("deprecation")
+    public static ChannelTransport rxtx() {
+        // The RXTX channel uses blocking I/O and needs a thread per channel, which is only
+        // provided by the (deprecated) OIO event loop group of Netty:
+        return rxtx(new OioEventLoopGroup());
+    }
+
+    /**
+     * Returns a RXTX transport for serial ports, which uses the given event loop group.
+     *
+     * @param group The event loop group, must not be null. Must be an OioEventLoopGroup, which
+     *              needs one thread for each open serial port.
+     * @return The transport, never null.
+     */
+    public static ChannelTransport rxtx(EventLoopGroup group) {
+        return new ChannelTransport(group, RxtxChannel.class);
+    }
+
+    /**
+     * Returns a new TCP transport for serial-to-TCP bridges, with an own event loop group. Uses
+     * epoll if the native transport is available, otherwise NIO.
+     *
+     * @return The transport, never null.
+     */
+    public static ChannelTransport tcp() {
+        return tcp(Epoll.isAvailable() ? new EpollEventLoopGroup() : new NioEventLoopGroup());
+    }
+
+    /**
+     * Returns a TCP transport for serial-to-TCP bridges, which uses the given event loop group.
+     *
+     * @param group The event loop group, must not be null. An EpollEventLoopGroup uses epoll
+     *              socket channels, all other groups use NIO socket channels.
+     * @return The transport, never null.
+     */
+    public static ChannelTransport tcp(EventLoopGroup group) {
+        if (group instanceof EpollEventLoopGroup)
+            return new ChannelTransport(group, EpollSocketChannel.class);
+        return new ChannelTransport(group, NioSocketChannel.class);
+    }
+
+
+    /**
+     * Returns the event loop group.
+     *
+     * @return The event loop group, never null.
+     */
+    public EventLoopGroup getGroup() {
+        return group;
+    }
+
+    /**
+     * Returns the type of channel.
+     *
+     * @return The type of channel, never null.
+     */
+    public Class<? extends Channel> getChannelClass() {
+        return channelClass;
+    }
+
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("group", group)
+                .add("channelClass", channelClass.getSimpleName())
+                .toString();
+    }
+
+}
@@ -0,0 +1,27 @@
+package de.tbressler.waterrower.io;
+
+/**
+ * The state of the connection of a communication service.
+ *
+ * The state only changes along CLOSED -> OPENING -> OPEN -> CLOSING -> CLOSED (or from OPENING
+ * back to CLOSED if the connection couldn't be opened). Each transition is done with a single
+ * compare-and-set, so concurrent calls of open or close are rejected without a lock.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public enum ConnectionState {
+
+    /* The connection is closed. */
+    CLOSED,
+
+    /* The connection is currently opened. */
+    OPENING,
+
+    /* The connection is open, messages can be sent. */
+    OPEN,
+
+    /* The connection is currently closed. */
+    CLOSING
+
+}
@@ -22,6 +22,15 @@ public interface IRxtxConnectionListener {
      */
     void onMessageReceived(AbstractMessage msg);
 
+    /**
+     * Called if a message is written to the channel. The messages are passed in the order in
+     * which they are written (the messages of a batch one by one), always before a response to
+     * the message can be received.
+     *
+     * @param msg The message, which is written.
+     */
+    void onMessageSent(AbstractMessage msg);
+
     /**
      * Called if connection was closed.
      */
@@ -0,0 +1,328 @@
+package de.tbressler.waterrower.io;
+
+import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.Memory;
+import de.tbressler.waterrower.io.msg.in.DataMemoryMessage;
+import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
+import de.tbressler.waterrower.log.Log;
+import de.tbressler.waterrower.model.MemoryLocation;
+import io.netty.util.ReferenceCounted;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeoutException;
+
+import static de.tbressler.waterrower.io.MessagePriority.INTERACTIVE;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.DATA_MEMORY;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.READ_MEMORY;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.typeOf;
+import static de.tbressler.waterrower.log.Log.LIBRARY;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Reads memory locations of the WaterRower S4/S5 monitor with a request/response API.
+ *
+ * Each read sends a read memory message and returns a future, which is completed with the
+ * response to this message. The monitor answers the reads in the order in which they were sent,
+ * so the requests and responses are matched first in, first out: The reads and responses of each
+ * memory type and location are counted, also the ones of other senders (e.g. the polls of the
+ * subscriptions). When the read is written, it records its position in the sequence of reads
+ * and it is completed by the response at the same position. Earlier responses for the same
+ * memory type and location (e.g. the response to a poll) don't complete the read. So reads of
+ * different locations can be pipelined and reads of the same location get their own responses.
+ *
+ * The futures are completed on the executor service, so dependent stages of the futures don't
+ * run on the event loop of the channel.
+ *
+ * Outstanding reads fail with a TimeoutException after their timeout and with an IOException if
+ * the connection is closed, fails or is opened again. If a read times out, its response and the
+ * responses before it are treated as lost. Responses, for which no read was sent (e.g. stale
+ * responses of a previous connection), are discarded.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class MemoryReadService {
+
+    /* The connector to the WaterRower. */
+    private final WaterRowerConnector connector;
+
+    /* The executor service for the timeouts and the completion of the futures. */
+    private final ScheduledExecutorService executorService;
+
+    /* The default timeout of a read. */
+    private final Duration timeout;
+
+    /* The max. memory location of the monitor. */
+    private static final int MAX_LOCATION = 0xFFF;
+
+    /* The number of sent reads and received responses, by memory type and location (guarded by
+     * this). */
+    private final int[] sentReads = new int[Memory.values().length * (MAX_LOCATION + 1)];
+    private final int[] receivedResponses = new int[Memory.values().length * (MAX_LOCATION + 1)];
+
+    /* The outstanding reads (guarded by this). */
+    private final List<PendingRead> inFlight = new ArrayList<>();
+
+
+    /* Listener for the connection to the WaterRower, which completes the outstanding reads. */
+    private final IRxtxConnectionListener listener = new RxtxConnectionListener() {
+
+        @Override
+        public void onConnected() {
+            failAll("Connection was opened again!");
+        }
+
+        @Override
+        public void onMessageSent(AbstractMessage msg) {
+            if (typeOf(msg) == READ_MEMORY)
+                sent((ReadMemoryMessage) msg);
+        }
+
+        @Override
+        public void onMessageReceived(AbstractMessage msg) {
+            if (typeOf(msg) == DATA_MEMORY)
+                complete((DataMemoryMessage) msg);
+        }
+
+        @Override
+        public void onDisconnected() {
+            failAll("Connection was closed!");
+        }
+
+        @Override
+        public void onError() {
+            failAll("Connection failed!");
+        }
+
+    };
+
+
+    /**
+     * Reads memory locations of the WaterRower S4/S5 monitor with a request/response API.
+     *
+     * @param connector The connector to the WaterRower, must not be null.
+     * @param executorService The executor service for the timeouts and the completion of the
+     *                        futures, must not be null.
+     * @param timeout The default timeout of a read, must not be null.
+     */
+    public MemoryReadService(WaterRowerConnector connector, ScheduledExecutorService executorService, Duration timeout) {
+        this.connector = requireNonNull(connector);
+        this.executorService = requireNonNull(executorService);
+        this.timeout = requireNonNull(timeout);
+
+        this.connector.addConnectionListener(listener);
+    }
+
+
+    /**
+     * Reads the given memory location, with the default timeout.
+     *
+     * @param memory Single, double or triple memory, must not be null.
+     * @param location The memory location, must not be null.
+     * @return The future, which is completed with the received data memory message.
+     */
+    public CompletableFuture<DataMemoryMessage> read(Memory memory, MemoryLocation location) {
+        return read(memory, location, timeout);
+    }
+
+    /**
+     * Reads the given memory location.
+     *
+     * @param memory Single, double or triple memory, must not be null.
+     * @param location The memory location, must not be null.
+     * @param timeout The timeout of the read, must not be null.
+     * @return The future, which is completed with the received data memory message.
+     */
+    public CompletableFuture<DataMemoryMessage> read(Memory memory, MemoryLocation location, Duration timeout) {
+        requireNonNull(memory);
+        requireNonNull(location);
+        requireNonNull(timeout);
+
+        PendingRead read = new PendingRead(new ReadMemoryMessage(memory, location.getLocation()));
+
+        synchronized (this) {
+            inFlight.add(read);
+        }
+
+        read.timeout = executorService.schedule(() -> {
+            if (expire(read))
+                read.future.completeExceptionally(new TimeoutException("No response for memory location '" + location + "' received!"));
+        }, timeout.toMillis(), MILLISECONDS);
+
+        try {
+
+            Log.debug(LIBRARY, "Reading memory location '{}'.", location);
+            connector.send(read.request, INTERACTIVE);
+
+        } catch (IOException e) {
+            if (remove(read))
+                read.future.completeExceptionally(e);
+        }
+
+        return read.future;
+    }
+
+    /**
+     * Returns the number of outstanding reads.
+     *
+     * @return The number of outstanding reads.
+     */
+    public synchronized int getInFlightCount() {
+        return inFlight.size();
+    }
+
+
+    /* Counts the sent read and records its position, if it is the request of an outstanding read. */
+    private synchronized void sent(ReadMemoryMessage msg) {
+        int sequence = ++sentReads[indexOf(msg.getMemory(), msg.getLocation())];
+
+        for (PendingRead read : inFlight) {
+            if (read.request == msg) {
+                read.sequence = sequence;
+                read.isSent = true;
+                return;
+            }
+        }
+    }
+
+    /* Completes the outstanding read, which is answered by the message. */
+    private void complete(DataMemoryMessage msg) {
+        PendingRead read = takeAnsweredRead(msg);
+        if (read == null)
+            return;
+
+        // Recycled messages are reused by the parser, so the futures get a copy:
+        DataMemoryMessage response = (msg instanceof ReferenceCounted) ? copyOf(msg) : msg;
+
+        read.cancelTimeout();
+        completeLater(read, response);
+    }
+
+    /* Counts the received response and returns the outstanding read, which was sent at the same
+     * position of the sequence of reads, or null. A response without sent read is discarded. */
+    private synchronized PendingRead takeAnsweredRead(DataMemoryMessage msg) {
+        int i = indexOf(msg.getMemory(), msg.getLocation());
+        if (receivedResponses[i] == sentReads[i])
+            return null;
+
+        int sequence = ++receivedResponses[i];
+
+        for (Iterator<PendingRead> iterator = inFlight.iterator(); iterator.hasNext(); ) {
+            PendingRead read = iterator.next();
+            if (read.isSent && (read.sequence == sequence) && (indexOf(read.request) == i)) {
+                iterator.remove();
+                return read;
+            }
+        }
+
+        return null;
+    }
+
+    /* Fails all outstanding reads and resets the sequences of the reads. */
+    private void failAll(String reason) {
+        List<PendingRead> reads;
+        synchronized (this) {
+            reads = new ArrayList<>(inFlight);
+            inFlight.clear();
+            Arrays.fill(sentReads, 0);
+            Arrays.fill(receivedResponses, 0);
+        }
+
+        for (PendingRead read : reads) {
+            read.cancelTimeout();
+            failLater(read, new IOException(reason));
+        }
+    }
+
+    /* Completes the future of the read on the executor service. */
+    private void completeLater(PendingRead read, DataMemoryMessage response) {
+        executorService.execute(() -> read.future.complete(response));
+    }
+
+    /* Fails the future of the read on the executor service. */
+    private void failLater(PendingRead read, Exception e) {
+        executorService.execute(() -> read.future.completeExceptionally(e));
+    }
+
+    /* Removes the read, returns true if it was outstanding. */
+    private synchronized boolean remove(PendingRead read) {
+        return inFlight.remove(read);
+    }
+
+    /* Removes the expired read, returns true if it was outstanding. The response to the read and
+     * the responses before it are treated as lost, so the next response is matched with the next
+     * read of the same memory type and location. */
+    private synchronized boolean expire(PendingRead read) {
+        if (!inFlight.remove(read))
+            return false;
+
+        int i = indexOf(read.request);
+        if (read.isSent && (receivedResponses[i] - read.sequence < 0))
+            receivedResponses[i] = read.sequence;
+
+        return true;
+    }
+
+    /* Returns the position of the memory type and location of the read in the sequence tables. */
+    private static int indexOf(ReadMemoryMessage read) {
+        return indexOf(read.getMemory(), read.getLocation());
+    }
+
+    /* Returns the position of the memory type and location in the sequence tables. */
+    private static int indexOf(Memory memory, int location) {
+        return memory.ordinal() * (MAX_LOCATION + 1) + location;
+    }
+
+    /* Returns a copy of the given message. */
+    private static DataMemoryMessage copyOf(DataMemoryMessage msg) {
+        switch (msg.getMemory()) {
+            case SINGLE_MEMORY:
+                return new DataMemoryMessage(msg.getLocation(), msg.getValue1());
+            case DOUBLE_MEMORY:
+                return new DataMemoryMessage(msg.getLocation(), msg.getValue2(), msg.getValue1());
+            default:
+                return new DataMemoryMessage(msg.getLocation(), msg.getValue3(), msg.getValue2(), msg.getValue1());
+        }
+    }
+
+
+    /* An outstanding read. */
+    private static class PendingRead {
+
+        /* The read memory message, which is sent. */
+        private final ReadMemoryMessage request;
+
+        /* The future of the read. */
+        private final CompletableFuture<DataMemoryMessage> future = new CompletableFuture<>();
+
+        /* The timeout of the read or null, if not scheduled yet. */
+        private volatile ScheduledFuture<?> timeout;
+
+        /* True if the request was written and the position of the request in the sequence of
+         * reads of the same memory type and location (guarded by the service). */
+        private boolean isSent;
+        private int sequence;
+
+        private PendingRead(ReadMemoryMessage request) {
+            this.request = request;
+        }
+
+        /* Cancels the timeout, if it was already scheduled. */
+        private void cancelTimeout() {
+            ScheduledFuture<?> timeout = this.timeout;
+            if (timeout != null)
+                timeout.cancel(false);
+        }
+
+    }
+
+}
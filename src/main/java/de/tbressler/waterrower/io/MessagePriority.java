@@ -0,0 +1,52 @@
+package de.tbressler.waterrower.io;
+
+import de.tbressler.waterrower.io.msg.AbstractMessage;
+
+import static de.tbressler.waterrower.io.msg.MessageTypeId.typeOf;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The priority class of an outbound message. Messages of a higher class are sent before queued
+ * messages of a lower class (see OutboundQueue).
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public enum MessagePriority {
+
+    /* Control of the communication and the monitor (e.g. start/exit communication and reset). */
+    CONTROL,
+
+    /* Commands and requests of the user (e.g. workouts and single reads of memory locations). */
+    INTERACTIVE,
+
+    /* Routine polls of the subscriptions. */
+    POLL;
+
+
+    /**
+     * Returns the default priority class of the given message.
+     *
+     * @param msg The message, must not be null.
+     * @return The priority class, never null.
+     */
+    public static MessagePriority of(AbstractMessage msg) {
+        requireNonNull(msg);
+
+        switch (typeOf(msg)) {
+
+            case START_COMMUNICATION:
+            case REQUEST_MODEL_INFORMATION:
+            case EXIT_COMMUNICATION:
+            case RESET:
+                return CONTROL;
+
+            case READ_MEMORY:
+                return POLL;
+
+            default:
+                return INTERACTIVE;
+        }
+    }
+
+}
@@ -0,0 +1,234 @@
+package de.tbressler.waterrower.io;
+
+import com.google.common.base.MoreObjects.ToStringHelper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The queue of the outbound messages, with a FIFO queue for each priority class.
+ *
+ * Messages can be offered concurrently by many threads, but are taken by a single thread at a
+ * time (the event loop of the channel). The message of the highest priority class is taken first.
+ * In order to protect the lower classes from starvation, a message which waits longer than the
+ * max. delay is taken before all other messages (the oldest first).
+ *
+ * The queue measures the queueing latency (the time between offer and take) of each class. The
+ * messages are taken when the previous message was written (see RxtxCommunicationService), so the
+ * latency includes the wait for the channel.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class OutboundQueue {
+
+    /* The priority classes, from the highest to the lowest. */
+    private static final MessagePriority[] PRIORITIES = MessagePriority.values();
+
+
+    /* The max. delay of a message, before it is taken regardless of its priority class. */
+    private final long maxDelayNanos;
+
+    /* The clock, which returns the current time in nanoseconds. */
+    private final LongSupplier nanoClock;
+
+    /* The queues, by priority class. */
+    private final List<Queue<Entry>> queues;
+
+    /* The number of taken messages, by priority class. */
+    private final AtomicLongArray takenMessages = new AtomicLongArray(PRIORITIES.length);
+
+    /* The sum of the queueing latencies in nanoseconds, by priority class. */
+    private final AtomicLongArray totalLatencies = new AtomicLongArray(PRIORITIES.length);
+
+    /* The max. queueing latency in nanoseconds, by priority class. */
+    private final AtomicLongArray maxLatencies = new AtomicLongArray(PRIORITIES.length);
+
+
+    /**
+     * The queue of the outbound messages.
+     *
+     * @param maxDelay The max. delay of a message, before it is taken regardless of its priority
+     *                 class. Must not be null. Recommended = 250 ms.
+     */
+    public OutboundQueue(Duration maxDelay) {
+        this(maxDelay, System::nanoTime);
+    }
+
+    /**
+     * The queue of the outbound messages.
+     *
+     * @param maxDelay The max. delay of a message, must not be null.
+     * @param nanoClock The clock, which returns the current time in nanoseconds. Must not be null.
+     */
+    OutboundQueue(Duration maxDelay, LongSupplier nanoClock) {
+        this.maxDelayNanos = requireNonNull(maxDelay).toNanos();
+        this.nanoClock = requireNonNull(nanoClock);
+
+        this.queues = new ArrayList<>(PRIORITIES.length);
+        for (int i = 0; i < PRIORITIES.length; i++)
+            queues.add(new ConcurrentLinkedQueue<>());
+    }
+
+
+    /**
+     * Adds the message to the queue of the given priority class.
+     *
+     * @param msg The message (e.g. a message or a batch of messages), must not be null.
+     * @param priority The priority class, must not be null.
+     */
+    public void offer(Object msg, MessagePriority priority) {
+        queues.get(priority.ordinal()).add(new Entry(requireNonNull(msg), priority, nanoClock.getAsLong()));
+    }
+
+    /**
+     * Takes the next message. Must only be called by a single thread at a time.
+     *
+     * @return The message or null, if the queue is empty.
+     */
+    public Object take() {
+        long now = nanoClock.getAsLong();
+
+        // Starvation protection, take the oldest message which waits too long:
+        Queue<Entry> oldestQueue = null;
+        long oldestTime = 0;
+        for (Queue<Entry> queue : queues) {
+            Entry head = queue.peek();
+            if ((head == null) || (now - head.offered < maxDelayNanos))
+                continue;
+            if ((oldestQueue == null) || (head.offered - oldestTime < 0)) {
+                oldestQueue = queue;
+                oldestTime = head.offered;
+            }
+        }
+
+        Entry entry = (oldestQueue != null) ? oldestQueue.poll() : null;
+
+        // Otherwise take the message of the highest priority class:
+        for (int i = 0; (entry == null) && (i < queues.size()); i++)
+            entry = queues.get(i).poll();
+
+        if (entry == null)
+            return null;
+
+        recordLatency(entry.priority, now - entry.offered);
+
+        return entry.msg;
+    }
+
+    /* Updates the statistics of the given priority class. */
+    private void recordLatency(MessagePriority priority, long latency) {
+        int index = priority.ordinal();
+        takenMessages.incrementAndGet(index);
+        totalLatencies.addAndGet(index, latency);
+        long max;
+        do {
+            max = maxLatencies.get(index);
+        } while ((latency > max) && !maxLatencies.compareAndSet(index, max, latency));
+    }
+
+    /**
+     * Returns true if the queue is empty.
+     *
+     * @return True if empty.
+     */
+    public boolean isEmpty() {
+        for (Queue<Entry> queue : queues) {
+            if (!queue.isEmpty())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of queued messages of the given priority class.
+     *
+     * @param priority The priority class, must not be null.
+     * @return The number of queued messages.
+     */
+    public int size(MessagePriority priority) {
+        return queues.get(priority.ordinal()).size();
+    }
+
+    /**
+     * Removes all queued messages (e.g. after the connection was closed).
+     */
+    public void clear() {
+        for (Queue<Entry> queue : queues)
+            queue.clear();
+    }
+
+
+    /**
+     * Returns the number of taken messages of the given priority class.
+     *
+     * @param priority The priority class, must not be null.
+     * @return The number of taken messages.
+     */
+    public long getTakenMessages(MessagePriority priority) {
+        return takenMessages.get(priority.ordinal());
+    }
+
+    /**
+     * Returns the average queueing latency of the given priority class.
+     *
+     * @param priority The priority class, must not be null.
+     * @return The average queueing latency, zero if no message was taken yet.
+     */
+    public Duration getAverageLatency(MessagePriority priority) {
+        int index = priority.ordinal();
+        long count = takenMessages.get(index);
+        if (count == 0)
+            return Duration.ZERO;
+        return Duration.ofNanos(totalLatencies.get(index) / count);
+    }
+
+    /**
+     * Returns the max. queueing latency of the given priority class.
+     *
+     * @param priority The priority class, must not be null.
+     * @return The max. queueing latency, zero if no message was taken yet.
+     */
+    public Duration getMaxLatency(MessagePriority priority) {
+        return Duration.ofNanos(maxLatencies.get(priority.ordinal()));
+    }
+
+
+    @Override
+    public String toString() {
+        ToStringHelper helper = toStringHelper(this);
+        for (MessagePriority priority : PRIORITIES)
+            helper.add(priority.name(), size(priority) + " queued, avg. latency " + getAverageLatency(priority));
+        return helper.toString();
+    }
+
+
+    /* A queued message. */
+    private static class Entry {
+
+        /* The message. */
+        private final Object msg;
+
+        /* The priority class. */
+        private final MessagePriority priority;
+
+        /* The time of the offer in nanoseconds. */
+        private final long offered;
+
+        private Entry(Object msg, MessagePriority priority, long offered) {
+            this.msg = msg;
+            this.priority = priority;
+            this.offered = offered;
+        }
+
+    }
+
+}
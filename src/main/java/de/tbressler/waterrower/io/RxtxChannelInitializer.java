@@ -4,26 +4,31 @@ import de.tbressler.waterrower.io.codec.RxtxMessageFrameDecoder;
 import de.tbressler.waterrower.io.codec.RxtxMessageFrameEncoder;
 import de.tbressler.waterrower.io.codec.RxtxMessageParser;
 import de.tbressler.waterrower.log.Log;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.rxtx.RxtxChannel;
 import io.netty.channel.rxtx.RxtxChannelConfig;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.channel.socket.SocketChannel;
 
 import static de.tbressler.waterrower.log.Log.SERIAL;
 import static io.netty.channel.rxtx.RxtxChannelConfig.Databits.DATABITS_8;
 import static io.netty.channel.rxtx.RxtxChannelConfig.Paritybit.NONE;
 import static io.netty.channel.rxtx.RxtxChannelConfig.Stopbits.STOPBITS_1;
-import static io.netty.handler.codec.Delimiters.lineDelimiter;
 import static java.util.Objects.requireNonNull;
 
 /**
  * Initializes the RXTX channel and sets up the pipeline for encoding and decoding the messages.
  *
+ * Channels of other transports get the same pipeline, only the serial configuration is skipped.
+ * Socket channels (e.g. to a serial-to-TCP bridge) are configured to send the short frames
+ * without delay.
+ *
  * @author Tobias Bressler
  * @version 1.0
  */
-public class RxtxChannelInitializer extends ChannelInitializer<RxtxChannel> {
+public class RxtxChannelInitializer extends ChannelInitializer<Channel> {
 
     /* Maximum length of a single frame. */
     private static final int MAX_FRAME_LENGTH = 32;
@@ -33,13 +38,24 @@ public class RxtxChannelInitializer extends ChannelInitializer<RxtxChannel> {
     private RxtxSerialHandler serialHandler;
 
     /* The message parser. */
-    private RxtxMessageParser parser = new RxtxMessageParser();
+    private final RxtxMessageParser parser;
+
 
+    /**
+     * Initializes the RXTX channel and sets up the pipeline for encoding and decoding the messages.
+     */
+    public RxtxChannelInitializer() {
+        this(new RxtxMessageParser());
+    }
 
     /**
      * Initializes the RXTX channel and sets up the pipeline for encoding and decoding the messages.
+     *
+     * @param parser The message parser, must not be null.
      */
-    public RxtxChannelInitializer() {}
+    public RxtxChannelInitializer(RxtxMessageParser parser) {
+        this.parser = requireNonNull(parser);
+    }
 
 
     /**
@@ -53,12 +69,17 @@ public class RxtxChannelInitializer extends ChannelInitializer<RxtxChannel> {
 
 
     @Override
-    protected void initChannel(RxtxChannel channel) throws Exception {
-        Log.debug(SERIAL, "RXTX channel initialized. Configuring pipeline and channel...");
+    protected void initChannel(Channel channel) throws Exception {
+        Log.debug(SERIAL, "Channel initialized. Configuring pipeline and channel...");
 
         checkIfRxTxSerialHandlerIsSet();
 
-        configureChannel(channel);
+        // Serial channels need a serial configuration, socket channels must not delay the short frames:
+        if (channel instanceof RxtxChannel)
+            configureChannel((RxtxChannel) channel);
+        else if (channel instanceof SocketChannel)
+            configureChannel((SocketChannel) channel);
+
         configurePipeline(channel);
     }
 
@@ -83,6 +104,13 @@ public class RxtxChannelInitializer extends ChannelInitializer<RxtxChannel> {
         logSerialConfiguration(config);
     }
 
+    /* Configures the socket channel. */
+    private void configureChannel(SocketChannel channel) {
+        channel.config().setOption(ChannelOption.TCP_NODELAY, true);
+
+        Log.debug(SERIAL, "Socket channel configured to: TCP_NODELAY");
+    }
+
     /* Logs the serial configuration. */
     private void logSerialConfiguration(RxtxChannelConfig config) {
         Log.debug(SERIAL, "RXTX channel configured to: " +
@@ -93,12 +121,11 @@ public class RxtxChannelInitializer extends ChannelInitializer<RxtxChannel> {
     }
 
     /* Configures the pipeline. */
-    private void configurePipeline(RxtxChannel channel) {
+    private void configurePipeline(Channel channel) {
         ChannelPipeline pipeline = channel.pipeline();
 
         // Decode messages:
-        pipeline.addLast("framer", new DelimiterBasedFrameDecoder(MAX_FRAME_LENGTH, lineDelimiter()));
-        pipeline.addLast("decoder", new RxtxMessageFrameDecoder(parser));
+        pipeline.addLast("decoder", new RxtxMessageFrameDecoder(parser, MAX_FRAME_LENGTH));
 
         // Encode messages:
         pipeline.addLast("encoder", new RxtxMessageFrameEncoder(parser));
@@ -1,19 +1,25 @@
 package de.tbressler.waterrower.io;
 
+import de.tbressler.waterrower.io.codec.RxtxMessageBatch;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.log.Log;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
-import io.netty.channel.oio.OioEventLoopGroup;
-import io.netty.channel.rxtx.RxtxChannel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.rxtx.RxtxDeviceAddress;
 
 import java.io.IOException;
+import java.net.SocketAddress;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static de.tbressler.waterrower.io.ConnectionState.*;
+import static de.tbressler.waterrower.io.MessagePriority.POLL;
 import static de.tbressler.waterrower.log.Log.SERIAL;
 import static java.util.Objects.requireNonNull;
 
@@ -21,6 +27,17 @@ import static java.util.Objects.requireNonNull;
  * A communication service that manages the serial connection.
  * It can receive and send serial messages via RXTX.
  *
+ * The state of the connection is held in a lock-free state machine (see ConnectionState). The
+ * connection is open as soon as the channel becomes active, so the connection listeners can send
+ * messages when they are notified about the connection. Sending doesn't take a lock, the messages
+ * are added to an outbound queue with a queue for each priority class (see OutboundQueue).
+ *
+ * A single drain task on the event loop of the channel writes one message at a time. The next
+ * message is only taken from the queue when the write of the previous message was completed, so
+ * control messages and user commands, which are queued meanwhile, are written before the
+ * remaining polls and the queueing latency includes the time until the previous message was
+ * written to the channel.
+ *
  * @author Tobias Bressler
  * @version 1.0
  */
@@ -30,10 +47,23 @@ public class RxtxCommunicationService {
     private final Bootstrap bootstrap;
 
     /* The current channel or null. */
-    private Channel currentChannel;
+    private volatile Channel currentChannel;
+
+    /* The state of the connection. */
+    private final AtomicReference<ConnectionState> state = new AtomicReference<>(CLOSED);
+
+    /* The default max. delay of a queued message, before it is sent regardless of its priority. */
+    private static final Duration DEFAULT_MAX_QUEUE_DELAY = Duration.ofMillis(250);
+
+    /* The outbound messages, by priority class. */
+    private final OutboundQueue outboundQueue = new OutboundQueue(DEFAULT_MAX_QUEUE_DELAY);
 
-    /* A lock for synchronized access to open/close/read/write on channel. */
-    private ReentrantLock lock = new ReentrantLock(true);
+    /* True if the drain task is scheduled on the event loop or a message of the drain task is
+     * being written. */
+    private final AtomicBoolean isDrainScheduled = new AtomicBoolean(false);
+
+    /* Continues the drain task on the event loop, when a message was written. */
+    private final ChannelFutureListener drainOnWritten = future -> future.channel().eventLoop().execute(this::drain);
 
     /* Listeners for RXTX connections. */
     private final List<IRxtxConnectionListener> connectionListeners = new ArrayList<>();
@@ -42,6 +72,25 @@ public class RxtxCommunicationService {
     /* Handler for the communication channel. */
     private RxtxSerialHandler serialHandler = new RxtxSerialHandler() {
 
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            // Publish the channel before the listeners are notified, so they can send messages
+            // while open() is still waiting for the connect:
+            publishChannel(ctx.channel());
+            super.channelActive(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            // A late event of a previous channel must not close the connection of a new channel:
+            Channel channel = currentChannel;
+            if ((channel != null) && (channel != ctx.channel())) {
+                ctx.fireChannelInactive();
+                return;
+            }
+            super.channelInactive(ctx);
+        }
+
         @Override
         protected void onConnected() {
             fireOnConnected();
@@ -54,6 +103,9 @@ public class RxtxCommunicationService {
 
         @Override
         protected void onDisconnected() {
+            // The channel was closed (e.g. by the remote side), so the listeners see a closed
+            // connection. A new channel which is opening meanwhile is not reset:
+            resetConnectionUnlessOpening();
             fireOnDisconnected();
         }
 
@@ -74,12 +126,26 @@ public class RxtxCommunicationService {
      * @param channelInitializer The channel initializer, not null.
      */
     public RxtxCommunicationService(Bootstrap bootstrap, RxtxChannelInitializer channelInitializer) {
+        this(bootstrap, channelInitializer, ChannelTransport.rxtx());
+    }
+
+    /**
+     * A communication service that manages the connection with the given transport. The
+     * event loop group of the transport is not shut down by this service, so it can be shared
+     * with other communication services.
+     *
+     * @param bootstrap The bootstrap, not null.
+     * @param channelInitializer The channel initializer, not null.
+     * @param transport The transport (event loop group and type of channel), not null.
+     */
+    public RxtxCommunicationService(Bootstrap bootstrap, RxtxChannelInitializer channelInitializer, ChannelTransport transport) {
         requireNonNull(bootstrap);
         requireNonNull(channelInitializer);
+        requireNonNull(transport);
 
         this.bootstrap = bootstrap;
-        this.bootstrap.group(new OioEventLoopGroup());
-        this.bootstrap.channel(RxtxChannel.class);
+        this.bootstrap.group(transport.getGroup());
+        this.bootstrap.channel(transport.getChannelClass());
 
         channelInitializer.setRxTxSerialHandler(serialHandler);
 
@@ -88,21 +154,23 @@ public class RxtxCommunicationService {
 
 
     /**
-     * Opens the connection to the given serial port.
+     * Opens the connection to the given address (e.g. a serial port).
      *
-     * @param address The serial port, must not be null.
+     * @param address The address, must not be null. The type of address must match the type of
+     *                channel of the transport (e.g. RxtxDeviceAddress for RXTX).
      * @throws IOException if opening of the channel fails.
      */
-    public void open(RxtxDeviceAddress address) throws IOException {
+    public void open(SocketAddress address) throws IOException {
         requireNonNull(address);
 
-        lock.lock();
+        if (!state.compareAndSet(CLOSED, OPENING))
+            throw new IOException("Can not connect to '"+toString(address)+"'!", new IOException("Serial channel is already open!"));
 
         try {
 
-            checkIfChannelIsClose();
+            Log.debug(SERIAL, "Opening channel at '{}'.", toString(address));
 
-            Log.debug(SERIAL, "Opening channel at serial port '" + address.value() + "'.");
+            outboundQueue.clear();
 
             ChannelFuture future = bootstrap.connect(address).syncUninterruptibly();
             if (!future.isSuccess()) {
@@ -112,19 +180,28 @@ public class RxtxCommunicationService {
 
             Log.debug(SERIAL, "Serial channel was successfully opened.");
 
-            currentChannel = future.channel();
+            // Usually the channel was already published when it became active:
+            publishChannel(future.channel());
 
         } catch (Exception e) {
-            throw new IOException("Can not connect to '"+address.value()+"'!", e);
-        } finally {
-            lock.unlock();
+            state.compareAndSet(OPENING, CLOSED);
+            throw new IOException("Can not connect to '"+toString(address)+"'!", e);
         }
     }
 
-    /* Throws IOException if channel is already open. */
-    private void checkIfChannelIsClose() throws IOException {
-        if (currentChannel != null)
-            throw new IOException("Serial channel is already open!");
+    /* Publishes the channel and sets the state to open, if the connection is still opening. */
+    private synchronized void publishChannel(Channel channel) {
+        if (state.get() != OPENING)
+            return;
+        currentChannel = channel;
+        state.set(OPEN);
+    }
+
+    /* Returns the address as string (e.g. the name of the serial port). */
+    static String toString(SocketAddress address) {
+        if (address instanceof RxtxDeviceAddress)
+            return ((RxtxDeviceAddress) address).value();
+        return address.toString();
     }
 
 
@@ -134,41 +211,76 @@ public class RxtxCommunicationService {
      * @return True if connected otherwise false.
      */
     public boolean isConnected() {
+        return (state.get() == OPEN);
+    }
 
-        lock.lock();
-
-        try {
-
-            return (currentChannel != null);
-
-        } finally {
-            lock.unlock();
-        }
+    /**
+     * Returns the state of the connection.
+     *
+     * @return The state, never null.
+     */
+    public ConnectionState getState() {
+        return state.get();
     }
 
 
     /**
-     * Sends the given message.
+     * Sends the given message, with the default priority class of the message.
      *
      * @param msg The message to be send, must not be null.
      */
     public void send(AbstractMessage msg) throws IOException {
-        requireNonNull(msg);
+        send(msg, MessagePriority.of(requireNonNull(msg)));
+    }
 
-        lock.lock();
+    /**
+     * Sends the given message with the given priority class.
+     *
+     * @param msg The message to be send, must not be null.
+     * @param priority The priority class, must not be null.
+     */
+    public void send(AbstractMessage msg, MessagePriority priority) throws IOException {
+        requireNonNull(msg);
+        requireNonNull(priority);
 
         try {
 
-            checkIfChannelIsOpen();
+            Channel channel = getOpenChannel();
 
-            Log.debug(SERIAL, "Sending message '" + msg.toString() + "'.");
+            Log.debug(SERIAL, "Sending message '{}'.", msg);
 
-            currentChannel.write(msg);
+            outboundQueue.offer(msg, priority);
+            scheduleDrain(channel);
 
         } catch (Exception e) {
             throw new IOException("Can not send message '"+msg+"'!", e);
-        } finally {
-            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends the given messages as batch, with the priority class of polls. All messages are
+     * encoded into a single buffer, which is written and flushed once.
+     *
+     * The batch is a single entry of the outbound queue, so messages of a higher priority class,
+     * which are queued while the batch is written, have to wait until the whole batch was written.
+     * The max. size of the batches bounds this latency.
+     *
+     * @param msgs The messages to be send, must not be null or contain null.
+     */
+    public void sendBatch(List<AbstractMessage> msgs) throws IOException {
+        RxtxMessageBatch batch = new RxtxMessageBatch(msgs);
+
+        try {
+
+            Channel channel = getOpenChannel();
+
+            Log.debug(SERIAL, "Sending batch '{}'.", batch);
+
+            outboundQueue.offer(batch, POLL);
+            scheduleDrain(channel);
+
+        } catch (Exception e) {
+            throw new IOException("Can not send batch of "+batch.size()+" message(s)!", e);
         }
     }
 
@@ -180,12 +292,11 @@ public class RxtxCommunicationService {
      */
     public void close() throws IOException {
 
-        lock.lock();
+        if (!state.compareAndSet(OPEN, CLOSING))
+            throw new IOException("Can not disconnect!", new IOException("Serial channel is not open!"));
 
         try {
 
-            checkIfChannelIsOpen();
-
             Log.debug(SERIAL, "Closing serial channel.");
 
             ChannelFuture future = currentChannel.close().syncUninterruptibly();
@@ -194,19 +305,72 @@ public class RxtxCommunicationService {
 
             Log.debug(SERIAL, "Serial channel was successfully closed.");
 
-            currentChannel = null;
-
         } catch (Exception e) {
             throw new IOException("Can not disconnect!", e);
         } finally {
-            lock.unlock();
+            resetConnection();
         }
     }
 
-    /* Throws IOException if channel is already closed. */
-    private void checkIfChannelIsOpen() throws IOException {
-        if ((currentChannel == null) || (!currentChannel.isOpen()))
+    /* Drops the current channel and the queued messages and sets the state to closed. */
+    private synchronized void resetConnection() {
+        currentChannel = null;
+        outboundQueue.clear();
+        state.set(CLOSED);
+    }
+
+    /* Resets the connection, unless a new connection is opening. The state is changed atomically,
+     * so a connection which starts opening meanwhile is not reset. */
+    private synchronized void resetConnectionUnlessOpening() {
+        ConnectionState current = state.get();
+        if ((current == OPENING) || !state.compareAndSet(current, CLOSED))
+            return;
+        currentChannel = null;
+        outboundQueue.clear();
+    }
+
+    /* Schedules the drain task on the event loop of the channel, if not scheduled yet. */
+    private void scheduleDrain(Channel channel) {
+        if (isDrainScheduled.compareAndSet(false, true))
+            channel.eventLoop().execute(this::drain);
+    }
+
+    /* Writes the next message of the outbound queue. The drain task continues when the message
+     * was written, so only one message at a time is in flight. */
+    private void drain() {
+        Channel channel = currentChannel;
+        Object msg = ((channel != null) && channel.isOpen()) ? outboundQueue.take() : null;
+        if (msg == null) {
+            isDrainScheduled.set(false);
+
+            // A message could have been queued (e.g. on a new channel) after the take, but before
+            // the reset of the flag:
+            Channel current = currentChannel;
+            if ((current != null) && current.isOpen() && !outboundQueue.isEmpty())
+                scheduleDrain(current);
+            return;
+        }
+
+        fireOnMessageSent(msg);
+        channel.writeAndFlush(msg).addListener(drainOnWritten);
+    }
+
+    /**
+     * Returns the queue of the outbound messages, which measures the queueing latency of each
+     * priority class.
+     *
+     * @return The outbound queue, never null.
+     */
+    public OutboundQueue getOutboundQueue() {
+        return outboundQueue;
+    }
+
+    /* Returns the channel, throws IOException if the channel is not open. */
+    private Channel getOpenChannel() throws IOException {
+        Channel channel = currentChannel;
+        if ((state.get() != OPEN) || (channel == null) || (!channel.isOpen()))
             throw new IOException("Serial channel is not open!");
+        return channel;
     }
 
     /* Close the channel and suppress exceptions. */
@@ -245,6 +409,17 @@ public class RxtxCommunicationService {
         connectionListeners.forEach(IRxtxConnectionListener::onDisconnected);
     }
 
+    /* Notify all listeners about a message or the messages of a batch, which are written. */
+    private void fireOnMessageSent(Object msg) {
+        if (msg instanceof RxtxMessageBatch) {
+            for (AbstractMessage batchMsg : ((RxtxMessageBatch) msg).getMessages())
+                fireOnMessageSent(batchMsg);
+            return;
+        }
+        for (IRxtxConnectionListener listener : connectionListeners)
+            listener.onMessageSent((AbstractMessage) msg);
+    }
+
     /* Notify all listeners about a received message. */
     private void fireOnMessageReceived(AbstractMessage msg) {
         for (IRxtxConnectionListener listener : connectionListeners)
@@ -16,6 +16,9 @@ public class RxtxConnectionListener implements IRxtxConnectionListener {
     @Override
     public void onMessageReceived(AbstractMessage msg) {}
 
+    @Override
+    public void onMessageSent(AbstractMessage msg) {}
+
     @Override
     public void onDisconnected() {}
 
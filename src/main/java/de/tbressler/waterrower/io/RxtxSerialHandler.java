@@ -27,7 +27,7 @@ public abstract class RxtxSerialHandler extends ChannelInboundHandlerAdapter {
                 return;
             }
 
-            Log.debug(SERIAL, "Message received: " + msg);
+            Log.debug(SERIAL, "Message received: {}", msg);
 
             // Notify that a message was received.
             onMessageReceived((AbstractMessage) msg);
@@ -0,0 +1,126 @@
+package de.tbressler.waterrower.io;
+
+import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.typeOf;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The bandwidth budget of the serial line to the WaterRower S4/S5 monitor.
+ *
+ * The line runs at 19200 baud with 8N1 (10 bits per byte), so it carries 1920 bytes per second.
+ * The cost of a message is the size of the request plus the expected size of the response, both
+ * including the line delimiter (e.g. "IRS" + XXX + 0x0D0A = 8 bytes and "IDS" + XXX + YY + 0x0D0A
+ * = 10 bytes for a single memory location). The budget is enforced with a token bucket, where a
+ * token is a byte on the line.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class SerialLineBudget {
+
+    /* The baud rate of the serial line. */
+    public static final int BAUD_RATE = 19200;
+
+    /* The number of bits per byte on the line (start bit, 8 data bits, stop bit). */
+    public static final int BITS_PER_BYTE = 10;
+
+    /* The number of bytes per second on the line. */
+    public static final int BYTES_PER_SECOND = BAUD_RATE / BITS_PER_BYTE;
+
+
+    /* Size of a read memory request, e.g. "IRS" + XXX + 0x0D0A. */
+    private static final int READ_MEMORY_REQUEST = 8;
+
+    /* Size of a data memory response for a single memory location, e.g. "IDS" + XXX + YY + 0x0D0A. */
+    private static final int SINGLE_MEMORY_RESPONSE = 10;
+
+    /* Size of other messages and their responses (e.g. "USB" + 0x0D0A and "_WR_" + 0x0D0A). */
+    private static final int OTHER_MESSAGE = 16;
+
+
+    /* The token bucket, where a token is a byte on the line. */
+    private final TokenBucket bucket;
+
+
+    /**
+     * The bandwidth budget of the serial line, with the full line rate and a burst of one second.
+     */
+    public SerialLineBudget() {
+        this(BYTES_PER_SECOND, BYTES_PER_SECOND);
+    }
+
+    /**
+     * The bandwidth budget of the serial line.
+     *
+     * @param bytesPerSecond The number of bytes per second, which can be used for the requests and
+     *                       the responses. Must be at least 1. Recommended = 1920.
+     * @param burstBytes The max. number of bytes, which can be used at once. Must be at least 1.
+     *                   Recommended = 1920.
+     */
+    public SerialLineBudget(int bytesPerSecond, int burstBytes) {
+        this(new TokenBucket(bytesPerSecond, burstBytes));
+    }
+
+    /**
+     * The bandwidth budget of the serial line.
+     *
+     * @param bucket The token bucket, where a token is a byte on the line. Must not be null.
+     */
+    SerialLineBudget(TokenBucket bucket) {
+        this.bucket = requireNonNull(bucket);
+    }
+
+
+    /**
+     * Takes the cost of the given message from the budget, if enough bytes are available.
+     *
+     * @param msg The message, must not be null.
+     * @return True if the message can be sent, false if the budget is exhausted.
+     */
+    public boolean tryAcquire(AbstractMessage msg) {
+        return bucket.tryAcquire(costOf(msg));
+    }
+
+    /**
+     * Returns the number of bytes, which are currently available.
+     *
+     * @return The number of available bytes.
+     */
+    public long getAvailableBytes() {
+        return bucket.getAvailableTokens();
+    }
+
+    /**
+     * Returns the cost of the given message in bytes on the line, which is the size of the request
+     * plus the expected size of the response.
+     *
+     * @param msg The message, must not be null.
+     * @return The cost in bytes.
+     */
+    public static int costOf(AbstractMessage msg) {
+        requireNonNull(msg);
+
+        switch (typeOf(msg)) {
+
+            case READ_MEMORY:
+                // Each additional memory location adds two hex digits to the response:
+                int locations = ((ReadMemoryMessage) msg).getMemory().ordinal() + 1;
+                return READ_MEMORY_REQUEST + SINGLE_MEMORY_RESPONSE + (locations - 1) * 2;
+
+            default:
+                return OTHER_MESSAGE;
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("bucket", bucket)
+                .toString();
+    }
+
+}
@@ -0,0 +1,136 @@
+package de.tbressler.waterrower.io;
+
+import java.util.function.LongSupplier;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A token bucket, which limits the rate of a resource (e.g. the bytes on a serial line).
+ *
+ * The bucket is refilled continuously with the given rate of tokens per second, up to its
+ * capacity. The capacity defines the max. burst, which can be taken at once.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TokenBucket {
+
+    /* Nanoseconds per second. */
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+
+    /* The max. number of tokens in the bucket. */
+    private final long capacity;
+
+    /* The number of tokens, which are added per second. */
+    private final long tokensPerSecond;
+
+    /* The clock, which returns the current time in nanoseconds. */
+    private final LongSupplier nanoClock;
+
+    /* The current number of tokens (fraction of tokens are kept). */
+    private double tokens;
+
+    /* The time of the last refill in nanoseconds. */
+    private long lastRefill;
+
+
+    /**
+     * A token bucket, which is initially full.
+     *
+     * @param tokensPerSecond The number of tokens, which are added per second. Must be at least 1.
+     * @param capacity The max. number of tokens in the bucket. Must be at least 1.
+     */
+    public TokenBucket(long tokensPerSecond, long capacity) {
+        this(tokensPerSecond, capacity, System::nanoTime);
+    }
+
+    /**
+     * A token bucket, which is initially full.
+     *
+     * @param tokensPerSecond The number of tokens, which are added per second. Must be at least 1.
+     * @param capacity The max. number of tokens in the bucket. Must be at least 1.
+     * @param nanoClock The clock, which returns the current time in nanoseconds. Must not be null.
+     */
+    TokenBucket(long tokensPerSecond, long capacity, LongSupplier nanoClock) {
+        if (tokensPerSecond < 1)
+            throw new IllegalArgumentException("The number of tokens per second must be at least 1!");
+        if (capacity < 1)
+            throw new IllegalArgumentException("The capacity must be at least 1!");
+        this.tokensPerSecond = tokensPerSecond;
+        this.capacity = capacity;
+        this.nanoClock = requireNonNull(nanoClock);
+        this.tokens = capacity;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+
+    /**
+     * Takes the given number of tokens from the bucket, if enough tokens are available.
+     *
+     * @param count The number of tokens, must not be negative.
+     * @return True if the tokens were taken, false if not enough tokens are available.
+     */
+    public synchronized boolean tryAcquire(long count) {
+        if (count < 0)
+            throw new IllegalArgumentException("The number of tokens must not be negative!");
+
+        refill();
+
+        if (tokens < count)
+            return false;
+
+        tokens -= count;
+        return true;
+    }
+
+    /**
+     * Returns the number of tokens, which are currently available.
+     *
+     * @return The number of available tokens.
+     */
+    public synchronized long getAvailableTokens() {
+        refill();
+        return (long) tokens;
+    }
+
+    /* Adds the tokens for the time since the last refill. */
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        long elapsed = now - lastRefill;
+        if (elapsed <= 0)
+            return;
+
+        tokens = Math.min(capacity, tokens + (elapsed * tokensPerSecond / NANOS_PER_SECOND));
+        lastRefill = now;
+    }
+
+    /**
+     * Returns the number of tokens, which are added per second.
+     *
+     * @return The number of tokens per second.
+     */
+    public long getTokensPerSecond() {
+        return tokensPerSecond;
+    }
+
+    /**
+     * Returns the max. number of tokens in the bucket.
+     *
+     * @return The capacity.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("tokensPerSecond", tokensPerSecond)
+                .add("capacity", capacity)
+                .toString();
+    }
+
+}
@@ -2,12 +2,11 @@ package de.tbressler.waterrower.io;
 
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.log.Log;
-import io.netty.channel.rxtx.RxtxDeviceAddress;
 
 import java.io.IOException;
+import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
 
 import static de.tbressler.waterrower.log.Log.LIBRARY;
 import static java.util.Objects.requireNonNull;
@@ -15,6 +14,9 @@ import static java.util.Objects.requireNonNull;
 /**
  * Handles the connection to the WaterRower.
  *
+ * The connector doesn't lock, the state of the connection is held by the communication service.
+ * So messages can be sent concurrently by the polling service, the watchdogs and the user.
+ *
  * @author Tobias Bressler
  * @version 1.0
  */
@@ -23,9 +25,6 @@ public class WaterRowerConnector {
     /* The RXTX communication service. */
     private final RxtxCommunicationService communicationService;
 
-    /* The lock to synchronize connect and disconnect. */
-    private ReentrantLock lock = new ReentrantLock(true);
-
     /* Listeners for the RXTX communication. */
     private List<IRxtxConnectionListener> listeners = new ArrayList<>();
 
@@ -43,26 +42,20 @@ public class WaterRowerConnector {
     /**
      * Connect to the rowing computer.
      *
-     * @param address The serial port, must not be null.
+     * @param address The serial port (RxtxDeviceAddress) or the address of a serial-to-TCP bridge
+     *                (InetSocketAddress), must not be null. The type of address must match the
+     *                transport.
      *
      * @throws IOException If connect fails.
      */
-    public void connect(RxtxDeviceAddress address) throws IOException {
+    public void connect(SocketAddress address) throws IOException {
         requireNonNull(address);
 
-        lock.lock();
-
-        try {
+        if (isConnected())
+            throw new IOException("Service is already connected! Can not connect.");
 
-            if (isConnected())
-                throw new IOException("Service is already connected! Can not connect.");
-
-            Log.debug(LIBRARY, "Opening RXTX channel at '" + address.value() + "' connection.");
-            communicationService.open(address);
-
-        } finally {
-            lock.unlock();
-        }
+        Log.debug(LIBRARY, "Opening channel at '" + RxtxCommunicationService.toString(address) + "' connection.");
+        communicationService.open(address);
     }
 
 
@@ -79,43 +72,66 @@ public class WaterRowerConnector {
      */
     public void disconnect() throws IOException {
 
-        lock.lock();
-
-        try {
+        if (!isConnected())
+            throw new IOException("Service is not connected! Can not disconnect.");
 
-            if (!isConnected())
-                throw new IOException("Service is not connected! Can not disconnect.");
-
-            Log.debug(LIBRARY, "Closing RXTX channel.");
-            communicationService.close();
-
-        } finally {
-            lock.unlock();
-        }
+        Log.debug(LIBRARY, "Closing RXTX channel.");
+        communicationService.close();
     }
 
 
     /**
-     * Sends given message asynchronous.
+     * Sends given message asynchronous, with the default priority class of the message.
      *
      * @param msg The message to be sent, must not be null.
      */
     public void send(AbstractMessage msg) throws IOException {
+        send(msg, MessagePriority.of(requireNonNull(msg)));
+    }
+
+    /**
+     * Sends given message asynchronous, with the given priority class. Messages of a higher class
+     * are sent before queued messages of a lower class.
+     *
+     * @param msg The message to be sent, must not be null.
+     * @param priority The priority class, must not be null.
+     */
+    public void send(AbstractMessage msg, MessagePriority priority) throws IOException {
         requireNonNull(msg);
+        requireNonNull(priority);
+
+        if (!isConnected())
+            throw new IOException("Not connected! Can not send message to WaterRower.");
 
-        lock.lock();
+        Log.debug(LIBRARY, "Sending message '{}'.", msg);
+        communicationService.send(msg, priority);
+    }
+
+    /**
+     * Sends the given messages asynchronous as batch, with a single write to the WaterRower.
+     *
+     * @param msgs The messages to be sent, must not be null or contain null.
+     */
+    public void sendBatch(List<AbstractMessage> msgs) throws IOException {
+        requireNonNull(msgs);
 
-        try {
+        if (!isConnected())
+            throw new IOException("Not connected! Can not send messages to WaterRower.");
 
-            if (!isConnected())
-                throw new IOException("Not connected! Can not send message to WaterRower.");
+        if (Log.isDebugEnabled(LIBRARY))
+            Log.debug(LIBRARY, "Sending batch of " + msgs.size() + " message(s).");
+        communicationService.sendBatch(msgs);
+    }
 
-            Log.debug(LIBRARY, "Sending message '" + msg.toString() + "'.");
-            communicationService.send(msg);
 
-        } finally {
-            lock.unlock();
-        }
+    /**
+     * Returns the queue of the outbound messages, which measures the queueing latency of each
+     * priority class.
+     *
+     * @return The outbound queue, never null.
+     */
+    public OutboundQueue getOutboundQueue() {
+        return communicationService.getOutboundQueue();
     }
 
 
@@ -0,0 +1,86 @@
+package de.tbressler.waterrower.io.codec;
+
+import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
+import io.netty.buffer.ByteBuf;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static de.tbressler.waterrower.io.msg.Memory.values;
+import static io.netty.buffer.Unpooled.buffer;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A cache for the encoded frames of read memory messages. The set of read requests is static
+ * (one request for each memory type and location), so each frame is encoded only once and kept
+ * as read-only buffer. Callers get a retained slice of the cached frame, which must be released
+ * after it was written (the channel does this automatically).
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+class RxtxFrameCache {
+
+    /* Number of memory locations (0 .. 4095). */
+    private static final int LOCATIONS = 4096;
+
+    /* Size of a frame: [I][R][S/D/T] + XXX + 0x0D0A. */
+    private static final int FRAME_SIZE = 8;
+
+
+    /* The message parser. */
+    private final RxtxMessageParser parser;
+
+    /* The encoded frames, indexed by memory type and location. */
+    private final AtomicReferenceArray<ByteBuf> frames = new AtomicReferenceArray<>(values().length * LOCATIONS);
+
+
+    /**
+     * A cache for the encoded frames of read memory messages.
+     *
+     * @param parser The message parser, must not be null.
+     */
+    RxtxFrameCache(RxtxMessageParser parser) {
+        this.parser = requireNonNull(parser);
+    }
+
+
+    /**
+     * Returns a retained slice of the encoded frame (including CR+LF) for the given message. The
+     * frame is encoded on the first call. Returns null if the message couldn't be encoded.
+     *
+     * @param msg The read memory message, must not be null.
+     * @return A retained slice of the frame or null.
+     */
+    ByteBuf getFrame(ReadMemoryMessage msg) {
+        int index = msg.getMemory().ordinal() * LOCATIONS + msg.getLocation();
+
+        ByteBuf frame = frames.get(index);
+        if (frame == null) {
+            frame = encodeFrame(msg);
+            if (frame == null)
+                return null;
+            if (!frames.compareAndSet(index, null, frame)) {
+                // Another thread was faster:
+                frame.release();
+                frame = frames.get(index);
+            }
+        }
+
+        return frame.retainedSlice();
+    }
+
+    /* Encodes the message to a read-only frame or returns null. */
+    private ByteBuf encodeFrame(ReadMemoryMessage msg) {
+        ByteBuf frame = buffer(FRAME_SIZE);
+        if (!parser.encode(msg, frame)) {
+            frame.release();
+            return null;
+        }
+
+        frame.writeByte(0x0D);
+        frame.writeByte(0x0A);
+
+        return frame.asReadOnly();
+    }
+
+}
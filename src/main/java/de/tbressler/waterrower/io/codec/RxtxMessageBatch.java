@@ -0,0 +1,65 @@
+package de.tbressler.waterrower.io.codec;
+
+import de.tbressler.waterrower.io.msg.AbstractMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A batch of messages, which are encoded into a single buffer and written to the serial device
+ * with a single write and flush.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class RxtxMessageBatch {
+
+    /* The messages of the batch. */
+    private final List<AbstractMessage> messages;
+
+
+    /**
+     * A batch of messages, which are encoded into a single buffer and written to the serial device
+     * with a single write and flush.
+     *
+     * @param messages The messages, must not be null or contain null.
+     */
+    public RxtxMessageBatch(List<AbstractMessage> messages) {
+        requireNonNull(messages);
+        for (AbstractMessage msg : messages)
+            requireNonNull(msg);
+        this.messages = unmodifiableList(new ArrayList<>(messages));
+    }
+
+
+    /**
+     * Returns the messages of the batch.
+     *
+     * @return The messages, never null.
+     */
+    public List<AbstractMessage> getMessages() {
+        return messages;
+    }
+
+    /**
+     * Returns the number of messages in the batch.
+     *
+     * @return The number of messages.
+     */
+    public int size() {
+        return messages.size();
+    }
+
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("size", messages.size())
+                .toString();
+    }
+
+}
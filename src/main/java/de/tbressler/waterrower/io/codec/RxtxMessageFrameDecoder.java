@@ -1,30 +1,59 @@
 package de.tbressler.waterrower.io.codec;
 
 import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.in.DecodeErrorMessage;
 import de.tbressler.waterrower.log.Log;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static de.tbressler.waterrower.io.utils.ByteUtils.bufferToString;
 import static de.tbressler.waterrower.log.Log.MESSAGES;
 import static de.tbressler.waterrower.log.Log.SERIAL;
+import static io.netty.util.ByteProcessor.FIND_LF;
 import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.util.Objects.requireNonNull;
 
 /**
  * Decodes messages (byte > msg).
  *
+ * The decoder splits the received bytes into frames at the line delimiter (LF or CR+LF) and
+ * decodes each frame in place from the cumulation buffer, without copying the bytes of the frame.
+ *
+ * The decoder never throws on malformed input. Garbage and too long frames are discarded up to
+ * the next line delimiter, where the decoder resynchronizes. The number of discarded bytes and
+ * malformed frames is counted, so line noise doesn't close the connection.
+ *
  * @author Tobias Bressler
  * @version 1.0
  */
 public class RxtxMessageFrameDecoder extends ByteToMessageDecoder {
 
+    /* Default maximum length of a single frame (without line delimiter). */
+    private static final int DEFAULT_MAX_FRAME_LENGTH = 32;
+
+
     /* The message parser. */
     private final RxtxMessageParser parser;
 
+    /* Maximum length of a single frame (without line delimiter). */
+    private final int maxFrameLength;
+
+    /* True if the decoder discards bytes, until the next line delimiter is found. */
+    private boolean discarding;
+
+    /* Number of bytes in the current too long frame, which were already discarded. */
+    private int discardedFrameLength;
+
+    /* Number of bytes, which were discarded because they were not part of a valid frame. */
+    private final AtomicLong discardedBytes = new AtomicLong();
+
+    /* Number of frames, which were too long or couldn't be decoded. */
+    private final AtomicLong malformedFrames = new AtomicLong();
+
 
     /**
      * Constructor.
@@ -32,39 +61,137 @@ public class RxtxMessageFrameDecoder extends ByteToMessageDecoder {
      * @param parser The message parser, must not be null.
      */
     public RxtxMessageFrameDecoder(RxtxMessageParser parser) {
+        this(parser, DEFAULT_MAX_FRAME_LENGTH);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param parser The message parser, must not be null.
+     * @param maxFrameLength The maximum length of a single frame (without line delimiter), must be
+     *                       greater than 0.
+     */
+    public RxtxMessageFrameDecoder(RxtxMessageParser parser, int maxFrameLength) {
         this.parser = requireNonNull(parser);
+        if (maxFrameLength < 1)
+            throw new IllegalArgumentException("The max. frame length must be greater than 0!");
+        this.maxFrameLength = maxFrameLength;
     }
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
 
-        Log.debug(MESSAGES, "Decoder received new message buffer:\n" +
-                " Buffer: " + bufferToString(in));
+        if (Log.isDebugEnabled(MESSAGES))
+            Log.debug(MESSAGES, "Decoder received new message buffer:\n" +
+                    " Buffer: " + bufferToString(in));
+
+        int readerIndex = in.readerIndex();
+        int eol = in.forEachByte(FIND_LF);
+
+        if (eol < 0) {
+            discardIfTooLong(in);
+            return;
+        }
+
+        if (discarding) {
+            // Skip the rest of the too long frame and resynchronize at the line delimiter:
+            int length = eol + 1 - readerIndex;
+            in.readerIndex(eol + 1);
+            discarding = false;
+            discardFrame(discardedFrameLength + length, length);
+            return;
+        }
+
+        int frameLength = eol - readerIndex;
+        if ((frameLength > 0) && (in.getByte(eol - 1) == '\r'))
+            frameLength--;
 
-        int numberOfBytes = in.readableBytes();
+        if (frameLength > maxFrameLength) {
+            in.readerIndex(eol + 1);
+            discardFrame(eol + 1 - readerIndex, eol + 1 - readerIndex);
+            return;
+        }
 
-        // Check if bytes are available and this is not an empty frame.
-        if (numberOfBytes == 0) {
+        // Check if this is not an empty frame.
+        if (frameLength == 0) {
             Log.warn(SERIAL, "No bytes in message buffer! Skipping frame.");
+            in.readerIndex(eol + 1);
             return;
         }
 
-        byte [] byteArray = new byte[numberOfBytes];
+        if (Log.isDebugEnabled(SERIAL))
+            Log.debug(SERIAL, "Message buffer decoded to: >" + in.toString(readerIndex, frameLength, US_ASCII) + "<");
 
-        in.readBytes(byteArray, 0, numberOfBytes);
+        // Decode the message directly from the cumulation buffer.
+        AbstractMessage decodedMessage = decodeFrame(in, readerIndex, frameLength);
+        in.readerIndex(eol + 1);
+
+        if (decodedMessage == null) {
+            malformedFrames.incrementAndGet();
+            discardedBytes.addAndGet(eol + 1 - readerIndex);
+            return;
+        }
 
-        Log.debug(SERIAL, "Message buffer decoded to: >" + new String(byteArray, US_ASCII) + "<");
+        if (decodedMessage instanceof DecodeErrorMessage)
+            malformedFrames.incrementAndGet();
 
-        // Decode the message.
-         AbstractMessage decodedMessage = parser.decode(byteArray);
-         if (decodedMessage == null) {
-             Log.debug(SERIAL, "Couldn't decode bytes to message! Skipping it.");
-             return;
-         }
+        out.add(decodedMessage);
+    }
 
-         out.add(decodedMessage);
+    /* Decodes the frame or returns null, if the parser failed on malformed bytes. */
+    private AbstractMessage decodeFrame(ByteBuf in, int index, int length) {
+        try {
+            AbstractMessage decodedMessage = parser.decode(in, index, length);
+            if (decodedMessage == null)
+                Log.debug(SERIAL, "Couldn't decode bytes to message! Skipping it.");
+            return decodedMessage;
+        } catch (RuntimeException e) {
+            Log.warn(SERIAL, "Couldn't decode malformed frame! Skipping it. Cause: {}", e.toString());
+            return null;
+        }
+    }
 
-         return;
+    /* Discards the buffered bytes, if they exceed the max. frame length without a delimiter. */
+    private void discardIfTooLong(ByteBuf in) {
+        int length = in.readableBytes();
+        if (discarding) {
+            in.skipBytes(length);
+            discardedFrameLength += length;
+            discardedBytes.addAndGet(length);
+        } else if (length > maxFrameLength) {
+            discarding = true;
+            in.skipBytes(length);
+            discardedFrameLength = length;
+            discardedBytes.addAndGet(length);
         }
+    }
+
+    /* Counts the discarded frame and logs it. */
+    private void discardFrame(int frameLength, int skippedBytes) {
+        discardedBytes.addAndGet(skippedBytes);
+        malformedFrames.incrementAndGet();
+        Log.warn(SERIAL, "Discarded too long frame ({} bytes, allowed are {})! Resynchronized at line delimiter.", frameLength, maxFrameLength);
+    }
+
+
+    /**
+     * Returns the number of bytes, which were discarded because they were part of a too long or
+     * malformed frame.
+     *
+     * @return The number of discarded bytes.
+     */
+    public long getDiscardedBytes() {
+        return discardedBytes.get();
+    }
+
+    /**
+     * Returns the number of frames, which were too long or couldn't be decoded. This includes
+     * frames which were decoded to a DecodeErrorMessage.
+     *
+     * @return The number of malformed frames.
+     */
+    public long getMalformedFrames() {
+        return malformedFrames.get();
+    }
 
 }
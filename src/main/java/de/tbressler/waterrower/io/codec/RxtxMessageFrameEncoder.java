@@ -1,9 +1,11 @@
 package de.tbressler.waterrower.io.codec;
 
 import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
 import de.tbressler.waterrower.log.Log;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.MessageToByteEncoder;
 
 import static de.tbressler.waterrower.log.Log.MESSAGES;
@@ -19,9 +21,16 @@ import static java.util.Objects.requireNonNull;
  */
 public class RxtxMessageFrameEncoder extends MessageToByteEncoder {
 
+    /* Expected size of an encoded frame (in bytes), used to size the buffer of a batch. */
+    private static final int FRAME_SIZE_HINT = 12;
+
+
     /* The message parser. */
     private final RxtxMessageParser parser;
 
+    /* The cache for the frames of read memory messages. */
+    private final RxtxFrameCache frameCache;
+
 
     /**
      * Constructor.
@@ -30,6 +39,69 @@ public class RxtxMessageFrameEncoder extends MessageToByteEncoder {
      */
     public RxtxMessageFrameEncoder(RxtxMessageParser parser) {
         this.parser = requireNonNull(parser);
+        this.frameCache = new RxtxFrameCache(parser);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof RxtxMessageBatch) {
+            writeBatch(ctx, (RxtxMessageBatch) msg, promise);
+            return;
+        }
+
+        if (!(msg instanceof ReadMemoryMessage)) {
+            super.write(ctx, msg, promise);
+            return;
+        }
+
+        // Read memory messages are polled frequently, so the cached frame is written:
+        ByteBuf frame = frameCache.getFrame((ReadMemoryMessage) msg);
+        if (frame == null) {
+            Log.warn(SERIAL, "Message couldn't been encoded! Skipped message.");
+            promise.setSuccess();
+            return;
+        }
+
+        ctx.write(frame, promise);
+    }
+
+    /* Encodes all messages of the batch into a single buffer and writes it. */
+    private void writeBatch(ChannelHandlerContext ctx, RxtxMessageBatch batch, ChannelPromise promise) {
+        ByteBuf out = ctx.alloc().ioBuffer(batch.size() * FRAME_SIZE_HINT);
+
+        try {
+
+            for (AbstractMessage msg : batch.getMessages()) {
+                if (msg instanceof ReadMemoryMessage)
+                    writeCachedFrame((ReadMemoryMessage) msg, out);
+                else
+                    encodeMessage(msg, out);
+            }
+
+        } catch (RuntimeException e) {
+            out.release();
+            throw e;
+        }
+
+        if (Log.isDebugEnabled(MESSAGES))
+            Log.debug(MESSAGES, "Batch of " + batch.size() + " message(s) encoded to " + out.readableBytes() + " bytes.");
+
+        ctx.write(out, promise);
+    }
+
+    /* Copies the cached frame of the read memory message to the buffer. */
+    private void writeCachedFrame(ReadMemoryMessage msg, ByteBuf out) {
+        ByteBuf frame = frameCache.getFrame(msg);
+        if (frame == null) {
+            Log.warn(SERIAL, "Message couldn't been encoded! Skipped message.");
+            return;
+        }
+
+        try {
+            out.writeBytes(frame);
+        } finally {
+            frame.release();
+        }
     }
 
     @Override
@@ -41,22 +113,27 @@ public class RxtxMessageFrameEncoder extends MessageToByteEncoder {
             throw e;
         }
 
+        encodeMessage((AbstractMessage) msg, out);
+    }
+
+    /* Encodes the message (including CR+LF) to the buffer. */
+    private void encodeMessage(AbstractMessage msg, ByteBuf out) {
+
+        int index = out.writerIndex();
+
         // Parse the message:
-        byte[] byteArray = parser.encode((AbstractMessage) msg);
-        if (byteArray == null) {
+        if (!parser.encode(msg, out)) {
             Log.warn(SERIAL, "Message couldn't been encoded! Skipped message.");
             return;
         }
 
-        // Write bytes to channel.
-        out.writeBytes(byteArray);
+        // The buffer is flushed by the sender.
         out.writeByte(0x0D);
         out.writeByte(0x0A);
 
-        Log.debug(MESSAGES, "Message buffer encoded and written:\n" +
-                " As String: >" + new String(byteArray, US_ASCII) + "<");
-
-        ctx.writeAndFlush(out);
+        if (Log.isDebugEnabled(MESSAGES))
+            Log.debug(MESSAGES, "Message buffer encoded and written:\n" +
+                    " As String: >" + out.toString(index, out.writerIndex() - index - 2, US_ASCII) + "<");
     }
 
 }
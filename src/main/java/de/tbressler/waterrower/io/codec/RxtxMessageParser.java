@@ -2,15 +2,24 @@ package de.tbressler.waterrower.io.codec;
 
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.IMessageInterpreter;
+import de.tbressler.waterrower.io.msg.in.DataMemoryMessagePool;
 import de.tbressler.waterrower.io.msg.in.DecodeErrorMessage;
 import de.tbressler.waterrower.io.msg.interpreter.*;
 import de.tbressler.waterrower.log.Log;
+import io.netty.buffer.ByteBuf;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import static de.tbressler.waterrower.io.utils.ByteUtils.startsWith;
 import static de.tbressler.waterrower.log.Log.SERIAL;
+import static io.netty.buffer.ByteBufUtil.getBytes;
+import static io.netty.buffer.Unpooled.buffer;
+import static io.netty.buffer.Unpooled.wrappedBuffer;
 import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Comparator.comparingInt;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -21,20 +30,46 @@ import static java.util.Objects.requireNonNull;
  */
 public class RxtxMessageParser {
 
+    /* Number of entries in the dispatch table (one for each ASCII char). */
+    private static final int ASCII_CHARS = 128;
+
+
     /* List of message interpreters. */
-    private List<IMessageInterpreter> interpreters = new ArrayList<>();
+    private List<IMessageInterpreter<?>> interpreters = new ArrayList<>();
+
+    /* Dispatch table for incoming messages. The interpreters are indexed by the first char of
+     * their message identifier, interpreters with longer identifiers come first (e.g. 'PING'
+     * before 'P'). */
+    private final IMessageInterpreter<?>[][] decoders = new IMessageInterpreter<?>[ASCII_CHARS][];
+
+    /* Interpreters for outgoing messages by message class. */
+    private final Map<Class<?>, IMessageInterpreter<?>> encoders = new ConcurrentHashMap<>();
 
 
     /**
      * Decodes and encodes messages received from or sent to the WaterRower S4/S5 monitor.
      */
     public RxtxMessageParser() {
-        createAndAddMessageInterpreters();
+        this(false);
+    }
+
+    /**
+     * Decodes and encodes messages received from or sent to the WaterRower S4/S5 monitor.
+     *
+     * In recycling mode the DataMemoryMessages decoded from buffers are taken from a pool and are
+     * reused as soon as they are released, which happens after the RxtxSerialHandler delivered
+     * them. Receivers must not keep references to these messages.
+     *
+     * @param recycleMessages True if decoded messages should be recycled.
+     */
+    public RxtxMessageParser(boolean recycleMessages) {
+        createAndAddMessageInterpreters(recycleMessages);
+        createDispatchTable();
     }
 
     /* Add all message interpreters to this parser. */
-    private void createAndAddMessageInterpreters() {
-        interpreters.add(new InformationRequestMessageInterpreter());
+    private void createAndAddMessageInterpreters(boolean recycleMessages) {
+        interpreters.add(recycleMessages ? new InformationRequestMessageInterpreter(new DataMemoryMessagePool()) : new InformationRequestMessageInterpreter());
         interpreters.add(new ConfigureWorkoutMessageInterpreter());
         interpreters.add(new PingMessageInterpreter());
         interpreters.add(new StrokeMessageInterpreter());
@@ -48,7 +83,7 @@ public class RxtxMessageParser {
     }
 
     /* For testing purposes only! Returns all interpreters. */
-    List<IMessageInterpreter> getInterpreters() {
+    List<IMessageInterpreter<?>> getInterpreters() {
         return interpreters;
     }
 
@@ -58,8 +93,32 @@ public class RxtxMessageParser {
      *
      * @param interpreters The interpreters for the different messages, must not be null.
      */
-    RxtxMessageParser(List<IMessageInterpreter> interpreters) {
+    RxtxMessageParser(List<IMessageInterpreter<?>> interpreters) {
         this.interpreters = requireNonNull(interpreters);
+        createDispatchTable();
+    }
+
+    /* Creates the dispatch table for incoming messages, based on the message identifiers. */
+    private void createDispatchTable() {
+        for (int c = 0; c < ASCII_CHARS; c++) {
+
+            List<IMessageInterpreter<?>> candidates = new ArrayList<>();
+            for (IMessageInterpreter<?> interpreter : interpreters) {
+                String msgIdentifier = interpreter.getMessageIdentifier();
+                if ((msgIdentifier == null) || msgIdentifier.isEmpty())
+                    continue;
+                if (msgIdentifier.charAt(0) == c)
+                    candidates.add(interpreter);
+            }
+
+            if (candidates.isEmpty())
+                continue;
+
+            // Longest identifier first, so 'PING' is checked before 'P':
+            candidates.sort(comparingInt(interpreter -> -interpreter.getMessageIdentifier().length()));
+
+            decoders[c] = candidates.toArray(new IMessageInterpreter<?>[candidates.size()]);
+        }
     }
 
 
@@ -71,29 +130,62 @@ public class RxtxMessageParser {
      * @return The message object or a DecodeErrorMessage.
      */
     public AbstractMessage decode(byte[] bytes) {
+        return decode(wrappedBuffer(bytes));
+    }
 
-        Log.debug(SERIAL, "Parsing message to object.");
+    /**
+     * Decodes the readable bytes of the given buffer to a message object. The bytes are decoded
+     * directly from the buffer, without converting them to a String. The reader and writer index
+     * of the buffer are not modified. Returns a DecodeErrorMessage if the message couldn't be
+     * decoded.
+     *
+     * @param buffer The buffer, must not be null.
+     * @return The message object or a DecodeErrorMessage.
+     */
+    public AbstractMessage decode(ByteBuf buffer) {
+        return decode(buffer, buffer.readerIndex(), buffer.readableBytes());
+    }
+
+    /**
+     * Decodes the bytes in the given region of the buffer to a message object. The bytes are
+     * decoded directly from the buffer, without converting them to a String. The reader and
+     * writer index of the buffer are not modified. Returns a DecodeErrorMessage if the message
+     * couldn't be decoded.
+     *
+     * @param buffer The buffer, must not be null.
+     * @param index The index of the first byte of the message.
+     * @param length The length of the message (in bytes).
+     * @return The message object or a DecodeErrorMessage.
+     */
+    public AbstractMessage decode(ByteBuf buffer, int index, int length) {
+
+        Log.debug(SERIAL, "Parsing message buffer to object.");
 
-        String msg = new String(bytes, US_ASCII);
+        IMessageInterpreter<?>[] candidates = (length > 0) ? getDecoders(buffer.getByte(index)) : null;
+        if (candidates == null)
+            return new DecodeErrorMessage(buffer.toString(index, length, US_ASCII));
 
-        String msgIdentifier;
-        for (IMessageInterpreter interpreter : interpreters) {
+        for (IMessageInterpreter<?> interpreter : candidates) {
 
             // Check message identifiers:
-            msgIdentifier = interpreter.getMessageIdentifier();
-            if (msgIdentifier == null)
-                continue;
-            if (!msg.startsWith(msgIdentifier))
+            if (!startsWith(buffer, index, length, interpreter.getMessageIdentifier()))
                 continue;
 
             // Decode message to an object:
-            AbstractMessage decodedMsg = interpreter.decode(msg);
+            AbstractMessage decodedMsg = interpreter.decode(buffer, index, length);
 
             if (decodedMsg != null)
                 return decodedMsg;
         }
 
-        return new DecodeErrorMessage(msg);
+        return new DecodeErrorMessage(buffer.toString(index, length, US_ASCII));
+    }
+
+    /* Returns the interpreters for messages that start with the given char or null. */
+    private IMessageInterpreter<?>[] getDecoders(int firstChar) {
+        if ((firstChar < 0) || (firstChar >= ASCII_CHARS))
+            return null;
+        return decoders[firstChar];
     }
 
 
@@ -104,25 +196,61 @@ public class RxtxMessageParser {
      * @param msg The message.
      * @return The byte array or null.
      */
-    @SuppressWarnings("unchecked")
     public byte[] encode(AbstractMessage msg) {
+        ByteBuf buffer = buffer();
+        try {
+            return encode(msg, buffer) ? getBytes(buffer) : null;
+        } finally {
+            buffer.release();
+        }
+    }
 
-        Log.debug(SERIAL, "Parsing message '"+msg.toString()+"' to bytes.");
-
-        for (IMessageInterpreter interpreter : interpreters) {
+    /**
+     * Encodes the given message as ASCII bytes directly into the buffer (without line delimiter).
+     * Returns false if the message couldn't be encoded, in this case nothing is written to the
+     * buffer.
+     *
+     * @param msg The message.
+     * @param buffer The buffer, must not be null.
+     * @return True if the message was encoded.
+     */
+    public boolean encode(AbstractMessage msg, ByteBuf buffer) {
 
-            // Check if message type matches:
-            if (!interpreter.isSupported(msg))
-                continue;
+        Log.debug(SERIAL, "Parsing message '{}' to buffer.", msg);
 
-            // Encode object to message:
-            String encodedMsg = interpreter.encode(msg);
+        // The interpreter supports the class of the message, so the message can be passed to it:
+        @SuppressWarnings("unchecked")
+        IMessageInterpreter<AbstractMessage> interpreter = (IMessageInterpreter<AbstractMessage>) getEncoder(msg);
+        if (interpreter == null) {
+            Log.warn(SERIAL, "Message couldn't be encoded! Unknown message type '{}'.", msg.getClass().getName());
+            return false;
+        }
 
-            if (encodedMsg != null)
-                return encodedMsg.getBytes(US_ASCII);
+        // Encode object to buffer, remove partially written bytes on errors:
+        int writerIndex = buffer.writerIndex();
+        boolean encoded = false;
+        try {
+            encoded = interpreter.encode(msg, buffer);
+            return encoded;
+        } finally {
+            if (!encoded)
+                buffer.writerIndex(writerIndex);
         }
+    }
 
-        Log.warn(SERIAL, "Message couldn't be encoded! Unknown message type '"+msg.getClass().getName()+"'.");
+    /* Returns the interpreter for the class of the given message or null. The interpreter is
+     * looked up once per message class. */
+    private IMessageInterpreter<?> getEncoder(AbstractMessage msg) {
+        IMessageInterpreter<?> interpreter = encoders.get(msg.getClass());
+        if (interpreter != null)
+            return interpreter;
+
+        for (IMessageInterpreter<?> candidate : interpreters) {
+            if (candidate.isSupported(msg)) {
+                encoders.put(msg.getClass(), candidate);
+                return candidate;
+            }
+        }
 
         return null;
     }
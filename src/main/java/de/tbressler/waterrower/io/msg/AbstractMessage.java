@@ -1,10 +1,48 @@
 package de.tbressler.waterrower.io.msg;
 
+import static de.tbressler.waterrower.io.msg.MessageTypeId.UNKNOWN;
+import static java.util.Objects.requireNonNull;
+
 /**
  * An abstract serial message.
  * This is the super-class of all messages that can be exchanged with the WaterRower S4 monitor.
  *
+ * Each message has a compact type id, which allows to dispatch messages by type without
+ * instanceof checks.
+ *
  * @author Tobias Bressler
  * @version 1.0
  */
-public class AbstractMessage {}
+public class AbstractMessage {
+
+    /* The type id of the message. */
+    private final MessageTypeId typeId;
+
+
+    /**
+     * An abstract serial message of unknown type.
+     */
+    public AbstractMessage() {
+        this(UNKNOWN);
+    }
+
+    /**
+     * An abstract serial message.
+     *
+     * @param typeId The type id of the message, must not be null.
+     */
+    protected AbstractMessage(MessageTypeId typeId) {
+        this.typeId = requireNonNull(typeId);
+    }
+
+
+    /**
+     * Returns the type id of the message.
+     *
+     * @return The type id.
+     */
+    public final MessageTypeId getTypeId() {
+        return typeId;
+    }
+
+}
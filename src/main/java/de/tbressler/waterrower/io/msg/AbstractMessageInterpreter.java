@@ -1,9 +1,52 @@
 package de.tbressler.waterrower.io.msg;
 
+import io.netty.buffer.ByteBuf;
+
+import static io.netty.buffer.Unpooled.buffer;
+import static io.netty.buffer.Unpooled.copiedBuffer;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
 /**
  * Abstract message interpreter.
  *
+ * Interpreters only implement the decoding from and the encoding to buffers. The String based
+ * methods are routed through these implementations, so both always produce the same results.
+ *
  * @author Tobias Bressler
  * @version 1.0
  */
-public abstract class AbstractMessageInterpreter<T extends AbstractMessage> implements IMessageInterpreter<T> {}
\ No newline at end of file
+public abstract class AbstractMessageInterpreter<T extends AbstractMessage> implements IMessageInterpreter<T> {
+
+    /**
+     * Decodes the given ASCII string to a message object. If the message can not be decoded the
+     * method returns null.
+     *
+     * @param msg The message as ASCII string, must not be null.
+     * @return The message object or null.
+     */
+    public final T decode(String msg) {
+        ByteBuf buffer = copiedBuffer(msg, US_ASCII);
+        try {
+            return decode(buffer, buffer.readerIndex(), buffer.readableBytes());
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Encodes the given message object to a ASCII string. If the message can not be encoded the
+     * method returns null.
+     *
+     * @param msg The message object.
+     * @return The message as ASCII string or null.
+     */
+    public final String encode(T msg) {
+        ByteBuf buffer = buffer();
+        try {
+            return encode(msg, buffer) ? buffer.toString(US_ASCII) : null;
+        } finally {
+            buffer.release();
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package de.tbressler.waterrower.io.msg;
 
+import io.netty.buffer.ByteBuf;
 
 /**
  * Interface for message interpreters, which decode or encode incoming and outgoing messages.
@@ -25,19 +26,25 @@ public interface IMessageInterpreter<T extends AbstractMessage> {
     boolean isSupported(AbstractMessage msg);
 
     /**
-     * Decodes the given ASCII string to a message object. If the message can not be decoded the method returns null.
+     * Decodes the ASCII bytes in the given region of the buffer to a message object. The reader and
+     * writer index of the buffer are not modified. If the message can not be decoded the method
+     * returns null.
      *
-     * @param msg The message as ASCII string.
+     * @param buffer The buffer that contains the message, must not be null.
+     * @param index The index of the first byte of the message.
+     * @param length The length of the message (in bytes).
      * @return The message object or null.
      */
-    T decode(String msg);
+    T decode(ByteBuf buffer, int index, int length);
 
     /**
-     * Encodes the given message object to a ASCII string. If the message can not be encoded the method returns null.
+     * Encodes the given message object as ASCII bytes directly into the buffer. If the message can
+     * not be encoded the method returns false and nothing is written to the buffer.
      *
      * @param msg The message object.
-     * @return The message as ASCII string.
+     * @param buffer The buffer to write the message to, must not be null.
+     * @return True if the message was encoded.
      */
-    String encode(T msg);
+    boolean encode(T msg, ByteBuf buffer);
 
 }
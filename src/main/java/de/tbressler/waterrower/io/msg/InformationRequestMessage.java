@@ -4,4 +4,15 @@ package de.tbressler.waterrower.io.msg;
  * @author Tobias Bressler
  * @version 1.0
  */
-public abstract class InformationRequestMessage extends AbstractMessage {}
+public abstract class InformationRequestMessage extends AbstractMessage {
+
+    /**
+     * An information request message.
+     *
+     * @param typeId The type id of the message, must not be null.
+     */
+    protected InformationRequestMessage(MessageTypeId typeId) {
+        super(typeId);
+    }
+
+}
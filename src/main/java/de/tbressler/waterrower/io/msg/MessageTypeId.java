@@ -0,0 +1,76 @@
+package de.tbressler.waterrower.io.msg;
+
+/**
+ * The compact type id of a message. Each message carries its type id, so receivers can dispatch
+ * messages by a table lookup (e.g. by ordinal or with an EnumMap) instead of a chain of
+ * instanceof checks.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public enum MessageTypeId {
+
+    /* Message of unknown type (e.g. custom messages). */
+    UNKNOWN,
+
+    /* Messages from the WaterRower S4/S5 monitor (S4/S5 -> PC): */
+
+    /* Acknowledge of a command. */
+    ACKNOWLEDGE,
+
+    /* Value of a single, double or triple memory location. */
+    DATA_MEMORY,
+
+    /* Message which couldn't be decoded. */
+    DECODE_ERROR,
+
+    /* Error message of the monitor. */
+    ERROR,
+
+    /* Hardware type of the connected device. */
+    HARDWARE_TYPE,
+
+    /* Model information (monitor type and firmware). */
+    MODEL_INFORMATION,
+
+    /* Ping, while no rowing occurs. */
+    PING,
+
+    /* Pulse count of the last 25mS. */
+    PULSE_COUNT,
+
+    /* Start or end of a stroke. */
+    STROKE,
+
+    /* Messages to the WaterRower S4/S5 monitor (PC -> S4/S5): */
+
+    /* Configuration of a workout. */
+    CONFIGURE_WORKOUT,
+
+    /* Exit of the communication. */
+    EXIT_COMMUNICATION,
+
+    /* Request of a memory location. */
+    READ_MEMORY,
+
+    /* Request of the model information. */
+    REQUEST_MODEL_INFORMATION,
+
+    /* Reset of the monitor. */
+    RESET,
+
+    /* Start of the communication. */
+    START_COMMUNICATION;
+
+
+    /**
+     * Returns the type id of the given message.
+     *
+     * @param msg The message, must not be null.
+     * @return The type id, never null.
+     */
+    public static MessageTypeId typeOf(AbstractMessage msg) {
+        return msg.getTypeId();
+    }
+
+}
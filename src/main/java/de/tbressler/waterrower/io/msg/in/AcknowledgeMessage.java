@@ -3,6 +3,7 @@ package de.tbressler.waterrower.io.msg.in;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.ACKNOWLEDGE;
 
 /**
  * Packet Accepted (S4/S5 -> PC).
@@ -17,6 +18,14 @@ import static com.google.common.base.MoreObjects.toStringHelper;
  */
 public class AcknowledgeMessage extends AbstractMessage {
 
+    /**
+     * Packet Accepted (S4/S5 -> PC).
+     */
+    public AcknowledgeMessage() {
+        super(ACKNOWLEDGE);
+    }
+
+
     @Override
     public String toString() {
         return toStringHelper(this).toString();
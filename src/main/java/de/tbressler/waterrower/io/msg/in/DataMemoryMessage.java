@@ -1,9 +1,11 @@
 package de.tbressler.waterrower.io.msg.in;
 
+import de.tbressler.waterrower.io.msg.Memory;
 import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static de.tbressler.waterrower.io.msg.Memory.*;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.DATA_MEMORY;
 
 /**
  * Value from single, double or triple memory locations (S4/S5 -> PC).
@@ -60,7 +62,7 @@ public class DataMemoryMessage extends ReadMemoryMessage {
      * @param value1 The single byte of data Y1 (0 .. 255) from memory location.
      */
     public DataMemoryMessage(int location, int value1) {
-        super(SINGLE_MEMORY, location);
+        super(DATA_MEMORY, SINGLE_MEMORY, location);
         this.value3 = -1;
         this.value2 = -1;
         this.value1 = assertValueRange(value1);
@@ -76,7 +78,7 @@ public class DataMemoryMessage extends ReadMemoryMessage {
      * @param value1 The single byte of data Y1 (0 .. 255) from memory location.
      */
     public DataMemoryMessage(int location, int value2, int value1) {
-        super(DOUBLE_MEMORY, location);
+        super(DATA_MEMORY, DOUBLE_MEMORY, location);
         this.value3 = -1;
         this.value2 = assertValueRange(value2);
         this.value1 = assertValueRange(value1);
@@ -93,14 +95,28 @@ public class DataMemoryMessage extends ReadMemoryMessage {
      * @param value1 The single byte of data Y1 (0 .. 255) from memory location.
      */
     public DataMemoryMessage(int location, int value3, int value2, int value1) {
-        super(TRIPLE_MEMORY, location);
+        super(DATA_MEMORY, TRIPLE_MEMORY, location);
         this.value3 = assertValueRange(value3);
         this.value2 = assertValueRange(value2);
         this.value1 = assertValueRange(value1);
     }
 
+    /**
+     * Constructor for pooled messages, which are reused for the given memory and location.
+     * The values of pooled messages are held by the subclass (see PooledDataMemoryMessage).
+     *
+     * @param memory Single, double or triple memory locations, must not be null.
+     * @param location The memory location (0 .. 4095).
+     */
+    DataMemoryMessage(Memory memory, int location) {
+        super(DATA_MEMORY, memory, location);
+        this.value3 = -1;
+        this.value2 = -1;
+        this.value1 = -1;
+    }
+
     /* Throws IllegalArgumentException if value is out of range. */
-    private int assertValueRange(int value) {
+    static int assertValueRange(int value) {
         if ((value < 0) || (value > 255))
             throw new IllegalArgumentException("The value must be between 0 and 255!");
         return value;
@@ -144,9 +160,9 @@ public class DataMemoryMessage extends ReadMemoryMessage {
         return toStringHelper(this)
                 .add("memory", getMemory())
                 .add("location", getLocation())
-                .add("value3", value3)
-                .add("value2", value2)
-                .add("value1", value1)
+                .add("value3", getValue3())
+                .add("value2", getValue2())
+                .add("value1", getValue1())
                 .toString();
     }
 
@@ -0,0 +1,103 @@
+package de.tbressler.waterrower.io.msg.in;
+
+import de.tbressler.waterrower.io.msg.Memory;
+
+import static de.tbressler.waterrower.io.msg.Memory.*;
+
+/**
+ * A pool of reusable DataMemoryMessages. The pool keeps one message per memory type and
+ * location, which is reused as soon as it was released (see ReferenceCountUtil#release(...)).
+ * If the pooled message is still in use, a new (not pooled) message is returned.
+ *
+ * Pooled messages are only valid until they are released! Receivers that want to keep a message
+ * after it was handled must retain it or copy the values.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class DataMemoryMessagePool {
+
+    /* The number of memory locations (0x000 .. 0xFFF). */
+    private static final int LOCATIONS = 4096;
+
+    /* The memory types. */
+    private static final Memory[] MEMORIES = Memory.values();
+
+
+    /* The pooled messages, indexed by memory type and location. */
+    private final PooledDataMemoryMessage[] messages = new PooledDataMemoryMessage[MEMORIES.length * LOCATIONS];
+
+
+    /**
+     * Returns a message with the single byte Y1 of data from single memory location.
+     *
+     * @param location The memory location (0 .. 4095).
+     * @param value1 The single byte of data Y1 (0 .. 255) from memory location.
+     * @return The message, never null.
+     */
+    public DataMemoryMessage acquire(int location, int value1) {
+        PooledDataMemoryMessage msg = acquire(SINGLE_MEMORY, location);
+        if (msg == null)
+            return new DataMemoryMessage(location, value1);
+        return setValues(msg, -1, -1, value1);
+    }
+
+    /**
+     * Returns a message with the bytes Y1 and Y2 of data from double memory location.
+     *
+     * @param location The memory location (0 .. 4095).
+     * @param value2 The single byte of data Y2 (0 .. 255) from memory location.
+     * @param value1 The single byte of data Y1 (0 .. 255) from memory location.
+     * @return The message, never null.
+     */
+    public DataMemoryMessage acquire(int location, int value2, int value1) {
+        PooledDataMemoryMessage msg = acquire(DOUBLE_MEMORY, location);
+        if (msg == null)
+            return new DataMemoryMessage(location, value2, value1);
+        return setValues(msg, -1, value2, value1);
+    }
+
+    /**
+     * Returns a message with the bytes Y1, Y2 and Y3 of data from triple memory location.
+     *
+     * @param location The memory location (0 .. 4095).
+     * @param value3 The single byte of data Y3 (0 .. 255) from memory location.
+     * @param value2 The single byte of data Y2 (0 .. 255) from memory location.
+     * @param value1 The single byte of data Y1 (0 .. 255) from memory location.
+     * @return The message, never null.
+     */
+    public DataMemoryMessage acquire(int location, int value3, int value2, int value1) {
+        PooledDataMemoryMessage msg = acquire(TRIPLE_MEMORY, location);
+        if (msg == null)
+            return new DataMemoryMessage(location, value3, value2, value1);
+        return setValues(msg, value3, value2, value1);
+    }
+
+    /* Returns the pooled message for memory and location or null if it is still in use. */
+    private PooledDataMemoryMessage acquire(Memory memory, int location) {
+        if ((location < 0) || (location >= LOCATIONS))
+            throw new IllegalArgumentException("The value for the memory location must be between 0 and 4095!");
+
+        int index = memory.ordinal() * LOCATIONS + location;
+
+        PooledDataMemoryMessage msg = messages[index];
+        if (msg == null) {
+            msg = new PooledDataMemoryMessage(memory, location);
+            messages[index] = msg;
+        }
+
+        return msg.acquire() ? msg : null;
+    }
+
+    /* Sets the values of the pooled message. Releases the message if the values are invalid. */
+    private DataMemoryMessage setValues(PooledDataMemoryMessage msg, int value3, int value2, int value1) {
+        try {
+            msg.setValues(value3, value2, value1);
+            return msg;
+        } catch (IllegalArgumentException e) {
+            msg.release();
+            throw e;
+        }
+    }
+
+}
@@ -3,6 +3,7 @@ package de.tbressler.waterrower.io.msg.in;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.DECODE_ERROR;
 
 /**
  * Decode error message.
@@ -12,6 +13,7 @@ public class DecodeErrorMessage extends AbstractMessage {
     private String message;
 
     public DecodeErrorMessage(String message) {
+        super(DECODE_ERROR);
         this.message = message;
     }
 
@@ -3,6 +3,7 @@ package de.tbressler.waterrower.io.msg.in;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.ERROR;
 
 /**
  * Unknown packet / error (S4/S5 -> PC).
@@ -17,6 +18,14 @@ import static com.google.common.base.MoreObjects.toStringHelper;
  */
 public class ErrorMessage extends AbstractMessage {
 
+    /**
+     * Unknown packet / error (S4/S5 -> PC).
+     */
+    public ErrorMessage() {
+        super(ERROR);
+    }
+
+
     @Override
     public String toString() {
         return toStringHelper(this).toString();
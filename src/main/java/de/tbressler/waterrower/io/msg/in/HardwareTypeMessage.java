@@ -3,6 +3,7 @@ package de.tbressler.waterrower.io.msg.in;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.HARDWARE_TYPE;
 
 /**
  * Hardware Type (S4/S5 -> PC).
@@ -30,6 +31,7 @@ public class HardwareTypeMessage extends AbstractMessage {
      * @param isWaterRower True if the connected device is a WaterRower.
      */
     public HardwareTypeMessage(boolean isWaterRower) {
+        super(HARDWARE_TYPE);
         this.isWaterRower = isWaterRower;
     }
 
@@ -4,6 +4,7 @@ import de.tbressler.waterrower.io.msg.InformationRequestMessage;
 import de.tbressler.waterrower.model.ModelInformation;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.MODEL_INFORMATION;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -31,6 +32,7 @@ public class ModelInformationMessage extends InformationRequestMessage {
      * @param modelInformation The model type and firmware, must not be null.
      */
     public ModelInformationMessage(ModelInformation modelInformation) {
+        super(MODEL_INFORMATION);
         this.modelInformation = requireNonNull(modelInformation);
     }
 
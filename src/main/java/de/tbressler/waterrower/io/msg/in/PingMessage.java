@@ -3,6 +3,7 @@ package de.tbressler.waterrower.io.msg.in;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.PING;
 
 /**
  * Ping (S4/S5 -> PC).
@@ -17,6 +18,14 @@ import static com.google.common.base.MoreObjects.toStringHelper;
  */
 public class PingMessage extends AbstractMessage {
 
+    /**
+     * Ping (S4/S5 -> PC).
+     */
+    public PingMessage() {
+        super(PING);
+    }
+
+
     @Override
     public String toString() {
         return toStringHelper(this).toString();
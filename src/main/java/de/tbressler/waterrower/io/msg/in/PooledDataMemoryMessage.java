@@ -0,0 +1,128 @@
+package de.tbressler.waterrower.io.msg.in;
+
+import de.tbressler.waterrower.io.msg.Memory;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.ReferenceCounted;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import static de.tbressler.waterrower.io.msg.Memory.SINGLE_MEMORY;
+import static de.tbressler.waterrower.io.msg.Memory.TRIPLE_MEMORY;
+
+/**
+ * A reference counted DataMemoryMessage, which is reused by the DataMemoryMessagePool for the
+ * same memory type and location. The message returns to the pool if the reference count drops
+ * to 0.
+ *
+ * Only pooled messages have mutable values, the values are set each time the message is taken
+ * from the pool.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+class PooledDataMemoryMessage extends DataMemoryMessage implements ReferenceCounted {
+
+    /* Updater for the reference count. */
+    private static final AtomicIntegerFieldUpdater<PooledDataMemoryMessage> REF_CNT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(PooledDataMemoryMessage.class, "refCnt");
+
+
+    /* The reference count, 0 if the message is free to be reused. */
+    private volatile int refCnt = 0;
+
+    /* The single byte of data Y1 (0 .. 255) from memory location. */
+    private int value1 = -1;
+
+    /* The single byte of data Y2 (0 .. 255) from memory location, -1 if not used. */
+    private int value2 = -1;
+
+    /* The single byte of data Y3 (0 .. 255) from memory location, -1 if not used. */
+    private int value3 = -1;
+
+
+    /**
+     * A reference counted DataMemoryMessage for the given memory type and location.
+     *
+     * @param memory Single, double or triple memory locations, must not be null.
+     * @param location The memory location (0 .. 4095).
+     */
+    PooledDataMemoryMessage(Memory memory, int location) {
+        super(memory, location);
+    }
+
+
+    /* Returns true if the message was free and is now in use. */
+    boolean acquire() {
+        return REF_CNT_UPDATER.compareAndSet(this, 0, 1);
+    }
+
+    /* Sets the values of the message. Values which are not used by the memory type must be -1. */
+    void setValues(int value3, int value2, int value1) {
+        this.value3 = (getMemory() == TRIPLE_MEMORY) ? assertValueRange(value3) : -1;
+        this.value2 = (getMemory() != SINGLE_MEMORY) ? assertValueRange(value2) : -1;
+        this.value1 = assertValueRange(value1);
+    }
+
+
+    @Override
+    public int getValue3() {
+        return value3;
+    }
+
+    @Override
+    public int getValue2() {
+        return value2;
+    }
+
+    @Override
+    public int getValue1() {
+        return value1;
+    }
+
+
+    @Override
+    public int refCnt() {
+        return refCnt;
+    }
+
+    @Override
+    public ReferenceCounted retain() {
+        return retain(1);
+    }
+
+    @Override
+    public ReferenceCounted retain(int increment) {
+        int oldRefCnt = REF_CNT_UPDATER.getAndAdd(this, increment);
+        if (oldRefCnt <= 0) {
+            REF_CNT_UPDATER.getAndAdd(this, -increment);
+            throw new IllegalReferenceCountException(oldRefCnt, increment);
+        }
+        return this;
+    }
+
+    @Override
+    public ReferenceCounted touch() {
+        return this;
+    }
+
+    @Override
+    public ReferenceCounted touch(Object hint) {
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return release(1);
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        int oldRefCnt = REF_CNT_UPDATER.getAndAdd(this, -decrement);
+        if (oldRefCnt < decrement) {
+            REF_CNT_UPDATER.getAndAdd(this, decrement);
+            throw new IllegalReferenceCountException(oldRefCnt, -decrement);
+        }
+        return (oldRefCnt == decrement);
+    }
+
+}
@@ -3,6 +3,7 @@ package de.tbressler.waterrower.io.msg.in;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.PULSE_COUNT;
 
 /**
  * Pulse Count in the last 25mS (S4/S5 -> PC).
@@ -40,6 +41,7 @@ public class PulseCountMessage extends AbstractMessage {
      * @param pulsesCounted The number of pulse’s counted during the last 25mS period.
      */
     public PulseCountMessage(int pulsesCounted) {
+        super(PULSE_COUNT);
         this.pulsesCounted = pulsesCounted;
     }
 
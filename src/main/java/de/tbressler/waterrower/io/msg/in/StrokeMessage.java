@@ -4,6 +4,7 @@ import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.model.StrokeType;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.STROKE;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -42,6 +43,7 @@ public class StrokeMessage extends AbstractMessage {
      * @param stroke The type of stroke, must not be null.
      */
     public StrokeMessage(StrokeType stroke) {
+        super(STROKE);
         this.strokeType = requireNonNull(stroke);
     }
 
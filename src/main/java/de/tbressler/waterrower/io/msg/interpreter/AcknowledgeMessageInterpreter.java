@@ -3,6 +3,7 @@ package de.tbressler.waterrower.io.msg.interpreter;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.AbstractMessageInterpreter;
 import de.tbressler.waterrower.io.msg.in.AcknowledgeMessage;
+import io.netty.buffer.ByteBuf;
 
 /**
  * Interpreter for:
@@ -34,12 +35,12 @@ public class AcknowledgeMessageInterpreter extends AbstractMessageInterpreter<Ac
     }
 
     @Override
-    public AcknowledgeMessage decode(String msg) {
+    public AcknowledgeMessage decode(ByteBuf buffer, int index, int length) {
         return ACKNOWLEDGE_MESSAGE;
     }
 
     @Override
-    public String encode(AcknowledgeMessage msg) {
+    public boolean encode(AcknowledgeMessage msg, ByteBuf buffer) {
         throw new IllegalStateException("This type of message can not be send to the WaterRower S4/S5 monitor.");
     }
 
@@ -4,9 +4,11 @@ import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.AbstractMessageInterpreter;
 import de.tbressler.waterrower.io.msg.out.ConfigureWorkoutMessage;
 import de.tbressler.waterrower.log.Log;
+import io.netty.buffer.ByteBuf;
 
 import static de.tbressler.waterrower.log.Log.SERIAL;
-import static de.tbressler.waterrower.utils.MessageUtils.intToAch;
+import static de.tbressler.waterrower.utils.MessageUtils.writeAch;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 
 /**
  * Interpreter for: ConfigureWorkoutMessage
@@ -16,6 +18,17 @@ import static de.tbressler.waterrower.utils.MessageUtils.intToAch;
  */
 public class ConfigureWorkoutMessageInterpreter extends AbstractMessageInterpreter<ConfigureWorkoutMessage> {
 
+    /* The message identifiers and units. */
+    private static final byte[] WS = "WS".getBytes(US_ASCII);
+    private static final byte[] WI = "WI".getBytes(US_ASCII);
+    private static final byte[] WIN = "WIN".getBytes(US_ASCII);
+    private static final byte[] I1 = "I1".getBytes(US_ASCII);
+    private static final byte[] I2 = "I2".getBytes(US_ASCII);
+    private static final byte[] I3 = "I3".getBytes(US_ASCII);
+    private static final byte[] I4 = "I4".getBytes(US_ASCII);
+    private static final byte[] U = "U".getBytes(US_ASCII);
+
+
     @Override
     public String getMessageIdentifier() {
         return null;
@@ -27,53 +40,57 @@ public class ConfigureWorkoutMessageInterpreter extends AbstractMessageInterpret
     }
 
     @Override
-    public ConfigureWorkoutMessage decode(String msg) {
+    public ConfigureWorkoutMessage decode(ByteBuf buffer, int index, int length) {
         throw new IllegalStateException("This type of message should not be send by WaterRower S4/S5 monitor to the PC.");
     }
 
     @Override
-    public String encode(ConfigureWorkoutMessage msg) {
+    public boolean encode(ConfigureWorkoutMessage msg, ByteBuf buffer) {
 
         switch(msg.getMessageType()) {
             case SINGLE_WORKOUT:
-                return addUnitAndDistance(msg, "WS");
+                writeUnitAndDistance(msg, WS, buffer);
+                return true;
             case START_INTERVAL_WORKOUT:
-                return addUnitAndDistance(msg, "WI");
+                writeUnitAndDistance(msg, WI, buffer);
+                return true;
             case ADD_INTERVAL_WORKOUT:
             case END_INTERVAL_WORKOUT:
-                return "WIN" + intToAch(msg.getRestInterval(), 4) + intToAch(msg.getDistance(), 4);
+                buffer.writeBytes(WIN);
+                writeAch(buffer, msg.getRestInterval(), 4);
+                writeAch(buffer, msg.getDistance(), 4);
+                return true;
         }
 
         Log.warn(SERIAL, "Message couldn't be encoded!\n" +
-                " Message was: " + msg);
+                " Message was: {}", msg);
 
-        return null;
+        return false;
     }
 
-    /* Add unit and distance to the given string. */
-    private String addUnitAndDistance(ConfigureWorkoutMessage msg, String output) {
+    /* Writes the identifier, unit and distance to the given buffer. */
+    private void writeUnitAndDistance(ConfigureWorkoutMessage msg, byte[] identifier, ByteBuf buffer) {
+        buffer.writeBytes(identifier);
 
         switch (msg.getWorkoutUnit()) {
             case METERS:
-                output += "I1";
+                buffer.writeBytes(I1);
                 break;
             case MILES:
-                output += "I2";
+                buffer.writeBytes(I2);
                 break;
             case KMS:
-                output += "I3";
+                buffer.writeBytes(I3);
                 break;
             case STROKES:
-                output += "I4";
+                buffer.writeBytes(I4);
                 break;
             case SECONDS:
-                output += "U";
+                buffer.writeBytes(U);
                 break;
         }
 
-        output += intToAch(msg.getDistance(), 4);
-
-        return output;
+        writeAch(buffer, msg.getDistance(), 4);
     }
 
 }
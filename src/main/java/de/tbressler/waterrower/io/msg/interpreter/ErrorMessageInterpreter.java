@@ -3,6 +3,7 @@ package de.tbressler.waterrower.io.msg.interpreter;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.AbstractMessageInterpreter;
 import de.tbressler.waterrower.io.msg.in.ErrorMessage;
+import io.netty.buffer.ByteBuf;
 
 /**
  * Interpreter for:
@@ -34,12 +35,12 @@ public class ErrorMessageInterpreter extends AbstractMessageInterpreter<ErrorMes
     }
 
     @Override
-    public ErrorMessage decode(String msg) {
+    public ErrorMessage decode(ByteBuf buffer, int index, int length) {
         return ERROR_MESSAGE;
     }
 
     @Override
-    public String encode(ErrorMessage msg) {
+    public boolean encode(ErrorMessage msg, ByteBuf buffer) {
         throw new IllegalStateException("This type of message can not be send to the WaterRower.");
     }
 
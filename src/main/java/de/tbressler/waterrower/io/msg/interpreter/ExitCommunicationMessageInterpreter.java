@@ -3,6 +3,9 @@ package de.tbressler.waterrower.io.msg.interpreter;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.AbstractMessageInterpreter;
 import de.tbressler.waterrower.io.msg.out.ExitCommunicationMessage;
+import io.netty.buffer.ByteBuf;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
 
 /**
  * Interpreter for:
@@ -19,6 +22,10 @@ import de.tbressler.waterrower.io.msg.out.ExitCommunicationMessage;
  */
 public class ExitCommunicationMessageInterpreter extends AbstractMessageInterpreter<ExitCommunicationMessage> {
 
+    /* The encoded message. */
+    private static final byte[] EXIT = "EXIT".getBytes(US_ASCII);
+
+
     @Override
     public String getMessageIdentifier() {
         return null;
@@ -30,13 +37,14 @@ public class ExitCommunicationMessageInterpreter extends AbstractMessageInterpre
     }
 
     @Override
-    public ExitCommunicationMessage decode(String msg) {
+    public ExitCommunicationMessage decode(ByteBuf buffer, int index, int length) {
         throw new IllegalStateException("This type of message should not be send by WaterRower S4/S5 monitor to the PC.");
     }
 
     @Override
-    public String encode(ExitCommunicationMessage msg) {
-        return "EXIT";
+    public boolean encode(ExitCommunicationMessage msg, ByteBuf buffer) {
+        buffer.writeBytes(EXIT);
+        return true;
     }
 
 }
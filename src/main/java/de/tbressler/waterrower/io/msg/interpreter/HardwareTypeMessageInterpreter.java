@@ -3,6 +3,9 @@ package de.tbressler.waterrower.io.msg.interpreter;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.AbstractMessageInterpreter;
 import de.tbressler.waterrower.io.msg.in.HardwareTypeMessage;
+import io.netty.buffer.ByteBuf;
+
+import static de.tbressler.waterrower.io.utils.ByteUtils.startsWith;
 
 /**
  * Interpreter for:
@@ -20,6 +23,13 @@ import de.tbressler.waterrower.io.msg.in.HardwareTypeMessage;
  */
 public class HardwareTypeMessageInterpreter extends AbstractMessageInterpreter<HardwareTypeMessage> {
 
+    /* Single instance of a hardware type message for a WaterRower. */
+    private final static HardwareTypeMessage WATER_ROWER_MESSAGE = new HardwareTypeMessage(true);
+
+    /* Single instance of a hardware type message for other devices. */
+    private final static HardwareTypeMessage OTHER_DEVICE_MESSAGE = new HardwareTypeMessage(false);
+
+
     @Override
     public String getMessageIdentifier() {
         return "_";
@@ -31,13 +41,13 @@ public class HardwareTypeMessageInterpreter extends AbstractMessageInterpreter<H
     }
 
     @Override
-    public HardwareTypeMessage decode(String msg) {
-        boolean isWaterRower = msg.startsWith("_WR_");
-        return new HardwareTypeMessage(isWaterRower);
+    public HardwareTypeMessage decode(ByteBuf buffer, int index, int length) {
+        boolean isWaterRower = startsWith(buffer, index, length, "_WR_");
+        return isWaterRower ? WATER_ROWER_MESSAGE : OTHER_DEVICE_MESSAGE;
     }
 
     @Override
-    public String encode(HardwareTypeMessage msg) {
+    public boolean encode(HardwareTypeMessage msg, ByteBuf buffer) {
         throw new IllegalStateException("This type of message can not be send to the WaterRower S4/S5 monitor.");
     }
 
@@ -4,17 +4,22 @@ import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.AbstractMessageInterpreter;
 import de.tbressler.waterrower.io.msg.InformationRequestMessage;
 import de.tbressler.waterrower.io.msg.in.DataMemoryMessage;
+import de.tbressler.waterrower.io.msg.in.DataMemoryMessagePool;
 import de.tbressler.waterrower.io.msg.in.ModelInformationMessage;
 import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
 import de.tbressler.waterrower.io.msg.out.RequestModelInformationMessage;
 import de.tbressler.waterrower.log.Log;
 import de.tbressler.waterrower.model.ModelInformation;
 import de.tbressler.waterrower.model.MonitorType;
+import io.netty.buffer.ByteBuf;
 
+import static de.tbressler.waterrower.io.utils.ByteUtils.startsWith;
 import static de.tbressler.waterrower.log.Log.SERIAL;
 import static de.tbressler.waterrower.model.MonitorType.*;
 import static de.tbressler.waterrower.utils.MessageUtils.achToInt;
-import static de.tbressler.waterrower.utils.MessageUtils.intToAch;
+import static de.tbressler.waterrower.utils.MessageUtils.writeAch;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Objects.requireNonNull;
 
 /**
  * Interpreter for:
@@ -77,6 +82,37 @@ import static de.tbressler.waterrower.utils.MessageUtils.intToAch;
  */
 public class InformationRequestMessageInterpreter extends AbstractMessageInterpreter<InformationRequestMessage> {
 
+    /* The encoded request for model information. */
+    private static final byte[] IV = "IV?".getBytes(US_ASCII);
+
+    /* The identifiers of the read memory requests. */
+    private static final byte[] IRS = "IRS".getBytes(US_ASCII);
+    private static final byte[] IRD = "IRD".getBytes(US_ASCII);
+    private static final byte[] IRT = "IRT".getBytes(US_ASCII);
+
+
+    /* The pool for data memory messages or null, if messages should not be recycled. */
+    private final DataMemoryMessagePool pool;
+
+
+    /**
+     * Interpreter for information request messages. A new message is created for every decoded
+     * message.
+     */
+    public InformationRequestMessageInterpreter() {
+        this.pool = null;
+    }
+
+    /**
+     * Interpreter for information request messages. Data memory messages which are decoded
+     * from buffers are taken from the given pool.
+     *
+     * @param pool The pool for data memory messages, must not be null.
+     */
+    public InformationRequestMessageInterpreter(DataMemoryMessagePool pool) {
+        this.pool = requireNonNull(pool);
+    }
+
     @Override
     public String getMessageIdentifier() {
         return "I";
@@ -87,104 +123,113 @@ public class InformationRequestMessageInterpreter extends AbstractMessageInterpr
         return (msg instanceof InformationRequestMessage);
     }
 
+    /* Returns the monitor type for the given model char. */
+    private MonitorType toMonitorType(int model) {
+        switch (model) {
+            case '4':
+                return WATER_ROWER_S4;
+            case '5':
+                return WATER_ROWER_S5;
+        }
+        return UNKNOWN_MONITOR_TYPE;
+    }
+
     @Override
-    public InformationRequestMessage decode(String msg) {
+    public InformationRequestMessage decode(ByteBuf buffer, int index, int length) {
 
-        if (msg.startsWith("IV")) {
+        if (startsWith(buffer, index, length, "IV") && (length >= 7)) {
 
             // Parse current model information:
 
-            MonitorType monitorType = parseMonitorType(msg);
-            String firmwareVersion = msg.substring(3, 5) + "." + msg.substring(5, 7);
+            MonitorType monitorType = toMonitorType(buffer.getByte(index + 2));
+            String firmwareVersion = buffer.toString(index + 3, 2, US_ASCII) + "." + buffer.toString(index + 5, 2, US_ASCII);
 
             return new ModelInformationMessage(new ModelInformation(monitorType, firmwareVersion));
 
-        } else if (msg.startsWith("IDS")) {
+        } else if (startsWith(buffer, index, length, "IDS") && (length >= 8)) {
 
             // Parse value from single memory location:
 
-            int location = achToInt(msg.substring(3, 6));
-            int value1 = achToInt(msg.substring(6, 8));
+            int location = achToInt(buffer, index + 3, 3);
+            int value1 = achToInt(buffer, index + 6, 2);
 
-            return new DataMemoryMessage(location, value1);
+            if ((location < 0) || (value1 < 0))
+                return null;
+
+            return (pool == null) ? new DataMemoryMessage(location, value1) : pool.acquire(location, value1);
 
-        } else if (msg.startsWith("IDD")) {
+        } else if (startsWith(buffer, index, length, "IDD") && (length >= 10)) {
 
             // Parse values from double memory locations:
 
-            int location = achToInt(msg.substring(3, 6));
-            int value2 = achToInt(msg.substring(6, 8));
-            int value1 = achToInt(msg.substring(8, 10));
+            int location = achToInt(buffer, index + 3, 3);
+            int value2 = achToInt(buffer, index + 6, 2);
+            int value1 = achToInt(buffer, index + 8, 2);
+
+            if ((location < 0) || (value2 < 0) || (value1 < 0))
+                return null;
 
-            return new DataMemoryMessage(location, value2, value1);
+            return (pool == null) ? new DataMemoryMessage(location, value2, value1) : pool.acquire(location, value2, value1);
 
-        } else if (msg.startsWith("IDT")) {
+        } else if (startsWith(buffer, index, length, "IDT") && (length >= 12)) {
 
             // Parse values from triple memory locations:
 
-            int location = achToInt(msg.substring(3, 6));
-            int value3 = achToInt(msg.substring(6, 8));
-            int value2 = achToInt(msg.substring(8, 10));
-            int value1 = achToInt(msg.substring(10, 12));
+            int location = achToInt(buffer, index + 3, 3);
+            int value3 = achToInt(buffer, index + 6, 2);
+            int value2 = achToInt(buffer, index + 8, 2);
+            int value1 = achToInt(buffer, index + 10, 2);
 
-            return new DataMemoryMessage(location, value3, value2, value1);
+            if ((location < 0) || (value3 < 0) || (value2 < 0) || (value1 < 0))
+                return null;
+
+            return (pool == null) ? new DataMemoryMessage(location, value3, value2, value1) : pool.acquire(location, value3, value2, value1);
         }
 
         Log.warn(SERIAL, "Message couldn't be decoded!\n" +
-                " Message was: >" + msg + "<");
+                " Message was: >" + buffer.toString(index, length, US_ASCII) + "<");
 
         return null;
     }
 
-    /* Parses and returns the monitor type from the given message. */
-    private MonitorType parseMonitorType(String payload) {
-        switch (payload.charAt(2)) {
-            case '4':
-                return WATER_ROWER_S4;
-            case '5':
-                return WATER_ROWER_S5;
-        }
-        return UNKNOWN_MONITOR_TYPE;
-    }
-
     @Override
-    public String encode(InformationRequestMessage msg) {
+    public boolean encode(InformationRequestMessage msg, ByteBuf buffer) {
 
         if (msg instanceof RequestModelInformationMessage) {
-            return "IV?";
+            buffer.writeBytes(IV);
+            return true;
         } else if (msg instanceof ReadMemoryMessage) {
-            return encodeReadMemoryMessage((ReadMemoryMessage) msg);
+            return encodeReadMemoryMessage((ReadMemoryMessage) msg, buffer);
         }
 
         Log.warn(SERIAL, "Message couldn't be encoded!\n" +
-                " Message was: " + msg);
+                " Message was: {}", msg);
 
-        return null;
+        return false;
     }
 
-    /* Encodes messages of type ReadMemoryMessage. */
-    private String encodeReadMemoryMessage(ReadMemoryMessage msg) {
-        String result = "IR";
+    /* Writes the read memory message to the buffer. */
+    private boolean encodeReadMemoryMessage(ReadMemoryMessage msg, ByteBuf buffer) {
 
         switch (msg.getMemory()) {
             case SINGLE_MEMORY:
-                result += "S";
+                buffer.writeBytes(IRS);
                 break;
             case DOUBLE_MEMORY:
-                result += "D";
+                buffer.writeBytes(IRD);
                 break;
             case TRIPLE_MEMORY:
-                result += "T";
+                buffer.writeBytes(IRT);
                 break;
             default:
                 Log.warn(SERIAL, "Message contains invalid values!\n" +
-                        " Message was: "+msg.toString());
-                return null;
+                        " Message was: {}", msg);
+                return false;
         }
 
-        result += intToAch(msg.getLocation(), 3);
+        writeAch(buffer, msg.getLocation(), 3);
 
-        return result;
+        return true;
     }
 
 }
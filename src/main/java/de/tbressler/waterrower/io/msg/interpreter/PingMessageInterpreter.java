@@ -3,6 +3,7 @@ package de.tbressler.waterrower.io.msg.interpreter;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.AbstractMessageInterpreter;
 import de.tbressler.waterrower.io.msg.in.PingMessage;
+import io.netty.buffer.ByteBuf;
 
 /**
  * Interpreter for:
@@ -34,12 +35,12 @@ public class PingMessageInterpreter extends AbstractMessageInterpreter<PingMessa
     }
 
     @Override
-    public PingMessage decode(String msg) {
+    public PingMessage decode(ByteBuf buffer, int index, int length) {
         return PING_MESSAGE;
     }
 
     @Override
-    public String encode(PingMessage msg) {
+    public boolean encode(PingMessage msg, ByteBuf buffer) {
         throw new IllegalStateException("This type of message can not be send to the WaterRower S4/S5 monitor.");
     }
 
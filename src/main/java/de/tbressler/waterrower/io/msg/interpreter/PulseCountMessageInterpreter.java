@@ -3,7 +3,7 @@ package de.tbressler.waterrower.io.msg.interpreter;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.AbstractMessageInterpreter;
 import de.tbressler.waterrower.io.msg.in.PulseCountMessage;
-import de.tbressler.waterrower.log.Log;
+import io.netty.buffer.ByteBuf;
 
 import static de.tbressler.waterrower.utils.MessageUtils.achToInt;
 
@@ -31,6 +31,15 @@ import static de.tbressler.waterrower.utils.MessageUtils.achToInt;
  */
 public class PulseCountMessageInterpreter extends AbstractMessageInterpreter<PulseCountMessage> {
 
+    /* Single instances of the pulse count messages (for 0x00 .. 0xFF pulses). */
+    private final static PulseCountMessage[] PULSE_COUNT_MESSAGES = new PulseCountMessage[256];
+
+    static {
+        for (int i = 0; i < PULSE_COUNT_MESSAGES.length; i++)
+            PULSE_COUNT_MESSAGES[i] = new PulseCountMessage(i);
+    }
+
+
     @Override
     public String getMessageIdentifier() {
         return "P";
@@ -42,29 +51,20 @@ public class PulseCountMessageInterpreter extends AbstractMessageInterpreter<Pul
     }
 
     @Override
-    public PulseCountMessage decode(String msg) {
+    public PulseCountMessage decode(ByteBuf buffer, int index, int length) {
 
-        // Workaround: Discard ping messages, because
-        // they also start with a 'P'.
-        if (msg.startsWith("PING"))
+        if (length < 3)
             return null;
 
-        if (msg.length() < 3)
+        int pulsesCount = achToInt(buffer, index + 1, 2);
+        if (pulsesCount < 0)
             return null;
 
-        try {
-
-            String pulsesCount = msg.substring(1, 3);
-            return new PulseCountMessage(achToInt(pulsesCount));
-
-        } catch (NumberFormatException e) {
-            Log.error("Couldn't parse ACH value from message!", e);
-            return null;
-        }
+        return PULSE_COUNT_MESSAGES[pulsesCount];
     }
 
     @Override
-    public String encode(PulseCountMessage msg) {
+    public boolean encode(PulseCountMessage msg, ByteBuf buffer) {
         throw new IllegalStateException("This type of message can not be send to the WaterRower S4/S5 monitor.");
     }
 
@@ -3,6 +3,9 @@ package de.tbressler.waterrower.io.msg.interpreter;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.AbstractMessageInterpreter;
 import de.tbressler.waterrower.io.msg.out.ResetMessage;
+import io.netty.buffer.ByteBuf;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
 
 /**
  * Interpreter for:
@@ -20,6 +23,10 @@ import de.tbressler.waterrower.io.msg.out.ResetMessage;
  */
 public class ResetMessageInterpreter extends AbstractMessageInterpreter<ResetMessage> {
 
+    /* The encoded message. */
+    private static final byte[] RESET = "RESET".getBytes(US_ASCII);
+
+
     @Override
     public String getMessageIdentifier() {
         return null;
@@ -31,13 +38,14 @@ public class ResetMessageInterpreter extends AbstractMessageInterpreter<ResetMes
     }
 
     @Override
-    public ResetMessage decode(String msg) {
+    public ResetMessage decode(ByteBuf buffer, int index, int length) {
         throw new IllegalStateException("This type of message should not be send by WaterRower S4/S5 monitor to the PC.");
     }
 
     @Override
-    public String encode(ResetMessage msg) {
-        return "RESET";
+    public boolean encode(ResetMessage msg, ByteBuf buffer) {
+        buffer.writeBytes(RESET);
+        return true;
     }
 
 }
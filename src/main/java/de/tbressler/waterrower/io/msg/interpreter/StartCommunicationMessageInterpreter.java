@@ -3,6 +3,9 @@ package de.tbressler.waterrower.io.msg.interpreter;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.AbstractMessageInterpreter;
 import de.tbressler.waterrower.io.msg.out.StartCommunicationMessage;
+import io.netty.buffer.ByteBuf;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
 
 /**
  * Interpreter for:
@@ -19,6 +22,10 @@ import de.tbressler.waterrower.io.msg.out.StartCommunicationMessage;
  */
 public class StartCommunicationMessageInterpreter extends AbstractMessageInterpreter<StartCommunicationMessage> {
 
+    /* The encoded message. */
+    private static final byte[] USB = "USB".getBytes(US_ASCII);
+
+
     @Override
     public String getMessageIdentifier() {
         return null;
@@ -30,13 +37,14 @@ public class StartCommunicationMessageInterpreter extends AbstractMessageInterpr
     }
 
     @Override
-    public StartCommunicationMessage decode(String msg) {
+    public StartCommunicationMessage decode(ByteBuf buffer, int index, int length) {
         throw new IllegalStateException("This type of message should not be send by WaterRower S4/S5 monitor to the PC.");
     }
 
     @Override
-    public String encode(StartCommunicationMessage msg) {
-        return "USB";
+    public boolean encode(StartCommunicationMessage msg, ByteBuf buffer) {
+        buffer.writeBytes(USB);
+        return true;
     }
 
 }
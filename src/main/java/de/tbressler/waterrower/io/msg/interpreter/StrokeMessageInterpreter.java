@@ -3,6 +3,7 @@ package de.tbressler.waterrower.io.msg.interpreter;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.AbstractMessageInterpreter;
 import de.tbressler.waterrower.io.msg.in.StrokeMessage;
+import io.netty.buffer.ByteBuf;
 
 import static de.tbressler.waterrower.model.StrokeType.END_OF_STROKE;
 import static de.tbressler.waterrower.model.StrokeType.START_OF_STROKE;
@@ -52,17 +53,20 @@ public class StrokeMessageInterpreter extends AbstractMessageInterpreter<StrokeM
     }
 
     @Override
-    public StrokeMessage decode(String msg) {
-        if (msg.startsWith("SS")) {
-            return START_OF_STROKE_MESSAGE;
-        } else if (msg.startsWith("SE")) {
-            return END_OF_STROKE_MESSAGE;
+    public StrokeMessage decode(ByteBuf buffer, int index, int length) {
+        if (length < 2)
+            return null;
+        switch (buffer.getByte(index + 1)) {
+            case 'S':
+                return START_OF_STROKE_MESSAGE;
+            case 'E':
+                return END_OF_STROKE_MESSAGE;
         }
         return null;
     }
 
     @Override
-    public String encode(StrokeMessage msg) {
+    public boolean encode(StrokeMessage msg, ByteBuf buffer) {
         throw new IllegalStateException("This type of message can not be send to the WaterRower S4/S5 monitor.");
     }
 
@@ -4,6 +4,7 @@ import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.workout.WorkoutUnit;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.CONFIGURE_WORKOUT;
 import static de.tbressler.waterrower.io.msg.out.ConfigureWorkoutMessage.MessageType.END_INTERVAL_WORKOUT;
 import static java.util.Objects.requireNonNull;
 
@@ -73,6 +74,7 @@ public class ConfigureWorkoutMessage extends AbstractMessage {
      * @param unit The unit of the workout, must not be null.
      */
     public ConfigureWorkoutMessage(MessageType messageType, int distance, WorkoutUnit unit) {
+        super(CONFIGURE_WORKOUT);
         this.messageType = requireNonNull(messageType);
         this.distance = checkDistance(messageType, distance, unit);
         this.unit = requireNonNull(unit);
@@ -94,6 +96,7 @@ public class ConfigureWorkoutMessage extends AbstractMessage {
      *                     Valid values are 0x0001 to 0x0E10 (and 0xFFFF for end interval workout).
      */
     public ConfigureWorkoutMessage(MessageType messageType, int distance, WorkoutUnit unit, int restInterval) {
+        super(CONFIGURE_WORKOUT);
         this.messageType = requireNonNull(messageType);
         this.distance = checkDistance(messageType, distance, unit);
         this.unit = requireNonNull(unit);
@@ -3,6 +3,7 @@ package de.tbressler.waterrower.io.msg.out;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.EXIT_COMMUNICATION;
 
 /**
  * Application is exiting (PC -> S4/S5).
@@ -17,6 +18,14 @@ import static com.google.common.base.MoreObjects.toStringHelper;
  */
 public class ExitCommunicationMessage extends AbstractMessage {
 
+    /**
+     * Application is exiting (PC -> S4/S5).
+     */
+    public ExitCommunicationMessage() {
+        super(EXIT_COMMUNICATION);
+    }
+
+
     @Override
     public String toString() {
         return toStringHelper(this).toString();
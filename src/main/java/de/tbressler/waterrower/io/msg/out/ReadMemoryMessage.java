@@ -2,8 +2,10 @@ package de.tbressler.waterrower.io.msg.out;
 
 import de.tbressler.waterrower.io.msg.InformationRequestMessage;
 import de.tbressler.waterrower.io.msg.Memory;
+import de.tbressler.waterrower.io.msg.MessageTypeId;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.READ_MEMORY;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -53,6 +55,18 @@ public class ReadMemoryMessage extends InformationRequestMessage {
  *                 Rower monitor.
      */
     public ReadMemoryMessage(Memory memory, int location) {
+        this(READ_MEMORY, memory, location);
+    }
+
+    /**
+     * A message for the given memory location, used by subclasses with a different type id.
+     *
+     * @param typeId The type id of the message, must not be null.
+     * @param memory Single, double or triple memory locations, must not be null.
+     * @param location The memory location (0 .. 4095).
+     */
+    protected ReadMemoryMessage(MessageTypeId typeId, Memory memory, int location) {
+        super(typeId);
         if ((location < 0) || (location > 4095))
             throw new IllegalArgumentException("The value for the memory location must be between 0 and 4095!");
         this.memory = requireNonNull(memory);
@@ -3,6 +3,7 @@ package de.tbressler.waterrower.io.msg.out;
 import de.tbressler.waterrower.io.msg.InformationRequestMessage;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.REQUEST_MODEL_INFORMATION;
 
 /**
  * Request Model Information (PC -> S4/S5).
@@ -16,6 +17,14 @@ import static com.google.common.base.MoreObjects.toStringHelper;
  */
 public class RequestModelInformationMessage extends InformationRequestMessage {
 
+    /**
+     * Request Model Information (PC -> S4/S5).
+     */
+    public RequestModelInformationMessage() {
+        super(REQUEST_MODEL_INFORMATION);
+    }
+
+
     @Override
     public String toString() {
         return toStringHelper(this).toString();
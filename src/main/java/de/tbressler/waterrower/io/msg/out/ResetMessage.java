@@ -3,6 +3,7 @@ package de.tbressler.waterrower.io.msg.out;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.RESET;
 
 /**
  * Request the rowing computer to reset (PC -> S4/S5).
@@ -18,6 +19,14 @@ import static com.google.common.base.MoreObjects.toStringHelper;
  */
 public class ResetMessage extends AbstractMessage {
 
+    /**
+     * Request the rowing computer to reset (PC -> S4/S5).
+     */
+    public ResetMessage() {
+        super(RESET);
+    }
+
+
     @Override
     public String toString() {
         return toStringHelper(this).toString();
@@ -3,6 +3,7 @@ package de.tbressler.waterrower.io.msg.out;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.START_COMMUNICATION;
 
 /**
  * Application starting communication's (PC -> S4/S5).
@@ -17,6 +18,14 @@ import static com.google.common.base.MoreObjects.toStringHelper;
  */
 public class StartCommunicationMessage extends AbstractMessage {
 
+    /**
+     * Application starting communication's (PC -> S4/S5).
+     */
+    public StartCommunicationMessage() {
+        super(START_COMMUNICATION);
+    }
+
+
     @Override
     public String toString() {
         return toStringHelper(this).toString();
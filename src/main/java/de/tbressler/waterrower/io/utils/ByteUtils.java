@@ -23,4 +23,25 @@ public class ByteUtils {
         return "ByteBuf[index=" + buffer.readerIndex() + ",bytes=" + buffer.readableBytes() + "]";
     }
 
+    /**
+     * Returns true if the bytes of the buffer at the given index start with the ASCII characters
+     * of the given prefix. The reader and writer index of the buffer are not modified.
+     *
+     * @param buffer The byte buffer, must not be null.
+     * @param index The index of the first byte in the buffer.
+     * @param length The number of bytes which are available at the index.
+     * @param prefix The prefix, must not be null.
+     * @return True if the bytes start with the prefix.
+     */
+    public static boolean startsWith(ByteBuf buffer, int index, int length, String prefix) {
+        int prefixLength = prefix.length();
+        if (prefixLength > length)
+            return false;
+        for (int i = 0; i < prefixLength; i++) {
+            if (buffer.getByte(index + i) != prefix.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
 }
@@ -3,6 +3,8 @@ package de.tbressler.waterrower.log;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.Marker;
 
+import java.util.function.Supplier;
+
 import static org.apache.logging.log4j.LogManager.getLogger;
 import static org.apache.logging.log4j.MarkerManager.getMarker;
 
@@ -29,16 +31,54 @@ public class Log {
     private Log() {}
 
 
+    /** Returns true if debug messages with the given marker are logged. */
+    public static boolean isDebugEnabled(Marker marker) {
+        return logger.isDebugEnabled(marker);
+    }
+
+
     /** Logs debug messages. */
     public static void debug(Marker marker, String msg) {
         logger.debug(marker, msg);
     }
 
+    /** Logs debug messages. The placeholder '{}' is replaced by the parameter, only if debug is enabled. */
+    public static void debug(Marker marker, String msg, Object p0) {
+        logger.debug(marker, msg, p0);
+    }
+
+    /** Logs debug messages. The placeholders '{}' are replaced by the parameters, only if debug is enabled. */
+    public static void debug(Marker marker, String msg, Object p0, Object p1) {
+        logger.debug(marker, msg, p0, p1);
+    }
+
+    /** Logs debug messages. The placeholders '{}' are replaced by the parameters, only if debug is enabled. */
+    public static void debug(Marker marker, String msg, Object p0, Object p1, Object p2) {
+        logger.debug(marker, msg, p0, p1, p2);
+    }
+
+    /** Logs debug messages. The message is only created by the supplier, if debug is enabled. */
+    public static void debug(Marker marker, Supplier<String> msg) {
+        if (logger.isDebugEnabled(marker))
+            logger.debug(marker, msg.get());
+    }
+
+
     /** Logs warning messages. */
     public static void warn(Marker marker, String msg) {
         logger.warn(marker, msg);
     }
 
+    /** Logs warning messages. The placeholder '{}' is replaced by the parameter, only if warnings are enabled. */
+    public static void warn(Marker marker, String msg, Object p0) {
+        logger.warn(marker, msg, p0);
+    }
+
+    /** Logs warning messages. The placeholders '{}' are replaced by the parameters, only if warnings are enabled. */
+    public static void warn(Marker marker, String msg, Object p0, Object p1) {
+        logger.warn(marker, msg, p0, p1);
+    }
+
     /** Logs error messages. */
     public static void error(String msg, Throwable t) {
         logger.error(msg, t);
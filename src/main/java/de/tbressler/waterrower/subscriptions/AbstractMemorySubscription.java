@@ -2,13 +2,19 @@ package de.tbressler.waterrower.subscriptions;
 
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.Memory;
+import de.tbressler.waterrower.io.msg.MessageTypeId;
 import de.tbressler.waterrower.io.msg.in.DataMemoryMessage;
 import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
 import de.tbressler.waterrower.log.Log;
 import de.tbressler.waterrower.model.MemoryLocation;
 
+import java.util.Set;
+
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.DATA_MEMORY;
 import static de.tbressler.waterrower.log.Log.LIBRARY;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.EnumSet.of;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -19,12 +25,18 @@ import static java.util.Objects.requireNonNull;
  */
 abstract class AbstractMemorySubscription implements ISubscription {
 
+    /* The types of the handled messages. */
+    private static final Set<MessageTypeId> MESSAGE_TYPES = unmodifiableSet(of(DATA_MEMORY));
+
     /* Single, double or triple memory. */
     private final Memory memory;
 
     /* The memory location. */
     private final MemoryLocation location;
 
+    /* The message to poll the memory location, which is immutable and therefore reused. */
+    private final ReadMemoryMessage pollMessage;
+
 
     /**
      * An abstract subscription for memory locations.
@@ -35,11 +47,12 @@ abstract class AbstractMemorySubscription implements ISubscription {
     public AbstractMemorySubscription(Memory memory, MemoryLocation location) {
         this.memory = requireNonNull(memory);
         this.location = requireNonNull(location);
+        this.pollMessage = new ReadMemoryMessage(memory, location.getLocation());
     }
 
     @Override
     public final AbstractMessage poll() {
-        return new ReadMemoryMessage(memory, location.getLocation());
+        return pollMessage;
     }
 
     @Override
@@ -60,6 +73,31 @@ abstract class AbstractMemorySubscription implements ISubscription {
         handle(dataMemoryMessage);
     }
 
+    @Override
+    public final Set<MessageTypeId> getMessageTypes() {
+        return MESSAGE_TYPES;
+    }
+
+    /**
+     * Returns the memory location of this subscription, which is used to route the received
+     * memory messages.
+     *
+     * @return The memory location (0 .. 4095).
+     */
+    final int getLocation() {
+        return location.getLocation();
+    }
+
+    /**
+     * Returns the memory type of this subscription, which is used to route the received memory
+     * messages.
+     *
+     * @return Single, double or triple memory.
+     */
+    final Memory getMemory() {
+        return memory;
+    }
+
     /**
      * Called if a memory message was received, which is for the location and memory type given.
      *
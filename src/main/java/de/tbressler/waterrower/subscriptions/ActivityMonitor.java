@@ -0,0 +1,172 @@
+package de.tbressler.waterrower.subscriptions;
+
+import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.in.DataMemoryMessage;
+import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.*;
+import static de.tbressler.waterrower.model.MemoryLocation.DISTANCE_HI;
+import static de.tbressler.waterrower.model.MemoryLocation.MS_DISTANCE_DEC;
+import static de.tbressler.waterrower.subscriptions.PollingProfile.*;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Detects the activity of the rower for the activity-adaptive polling.
+ *
+ * A stroke (SS/SE) or a change of the distance is an activity. The polling profile is ACTIVE
+ * after an activity, COOLING_DOWN if there was no activity for the cool down time and IDLE if
+ * there was no activity for the idle time. In the IDLE profile only the reads of the distance are
+ * polled, the strokes are sent by the monitor without polling. So a new session is detected with
+ * the first stroke.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class ActivityMonitor {
+
+    /* The first memory location of the distance. */
+    private static final int FIRST_DISTANCE_LOCATION = MS_DISTANCE_DEC.getLocation();
+
+    /* The last memory location of the distance. */
+    private static final int LAST_DISTANCE_LOCATION = DISTANCE_HI.getLocation();
+
+
+    /* The time without activity until the profile changes to COOLING_DOWN (in nanoseconds). */
+    private final long coolDownAfter;
+
+    /* The time without activity until the profile changes to IDLE (in nanoseconds). */
+    private final long idleAfter;
+
+    /* The clock, which returns the current time in nanoseconds. */
+    private final LongSupplier nanoClock;
+
+    /* The time of the last activity (in nanoseconds). */
+    private long lastActivity;
+
+    /* The last values of the distance, by memory type and location. */
+    private final Map<Integer, Integer> lastDistances = new HashMap<>();
+
+
+    /**
+     * Detects the activity of the rower for the activity-adaptive polling.
+     *
+     * @param coolDownAfter The time without activity until the polling cycles are stretched, must
+     *                      not be null. Recommended = 30 seconds.
+     * @param idleAfter The time without activity until only the activity indicators are polled,
+     *                  must not be null and not less than the cool down time.
+     *                  Recommended = 5 minutes.
+     */
+    public ActivityMonitor(Duration coolDownAfter, Duration idleAfter) {
+        this(coolDownAfter, idleAfter, System::nanoTime);
+    }
+
+    /**
+     * Detects the activity of the rower for the activity-adaptive polling.
+     *
+     * @param coolDownAfter The time without activity until the polling cycles are stretched, must
+     *                      not be null.
+     * @param idleAfter The time without activity until only the activity indicators are polled,
+     *                  must not be null and not less than the cool down time.
+     * @param nanoClock The clock, which returns the current time in nanoseconds. Must not be null.
+     */
+    ActivityMonitor(Duration coolDownAfter, Duration idleAfter, LongSupplier nanoClock) {
+        requireNonNull(coolDownAfter);
+        requireNonNull(idleAfter);
+        if (idleAfter.compareTo(coolDownAfter) < 0)
+            throw new IllegalArgumentException("The idle time must not be less than the cool down time!");
+        this.coolDownAfter = coolDownAfter.toNanos();
+        this.idleAfter = idleAfter.toNanos();
+        this.nanoClock = requireNonNull(nanoClock);
+        this.lastActivity = nanoClock.getAsLong();
+    }
+
+
+    /**
+     * Resets the monitor, e.g. after a restart of the polling. The profile is ACTIVE afterwards.
+     */
+    synchronized void reset() {
+        lastActivity = nanoClock.getAsLong();
+        lastDistances.clear();
+    }
+
+    /**
+     * Checks the received message for an activity of the rower.
+     *
+     * @param msg The received message, must not be null.
+     * @return True if an activity was detected and the profile was not ACTIVE before, so the
+     *         polling should return to the full rate.
+     */
+    synchronized boolean onMessageReceived(AbstractMessage msg) {
+        if (!isActivity(msg))
+            return false;
+
+        boolean wasActive = (getProfile() == ACTIVE);
+        lastActivity = nanoClock.getAsLong();
+        return !wasActive;
+    }
+
+    /* Returns true if the message is a stroke or a change of the distance. */
+    private boolean isActivity(AbstractMessage msg) {
+        switch (typeOf(msg)) {
+            case STROKE:
+                return true;
+            case DATA_MEMORY:
+                DataMemoryMessage dataMemoryMessage = (DataMemoryMessage) msg;
+                if (!isDistance(dataMemoryMessage))
+                    return false;
+                int value = ((dataMemoryMessage.getValue3() & 0xFF) << 16) | ((dataMemoryMessage.getValue2() & 0xFF) << 8) | dataMemoryMessage.getValue1();
+                Integer lastValue = lastDistances.put((dataMemoryMessage.getMemory().ordinal() << 16) | dataMemoryMessage.getLocation(), value);
+                return (lastValue != null) && (lastValue != value);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the current polling profile.
+     *
+     * @return The polling profile, never null.
+     */
+    public synchronized PollingProfile getProfile() {
+        long inactivity = nanoClock.getAsLong() - lastActivity;
+        if (inactivity >= idleAfter)
+            return IDLE;
+        if (inactivity >= coolDownAfter)
+            return COOLING_DOWN;
+        return ACTIVE;
+    }
+
+    /**
+     * Returns true if the poll message is needed to detect an activity (a read of the distance),
+     * so it is polled in the IDLE profile.
+     *
+     * @param msg The poll message, must not be null.
+     * @return True if the poll message is an activity indicator.
+     */
+    boolean isActivityIndicator(AbstractMessage msg) {
+        return (typeOf(msg) == READ_MEMORY) && isDistance((ReadMemoryMessage) msg);
+    }
+
+    /* Returns true if the memory locations of the read overlap the memory locations of the distance. */
+    private static boolean isDistance(ReadMemoryMessage read) {
+        int lastLocation = read.getLocation() + ReadPlanner.sizeOf(read.getMemory()) - 1;
+        return (read.getLocation() <= LAST_DISTANCE_LOCATION) && (lastLocation >= FIRST_DISTANCE_LOCATION);
+    }
+
+
+    @Override
+    public synchronized String toString() {
+        return toStringHelper(this)
+                .add("coolDownAfter", Duration.ofNanos(coolDownAfter))
+                .add("idleAfter", Duration.ofNanos(idleAfter))
+                .add("profile", getProfile())
+                .toString();
+    }
+
+}
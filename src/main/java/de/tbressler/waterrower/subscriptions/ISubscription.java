@@ -1,6 +1,10 @@
 package de.tbressler.waterrower.subscriptions;
 
 import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.MessageTypeId;
+
+import java.time.Duration;
+import java.util.Set;
 
 /**
  * An interface for subscriptions.
@@ -25,4 +29,27 @@ public interface ISubscription {
      */
     void handle(AbstractMessage msg);
 
+    /**
+     * Returns the types of the messages, which are handled by this subscription. Only messages
+     * of these types are passed to handle(AbstractMessage). Returns null (default) if all
+     * messages should be passed to the subscription.
+     *
+     * @return The types of the handled messages or null.
+     */
+    default Set<MessageTypeId> getMessageTypes() {
+        return null;
+    }
+
+    /**
+     * Returns the desired interval between two polls of this subscription, e.g. 1 minute for a
+     * value which changes rarely. Returns null (default) if the subscription should be polled in
+     * each polling cycle. The subscription is polled in the polling cycle nearest to the desired
+     * time, so the interval can't be shorter than the polling interval.
+     *
+     * @return The desired polling interval or null.
+     */
+    default Duration getPollingInterval() {
+        return null;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,207 @@
+package de.tbressler.waterrower.subscriptions;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps track of the outstanding reads of the pipelined polling.
+ *
+ * The pipeline has a window of a fixed size. A read of a memory location occupies a slot of the
+ * window until the response for the location was received or the read expired. For each location
+ * the round-trip time between request and response is measured (as exponential moving average)
+ * and the number of received samples per second is measured over periods of one second.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+class PollPipeline {
+
+    /* Nanoseconds per second. */
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /* The weight of a new round-trip time in the moving average. */
+    private static final double RTT_WEIGHT = 0.125;
+
+
+    /* The max. number of outstanding reads. */
+    private final int windowSize;
+
+    /* The clock, which returns the current time in nanoseconds. */
+    private final LongSupplier nanoClock;
+
+    /* The send time of the outstanding reads, by memory location. */
+    private final Map<Integer, Long> outstandingReads = new HashMap<>();
+
+    /* The average round-trip time in nanoseconds, by memory location. */
+    private final Map<Integer, Double> roundTripTimes = new HashMap<>();
+
+    /* The start of the current measurement period of the samples per second. */
+    private long periodStart;
+
+    /* The number of samples in the current measurement period. */
+    private long periodSamples;
+
+    /* The samples per second of the last measurement period. */
+    private double samplesPerSecond;
+
+
+    /**
+     * Keeps track of the outstanding reads of the pipelined polling.
+     *
+     * @param windowSize The max. number of outstanding reads, must be at least 1.
+     * @param nanoClock The clock, which returns the current time in nanoseconds. Must not be null.
+     */
+    PollPipeline(int windowSize, LongSupplier nanoClock) {
+        if (windowSize < 1)
+            throw new IllegalArgumentException("The window size must be at least 1!");
+        this.windowSize = windowSize;
+        this.nanoClock = requireNonNull(nanoClock);
+        this.periodStart = nanoClock.getAsLong();
+    }
+
+
+    /**
+     * Returns true if a slot of the window is free.
+     *
+     * @return True if a read can be sent.
+     */
+    synchronized boolean hasCapacity() {
+        return outstandingReads.size() < windowSize;
+    }
+
+    /**
+     * Returns true if a read of the given location is outstanding.
+     *
+     * @param location The memory location.
+     * @return True if a read is outstanding.
+     */
+    synchronized boolean isOutstanding(int location) {
+        return outstandingReads.containsKey(location);
+    }
+
+    /**
+     * Marks a read of the given location as sent, the read occupies a slot of the window.
+     *
+     * @param location The memory location.
+     */
+    synchronized void sent(int location) {
+        outstandingReads.put(location, nanoClock.getAsLong());
+    }
+
+    /**
+     * Marks the read of the given location as received, which frees the slot of the window and
+     * updates the round-trip time and the samples per second.
+     *
+     * @param location The memory location.
+     * @return True if a read of the location was outstanding.
+     */
+    synchronized boolean received(int location) {
+        Long sentAt = outstandingReads.remove(location);
+        if (sentAt == null)
+            return false;
+
+        long now = nanoClock.getAsLong();
+
+        double rtt = now - sentAt;
+        Double average = roundTripTimes.get(location);
+        roundTripTimes.put(location, (average == null) ? rtt : average + RTT_WEIGHT * (rtt - average));
+
+        periodSamples++;
+        long elapsed = now - periodStart;
+        if (elapsed >= NANOS_PER_SECOND) {
+            samplesPerSecond = (double) periodSamples * NANOS_PER_SECOND / elapsed;
+            periodSamples = 0;
+            periodStart = now;
+        }
+
+        return true;
+    }
+
+    /**
+     * Frees the slots of the reads, which are outstanding longer than the given timeout (e.g. if
+     * the response was lost).
+     *
+     * @param timeout The timeout, must not be null.
+     * @return The number of expired reads.
+     */
+    synchronized int expire(Duration timeout) {
+        long deadline = nanoClock.getAsLong() - timeout.toNanos();
+        int expired = 0;
+
+        Iterator<Long> sentTimes = outstandingReads.values().iterator();
+        while (sentTimes.hasNext()) {
+            if (sentTimes.next() - deadline <= 0) {
+                sentTimes.remove();
+                expired++;
+            }
+        }
+
+        return expired;
+    }
+
+    /**
+     * Frees all slots of the window, e.g. after a restart of the polling.
+     */
+    synchronized void clear() {
+        outstandingReads.clear();
+        periodSamples = 0;
+        periodStart = nanoClock.getAsLong();
+    }
+
+    /**
+     * Returns the number of outstanding reads.
+     *
+     * @return The number of outstanding reads.
+     */
+    synchronized int getOutstandingReads() {
+        return outstandingReads.size();
+    }
+
+    /**
+     * Returns the average round-trip time of the given location.
+     *
+     * @param location The memory location.
+     * @return The round-trip time or null, if no response was received yet.
+     */
+    synchronized Duration getRoundTripTime(int location) {
+        Double average = roundTripTimes.get(location);
+        if (average == null)
+            return null;
+        return Duration.ofNanos(average.longValue());
+    }
+
+    /**
+     * Returns the number of received samples per second, of the last measurement period.
+     *
+     * @return The samples per second.
+     */
+    synchronized double getSamplesPerSecond() {
+        return samplesPerSecond;
+    }
+
+    /**
+     * Returns the max. number of outstanding reads.
+     *
+     * @return The window size.
+     */
+    int getWindowSize() {
+        return windowSize;
+    }
+
+
+    @Override
+    public synchronized String toString() {
+        return toStringHelper(this)
+                .add("windowSize", windowSize)
+                .add("outstandingReads", outstandingReads.size())
+                .add("samplesPerSecond", samplesPerSecond)
+                .toString();
+    }
+
+}
@@ -0,0 +1,41 @@
+package de.tbressler.waterrower.subscriptions;
+
+/**
+ * The polling profiles of the activity-adaptive polling.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public enum PollingProfile {
+
+    /** The rower is active, the subscriptions are polled in each polling cycle. */
+    ACTIVE(1),
+
+    /** No activity for a while, the polling cycles are stretched. */
+    COOLING_DOWN(2),
+
+    /** No activity for a long time, only the activity indicators (e.g. the distance) are polled
+     *  in long polling cycles. */
+    IDLE(10);
+
+
+    /* The factor of the polling interval. */
+    private final int intervalFactor;
+
+
+    PollingProfile(int intervalFactor) {
+        this.intervalFactor = intervalFactor;
+    }
+
+
+    /**
+     * Returns the factor of the polling interval in this profile, e.g. 2 if only every second
+     * polling cycle is executed.
+     *
+     * @return The factor of the polling interval.
+     */
+    public int getIntervalFactor() {
+        return intervalFactor;
+    }
+
+}
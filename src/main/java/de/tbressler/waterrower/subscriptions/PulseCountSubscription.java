@@ -1,9 +1,15 @@
 package de.tbressler.waterrower.subscriptions;
 
 import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.MessageTypeId;
 import de.tbressler.waterrower.io.msg.in.PulseCountMessage;
 
+import java.util.Set;
+
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.PULSE_COUNT;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.EnumSet.of;
 
 /**
  * A subscription for pulse count events.
@@ -13,6 +19,9 @@ import static com.google.common.base.MoreObjects.toStringHelper;
  */
 public abstract class PulseCountSubscription implements ISubscription {
 
+    /* The types of the handled messages. */
+    private static final Set<MessageTypeId> MESSAGE_TYPES = unmodifiableSet(of(PULSE_COUNT));
+
     @Override
     public final AbstractMessage poll() {
         // No poll necessary! Pulse count will be send automatically by WaterRower monitor.
@@ -26,6 +35,11 @@ public abstract class PulseCountSubscription implements ISubscription {
         onPulseCount(((PulseCountMessage) msg).getPulsesCounted());
     }
 
+    @Override
+    public final Set<MessageTypeId> getMessageTypes() {
+        return MESSAGE_TYPES;
+    }
+
 
     /**
      * Will be called, when pulse count was updated. The value is representing the number of
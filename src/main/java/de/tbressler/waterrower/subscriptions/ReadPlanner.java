@@ -0,0 +1,371 @@
+package de.tbressler.waterrower.subscriptions;
+
+import de.tbressler.waterrower.io.msg.Memory;
+import de.tbressler.waterrower.io.msg.in.DataMemoryMessage;
+import de.tbressler.waterrower.io.msg.in.DataMemoryMessagePool;
+import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
+import io.netty.util.ReferenceCountUtil;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.Memory.*;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Plans the reads of the memory locations of a polling cycle.
+ *
+ * Many memory locations of the monitor are adjacent (e.g. DISTANCE_LOW and DISTANCE_HI or
+ * STROKES_CNT_LOW/HI, STROKE_AVERAGE and STROKE_PULL). The planner merges the reads of adjacent
+ * locations into the minimum number of single, double or triple reads (max. 3 bytes per read),
+ * where each requested read is covered completely by one planned read. The response of a merged
+ * read is split again into the responses of the requested reads.
+ *
+ * A merged read is kept until all of its responses were received or until it wasn't planned
+ * again within the expiry, so late responses (e.g. of the previous polling cycle) are split too.
+ * In recycling mode the split responses are taken from a pool and are only valid while they are
+ * handled (see DataMemoryMessagePool), otherwise new messages are created.
+ *
+ * The planner is used by the polling task only, the split of responses is thread-safe. Responses
+ * are split by a single thread (e.g. the event loop of the channel). The planning reuses its
+ * working arrays and the merged reads in each polling cycle.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+class ReadPlanner {
+
+    /* The max. number of bytes of a single read. */
+    private static final int MAX_READ_SIZE = 3;
+
+    /* The max. number of different reads, which are covered by a single read (single, double and
+     * triple read of the first location, single and double read of the second location and
+     * single read of the third location). */
+    private static final int MAX_COVERED_READS = 6;
+
+    /* The max. memory location of the monitor. */
+    private static final int MAX_LOCATION = 0xFFF;
+
+
+    /* The time after which a merged read without response is forgotten (in nanoseconds). */
+    private final long expiry;
+
+    /* The clock, which returns the current time in nanoseconds. */
+    private final LongSupplier nanoClock;
+
+    /* The merged reads, which are waiting for responses, by memory type and location. */
+    private final Map<Integer, MergedRead> mergedReads = new ConcurrentHashMap<>();
+
+    /* The pool for the split responses or null, if the responses are not recycled (only used by
+     * the thread which splits the responses). */
+    private volatile DataMemoryMessagePool pool;
+
+    /* The merged reads by memory type and location, which are created once and reused in each
+     * polling cycle. */
+    private final ReadMemoryMessage[] mergedReadMessages = new ReadMemoryMessage[Memory.values().length * (MAX_LOCATION + 1)];
+
+    /* The positions of the requested reads sorted by location, the flags of the requested reads
+     * which are covered by a planned read and the requested reads which are covered by the
+     * current planned read. The working arrays are reused in each polling cycle. */
+    private int[] positions = new int[0];
+    private boolean[] isPlanned = new boolean[0];
+    private final ReadMemoryMessage[] covered = new ReadMemoryMessage[MAX_COVERED_READS];
+
+
+    /**
+     * Plans the reads of the memory locations of a polling cycle.
+     *
+     * @param expiry The time after which a merged read without response is forgotten, must not
+     *               be null.
+     * @param nanoClock The clock, which returns the current time in nanoseconds. Must not be null.
+     */
+    ReadPlanner(Duration expiry, LongSupplier nanoClock) {
+        this.expiry = requireNonNull(expiry).toNanos();
+        this.nanoClock = requireNonNull(nanoClock);
+    }
+
+
+    /**
+     * Plans the given reads. The planned reads are written to the given array, in the same order
+     * as the requested reads: The read at the position of the first requested read of a planned
+     * read is the planned read, the positions of the other requested reads which are covered by
+     * the same planned read are null. If a planned read covers only a single location range, the
+     * requested read is planned as is.
+     *
+     * The working arrays are reused in each polling cycle, so the planning doesn't allocate
+     * memory, except for merged reads which differ from the previous plan.
+     *
+     * @param reads The requested reads, must not be null.
+     * @param count The number of requested reads in the array.
+     * @param planned The array for the planned reads, must not be null and must have at least
+     *                the length of the number of requested reads.
+     */
+    void plan(ReadMemoryMessage[] reads, int count, ReadMemoryMessage[] planned) {
+        requireNonNull(reads);
+        requireNonNull(planned);
+
+        if (positions.length < count) {
+            positions = new int[count];
+            isPlanned = new boolean[count];
+        }
+
+        // The positions of the requested reads, sorted by location (and size):
+        sortPositions(reads, count);
+
+        Arrays.fill(planned, 0, count, null);
+        Arrays.fill(isPlanned, 0, count, false);
+        long now = nanoClock.getAsLong();
+
+        for (int i = 0; i < count; i++) {
+            if (isPlanned[positions[i]])
+                continue;
+
+            // The leftmost location, which is not planned yet, starts the next planned read. All
+            // requested reads, which end within the max. read size, are covered by this read:
+            int start = reads[positions[i]].getLocation();
+            int end = start;
+            int first = positions[i];
+            int coveredCount = 0;
+
+            for (int j = i; (j < count) && (reads[positions[j]].getLocation() < start + MAX_READ_SIZE); j++) {
+                int position = positions[j];
+                ReadMemoryMessage read = reads[position];
+                int readEnd = endOf(read);
+                if (isPlanned[position] || (readEnd >= start + MAX_READ_SIZE))
+                    continue;
+
+                isPlanned[position] = true;
+                end = Math.max(end, readEnd);
+                first = Math.min(first, position);
+                if (!containsRead(covered, coveredCount, read))
+                    covered[coveredCount++] = read;
+            }
+
+            if (coveredCount == 1) {
+                planned[first] = reads[first];
+            } else {
+                ReadMemoryMessage read = mergedReadOf(memoryOf(end - start + 1), start);
+                planned[first] = read;
+                addMergedRead(keyOf(read), coveredCount, now);
+            }
+        }
+
+        // Forget the merged reads, which were lost (no response within the expiry):
+        if (!mergedReads.isEmpty())
+            mergedReads.values().removeIf(read -> (now - read.plannedAt > expiry));
+    }
+
+    /* Sorts the positions of the requested reads by location and size. An insertion sort is used,
+     * because there are only a few reads per polling cycle and it doesn't allocate memory. */
+    private void sortPositions(ReadMemoryMessage[] reads, int count) {
+        for (int i = 0; i < count; i++) {
+            int position = i;
+            int j = i - 1;
+            while ((j >= 0) && (compare(reads[positions[j]], reads[position]) > 0)) {
+                positions[j + 1] = positions[j];
+                j--;
+            }
+            positions[j + 1] = position;
+        }
+    }
+
+    /* Compares the reads by location and size. */
+    private static int compare(ReadMemoryMessage read1, ReadMemoryMessage read2) {
+        int result = Integer.compare(read1.getLocation(), read2.getLocation());
+        return (result != 0) ? result : Integer.compare(sizeOf(read1.getMemory()), sizeOf(read2.getMemory()));
+    }
+
+    /* Returns the merged read of the memory type and location, which is created once. */
+    private ReadMemoryMessage mergedReadOf(Memory memory, int location) {
+        int i = memory.ordinal() * (MAX_LOCATION + 1) + location;
+        ReadMemoryMessage read = mergedReadMessages[i];
+        if (read == null) {
+            read = new ReadMemoryMessage(memory, location);
+            mergedReadMessages[i] = read;
+        }
+        return read;
+    }
+
+    /* Adds the merged read, which covers the current covered reads. A merged read of the same
+     * memory type and location which is still waiting for a response is replaced. The number of
+     * outstanding responses is taken over, the array of covered reads too if they didn't change. */
+    private void addMergedRead(int key, int coveredCount, long now) {
+        MergedRead previous = mergedReads.get(key);
+        ReadMemoryMessage[] coveredReads = ((previous != null) && equalReads(previous.covered, covered, coveredCount)) ? previous.covered : Arrays.copyOf(covered, coveredCount);
+        mergedReads.compute(key, (k, current) -> new MergedRead(coveredReads, now, (current == null) ? 1 : current.outstanding.get() + 1));
+    }
+
+    /* Returns true if the array contains the same reads as the first reads of the other array. */
+    private static boolean equalReads(ReadMemoryMessage[] reads, ReadMemoryMessage[] others, int count) {
+        if (reads.length != count)
+            return false;
+        for (int i = 0; i < count; i++)
+            if (reads[i] != others[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Enables or disables the recycling of the split responses. The recycling is disabled by
+     * default.
+     *
+     * @param recycleMessages True if the split responses should be taken from a pool, then they
+     *                        are only valid until the receiver returns.
+     */
+    void setRecycleMessages(boolean recycleMessages) {
+        pool = recycleMessages ? new DataMemoryMessagePool() : null;
+    }
+
+    /**
+     * Splits the response of a merged read into the responses of the requested reads and passes
+     * them to the given receiver. In recycling mode the responses are only valid until the
+     * receiver returns.
+     *
+     * @param msg The response, must not be null.
+     * @param receiver The receiver of the split responses, must not be null.
+     * @return True if the response was split, false if the response is not for a merged read.
+     */
+    boolean split(DataMemoryMessage msg, Consumer<DataMemoryMessage> receiver) {
+        int key = keyOf(msg);
+        MergedRead mergedRead = mergedReads.get(key);
+        if (mergedRead == null)
+            return false;
+
+        // All responses were received, forget the merged read (unless it was planned again):
+        if (mergedRead.outstanding.decrementAndGet() <= 0)
+            mergedReads.remove(key, mergedRead);
+
+        DataMemoryMessagePool pool = this.pool;
+        ReadMemoryMessage[] covered = mergedRead.covered;
+        for (int i = 0; i < covered.length; i++) {
+            if (pool == null) {
+                receiver.accept(splitResponse(msg, covered[i]));
+                continue;
+            }
+            DataMemoryMessage response = splitResponse(pool, msg, covered[i]);
+            try {
+                receiver.accept(response);
+            } finally {
+                ReferenceCountUtil.release(response);
+            }
+        }
+
+        return true;
+    }
+
+    /* Returns a new response of the requested read, which is covered by the given response. */
+    private static DataMemoryMessage splitResponse(DataMemoryMessage msg, ReadMemoryMessage read) {
+        int offset = read.getLocation() - msg.getLocation();
+        switch (read.getMemory()) {
+            case SINGLE_MEMORY:
+                return new DataMemoryMessage(read.getLocation(), valueOf(msg, offset));
+            case DOUBLE_MEMORY:
+                return new DataMemoryMessage(read.getLocation(), valueOf(msg, offset + 1), valueOf(msg, offset));
+            default:
+                return new DataMemoryMessage(read.getLocation(), valueOf(msg, offset + 2), valueOf(msg, offset + 1), valueOf(msg, offset));
+        }
+    }
+
+    /* Returns a pooled response of the requested read, which is covered by the given response. */
+    private static DataMemoryMessage splitResponse(DataMemoryMessagePool pool, DataMemoryMessage msg, ReadMemoryMessage read) {
+        int offset = read.getLocation() - msg.getLocation();
+        switch (read.getMemory()) {
+            case SINGLE_MEMORY:
+                return pool.acquire(read.getLocation(), valueOf(msg, offset));
+            case DOUBLE_MEMORY:
+                return pool.acquire(read.getLocation(), valueOf(msg, offset + 1), valueOf(msg, offset));
+            default:
+                return pool.acquire(read.getLocation(), valueOf(msg, offset + 2), valueOf(msg, offset + 1), valueOf(msg, offset));
+        }
+    }
+
+    /**
+     * Forgets the merged reads, e.g. after a restart of the polling.
+     */
+    void clear() {
+        mergedReads.clear();
+    }
+
+
+    /* Returns the value of the byte at the given offset of the response, the first location is
+     * value 1. */
+    private static int valueOf(DataMemoryMessage msg, int offset) {
+        switch (offset) {
+            case 0: return msg.getValue1();
+            case 1: return msg.getValue2();
+            default: return msg.getValue3();
+        }
+    }
+
+    /* Returns true if the first reads of the array contain a read of the same memory type and
+     * location. */
+    private static boolean containsRead(ReadMemoryMessage[] reads, int count, ReadMemoryMessage read) {
+        for (int i = 0; i < count; i++)
+            if (keyOf(reads[i]) == keyOf(read))
+                return true;
+        return false;
+    }
+
+    /* Returns the key of the read, by memory type and location. */
+    private static int keyOf(ReadMemoryMessage read) {
+        return (read.getMemory().ordinal() << 16) | read.getLocation();
+    }
+
+    /* Returns the last location of the read. */
+    private static int endOf(ReadMemoryMessage read) {
+        return read.getLocation() + sizeOf(read.getMemory()) - 1;
+    }
+
+    /* Returns the number of bytes of the memory type. */
+    static int sizeOf(Memory memory) {
+        switch (memory) {
+            case TRIPLE_MEMORY: return 3;
+            case DOUBLE_MEMORY: return 2;
+            default: return 1;
+        }
+    }
+
+    /* Returns the memory type for the given number of bytes. */
+    private static Memory memoryOf(int size) {
+        switch (size) {
+            case 3: return TRIPLE_MEMORY;
+            case 2: return DOUBLE_MEMORY;
+            default: return SINGLE_MEMORY;
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("mergedReads", mergedReads.size())
+                .toString();
+    }
+
+
+    /* A merged read, which is waiting for responses. */
+    private static class MergedRead {
+
+        /* The requested reads, which are covered by the merged read. */
+        private final ReadMemoryMessage[] covered;
+
+        /* The time when the merged read was planned (in nanoseconds). */
+        private final long plannedAt;
+
+        /* The number of responses, which are outstanding. */
+        private final AtomicInteger outstanding;
+
+        private MergedRead(ReadMemoryMessage[] covered, long plannedAt, int outstanding) {
+            this.covered = covered;
+            this.plannedAt = plannedAt;
+            this.outstanding = new AtomicInteger(outstanding);
+        }
+
+    }
+
+}
@@ -1,10 +1,16 @@
 package de.tbressler.waterrower.subscriptions;
 
 import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.MessageTypeId;
 import de.tbressler.waterrower.io.msg.in.StrokeMessage;
 import de.tbressler.waterrower.model.StrokeType;
 
+import java.util.Set;
+
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.STROKE;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.EnumSet.of;
 
 /**
  * A subscription for stroke events.
@@ -20,6 +26,9 @@ import static com.google.common.base.MoreObjects.toStringHelper;
  */
 public abstract class StrokeSubscription implements ISubscription {
 
+    /* The types of the handled messages. */
+    private static final Set<MessageTypeId> MESSAGE_TYPES = unmodifiableSet(of(STROKE));
+
     @Override
     public final AbstractMessage poll() {
         // No poll necessary! Strokes will be send automatically by WaterRower monitor.
@@ -33,6 +42,11 @@ public abstract class StrokeSubscription implements ISubscription {
         onStroke(((StrokeMessage) msg).getStrokeType());
     }
 
+    @Override
+    public final Set<MessageTypeId> getMessageTypes() {
+        return MESSAGE_TYPES;
+    }
+
 
     /**
      * Will be called, when the rowing computer determined acceleration (start of stroke) or
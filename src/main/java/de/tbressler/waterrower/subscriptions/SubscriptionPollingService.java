@@ -2,34 +2,107 @@ package de.tbressler.waterrower.subscriptions;
 
 import de.tbressler.waterrower.io.IRxtxConnectionListener;
 import de.tbressler.waterrower.io.RxtxConnectionListener;
+import de.tbressler.waterrower.io.SerialLineBudget;
 import de.tbressler.waterrower.io.WaterRowerConnector;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.Memory;
+import de.tbressler.waterrower.io.msg.MessageTypeId;
+import de.tbressler.waterrower.io.msg.in.DataMemoryMessage;
+import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
 import de.tbressler.waterrower.log.Log;
 
 import java.io.IOException;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
-
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import static de.tbressler.waterrower.io.msg.MessageTypeId.DATA_MEMORY;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.READ_MEMORY;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.typeOf;
 import static de.tbressler.waterrower.log.Log.LIBRARY;
+import static de.tbressler.waterrower.subscriptions.PollingProfile.ACTIVE;
+import static de.tbressler.waterrower.subscriptions.PollingProfile.IDLE;
+import static java.time.Duration.ZERO;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * The subscription polling manager.
  *
+ * Optionally the outbound traffic is limited by the bandwidth budget of the serial line. If the
+ * budget is exhausted, the poll of a subscription is deferred to the next polling cycle, where
+ * deferred subscriptions are polled first. If a deferred subscription can't be polled in the next
+ * cycle either, the deferred poll is dropped (the subscription stays in the queue once).
+ *
+ * Received messages are routed to the subscriptions by their type. Memory messages are routed to
+ * the subscriptions of memory locations by their memory type and location, so the cost of the
+ * routing doesn't depend on the number of subscriptions.
+ *
+ * Subscriptions of the same memory location and memory type (e.g. a DistanceSubscription which
+ * is registered twice) are polled with a single read per polling cycle. The response is passed to
+ * all subscriptions of the location.
+ *
+ * The reads of adjacent memory locations (e.g. STROKES_CNT_LOW/HI and STROKE_AVERAGE) are merged
+ * into double or triple reads, so the same data is polled with fewer round-trips (see
+ * ReadPlanner). The response of a merged read is split into the responses of the subscriptions.
+ * The merging of reads can be disabled (see setReadMerging(...)).
+ *
+ * A subscription can declare a desired polling interval (e.g. 1 minute for the tank volume), then
+ * it is only polled in the polling cycle nearest to its due time. The due subscriptions are polled
+ * in the order of their polling interval, so subscriptions with high rates get the bandwidth first
+ * if the budget is exhausted.
+ *
+ * Optionally the polling adapts to the activity of the rower (see ActivityMonitor). While the
+ * rower is inactive, the polling cycles are stretched (COOLING_DOWN) and later only the activity
+ * indicators are polled in long cycles (IDLE). The first stroke returns to the full polling rate.
+ *
+ * Optionally the memory locations are polled with a pipeline instead of polling cycles. The
+ * pipeline keeps a window of outstanding reads and sends the next read as soon as a response was
+ * received, so the polling rate follows the round-trip time of the monitor instead of the polling
+ * interval. Reads, which are outstanding longer than the polling interval, expire. All other poll
+ * messages are still sent in the polling cycles.
+ *
  * @author Tobias Bressler
  * @version 1.0
  */
 public class SubscriptionPollingService {
 
+    /* The max. memory location of the monitor. */
+    private static final int MAX_LOCATION = 0xFFF;
+
+    /* The memory types. */
+    private static final Memory[] MEMORIES = Memory.values();
+
+    /* Orders the subscriptions by their polling interval, the shortest first. */
+    private static final Comparator<ISubscription> BY_POLLING_INTERVAL = Comparator.comparing(SubscriptionPollingService::getPollingInterval);
+
+
     /* The polling interval. */
     private final Duration interval;
 
-    /* List of subscriptions. */
-    private final List<ISubscription> subscriptions = new ArrayList<>();
+    /* The max. number of poll messages which are sent in a single batch (1 = no batching). */
+    private volatile int maxBatchSize = 1;
+
+    /* List of subscriptions, which is read by the polling task and the receiving thread. */
+    private final List<ISubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /* The subscriptions for the pipelined polling (copy on write). */
+    private volatile ISubscription[] subscriptionSnapshot = new ISubscription[0];
+
+    /* The subscriptions indexed by the type of the messages they handle (copy on write). The
+     * subscriptions of memory locations are indexed by location instead. */
+    private volatile ISubscription[][] subscriptionsByType = createDispatchTable(subscriptions);
+
+    /* The subscriptions of memory locations indexed by memory type and location, null if there is
+     * no subscription for a memory type and location (copy on write). */
+    private volatile ISubscription[][] subscriptionsByLocation = new ISubscription[MEMORIES.length * (MAX_LOCATION + 1)][];
 
     /* The connector to the WaterRower. */
     private final WaterRowerConnector connector;
@@ -40,6 +113,79 @@ public class SubscriptionPollingService {
     /* True if subscription polling is active. */
     private final AtomicBoolean isActive = new AtomicBoolean(false);
 
+    /* The generation of the polling, which is incremented on each start. Tasks of a previous
+     * start don't reschedule, so a restart (e.g. after a reconnect) doesn't poll twice. */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /* The bandwidth budget of the serial line or null, if the traffic is not limited. */
+    private volatile SerialLineBudget budget;
+
+    /* The subscriptions, which were deferred in the current polling cycle (only used by the polling task). */
+    private final Deque<ISubscription> deferredSubscriptions = new ArrayDeque<>();
+
+    /* The number of subscriptions, which are waiting for the next polling cycle. */
+    private volatile int queueDepth;
+
+    /* The number of deferred polls. */
+    private final AtomicLong deferredPolls = new AtomicLong();
+
+    /* The number of dropped polls. */
+    private final AtomicLong droppedPolls = new AtomicLong();
+
+    /* The polling cycle in which each memory location was read last, by memory type and location
+     * (only used by the polling task). */
+    private final int[] polledCycles = new int[MEMORIES.length * (MAX_LOCATION + 1)];
+
+    /* The number of the current polling cycle (only used by the polling task). */
+    private int pollingCycle;
+
+    /* The due subscriptions of the current polling cycle and the scheduled ones among them, the
+     * poll messages of the due subscriptions and the reads of memory locations with their
+     * positions. The working lists and arrays are reused in each polling cycle (only used by the
+     * polling task). */
+    private final List<ISubscription> dueSubscriptions = new ArrayList<>();
+    private final List<ISubscription> scheduledSubscriptions = new ArrayList<>();
+    private AbstractMessage[] pollMessages = new AbstractMessage[0];
+    private ReadMemoryMessage[] reads = new ReadMemoryMessage[0];
+    private ReadMemoryMessage[] plannedReads = new ReadMemoryMessage[0];
+    private int[] readPositions = new int[0];
+
+    /* The number of reads, which were saved because the location was already read. */
+    private final AtomicLong savedReads = new AtomicLong();
+
+    /* The planner, which merges the reads of adjacent memory locations. */
+    private final ReadPlanner planner;
+
+    /* True if the reads of adjacent memory locations are merged. */
+    private volatile boolean isReadMerging = true;
+
+    /* The number of reads, which were saved because they were merged with adjacent reads. */
+    private final AtomicLong mergedReads = new AtomicLong();
+
+    /* The pipeline of outstanding reads or null, if the memory locations are polled in cycles. */
+    private volatile PollPipeline pipeline;
+
+    /* The position of the next subscription of the pipelined polling (guarded by the pipeline). */
+    private int pipelineCursor;
+
+    /* The clock, which returns the current time in nanoseconds. */
+    private final LongSupplier nanoClock;
+
+    /* The time of the next poll (in nanoseconds) of the subscriptions with a polling interval. */
+    private final Map<ISubscription, Long> nextPolls = new ConcurrentHashMap<>();
+
+    /* The activity monitor or null, if the polling doesn't adapt to the activity. */
+    private volatile ActivityMonitor activityMonitor;
+
+    /* The polling profile of the last polling cycle. */
+    private volatile PollingProfile profile = ACTIVE;
+
+    /* The number of polling cycles, which were saved by the stretched cycles. */
+    private final AtomicLong savedCycles = new AtomicLong();
+
+    /* The number of polls, which were skipped in the IDLE profile. */
+    private final AtomicLong skippedPolls = new AtomicLong();
+
 
     /* Listener for the connection to the WaterRower, which handles the received messages*/
     private final IRxtxConnectionListener listener = new RxtxConnectionListener() {
@@ -50,13 +196,56 @@ public class SubscriptionPollingService {
             if (!isActive.get())
                 return;
 
-            for(ISubscription subscription : subscriptions) {
-                subscription.handle(msg);
+            if (typeOf(msg) == DATA_MEMORY) {
+                // Split the response of a merged read into the responses of the requested reads:
+                if (!planner.split((DataMemoryMessage) msg, splitResponseHandler))
+                    handleMemoryMessage((DataMemoryMessage) msg);
+            } else {
+                dispatch(msg, subscriptionsByType[typeOf(msg).ordinal()]);
+                checkActivity(msg);
             }
+
+            // A response frees a slot of the pipeline, send the next read:
+            if ((pipeline != null) && (typeOf(msg) == DATA_MEMORY) && pipeline.received(((DataMemoryMessage) msg).getLocation()))
+                fillPipeline();
         }
     };
 
 
+    /* Handles the split responses of merged reads. */
+    private final Consumer<DataMemoryMessage> splitResponseHandler = this::handleMemoryMessage;
+
+
+    /* Passes the memory message to the subscriptions and checks it for an activity of the rower. */
+    private void handleMemoryMessage(DataMemoryMessage msg) {
+        dispatchMemoryMessage(msg);
+        checkActivity(msg);
+    }
+
+    /* Returns to the full polling rate, if the message shows that the rower is active again. */
+    private void checkActivity(AbstractMessage msg) {
+        if ((activityMonitor != null) && activityMonitor.onMessageReceived(msg))
+            wakeUp();
+    }
+
+
+    /* Passes the memory message to the subscriptions of its memory type and location and to the
+     * other subscriptions, which handle memory messages. */
+    private void dispatchMemoryMessage(DataMemoryMessage msg) {
+        dispatch(msg, subscriptionsByType[DATA_MEMORY.ordinal()]);
+
+        ISubscription[] receivers = subscriptionsByLocation[indexOf(msg.getMemory(), msg.getLocation())];
+        if (receivers != null)
+            dispatch(msg, receivers);
+    }
+
+    /* Passes the message to the given subscriptions. */
+    private static void dispatch(AbstractMessage msg, ISubscription[] receivers) {
+        for (int i = 0; i < receivers.length; i++)
+            receivers[i].handle(msg);
+    }
+
+
     /**
      * The subscription polling manager.
      *
@@ -65,7 +254,22 @@ public class SubscriptionPollingService {
      * @param executorService The executor service for the subscription polling, must not be null.
      */
     public SubscriptionPollingService(Duration interval, WaterRowerConnector connector, ScheduledExecutorService executorService) {
+        this(interval, connector, executorService, System::nanoTime);
+    }
+
+    /**
+     * The subscription polling manager.
+     *
+     * @param interval The polling interval (in milliseconds), must not be null.
+     * @param connector The connector to the WaterRower, must not be null.
+     * @param executorService The executor service for the subscription polling, must not be null.
+     * @param nanoClock The clock for the polling intervals of the subscriptions and the pipeline,
+     *                  which returns the current time in nanoseconds. Must not be null.
+     */
+    SubscriptionPollingService(Duration interval, WaterRowerConnector connector, ScheduledExecutorService executorService, LongSupplier nanoClock) {
         this.interval = requireNonNull(interval);
+        this.nanoClock = requireNonNull(nanoClock);
+        this.planner = new ReadPlanner(interval, nanoClock);
 
         this.connector = requireNonNull(connector);
         this.connector.addConnectionListener(listener);
@@ -81,38 +285,347 @@ public class SubscriptionPollingService {
 
         Log.debug(LIBRARY, "Start subscription polling service.");
 
+        int currentGeneration = generation.incrementAndGet();
+        if (pipeline != null)
+            pipeline.clear();
+        planner.clear();
+        nextPolls.clear();
+        if (activityMonitor != null)
+            activityMonitor.reset();
+        profile = ACTIVE;
         isActive.set(true);
-        scheduleTask();
+        scheduleTask(currentGeneration);
+    }
+
+    /* Schedule the task for execution, the polling interval is stretched by the polling profile. */
+    private void scheduleTask(int taskGeneration) {
+        int intervalFactor = getProfile().getIntervalFactor();
+        executorService.schedule(() -> executeTask(taskGeneration, intervalFactor), interval.toMillis() * intervalFactor, MILLISECONDS);
+    }
+
+    /* Returns to the full polling rate. The stretched polling cycle is replaced by a new one. */
+    private void wakeUp() {
+        if (!isActive.get())
+            return;
+
+        Log.debug(LIBRARY, "Activity detected, polling with full rate.");
+
+        profile = ACTIVE;
+        scheduleTask(generation.incrementAndGet());
     }
 
-    /* Schedule the task for execution. */
-    private void scheduleTask() {
-        executorService.schedule(this::executeTask, interval.toMillis(), MILLISECONDS);
+    /* Execute the task, which was scheduled with the given stretch of the polling interval. */
+    private void executeTask(int taskGeneration, int intervalFactor) {
+
+        // Skip the task of a previous start.
+        if (taskGeneration != generation.get())
+            return;
+
+        if (Log.isDebugEnabled(LIBRARY))
+            Log.debug(LIBRARY, "Start polling for "+subscriptions.size()+" subscription(s)...");
+
+        PollingProfile currentProfile = getProfile();
+        if (profile != currentProfile) {
+            Log.debug(LIBRARY, "Polling profile changed to {}.", currentProfile);
+            profile = currentProfile;
+        }
+
+        List<ISubscription> dueSubscriptions = collectDueSubscriptions();
+
+        pollingCycle++;
+
+        if (pipeline != null)
+            pollPipelined(dueSubscriptions);
+        else if (maxBatchSize > 1)
+            pollInBatches(dueSubscriptions);
+        else
+            pollOneByOne(dueSubscriptions, false);
+
+        queueDepth = deferredSubscriptions.size();
+
+        Log.debug(LIBRARY, "Finished polling.");
+
+        // The stretched cycle was completed, it replaced the cycles of the full polling rate:
+        savedCycles.addAndGet(intervalFactor - 1);
+
+        if (isActive.get())
+            scheduleTask(taskGeneration);
     }
 
-    /* Execute the task. */
-    private void executeTask() {
+    /* Returns the subscriptions to poll in this cycle, the deferred subscriptions first. The other
+     * subscriptions are ordered by their polling interval. The returned list is reused in the next
+     * polling cycle. */
+    private List<ISubscription> collectDueSubscriptions() {
+        dueSubscriptions.clear();
+        scheduledSubscriptions.clear();
+
+        boolean hasDeferred = (budget != null) && !deferredSubscriptions.isEmpty();
+        if (hasDeferred) {
+            // Forget deferred subscriptions, which were unsubscribed in the meantime:
+            deferredSubscriptions.removeIf(subscription -> !subscriptions.contains(subscription));
+            for (ISubscription subscription : deferredSubscriptions)
+                dueSubscriptions.add(subscription);
+        }
 
-        Log.debug(LIBRARY, "Start polling for "+subscriptions.size()+" subscription(s)...");
+        long now = nanoClock.getAsLong();
+        ISubscription[] snapshot = subscriptionSnapshot;
+        for (int i = 0; i < snapshot.length; i++) {
+            ISubscription subscription = snapshot[i];
+            if (isDue(subscription, now) && !(hasDeferred && deferredSubscriptions.contains(subscription)))
+                scheduledSubscriptions.add(subscription);
+        }
+        scheduledSubscriptions.sort(BY_POLLING_INTERVAL);
+        for (int i = 0; i < scheduledSubscriptions.size(); i++)
+            dueSubscriptions.add(scheduledSubscriptions.get(i));
 
-        for (ISubscription subscription : subscriptions) {
+        return dueSubscriptions;
+    }
+
+    /* Returns true if the subscription must be polled, because it has no polling interval or the
+     * next poll is due within half of the polling cycle. */
+    private boolean isDue(ISubscription subscription, long now) {
+        if (subscription.getPollingInterval() == null)
+            return true;
+        Long nextPoll = nextPolls.get(subscription);
+        return (nextPoll == null) || (nextPoll - now <= interval.toNanos() / 2);
+    }
+
+    /* Schedules the next poll of the subscription, if it has a polling interval. */
+    private void scheduleNextPoll(ISubscription subscription, long now) {
+        Duration pollingInterval = subscription.getPollingInterval();
+        if (pollingInterval != null)
+            nextPolls.put(subscription, now + pollingInterval.toNanos());
+    }
+
+    /* Returns the polling interval of the subscription, 0 if it is polled in each cycle. */
+    private static Duration getPollingInterval(ISubscription subscription) {
+        Duration pollingInterval = subscription.getPollingInterval();
+        return (pollingInterval == null) ? ZERO : pollingInterval;
+    }
+
+    /* Returns true if the poll message can be sent, otherwise the poll is deferred. */
+    private boolean acquireBudget(ISubscription subscription, AbstractMessage msg) {
+        if ((budget == null) || budget.tryAcquire(msg)) {
+            deferredSubscriptions.remove(subscription);
+            return true;
+        }
+
+        // Budget exhausted, poll the subscription in the next cycle:
+        if (deferredSubscriptions.contains(subscription)) {
+            droppedPolls.incrementAndGet();
+            deferredSubscriptions.remove(subscription);
+        } else {
+            deferredPolls.incrementAndGet();
+        }
+        deferredSubscriptions.add(subscription);
+
+        return false;
+    }
+
+    /* Returns true if the poll message reads a memory location, which was already read in this
+     * polling cycle. Other messages are never duplicates. */
+    private boolean isDuplicateRead(AbstractMessage msg) {
+        if (typeOf(msg) != READ_MEMORY)
+            return false;
+
+        ReadMemoryMessage read = (ReadMemoryMessage) msg;
+        int i = indexOf(read.getMemory(), read.getLocation());
+        if (polledCycles[i] != pollingCycle) {
+            polledCycles[i] = pollingCycle;
+            return false;
+        }
+
+        savedReads.incrementAndGet();
+        return true;
+    }
+
+    /* Polls the given subscriptions and returns their poll messages in the same order, optionally
+     * without the reads of memory locations (which are sent by the pipeline). The reads are merged
+     * by the planner, the message of a subscription is null if nothing must be sent for it. The
+     * returned array is reused in the next polling cycle and can be longer than the list of
+     * subscriptions. */
+    private AbstractMessage[] collectPollMessages(List<ISubscription> dueSubscriptions, boolean skipMemoryReads) {
+        int count = dueSubscriptions.size();
+        if (pollMessages.length < count) {
+            pollMessages = new AbstractMessage[count];
+            reads = new ReadMemoryMessage[count];
+            plannedReads = new ReadMemoryMessage[count];
+            readPositions = new int[count];
+        }
+
+        AbstractMessage[] messages = pollMessages;
+        int readCount = 0;
+        long now = nanoClock.getAsLong();
+        boolean isIdle = (getProfile() == IDLE);
+
+        for (int i = 0; i < count; i++) {
+            messages[i] = null;
+
+            ISubscription subscription = dueSubscriptions.get(i);
+            AbstractMessage msg = subscription.poll();
+            if (msg == null)
+                continue;
+
+            if (skipMemoryReads && (typeOf(msg) == READ_MEMORY))
+                continue;
+
+            // In the IDLE profile only the activity indicators are polled:
+            if (isIdle && !activityMonitor.isActivityIndicator(msg)) {
+                skippedPolls.incrementAndGet();
+                continue;
+            }
+
+            scheduleNextPoll(subscription, now);
+
+            if (typeOf(msg) == READ_MEMORY) {
+                if (isDuplicateRead(msg))
+                    continue;
+                reads[readCount] = (ReadMemoryMessage) msg;
+                readPositions[readCount] = i;
+                readCount++;
+            }
+
+            messages[i] = msg;
+        }
+
+        if ((readCount == 0) || !isReadMerging)
+            return messages;
+
+        planner.plan(reads, readCount, plannedReads);
+        for (int i = 0; i < readCount; i++) {
+            ReadMemoryMessage read = plannedReads[i];
+            messages[readPositions[i]] = read;
+            if (read == null)
+                mergedReads.incrementAndGet();
+        }
+
+        return messages;
+    }
+
+    /* Sends the poll message of each subscription separately, optionally without the reads of
+     * memory locations (which are sent by the pipeline). */
+    private void pollOneByOne(List<ISubscription> dueSubscriptions, boolean skipMemoryReads) {
+        AbstractMessage[] messages = collectPollMessages(dueSubscriptions, skipMemoryReads);
+
+        for (int i = 0; i < dueSubscriptions.size(); i++) {
 
             // If not active skip execution.
             if (!isActive.get())
                 return;
 
+            ISubscription subscription = dueSubscriptions.get(i);
+            AbstractMessage msg = messages[i];
+            if (msg == null)
+                continue;
+
+            if (!acquireBudget(subscription, msg))
+                continue;
+
             try {
-                AbstractMessage msg = subscription.poll();
                 connector.send(msg);
             } catch (IOException e) {
                 Log.error("Couldn't poll for subscriptions, due to errors!", e);
             }
         }
+    }
 
-        Log.debug(LIBRARY, "Finished polling.");
+    /* Expires lost reads, sends the other poll messages and refills the pipeline. */
+    private void pollPipelined(List<ISubscription> dueSubscriptions) {
+        int expired = pipeline.expire(interval);
+        if (expired > 0)
+            Log.warn(LIBRARY, "{} outstanding read(s) expired without response!", expired);
 
-        if (isActive.get())
-            scheduleTask();
+        pollOneByOne(dueSubscriptions, true);
+
+        fillPipeline();
+
+        if (Log.isDebugEnabled(LIBRARY))
+            Log.debug(LIBRARY, "Pipelined polling with {} samples per second.", pipeline.getSamplesPerSecond());
+    }
+
+    /* Sends the reads of the subscriptions round robin, until the window of the pipeline is full.
+     * Locations with an outstanding read are skipped, so each location is read once at a time.
+     * Subscriptions, which are not due (see polling interval) or which are not activity indicators
+     * in the IDLE profile, are skipped too. */
+    private void fillPipeline() {
+        synchronized (pipeline) {
+            ISubscription[] snapshot = subscriptionSnapshot;
+            int skipped = 0;
+            long now = nanoClock.getAsLong();
+            boolean isIdle = (getProfile() == IDLE);
+
+            while (pipeline.hasCapacity() && (skipped < snapshot.length) && isActive.get()) {
+
+                pipelineCursor = (pipelineCursor + 1) % snapshot.length;
+                ISubscription subscription = snapshot[pipelineCursor];
+                AbstractMessage msg = subscription.poll();
+
+                if ((msg == null) || (typeOf(msg) != READ_MEMORY) || !isDue(subscription, now) || (isIdle && !activityMonitor.isActivityIndicator(msg))) {
+                    skipped++;
+                    continue;
+                }
+
+                int location = ((ReadMemoryMessage) msg).getLocation();
+                if (pipeline.isOutstanding(location)) {
+                    skipped++;
+                    continue;
+                }
+
+                // Budget exhausted, the pipeline is refilled in the next polling cycle:
+                if ((budget != null) && !budget.tryAcquire(msg))
+                    return;
+
+                try {
+                    pipeline.sent(location);
+                    scheduleNextPoll(subscription, now);
+                    connector.send(msg);
+                    skipped = 0;
+                } catch (IOException e) {
+                    Log.error("Couldn't poll for subscriptions, due to errors!", e);
+                    return;
+                }
+            }
+        }
+    }
+
+    /* Collects the poll messages of the subscriptions and sends them in batches. */
+    private void pollInBatches(List<ISubscription> dueSubscriptions) {
+        AbstractMessage[] messages = collectPollMessages(dueSubscriptions, false);
+        List<AbstractMessage> batch = new ArrayList<>(maxBatchSize);
+
+        for (int i = 0; i < dueSubscriptions.size(); i++) {
+
+            // If not active skip execution.
+            if (!isActive.get())
+                return;
+
+            ISubscription subscription = dueSubscriptions.get(i);
+            AbstractMessage msg = messages[i];
+            if (msg == null)
+                continue;
+
+            if (!acquireBudget(subscription, msg))
+                continue;
+
+            batch.add(msg);
+
+            if (batch.size() == maxBatchSize) {
+                sendBatch(batch);
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        }
+
+        if (!batch.isEmpty())
+            sendBatch(batch);
+    }
+
+    /* Sends the batch of poll messages. */
+    private void sendBatch(List<AbstractMessage> batch) {
+        try {
+            connector.sendBatch(batch);
+        } catch (IOException e) {
+            Log.error("Couldn't poll for subscriptions, due to errors!", e);
+        }
     }
 
 
@@ -127,14 +640,118 @@ public class SubscriptionPollingService {
     }
 
 
+    /**
+     * Enables or disables the merging of reads of adjacent memory locations. The merging is
+     * enabled by default.
+     *
+     * @param isReadMerging True if the reads of adjacent memory locations should be merged into
+     *                      double or triple reads, false if each memory location should be read
+     *                      separately.
+     */
+    public void setReadMerging(boolean isReadMerging) {
+        this.isReadMerging = isReadMerging;
+        if (!isReadMerging)
+            planner.clear();
+    }
+
+    /**
+     * Returns true if the reads of adjacent memory locations are merged.
+     *
+     * @return True if the reads are merged.
+     */
+    public boolean isReadMerging() {
+        return isReadMerging;
+    }
+
+    /**
+     * Enables or disables the recycling of the responses of merged reads, which are split into
+     * the responses of the subscriptions. The recycling is disabled by default. Should match the
+     * recycling mode of the message parser (see RxtxMessageParser).
+     *
+     * @param recycleMessages True if the split responses should be recycled. Subscriptions must
+     *                        not keep references to received messages in this mode.
+     */
+    public void setRecycleMessages(boolean recycleMessages) {
+        planner.setRecycleMessages(recycleMessages);
+    }
+
+    /**
+     * Sets the max. number of poll messages, which are sent in a single batch. In batching mode
+     * the poll messages of a polling cycle are sent in batches of the given max. size, each of
+     * them with a single write and flush to the WaterRower. Must be set before the service is
+     * started, the default is 1.
+     *
+     * @param maxBatchSize The max. number of poll messages in a single batch, must be at least 1.
+     *                     If 1, the messages are sent one by one.
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("The max. batch size must be at least 1!");
+        checkNotActive();
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Sets the bandwidth budget of the serial line. If a budget is set, a poll message is only
+     * sent if its cost (request and expected response) is available in the budget, otherwise the
+     * poll is deferred to the next cycle. Must be set before the service is started.
+     *
+     * @param budget The bandwidth budget of the serial line or null, if the outbound traffic
+     *               should not be limited.
+     */
+    public void setBudget(SerialLineBudget budget) {
+        checkNotActive();
+        this.budget = budget;
+    }
+
+    /**
+     * Sets the window of the pipelined polling. If a window is set, the memory locations are
+     * polled with a pipeline, which keeps the given number of reads outstanding and sends the
+     * next read as soon as a response was received. The polling interval is then also the timeout
+     * of an outstanding read. Must be set before the service is started.
+     *
+     * @param pipelineWindow The max. number of outstanding reads of the pipeline, must not be
+     *                       negative. If 0, the memory locations are polled in cycles.
+     */
+    public void setPipelineWindow(int pipelineWindow) {
+        if (pipelineWindow < 0)
+            throw new IllegalArgumentException("The pipeline window must not be negative!");
+        checkNotActive();
+        this.pipeline = (pipelineWindow > 0) ? new PollPipeline(pipelineWindow, nanoClock) : null;
+    }
+
+    /**
+     * Sets the activity monitor. If an activity monitor is set, the polling adapts to the
+     * activity of the rower. The polling cycles are stretched while the rower is inactive. Must
+     * be set before the service is started.
+     *
+     * @param activityMonitor The activity monitor or null, if the subscriptions should always be
+     *                        polled at the full rate.
+     */
+    public void setActivityMonitor(ActivityMonitor activityMonitor) {
+        checkNotActive();
+        this.activityMonitor = activityMonitor;
+    }
+
+    /* Throws an exception if the service is started, the polling mode can't be changed then. */
+    private void checkNotActive() {
+        if (isActive.get())
+            throw new IllegalStateException("The polling mode can't be changed while the subscription polling service is running!");
+    }
+
+
     /**
      * Subscribe to data/events. This will start the polling for the given data.
      *
      * @param subscription The subscription and callback, must not be null.
      */
-    public void subscribe(ISubscription subscription) {
+    public synchronized void subscribe(ISubscription subscription) {
         subscriptions.add(requireNonNull(subscription));
-        Log.debug(LIBRARY, "Added subscription: " + subscription);
+        subscriptionsByType = createDispatchTable(subscriptions);
+        if (subscription instanceof AbstractMemorySubscription)
+            subscriptionsByLocation = addToLocationIndex(subscriptionsByLocation, (AbstractMemorySubscription) subscription);
+        subscriptionSnapshot = subscriptions.toArray(new ISubscription[subscriptions.size()]);
+        Log.debug(LIBRARY, "Added subscription: {}", subscription);
     }
 
     /**
@@ -142,9 +759,195 @@ public class SubscriptionPollingService {
      *
      * @param subscription The subscription, must not be null.
      */
-    public void unsubscribe(ISubscription subscription) {
-        subscriptions.remove(requireNonNull(subscription));
-        Log.debug(LIBRARY, "Removed subscription: " + subscription);
+    public synchronized void unsubscribe(ISubscription subscription) {
+        if (!subscriptions.remove(requireNonNull(subscription)))
+            return;
+        nextPolls.remove(subscription);
+        subscriptionsByType = createDispatchTable(subscriptions);
+        if (subscription instanceof AbstractMemorySubscription)
+            subscriptionsByLocation = removeFromLocationIndex(subscriptionsByLocation, (AbstractMemorySubscription) subscription);
+        subscriptionSnapshot = subscriptions.toArray(new ISubscription[subscriptions.size()]);
+        Log.debug(LIBRARY, "Removed subscription: {}", subscription);
+    }
+
+
+    /**
+     * Returns the number of subscriptions, which were deferred in the last polling cycle because
+     * the bandwidth budget was exhausted, and which are polled first in the next cycle.
+     *
+     * @return The number of deferred subscriptions.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Returns the number of polls, which were deferred to the next polling cycle because the
+     * bandwidth budget was exhausted.
+     *
+     * @return The number of deferred polls.
+     */
+    public long getDeferredPolls() {
+        return deferredPolls.get();
+    }
+
+    /**
+     * Returns the number of polls, which were dropped because the bandwidth budget was still
+     * exhausted in the next polling cycle.
+     *
+     * @return The number of dropped polls.
+     */
+    public long getDroppedPolls() {
+        return droppedPolls.get();
+    }
+
+    /**
+     * Returns the number of reads, which were saved because another subscription already read
+     * the same memory location in the same polling cycle.
+     *
+     * @return The number of saved reads.
+     */
+    public long getSavedReads() {
+        return savedReads.get();
+    }
+
+    /**
+     * Returns the number of reads, which were saved because they were merged with the reads of
+     * adjacent memory locations.
+     *
+     * @return The number of merged reads.
+     */
+    public long getMergedReads() {
+        return mergedReads.get();
+    }
+
+    /**
+     * Returns the current polling profile.
+     *
+     * @return The polling profile, always ACTIVE if the polling doesn't adapt to the activity.
+     */
+    public PollingProfile getProfile() {
+        return (activityMonitor == null) ? ACTIVE : activityMonitor.getProfile();
+    }
+
+    /**
+     * Returns the number of polling cycles, which were saved because the polling cycles were
+     * stretched while the rower was inactive.
+     *
+     * @return The number of saved polling cycles.
+     */
+    public long getSavedCycles() {
+        return savedCycles.get();
+    }
+
+    /**
+     * Returns the number of polls, which were skipped in the IDLE profile.
+     *
+     * @return The number of skipped polls.
+     */
+    public long getSkippedPolls() {
+        return skippedPolls.get();
+    }
+
+    /**
+     * Returns the number of received samples per second of the pipelined polling, measured over
+     * the last second.
+     *
+     * @return The samples per second or 0, if the memory locations are polled in cycles.
+     */
+    public double getSamplesPerSecond() {
+        return (pipeline == null) ? 0 : pipeline.getSamplesPerSecond();
+    }
+
+    /**
+     * Returns the average round-trip time between a read of the given memory location and the
+     * response, which is measured by the pipelined polling.
+     *
+     * @param location The memory location.
+     * @return The round-trip time or null, if no round-trip was measured (yet).
+     */
+    public Duration getRoundTripTime(int location) {
+        return (pipeline == null) ? null : pipeline.getRoundTripTime(location);
+    }
+
+    /**
+     * Returns the number of outstanding reads of the pipelined polling.
+     *
+     * @return The number of outstanding reads.
+     */
+    public int getOutstandingReads() {
+        return (pipeline == null) ? 0 : pipeline.getOutstandingReads();
+    }
+
+    /* Creates a table, which contains the subscriptions for each message type. The subscriptions
+     * of memory locations are not contained, they are indexed by location. */
+    private static ISubscription[][] createDispatchTable(List<ISubscription> subscriptions) {
+        MessageTypeId[] types = MessageTypeId.values();
+        ISubscription[][] table = new ISubscription[types.length][];
+
+        for (MessageTypeId type : types) {
+            List<ISubscription> receivers = new ArrayList<>();
+            for (ISubscription subscription : subscriptions) {
+                if (subscription instanceof AbstractMemorySubscription)
+                    continue;
+                Set<MessageTypeId> handledTypes = subscription.getMessageTypes();
+                if ((handledTypes == null) || handledTypes.contains(type))
+                    receivers.add(subscription);
+            }
+            table[type.ordinal()] = receivers.toArray(new ISubscription[receivers.size()]);
+        }
+
+        return table;
+    }
+
+    /* Returns a copy of the location index, which contains the given subscription too. Only the
+     * entry of the memory type and location of the subscription is replaced. */
+    private static ISubscription[][] addToLocationIndex(ISubscription[][] index, AbstractMemorySubscription subscription) {
+        int i = indexOf(subscription.getMemory(), subscription.getLocation());
+        ISubscription[][] copy = index.clone();
+
+        ISubscription[] receivers = index[i];
+        if (receivers == null) {
+            copy[i] = new ISubscription[] { subscription };
+        } else {
+            receivers = Arrays.copyOf(receivers, receivers.length + 1);
+            receivers[receivers.length - 1] = subscription;
+            copy[i] = receivers;
+        }
+
+        return copy;
+    }
+
+    /* Returns a copy of the location index, which doesn't contain the given subscription anymore
+     * (if it was added twice, it is removed once). Only the entry of the memory type and location
+     * of the subscription is replaced. */
+    private static ISubscription[][] removeFromLocationIndex(ISubscription[][] index, AbstractMemorySubscription subscription) {
+        int i = indexOf(subscription.getMemory(), subscription.getLocation());
+        ISubscription[] receivers = index[i];
+        if (receivers == null)
+            return index;
+
+        int position = Arrays.asList(receivers).indexOf(subscription);
+        if (position < 0)
+            return index;
+
+        ISubscription[][] copy = index.clone();
+
+        if (receivers.length == 1) {
+            copy[i] = null;
+        } else {
+            ISubscription[] remainingReceivers = new ISubscription[receivers.length - 1];
+            System.arraycopy(receivers, 0, remainingReceivers, 0, position);
+            System.arraycopy(receivers, position + 1, remainingReceivers, position, receivers.length - position - 1);
+            copy[i] = remainingReceivers;
+        }
+
+        return copy;
+    }
+
+    /* Returns the position of the memory type and location in the location index. */
+    private static int indexOf(Memory memory, int location) {
+        return memory.ordinal() * (MAX_LOCATION + 1) + location;
     }
 
 }
@@ -2,8 +2,11 @@ package de.tbressler.waterrower.subscriptions;
 
 import de.tbressler.waterrower.io.msg.in.DataMemoryMessage;
 
+import java.time.Duration;
+
 import static de.tbressler.waterrower.io.msg.Memory.SINGLE_MEMORY;
 import static de.tbressler.waterrower.model.MemoryLocation.TANK_VOLUME;
+import static java.time.Duration.ofMinutes;
 
 /**
  * Subscription for the tank volume value (in liters).
@@ -13,6 +16,10 @@ import static de.tbressler.waterrower.model.MemoryLocation.TANK_VOLUME;
  */
 public abstract class TankVolumeSubscription extends AbstractMemorySubscription {
 
+    /* The tank volume changes rarely, so it is polled once a minute. */
+    private static final Duration POLLING_INTERVAL = ofMinutes(1);
+
+
     /* The last tank volume received. */
     int lastTankVolume = -1;
 
@@ -38,6 +45,12 @@ public abstract class TankVolumeSubscription extends AbstractMemorySubscription
     }
 
 
+    @Override
+    public Duration getPollingInterval() {
+        return POLLING_INTERVAL;
+    }
+
+
     /**
      * Is called if the value for the tank volume was updated.
      *
@@ -3,9 +3,12 @@ package de.tbressler.waterrower.subscriptions;
 import de.tbressler.waterrower.io.msg.in.DataMemoryMessage;
 import de.tbressler.waterrower.model.MemoryLocation;
 
+import java.time.Duration;
+
 import static de.tbressler.waterrower.io.msg.Memory.DOUBLE_MEMORY;
 import static de.tbressler.waterrower.model.MemoryLocation.*;
 import static de.tbressler.waterrower.utils.MessageUtils.intFromHighAndLow;
+import static java.time.Duration.ofSeconds;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -16,6 +19,10 @@ import static java.util.Objects.requireNonNull;
  */
 public abstract class WorkoutTotalSubscription extends AbstractMemorySubscription {
 
+    /* The workout totals are polled once a second. */
+    private static final Duration POLLING_INTERVAL = ofSeconds(1);
+
+
     /**
      * The value type.
      */
@@ -84,6 +91,12 @@ public abstract class WorkoutTotalSubscription extends AbstractMemorySubscriptio
     }
 
 
+    @Override
+    public Duration getPollingInterval() {
+        return POLLING_INTERVAL;
+    }
+
+
     /**
      * Is called if the value was updated.
      *
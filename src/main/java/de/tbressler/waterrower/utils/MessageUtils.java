@@ -1,7 +1,10 @@
 package de.tbressler.waterrower.utils;
 
+import io.netty.buffer.ByteBuf;
+
+import static java.util.Arrays.fill;
 import static java.lang.Integer.parseInt;
-import static java.lang.Integer.toHexString;
+import static java.lang.Integer.numberOfLeadingZeros;
 import static java.lang.String.valueOf;
 import static java.util.Objects.requireNonNull;
 
@@ -16,6 +19,25 @@ import static java.util.Objects.requireNonNull;
  */
 public class MessageUtils {
 
+    /* Lookup table for the values of ACH characters, -1 if the character is not hexadecimal. */
+    private static final byte[] ACH_VALUES = new byte[128];
+
+    /* Lookup table for the ACH characters of the values 0x0 .. 0xF. */
+    private static final byte[] ACH_CHARS = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+    };
+
+    static {
+        fill(ACH_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++)
+            ACH_VALUES['0' + i] = (byte) i;
+        for (int i = 0; i < 6; i++) {
+            ACH_VALUES['A' + i] = (byte) (10 + i);
+            ACH_VALUES['a' + i] = (byte) (10 + i);
+        }
+    }
+
+
     /* Private constructor. */
     private MessageUtils() {}
 
@@ -61,6 +83,51 @@ public class MessageUtils {
     }
 
 
+    /**
+     * Returns the ACH (ASCII coded hexadecimal) at the given index of the char sequence as int
+     * value. Unlike achToInt(String) this method doesn't throw on malformed input.
+     *
+     * @param ascii The char sequence, must not be null.
+     * @param index The index of the first ACH character.
+     * @param chars The number of chars.
+     * @return The integer value or -1, if the chars are missing or not a hexadecimal value.
+     */
+    public static int achToInt(CharSequence ascii, int index, int chars) {
+        requireNonNull(ascii);
+        if ((index < 0) || (index + chars > ascii.length()))
+            return -1;
+        int value = 0;
+        for (int i = index; i < index + chars; i++) {
+            char c = ascii.charAt(i);
+            if ((c >= ACH_VALUES.length) || (ACH_VALUES[c] < 0))
+                return -1;
+            value = (value << 4) | ACH_VALUES[c];
+        }
+        return value;
+    }
+
+    /**
+     * Returns the ACH (ASCII coded hexadecimal) at the given index of the buffer as int value.
+     * The reader and writer index of the buffer are not modified.
+     *
+     * @param buffer The buffer, must not be null.
+     * @param index The index of the first ACH character in the buffer.
+     * @param chars The number of chars.
+     * @return The integer value or -1, if the chars are not a hexadecimal value.
+     */
+    public static int achToInt(ByteBuf buffer, int index, int chars) {
+        requireNonNull(buffer);
+        int value = 0;
+        for (int i = index; i < index + chars; i++) {
+            int b = buffer.getByte(i);
+            if ((b < 0) || (ACH_VALUES[b] < 0))
+                return -1;
+            value = (value << 4) | ACH_VALUES[b];
+        }
+        return value;
+    }
+
+
     /**
      * Returns the int value as ACH (ASCII coded hexadecimal).
      *
@@ -71,8 +138,38 @@ public class MessageUtils {
      * @throws NumberFormatException If the int has more characters than the number of chars given.
      */
     public static String intToAch(int value, int chars) throws NumberFormatException {
-        String ascii = toHexString(value).toUpperCase();
-        return addLeadingZeros(chars, ascii);
+        checkAchLength(value, chars);
+        char[] ascii = new char[chars];
+        for (int i = chars - 1; i >= 0; i--) {
+            ascii[i] = (char) ACH_CHARS[value & 0xF];
+            value >>>= 4;
+        }
+        return new String(ascii);
+    }
+
+
+    /**
+     * Writes the int value as ACH (ASCII coded hexadecimal) with leading zeros to the buffer.
+     * Nothing is written, if the value doesn't fit into the given number of chars.
+     *
+     * @param buffer The buffer, must not be null.
+     * @param value The int value.
+     * @param chars The number of chars.
+     *
+     * @throws NumberFormatException If the int has more characters than the number of chars given.
+     */
+    public static void writeAch(ByteBuf buffer, int value, int chars) throws NumberFormatException {
+        requireNonNull(buffer);
+        checkAchLength(value, chars);
+        for (int i = chars - 1; i >= 0; i--)
+            buffer.writeByte((i < 8) ? ACH_CHARS[(value >>> (i << 2)) & 0xF] : '0');
+    }
+
+    /* Throws a NumberFormatException if the ACH of the value has more characters than given. */
+    private static void checkAchLength(int value, int chars) {
+        int digits = Math.max(1, (Integer.SIZE - numberOfLeadingZeros(value) + 3) >> 2);
+        if (digits > chars)
+            throw new NumberFormatException("Number has more than "+chars+" characters!");
     }
 
 
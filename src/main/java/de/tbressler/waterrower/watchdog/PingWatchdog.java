@@ -48,7 +48,8 @@ public class PingWatchdog extends Watchdog {
 
     @Override
     protected void wakeUpAndCheck() {
-        Log.debug(LIBRARY, "Checking if a message (e.g. ping) was received in the last "+maxPingDuration+" ms.");
+        if (Log.isDebugEnabled(LIBRARY))
+            Log.debug(LIBRARY, "Checking if a message (e.g. ping) was received in the last "+maxPingDuration+" ms.");
         if (currentTimeMillis() - lastReceivedPing.get() > maxPingDuration) {
             Log.warn(LIBRARY, "No message (e.g. ping) received in the last "+maxPingDuration+" ms.");
             fireOnTimeout(PING_TIMEOUT);
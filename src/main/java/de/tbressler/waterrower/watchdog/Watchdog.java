@@ -3,6 +3,7 @@ package de.tbressler.waterrower.watchdog;
 import java.time.Duration;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -27,6 +28,10 @@ public abstract class Watchdog {
     /* True if watchdog is stopped. */
     private AtomicBoolean isStopped = new AtomicBoolean(true);
 
+    /* The generation of the watchdog, which is incremented on each start. Tasks of a previous
+     * start don't reschedule, so a restart doesn't run two tasks. */
+    private final AtomicInteger generation = new AtomicInteger();
+
     /* The listener that should be notified on timeout. */
     private ITimeoutListener timeoutListener;
 
@@ -49,20 +54,21 @@ public abstract class Watchdog {
      * Starts the watchdog.
      */
     public void start() {
+        int currentGeneration = generation.incrementAndGet();
         isStopped.set(false);
-        scheduleWatchdogTask();
+        scheduleWatchdogTask(currentGeneration);
     }
 
     /* Schedule the watchdog task for execution. */
-    private void scheduleWatchdogTask() {
-        executorService.schedule(this::executeWatchdogTask, interval.toMillis(), MILLISECONDS);
+    private void scheduleWatchdogTask(int taskGeneration) {
+        executorService.schedule(() -> executeWatchdogTask(taskGeneration), interval.toMillis(), MILLISECONDS);
     }
 
     /* Execute the watchdog task. */
-    private void executeWatchdogTask() {
+    private void executeWatchdogTask(int taskGeneration) {
 
-        // Check if already stopped.
-        if (isStopped.get())
+        // Check if already stopped or restarted.
+        if (isStopped.get() || (taskGeneration != generation.get()))
             return;
 
         wakeUpAndCheck();
@@ -70,7 +76,7 @@ public abstract class Watchdog {
         // Start the next period if the task should
         // be executed periodically.
         if (doRepeat && !isStopped.get())
-            scheduleWatchdogTask();
+            scheduleWatchdogTask(taskGeneration);
     }
 
 
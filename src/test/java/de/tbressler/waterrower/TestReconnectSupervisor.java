@@ -0,0 +1,310 @@
+package de.tbressler.waterrower;
+
+import de.tbressler.waterrower.io.IRxtxConnectionListener;
+import de.tbressler.waterrower.io.MemoryReadService;
+import de.tbressler.waterrower.io.WaterRowerConnector;
+import de.tbressler.waterrower.io.msg.out.ExitCommunicationMessage;
+import de.tbressler.waterrower.model.ModelInformation;
+import de.tbressler.waterrower.subscriptions.SubscriptionPollingService;
+import de.tbressler.waterrower.watchdog.DeviceVerificationWatchdog;
+import de.tbressler.waterrower.watchdog.PingWatchdog;
+import de.tbressler.waterrower.workout.Workout;
+import io.netty.channel.rxtx.RxtxDeviceAddress;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static de.tbressler.waterrower.model.ErrorCode.*;
+import static de.tbressler.waterrower.model.MonitorType.WATER_ROWER_S4;
+import static de.tbressler.waterrower.workout.WorkoutUnit.METERS;
+import static java.time.Duration.ofMillis;
+import static java.time.Duration.ofSeconds;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentCaptor.forClass;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for class ReconnectSupervisor.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestReconnectSupervisor {
+
+    // Class under test.
+    private ReconnectSupervisor supervisor;
+
+    // Mocks:
+    private WaterRower waterRower = mock(WaterRower.class, "waterRower");
+    private ScheduledExecutorService executorService = mock(ScheduledExecutorService.class, "executorService");
+    private RxtxDeviceAddress address = new RxtxDeviceAddress("some-port");
+    private ModelInformation modelInformation = new ModelInformation(WATER_ROWER_S4, "02.10");
+
+    // Capture:
+    private ArgumentCaptor<IWaterRowerConnectionListener> listener = forClass(IWaterRowerConnectionListener.class);
+    private ArgumentCaptor<Runnable> attempt = forClass(Runnable.class);
+
+
+    @Before
+    public void setUp() {
+        // Jitter returns the max. value:
+        supervisor = new ReconnectSupervisor(waterRower, executorService, ofSeconds(1), ofSeconds(8), true, () -> 0.999);
+        verify(waterRower).addConnectionListener(listener.capture());
+    }
+
+    // Constructor:
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullWaterRower_throwsNPE() {
+        new ReconnectSupervisor(null, executorService, ofSeconds(1), ofSeconds(8), true);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullExecutorService_throwsNPE() {
+        new ReconnectSupervisor(waterRower, null, ofSeconds(1), ofSeconds(8), true);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullInitialBackoff_throwsNPE() {
+        new ReconnectSupervisor(waterRower, executorService, null, ofSeconds(8), true);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullMaxBackoff_throwsNPE() {
+        new ReconnectSupervisor(waterRower, executorService, ofSeconds(1), null, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_withZeroInitialBackoff_throwsIAE() {
+        new ReconnectSupervisor(waterRower, executorService, ofSeconds(0), ofSeconds(8), true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_withMaxBackoffLessThanInitialBackoff_throwsIAE() {
+        new ReconnectSupervisor(waterRower, executorService, ofSeconds(2), ofSeconds(1), true);
+    }
+
+    // Start / stop:
+
+    @Test(expected = NullPointerException.class)
+    public void start_withNullAddress_throwsNPE() {
+        supervisor.start(null);
+    }
+
+    @Test
+    public void start_activatesSupervisor() {
+        assertFalse(supervisor.isActive());
+        supervisor.start(address);
+        assertTrue(supervisor.isActive());
+        supervisor.stop();
+        assertFalse(supervisor.isActive());
+    }
+
+    @Test
+    public void onDisconnected_whenNotStarted_doesntScheduleReconnect() {
+        listener.getValue().onDisconnected();
+        verify(executorService, never()).schedule(any(Runnable.class), anyLong(), any());
+    }
+
+    // Reconnect:
+
+    @Test
+    public void onDisconnected_whenStarted_schedulesReconnectWithInitialBackoff() {
+        supervisor.start(address);
+
+        listener.getValue().onDisconnected();
+
+        verify(executorService, times(1)).schedule(any(Runnable.class), eq(999L), eq(MILLISECONDS));
+        assertEquals(1, supervisor.getAttempts());
+    }
+
+    @Test
+    public void onError_withTimeoutAndDisconnect_schedulesSingleReconnect() {
+        supervisor.start(address);
+
+        listener.getValue().onDisconnected();
+        listener.getValue().onError(TIMEOUT);
+        listener.getValue().onError(COMMUNICATION_FAILED);
+
+        verify(executorService, times(1)).schedule(any(Runnable.class), anyLong(), eq(MILLISECONDS));
+    }
+
+    @Test
+    public void onError_withDeviceNotSupported_doesntScheduleReconnect() {
+        when(waterRower.isDeviceRejected()).thenReturn(true);
+        supervisor.start(address);
+
+        listener.getValue().onError(DEVICE_NOT_SUPPORTED);
+        listener.getValue().onDisconnected();
+
+        verify(executorService, never()).schedule(any(Runnable.class), anyLong(), any());
+    }
+
+    @Test
+    public void onError_withHandshakeTimeout_schedulesReconnect() {
+        when(waterRower.isDeviceRejected()).thenReturn(false);
+        supervisor.start(address);
+
+        listener.getValue().onError(DEVICE_NOT_SUPPORTED);
+
+        verify(executorService, times(1)).schedule(any(Runnable.class), eq(999L), eq(MILLISECONDS));
+    }
+
+    @Test
+    public void reconnect_afterCleanRemoteClose_disconnectsConnectorAndConnectsAgain() throws Exception {
+        WaterRowerConnector connector = mock(WaterRowerConnector.class, "connector");
+        DeviceVerificationWatchdog deviceVerificationWatchdog = mock(DeviceVerificationWatchdog.class, "deviceVerificationWatchdog");
+        WaterRower realWaterRower = new WaterRower(connector, mock(PingWatchdog.class), deviceVerificationWatchdog,
+                mock(SubscriptionPollingService.class), mock(MemoryReadService.class));
+        supervisor = new ReconnectSupervisor(realWaterRower, executorService, ofSeconds(1), ofSeconds(8), true, () -> 0.999);
+        supervisor.start(address);
+
+        // The connector still reports the connection, but the channel was closed by the remote side:
+        AtomicBoolean isConnected = new AtomicBoolean(true);
+        when(connector.isConnected()).thenAnswer(invocation -> isConnected.get());
+        when(deviceVerificationWatchdog.isDeviceConfirmed()).thenReturn(true);
+        doThrow(new IOException("channel-closed")).when(connector).send(any(ExitCommunicationMessage.class));
+        doAnswer(invocation -> { isConnected.set(false); return null; }).when(connector).disconnect();
+
+        ArgumentCaptor<IRxtxConnectionListener> connectionListener = forClass(IRxtxConnectionListener.class);
+        verify(connector).addConnectionListener(connectionListener.capture());
+        connectionListener.getValue().onDisconnected();
+
+        runAttempt();
+
+        verify(connector, times(1)).disconnect();
+        verify(connector, times(1)).connect(address);
+        assertEquals(1, supervisor.getAttempts());
+    }
+
+    @Test
+    public void reconnect_closesLostConnectionAndConnects() throws Exception {
+        supervisor.start(address);
+        listener.getValue().onError(TIMEOUT);
+
+        runAttempt();
+
+        verify(waterRower, times(1)).disconnect();
+        verify(waterRower, times(1)).connect(address);
+    }
+
+    @Test
+    public void reconnect_whenConnectFails_schedulesNextAttemptWithExponentialBackoff() throws Exception {
+        doThrow(new IOException("some-io-exception")).when(waterRower).connect(address);
+        supervisor.start(address);
+        listener.getValue().onDisconnected();
+
+        runAttempt();
+        runAttempt();
+        runAttempt();
+        runAttempt();
+
+        verify(executorService, times(1)).schedule(any(Runnable.class), eq(999L), eq(MILLISECONDS));
+        verify(executorService, times(1)).schedule(any(Runnable.class), eq(1999L), eq(MILLISECONDS));
+        verify(executorService, times(1)).schedule(any(Runnable.class), eq(3998L), eq(MILLISECONDS));
+        // Max. backoff:
+        verify(executorService, times(2)).schedule(any(Runnable.class), eq(7996L), eq(MILLISECONDS));
+        assertEquals(5, supervisor.getAttempts());
+    }
+
+    @Test
+    public void reconnect_whenDisconnectOfLostConnectionFails_connectsAnyway() throws Exception {
+        doThrow(new IOException("not-connected")).when(waterRower).disconnect();
+        supervisor.start(address);
+        listener.getValue().onDisconnected();
+
+        runAttempt();
+
+        verify(waterRower, times(1)).connect(address);
+    }
+
+    @Test
+    public void reconnect_afterStop_doesntConnect() throws Exception {
+        supervisor.start(address);
+        listener.getValue().onDisconnected();
+        supervisor.stop();
+
+        runAttempt();
+
+        verify(waterRower, never()).connect(address);
+    }
+
+    @Test
+    public void onConnected_afterReconnect_resetsAttemptsAndResumesWorkout() throws Exception {
+        Workout workout = new Workout(1000, METERS);
+        when(waterRower.getActiveWorkout()).thenReturn(workout);
+        supervisor.start(address);
+        listener.getValue().onDisconnected();
+        runAttempt();
+
+        listener.getValue().onConnected(modelInformation);
+
+        assertEquals(0, supervisor.getAttempts());
+        verify(waterRower, times(1)).startWorkout(workout);
+
+        // Next connection loss is handled again:
+        listener.getValue().onDisconnected();
+        verify(executorService, times(2)).schedule(any(Runnable.class), eq(999L), eq(MILLISECONDS));
+    }
+
+    @Test
+    public void onConnected_withoutReconnect_doesntResumeWorkout() throws Exception {
+        when(waterRower.getActiveWorkout()).thenReturn(new Workout(1000, METERS));
+        supervisor.start(address);
+
+        listener.getValue().onConnected(modelInformation);
+
+        verify(waterRower, never()).startWorkout(any(Workout.class));
+    }
+
+    @Test
+    public void onConnected_afterReconnectWithoutResumeWorkout_doesntResumeWorkout() throws Exception {
+        supervisor = new ReconnectSupervisor(waterRower, executorService, ofMillis(100), ofSeconds(1), false, () -> 0.5);
+        verify(waterRower, times(2)).addConnectionListener(listener.capture());
+        when(waterRower.getActiveWorkout()).thenReturn(new Workout(1000, METERS));
+        supervisor.start(address);
+        listener.getValue().onDisconnected();
+        runAttempt();
+
+        listener.getValue().onConnected(modelInformation);
+
+        verify(waterRower, never()).startWorkout(any(Workout.class));
+    }
+
+    // Backoff:
+
+    @Test
+    public void getBackoff_returnsExponentialBackoffWithEqualJitter() {
+        supervisor = new ReconnectSupervisor(waterRower, executorService, ofSeconds(1), ofSeconds(8), true, () -> 0.0);
+        assertEquals(500, supervisor.getBackoff(0));
+        assertEquals(1000, supervisor.getBackoff(1));
+        assertEquals(2000, supervisor.getBackoff(2));
+        assertEquals(4000, supervisor.getBackoff(3));
+        assertEquals(4000, supervisor.getBackoff(4));
+        assertEquals(4000, supervisor.getBackoff(100));
+    }
+
+    // To string:
+
+    @Test
+    public void toString_returnsObjectInfo() {
+        assertTrue(supervisor.toString().startsWith("ReconnectSupervisor"));
+    }
+
+
+    // Helper methods:
+
+    private void runAttempt() {
+        verify(executorService, atLeastOnce()).schedule(attempt.capture(), anyLong(), eq(MILLISECONDS));
+        attempt.getValue().run();
+    }
+
+}
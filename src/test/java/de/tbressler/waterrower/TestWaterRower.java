@@ -1,7 +1,9 @@
 package de.tbressler.waterrower;
 
 import de.tbressler.waterrower.io.IRxtxConnectionListener;
+import de.tbressler.waterrower.io.MemoryReadService;
 import de.tbressler.waterrower.io.WaterRowerConnector;
+import de.tbressler.waterrower.io.msg.in.DataMemoryMessage;
 import de.tbressler.waterrower.io.msg.in.ErrorMessage;
 import de.tbressler.waterrower.io.msg.in.HardwareTypeMessage;
 import de.tbressler.waterrower.io.msg.in.ModelInformationMessage;
@@ -23,15 +25,22 @@ import org.mockito.ArgumentMatcher;
 import org.mockito.InOrder;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
+import static de.tbressler.waterrower.io.msg.Memory.DOUBLE_MEMORY;
+import static de.tbressler.waterrower.io.msg.Memory.SINGLE_MEMORY;
 import static de.tbressler.waterrower.io.msg.out.ConfigureWorkoutMessage.MessageType.*;
 import static de.tbressler.waterrower.model.ErrorCode.*;
+import static de.tbressler.waterrower.model.MemoryLocation.MS_DISTANCE_LOW;
 import static de.tbressler.waterrower.model.MonitorType.WATER_ROWER_S4;
 import static de.tbressler.waterrower.watchdog.TimeoutReason.DEVICE_NOT_CONFIRMED_TIMEOUT;
 import static de.tbressler.waterrower.watchdog.TimeoutReason.PING_TIMEOUT;
 import static de.tbressler.waterrower.workout.WorkoutUnit.METERS;
 import static de.tbressler.waterrower.workout.WorkoutUnit.STROKES;
+import static java.time.Duration.ofSeconds;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentCaptor.forClass;
 import static org.mockito.Mockito.*;
@@ -52,6 +61,7 @@ public class TestWaterRower {
     private PingWatchdog pingWatchdog = mock(PingWatchdog.class, "pingWatchdog");
     private DeviceVerificationWatchdog deviceVerificationWatchdog = mock(DeviceVerificationWatchdog.class, "deviceVerificationWatchdog");
     private SubscriptionPollingService subscriptionPollingService = mock(SubscriptionPollingService.class, "subscriptionPollingService");
+    private MemoryReadService memoryReadService = mock(MemoryReadService.class, "memoryReadService");
     private RxtxDeviceAddress address = mock(RxtxDeviceAddress.class, "address");
     private IWaterRowerConnectionListener waterRowerConnectionListener = mock(IWaterRowerConnectionListener.class, "waterRowerConnectionListener");
     private ISubscription subscription = mock(ISubscription.class, "subscription");
@@ -66,7 +76,7 @@ public class TestWaterRower {
 
     @Before
     public void setUp() throws Exception {
-        waterRower = new WaterRower(connector, pingWatchdog, deviceVerificationWatchdog, subscriptionPollingService);
+        waterRower = new WaterRower(connector, pingWatchdog, deviceVerificationWatchdog, subscriptionPollingService, memoryReadService);
         waterRower.addConnectionListener(waterRowerConnectionListener);
 
         verify(connector, times(1)).addConnectionListener(connectionListener.capture());
@@ -88,6 +98,7 @@ public class TestWaterRower {
         when(initializer.getPingWatchdog()).thenReturn(pingWatchdog);
         when(initializer.getSubscriptionPollingService()).thenReturn(subscriptionPollingService);
         when(initializer.getWaterRowerConnector()).thenReturn(null);
+        when(initializer.getMemoryReadService()).thenReturn(memoryReadService);
 
         new WaterRower(initializer);
     }
@@ -98,6 +109,7 @@ public class TestWaterRower {
         when(initializer.getPingWatchdog()).thenReturn(pingWatchdog);
         when(initializer.getSubscriptionPollingService()).thenReturn(null);
         when(initializer.getWaterRowerConnector()).thenReturn(connector);
+        when(initializer.getMemoryReadService()).thenReturn(memoryReadService);
 
         new WaterRower(initializer);
     }
@@ -108,6 +120,7 @@ public class TestWaterRower {
         when(initializer.getPingWatchdog()).thenReturn(null);
         when(initializer.getSubscriptionPollingService()).thenReturn(subscriptionPollingService);
         when(initializer.getWaterRowerConnector()).thenReturn(connector);
+        when(initializer.getMemoryReadService()).thenReturn(memoryReadService);
 
         new WaterRower(initializer);
     }
@@ -118,6 +131,7 @@ public class TestWaterRower {
         when(initializer.getPingWatchdog()).thenReturn(pingWatchdog);
         when(initializer.getSubscriptionPollingService()).thenReturn(subscriptionPollingService);
         when(initializer.getWaterRowerConnector()).thenReturn(connector);
+        when(initializer.getMemoryReadService()).thenReturn(memoryReadService);
 
         new WaterRower(initializer);
     }
@@ -128,28 +142,34 @@ public class TestWaterRower {
         when(initializer.getPingWatchdog()).thenReturn(pingWatchdog);
         when(initializer.getSubscriptionPollingService()).thenReturn(subscriptionPollingService);
         when(initializer.getWaterRowerConnector()).thenReturn(connector);
+        when(initializer.getMemoryReadService()).thenReturn(memoryReadService);
 
         new WaterRower(initializer);
     }
 
     @Test(expected = NullPointerException.class)
     public void new2_withNullConnector_throwsNPE() {
-        new WaterRower(null, pingWatchdog, deviceVerificationWatchdog, subscriptionPollingService);
+        new WaterRower(null, pingWatchdog, deviceVerificationWatchdog, subscriptionPollingService, memoryReadService);
     }
 
     @Test(expected = NullPointerException.class)
     public void new2_withNullPingWatchdog_throwsNPE() {
-        new WaterRower(connector, null, deviceVerificationWatchdog, subscriptionPollingService);
+        new WaterRower(connector, null, deviceVerificationWatchdog, subscriptionPollingService, memoryReadService);
     }
 
     @Test(expected = NullPointerException.class)
     public void new2_withNullDeviceVerificationWatchdog_throwsNPE() {
-        new WaterRower(connector, pingWatchdog, null, subscriptionPollingService);
+        new WaterRower(connector, pingWatchdog, null, subscriptionPollingService, memoryReadService);
     }
 
     @Test(expected = NullPointerException.class)
     public void new2_withNullSubscriptionPollingService_throwsNPE() {
-        new WaterRower(connector, pingWatchdog, deviceVerificationWatchdog, null);
+        new WaterRower(connector, pingWatchdog, deviceVerificationWatchdog, null, memoryReadService);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new2_withNullMemoryReadService_throwsNPE() {
+        new WaterRower(connector, pingWatchdog, deviceVerificationWatchdog, subscriptionPollingService, null);
     }
 
 
@@ -230,6 +250,7 @@ public class TestWaterRower {
         connectionListener.getValue().onMessageReceived(new HardwareTypeMessage(false));
         verify(connector, never()).send(any(RequestModelInformationMessage.class));
         verify(waterRowerConnectionListener, times(1)).onError(eq(DEVICE_NOT_SUPPORTED));
+        assertTrue(waterRower.isDeviceRejected());
     }
 
     @Test
@@ -252,6 +273,16 @@ public class TestWaterRower {
         verify(deviceVerificationWatchdog, times(1)).setDeviceConfirmed(false);
         verify(deviceVerificationWatchdog, times(1)).stop();
         verify(waterRowerConnectionListener, times(1)).onError(DEVICE_NOT_SUPPORTED);
+        assertTrue(waterRower.isDeviceRejected());
+    }
+
+    @Test
+    public void connect_afterDeviceWasRejected_resetsRejection() throws Exception {
+        connectionListener.getValue().onMessageReceived(new HardwareTypeMessage(false));
+
+        waterRower.connect(address);
+
+        assertFalse(waterRower.isDeviceRejected());
     }
 
 
@@ -287,6 +318,17 @@ public class TestWaterRower {
         verify(connector, times(1)).disconnect();
     }
 
+    @Test
+    public void disconnect_whenExitMessageFails_disconnectsConnectorAnyway() throws Exception {
+        when(connector.isConnected()).thenReturn(true);
+        when(deviceVerificationWatchdog.isDeviceConfirmed()).thenReturn(true);
+        doThrow(new IOException("channel-closed")).when(connector).send(any(ExitCommunicationMessage.class));
+
+        waterRower.disconnect();
+
+        verify(connector, times(1)).disconnect();
+    }
+
     @Test
     public void disconnect_whenNotConnected_disconnectsConnector() throws Exception {
         when(connector.isConnected()).thenReturn(false);
@@ -376,6 +418,29 @@ public class TestWaterRower {
         orderVerification.verify(connector, times(1)).send(argThat(eqMsg(END_INTERVAL_WORKOUT, 0xFFFF, METERS, 0xFFFF)));
     }
 
+    @Test
+    public void getActiveWorkout_afterStartWorkout_returnsWorkout() throws Exception {
+        when(connector.isConnected()).thenReturn(true);
+        when(deviceVerificationWatchdog.isDeviceConfirmed()).thenReturn(true);
+        assertNull(waterRower.getActiveWorkout());
+
+        Workout workout = new Workout(1000, METERS);
+        waterRower.startWorkout(workout);
+
+        assertSame(workout, waterRower.getActiveWorkout());
+    }
+
+    @Test
+    public void getActiveWorkout_afterPerformReset_returnsNull() throws Exception {
+        when(connector.isConnected()).thenReturn(true);
+        when(deviceVerificationWatchdog.isDeviceConfirmed()).thenReturn(true);
+        waterRower.startWorkout(new Workout(1000, METERS));
+
+        waterRower.performReset();
+
+        assertNull(waterRower.getActiveWorkout());
+    }
+
 
     // Subscribe / unsubscribe:
 
@@ -392,6 +457,39 @@ public class TestWaterRower {
     }
 
 
+    // Read memory:
+
+    @Test
+    public void readMemory_readsMemoryLocation() throws Exception {
+        CompletableFuture<DataMemoryMessage> future = new CompletableFuture<>();
+        when(memoryReadService.read(DOUBLE_MEMORY, MS_DISTANCE_LOW)).thenReturn(future);
+
+        assertSame(future, waterRower.readMemory(DOUBLE_MEMORY, MS_DISTANCE_LOW));
+    }
+
+    @Test
+    public void readMemory_withTimeout_readsMemoryLocationWithTimeout() throws Exception {
+        CompletableFuture<DataMemoryMessage> future = new CompletableFuture<>();
+        when(memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW, ofSeconds(5))).thenReturn(future);
+
+        assertSame(future, waterRower.readMemory(SINGLE_MEMORY, MS_DISTANCE_LOW, ofSeconds(5)));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void readMemory_withNullMemory_throwsNPE() throws Exception {
+        waterRower.readMemory(null, MS_DISTANCE_LOW);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void readMemory_withNullLocation_throwsNPE() throws Exception {
+        waterRower.readMemory(SINGLE_MEMORY, null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void readMemory_withNullTimeout_throwsNPE() throws Exception {
+        waterRower.readMemory(SINGLE_MEMORY, MS_DISTANCE_LOW, null);
+    }
+
     // Watchdogs:
 
     @Test
@@ -404,6 +502,7 @@ public class TestWaterRower {
     public void onTimeout_withDeviceVerificationTimeout_() {
         deviceVerificationListener.getValue().onTimeout(DEVICE_NOT_CONFIRMED_TIMEOUT);
         verify(waterRowerConnectionListener, times(1)).onError(DEVICE_NOT_SUPPORTED);
+        assertFalse(waterRower.isDeviceRejected());
     }
 
 
@@ -0,0 +1,178 @@
+package de.tbressler.waterrower;
+
+import de.tbressler.waterrower.io.ChannelTransport;
+import de.tbressler.waterrower.subscriptions.ActivityMonitor;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static de.tbressler.waterrower.subscriptions.PollingProfile.IDLE;
+import static java.time.Duration.ofMillis;
+import static java.time.Duration.ofSeconds;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Tests for class WaterRowerFleet.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestWaterRowerFleet {
+
+    // Class under test.
+    private WaterRowerFleet fleet;
+
+    // Shared event loop group:
+    private EventLoopGroup group;
+    private ChannelTransport transport;
+
+
+    @Before
+    public void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(1);
+        transport = new ChannelTransport(group, LocalChannel.class);
+        fleet = new WaterRowerFleet(ofMillis(10), ofSeconds(1), 2, transport);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fleet.shutdown();
+    }
+
+    // Constructor:
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullPollingInterval_throwsNPE() {
+        new WaterRowerFleet(null, ofSeconds(1), 5, transport);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullTimeoutInterval_throwsNPE() {
+        new WaterRowerFleet(ofSeconds(1), null, 5, transport);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullTransport_throwsNPE() {
+        new WaterRowerFleet(ofSeconds(1), ofSeconds(1), 5, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_withThreadPool0_throwsIAE() {
+        new WaterRowerFleet(ofSeconds(1), ofSeconds(1), 0, transport);
+    }
+
+
+    // WaterRowers:
+
+    @Test
+    public void newWaterRower_returnsNewWaterRower() {
+        WaterRower waterRower1 = fleet.newWaterRower();
+        WaterRower waterRower2 = fleet.newWaterRower();
+
+        assertNotNull(waterRower1);
+        assertNotSame(waterRower1, waterRower2);
+        assertEquals(2, fleet.size());
+    }
+
+    @Test
+    public void newInitializer_returnsInitializerWithOwnConnectionAndServices() {
+        WaterRowerInitializer initializer1 = fleet.newInitializer();
+        WaterRowerInitializer initializer2 = fleet.newInitializer();
+
+        assertNotSame(initializer1.getWaterRowerConnector(), initializer2.getWaterRowerConnector());
+        assertNotSame(initializer1.getSubscriptionPollingService(), initializer2.getSubscriptionPollingService());
+        assertNotSame(initializer1.getPingWatchdog(), initializer2.getPingWatchdog());
+        assertNotSame(initializer1.getDeviceVerificationWatchdog(), initializer2.getDeviceVerificationWatchdog());
+    }
+
+    @Test
+    public void newInitializer_withBuilder_returnsInitializerWithOptionsOfBuilder() {
+        ActivityMonitor activityMonitor = new ActivityMonitor(ofSeconds(0), ofSeconds(0));
+
+        WaterRowerInitializer initializer = fleet.newInitializer(fleet.newInitializerBuilder().readMerging(false).activityMonitor(activityMonitor));
+
+        assertFalse(initializer.getSubscriptionPollingService().isReadMerging());
+        assertEquals(IDLE, initializer.getSubscriptionPollingService().getProfile());
+        assertEquals(1, fleet.size());
+    }
+
+    @Test
+    public void newInitializer_withBuilderOfOtherTransport_usesSharedTransportAndThreadPool() throws Exception {
+        ScheduledExecutorService otherExecutorService = mock(ScheduledExecutorService.class);
+        WaterRowerInitializer.Builder builder = new WaterRowerInitializer.Builder(ofMillis(10), ofSeconds(1))
+                .executorService(otherExecutorService)
+                .transport(new ChannelTransport(mock(EventLoopGroup.class), LocalChannel.class));
+
+        fleet.newInitializer(builder).getSubscriptionPollingService().start();
+
+        verifyZeroInteractions(otherExecutorService);
+        assertTrue(((ScheduledThreadPoolExecutor) fleet.getExecutorService()).getTaskCount() > 0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void newWaterRower_withNullBuilder_throwsNPE() {
+        fleet.newWaterRower(null);
+    }
+
+    @Test
+    public void getTransport_returnsSharedTransport() {
+        assertSame(transport, fleet.getTransport());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void newWaterRower_afterShutdown_throwsISE() {
+        fleet.shutdown();
+        fleet.newWaterRower();
+    }
+
+    @Test
+    public void shutdown_shutsDownThreadPoolAndEventLoopGroup() {
+        assertFalse(fleet.isShutdown());
+
+        fleet.shutdown();
+
+        assertTrue(fleet.isShutdown());
+        assertTrue(fleet.getExecutorService().isShutdown());
+        assertTrue(group.isShuttingDown());
+    }
+
+    // Threads:
+
+    @Test
+    public void newWaterRower_with1Device_usesBoundedNumberOfThreads() throws Exception {
+        assertLargestPoolSizeWithDevices(1);
+    }
+
+    @Test
+    public void newWaterRower_with10Devices_usesBoundedNumberOfThreads() throws Exception {
+        assertLargestPoolSizeWithDevices(10);
+    }
+
+    @Test
+    public void newWaterRower_with50Devices_usesBoundedNumberOfThreads() throws Exception {
+        assertLargestPoolSizeWithDevices(50);
+    }
+
+    /* Starts the polling of the given number of devices and checks that the shared pool doesn't grow. */
+    private void assertLargestPoolSizeWithDevices(int devices) throws Exception {
+        for (int i = 0; i < devices; i++)
+            fleet.newInitializer().getSubscriptionPollingService().start();
+
+        // Let the polling services run a few cycles.
+        Thread.sleep(100);
+
+        ScheduledThreadPoolExecutor executor = (ScheduledThreadPoolExecutor) fleet.getExecutorService();
+        assertTrue(executor.getLargestPoolSize() <= 2);
+        assertTrue(executor.getCompletedTaskCount() >= devices);
+        assertEquals(devices, fleet.size());
+    }
+
+}
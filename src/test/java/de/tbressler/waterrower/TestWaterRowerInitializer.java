@@ -1,10 +1,20 @@
 package de.tbressler.waterrower;
 
+import de.tbressler.waterrower.subscriptions.ActivityMonitor;
+import io.netty.channel.EventLoopGroup;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.ScheduledExecutorService;
+
+import static de.tbressler.waterrower.io.ChannelTransport.rxtx;
+import static de.tbressler.waterrower.subscriptions.PollingProfile.IDLE;
 import static java.time.Duration.ofSeconds;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
 
 /**
  * Tests for class WaterRowerInitializer.
@@ -40,6 +50,73 @@ public class TestWaterRowerInitializer {
         new WaterRowerInitializer(ofSeconds(1), ofSeconds(1), 0);
     }
 
+    @Test
+    public void new_withRecyclingMode_returnsConnector() {
+        WaterRowerInitializer recyclingInitializer = new WaterRowerInitializer.Builder(ofSeconds(1), ofSeconds(2)).recycleMessages(true).build();
+        assertNotNull(recyclingInitializer.getWaterRowerConnector());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_withMaxBatchSize0_throwsIAE() {
+        new WaterRowerInitializer.Builder(ofSeconds(1), ofSeconds(1)).maxBatchSize(0).build();
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullExecutorService_throwsNPE() {
+        new WaterRowerInitializer.Builder(ofSeconds(1), ofSeconds(1)).executorService(null);
+    }
+
+    @Test
+    public void new_withSharedExecutorService_returnsConnector() {
+        WaterRowerInitializer sharedInitializer = new WaterRowerInitializer.Builder(ofSeconds(1), ofSeconds(2)).executorService(mock(ScheduledExecutorService.class)).transport(rxtx(mock(EventLoopGroup.class))).build();
+        assertNotNull(sharedInitializer.getWaterRowerConnector());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_withNegativePipelineWindow_throwsIAE() {
+        new WaterRowerInitializer.Builder(ofSeconds(1), ofSeconds(2)).executorService(mock(ScheduledExecutorService.class)).transport(rxtx(mock(EventLoopGroup.class))).pipelineWindow(-1).build();
+    }
+
+    @Test
+    public void new_withActivityMonitor_returnsPollingServiceWithProfileOfMonitor() {
+        ActivityMonitor activityMonitor = new ActivityMonitor(ofSeconds(0), ofSeconds(0));
+        WaterRowerInitializer adaptiveInitializer = new WaterRowerInitializer.Builder(ofSeconds(1), ofSeconds(2)).executorService(mock(ScheduledExecutorService.class)).transport(rxtx(mock(EventLoopGroup.class))).activityMonitor(activityMonitor).build();
+        assertEquals(IDLE, adaptiveInitializer.getSubscriptionPollingService().getProfile());
+    }
+
+    @Test
+    public void new_withDefaults_returnsPollingServiceWithReadMerging() {
+        assertTrue(initializer.getSubscriptionPollingService().isReadMerging());
+    }
+
+    @Test
+    public void new_withReadMergingDisabled_returnsPollingServiceWithoutReadMerging() {
+        WaterRowerInitializer unmergedInitializer = new WaterRowerInitializer.Builder(ofSeconds(1), ofSeconds(2)).executorService(mock(ScheduledExecutorService.class)).transport(rxtx(mock(EventLoopGroup.class))).readMerging(false).build();
+        assertFalse(unmergedInitializer.getSubscriptionPollingService().isReadMerging());
+    }
+
+    // Builder:
+
+    @Test(expected = NullPointerException.class)
+    public void newBuilder_withNullPollingInterval_throwsNPE() {
+        new WaterRowerInitializer.Builder(null, ofSeconds(1));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void newBuilder_withNullTimeoutInterval_throwsNPE() {
+        new WaterRowerInitializer.Builder(ofSeconds(1), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void threadPoolSize_with0_throwsIAE() {
+        new WaterRowerInitializer.Builder(ofSeconds(1), ofSeconds(1)).threadPoolSize(0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void transport_withNull_throwsNPE() {
+        new WaterRowerInitializer.Builder(ofSeconds(1), ofSeconds(1)).transport(null);
+    }
+
     // Methods:
 
     @Test
@@ -62,4 +139,14 @@ public class TestWaterRowerInitializer {
         assertNotNull(initializer.getSubscriptionPollingService());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void getMemoryReadService_returnsNotNull() throws Exception {
+        assertNotNull(initializer.getMemoryReadService());
+    }
+
+    @Test
+    public void getOutboundQueue_returnsNotNull() throws Exception {
+        assertNotNull(initializer.getOutboundQueue());
+    }
+
+}
@@ -0,0 +1,139 @@
+package de.tbressler.waterrower.discovery;
+
+import de.tbressler.waterrower.model.ModelInformation;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static de.tbressler.waterrower.model.MonitorType.WATER_ROWER_S4;
+import static de.tbressler.waterrower.model.MonitorType.WATER_ROWER_S5;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for class DiscoveryCache.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestDiscoveryCache {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Class under test.
+    private DiscoveryCache cache;
+
+    private Path file;
+
+
+    @Before
+    public void setUp() throws Exception {
+        file = folder.getRoot().toPath().resolve("cache").resolve("discovery.properties");
+        cache = new DiscoveryCache(file);
+    }
+
+    // Constructor:
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullFile_throwsNPE() {
+        new DiscoveryCache(null);
+    }
+
+    // Get / put / remove:
+
+    @Test
+    public void get_withUnknownPort_returnsNull() {
+        assertNull(cache.get("/dev/ttyACM0"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void put_withNullModelInformation_throwsNPE() {
+        cache.put("/dev/ttyACM0", null);
+    }
+
+    @Test
+    public void put_andRemove_updatesCache() {
+        ModelInformation modelInformation = new ModelInformation(WATER_ROWER_S4, "02.10");
+
+        cache.put("/dev/ttyACM0", modelInformation);
+        assertSame(modelInformation, cache.get("/dev/ttyACM0"));
+        assertEquals(1, cache.size());
+
+        cache.remove("/dev/ttyACM0");
+        assertNull(cache.get("/dev/ttyACM0"));
+    }
+
+    @Test
+    public void retainAll_removesPortsWhichDontExistAnymore() {
+        cache.put("/dev/ttyACM0", new ModelInformation(WATER_ROWER_S4, "02.10"));
+        cache.put("/dev/ttyACM1", new ModelInformation(WATER_ROWER_S5, "02.00"));
+
+        cache.retainAll(Arrays.asList("/dev/ttyACM1", "/dev/ttyUSB0"));
+
+        assertEquals(1, cache.size());
+        assertNull(cache.get("/dev/ttyACM0"));
+        assertNotNull(cache.get("/dev/ttyACM1"));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void retainAll_withNull_throwsNPE() {
+        cache.retainAll(null);
+    }
+
+    @Test
+    public void clear_removesAllPorts() {
+        cache.put("/dev/ttyACM0", new ModelInformation(WATER_ROWER_S4, "02.10"));
+        cache.put("/dev/ttyACM1", new ModelInformation(WATER_ROWER_S5, "02.00"));
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+    }
+
+    // Load / store:
+
+    @Test
+    public void load_withoutFile_returnsEmptyCache() throws Exception {
+        cache.load();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void store_andLoad_keepsEntriesAcrossRestarts() throws Exception {
+        cache.put("/dev/ttyACM0", new ModelInformation(WATER_ROWER_S4, "02.10"));
+        cache.put("/dev/ttyUSB1", new ModelInformation(WATER_ROWER_S5, "02.00"));
+        cache.store();
+
+        DiscoveryCache restartedCache = new DiscoveryCache(file);
+        restartedCache.load();
+
+        assertEquals(2, restartedCache.size());
+        assertEquals(WATER_ROWER_S4, restartedCache.get("/dev/ttyACM0").getMonitorType());
+        assertEquals("02.10", restartedCache.get("/dev/ttyACM0").getFirmwareVersion());
+        assertEquals(WATER_ROWER_S5, restartedCache.get("/dev/ttyUSB1").getMonitorType());
+        assertEquals("02.00", restartedCache.get("/dev/ttyUSB1").getFirmwareVersion());
+    }
+
+    @Test
+    public void load_withInvalidEntries_skipsInvalidEntries() throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, Arrays.asList(
+                "/dev/ttyACM0=WATER_ROWER_S4;02.10",
+                "/dev/ttyACM1=NO_ROWER;02.10",
+                "/dev/ttyACM2=WATER_ROWER_S4"), ISO_8859_1);
+
+        cache.put("/dev/ttyUSB0", new ModelInformation(WATER_ROWER_S5, "02.00"));
+        cache.load();
+
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get("/dev/ttyACM0"));
+    }
+
+}
@@ -0,0 +1,238 @@
+package de.tbressler.waterrower.discovery;
+
+import de.tbressler.waterrower.io.IRxtxConnectionListener;
+import de.tbressler.waterrower.io.WaterRowerConnector;
+import de.tbressler.waterrower.io.msg.in.HardwareTypeMessage;
+import de.tbressler.waterrower.io.msg.in.ModelInformationMessage;
+import de.tbressler.waterrower.io.msg.in.PingMessage;
+import de.tbressler.waterrower.io.msg.out.ExitCommunicationMessage;
+import de.tbressler.waterrower.io.msg.out.RequestModelInformationMessage;
+import de.tbressler.waterrower.io.msg.out.StartCommunicationMessage;
+import de.tbressler.waterrower.model.ModelInformation;
+import io.netty.channel.rxtx.RxtxDeviceAddress;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeoutException;
+
+import static de.tbressler.waterrower.model.MonitorType.WATER_ROWER_S4;
+import static java.time.Duration.ofSeconds;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentCaptor.forClass;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for class PortProbe.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestPortProbe {
+
+    // Class under test.
+    private PortProbe portProbe;
+
+    // Mocks:
+    private WaterRowerConnector connector = mock(WaterRowerConnector.class, "connector");
+    private ScheduledExecutorService executorService = mock(ScheduledExecutorService.class, "executorService");
+    private ScheduledFuture timeoutFuture = mock(ScheduledFuture.class, "timeoutFuture");
+    private RxtxDeviceAddress address = new RxtxDeviceAddress("/dev/ttyACM0");
+
+    // Capture:
+    private ArgumentCaptor<IRxtxConnectionListener> listener = forClass(IRxtxConnectionListener.class);
+    private ArgumentCaptor<Runnable> timeoutTask = forClass(Runnable.class);
+    private ArgumentCaptor<Runnable> task = forClass(Runnable.class);
+
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        when(executorService.schedule(any(Runnable.class), anyLong(), eq(MILLISECONDS))).thenReturn(timeoutFuture);
+        portProbe = new PortProbe(connector, executorService, ofSeconds(2));
+    }
+
+    // Constructor:
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullConnector_throwsNPE() {
+        new PortProbe(null, executorService, ofSeconds(2));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullExecutorService_throwsNPE() {
+        new PortProbe(connector, null, ofSeconds(2));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullTimeout_throwsNPE() {
+        new PortProbe(connector, executorService, null);
+    }
+
+    // Probe:
+
+    @Test(expected = NullPointerException.class)
+    public void probe_withNullAddress_throwsNPE() {
+        portProbe.probe(null);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void probe_twice_throwsISE() {
+        portProbe.probe(address);
+        portProbe.probe(address);
+    }
+
+    @Test
+    public void probe_connectsAsynchronouslyAndSchedulesTimeout() throws Exception {
+        portProbe.probe(address);
+
+        verify(executorService, times(1)).schedule(any(Runnable.class), eq(2000L), eq(MILLISECONDS));
+        verify(connector, never()).connect(address);
+
+        runTasks();
+
+        verify(connector, times(1)).connect(address);
+    }
+
+    @Test
+    public void probe_withSupportedWaterRower_completesWithModelInformation() throws Exception {
+        ModelInformation modelInformation = new ModelInformation(WATER_ROWER_S4, "02.10");
+        CompletableFuture<ModelInformation> result = startProbe();
+
+        listener.getValue().onConnected();
+        verify(connector, times(1)).send(isA(StartCommunicationMessage.class));
+
+        listener.getValue().onMessageReceived(new PingMessage());
+        listener.getValue().onMessageReceived(new HardwareTypeMessage(true));
+        verify(connector, times(1)).send(isA(RequestModelInformationMessage.class));
+
+        listener.getValue().onMessageReceived(new ModelInformationMessage(modelInformation));
+        verify(connector, times(1)).send(isA(ExitCommunicationMessage.class));
+        verify(timeoutFuture, times(1)).cancel(false);
+
+        // The result is completed after the port was closed:
+        assertFalse(result.isDone());
+        when(connector.isConnected()).thenReturn(true);
+        runTasks();
+
+        verify(connector, times(1)).disconnect();
+        assertSame(modelInformation, result.get());
+    }
+
+    @Test
+    public void probe_withOtherDevice_failsAndClosesPort() throws Exception {
+        CompletableFuture<ModelInformation> result = startProbe();
+        when(connector.isConnected()).thenReturn(true);
+
+        listener.getValue().onConnected();
+        listener.getValue().onMessageReceived(new HardwareTypeMessage(false));
+        runTasks();
+
+        verify(connector, never()).send(isA(RequestModelInformationMessage.class));
+        verify(connector, times(1)).disconnect();
+        assertFailedWith(IOException.class, result);
+    }
+
+    @Test
+    public void probe_withUnsupportedFirmware_fails() throws Exception {
+        CompletableFuture<ModelInformation> result = startProbe();
+
+        listener.getValue().onMessageReceived(new ModelInformationMessage(new ModelInformation(WATER_ROWER_S4, "01.00")));
+        runTasks();
+
+        assertFailedWith(IOException.class, result);
+    }
+
+    @Test
+    public void probe_withoutHandshake_failsWithTimeout() throws Exception {
+        CompletableFuture<ModelInformation> result = startProbe();
+        when(connector.isConnected()).thenReturn(true);
+
+        timeoutTask.getValue().run();
+        runTasks();
+
+        verify(connector, times(1)).disconnect();
+        assertFailedWith(TimeoutException.class, result);
+    }
+
+    @Test
+    public void probe_whenConnectFails_fails() throws Exception {
+        doThrow(new IOException("port busy")).when(connector).connect(address);
+        CompletableFuture<ModelInformation> result = portProbe.probe(address);
+
+        runTasks();
+        runTasks();
+
+        verify(connector, never()).disconnect();
+        assertFailedWith(IOException.class, result);
+    }
+
+    @Test
+    public void probe_whenConnectionFails_fails() throws Exception {
+        CompletableFuture<ModelInformation> result = startProbe();
+
+        listener.getValue().onError();
+        runTasks();
+
+        assertFailedWith(IOException.class, result);
+    }
+
+    @Test
+    public void probe_afterFinished_ignoresFurtherEvents() throws Exception {
+        CompletableFuture<ModelInformation> result = startProbe();
+
+        listener.getValue().onDisconnected();
+        listener.getValue().onMessageReceived(new ModelInformationMessage(new ModelInformation(WATER_ROWER_S4, "02.10")));
+        timeoutTask.getValue().run();
+        runTasks();
+
+        verify(connector, never()).send(isA(ExitCommunicationMessage.class));
+        assertFailedWith(IOException.class, result);
+    }
+
+
+    // Helper methods:
+
+    /* Starts the probe and executes the connect. */
+    private CompletableFuture<ModelInformation> startProbe() throws Exception {
+        CompletableFuture<ModelInformation> result = portProbe.probe(address);
+        verify(connector).addConnectionListener(listener.capture());
+        verify(executorService).schedule(timeoutTask.capture(), anyLong(), eq(MILLISECONDS));
+        runTasks();
+        return result;
+    }
+
+    /* Runs the tasks, which were passed to the executor service since the last call. */
+    private void runTasks() {
+        verify(executorService, atLeast(0)).execute(task.capture());
+        List<Runnable> tasks = new ArrayList<>(task.getAllValues());
+        reset(executorService);
+        task = forClass(Runnable.class);
+        for (Runnable runnable : tasks)
+            runnable.run();
+    }
+
+    /* Asserts that the future was completed with the given type of exception. */
+    private void assertFailedWith(Class<? extends Throwable> type, CompletableFuture<ModelInformation> result) throws Exception {
+        assertTrue(result.isCompletedExceptionally());
+        try {
+            result.get();
+            fail("Exception expected!");
+        } catch (ExecutionException e) {
+            assertTrue(type.isInstance(e.getCause()));
+        }
+    }
+
+}
@@ -0,0 +1,211 @@
+package de.tbressler.waterrower.discovery;
+
+import de.tbressler.waterrower.model.ModelInformation;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static de.tbressler.waterrower.model.MonitorType.WATER_ROWER_S4;
+import static de.tbressler.waterrower.model.MonitorType.WATER_ROWER_S5;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for class SerialPortDiscovery.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestSerialPortDiscovery {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Class under test.
+    private SerialPortDiscovery discovery;
+
+    // Mocks:
+    private DiscoveryCache cache = mock(DiscoveryCache.class, "cache");
+
+    // The candidate ports:
+    private List<String> ports = new ArrayList<>(asList("/dev/ttyACM0", "/dev/ttyACM1", "/dev/ttyACM2", "/dev/ttyUSB0", "/dev/ttyUSB1"));
+
+    // The running probes by port:
+    private Map<String, CompletableFuture<ModelInformation>> probes = new HashMap<>();
+
+    // The prober, which records the running probes:
+    private Function<String, CompletableFuture<ModelInformation>> prober = port -> {
+        CompletableFuture<ModelInformation> probe = new CompletableFuture<>();
+        probes.put(port, probe);
+        return probe;
+    };
+
+    private ModelInformation s4 = new ModelInformation(WATER_ROWER_S4, "02.10");
+    private ModelInformation s5 = new ModelInformation(WATER_ROWER_S5, "02.00");
+
+
+    @Before
+    public void setUp() {
+        discovery = new SerialPortDiscovery(() -> ports, prober, 2, null);
+    }
+
+    // Constructor:
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullPortLister_throwsNPE() {
+        new SerialPortDiscovery(null, prober, 2, null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullProber_throwsNPE() {
+        new SerialPortDiscovery(() -> ports, null, 2, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_withZeroParallelProbes_throwsIAE() {
+        new SerialPortDiscovery(() -> ports, prober, 0, null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullExecutorService_throwsNPE() {
+        new SerialPortDiscovery(null, null, null, 2, null);
+    }
+
+    // List candidate ports:
+
+    @Test
+    public void listCandidatePorts_returnsSortedUsbSerialDevices() throws Exception {
+        Path dev = folder.getRoot().toPath();
+        for (String name : asList("ttyUSB1", "ttyACM10", "ttyACM0", "ttyS0", "tty", "ttyACM", "sda1"))
+            Files.createFile(dev.resolve(name));
+
+        List<String> candidates = SerialPortDiscovery.listCandidatePorts(dev);
+
+        assertEquals(asList(
+                dev.resolve("ttyACM0").toString(),
+                dev.resolve("ttyACM10").toString(),
+                dev.resolve("ttyUSB1").toString()), candidates);
+    }
+
+    @Test
+    public void listCandidatePorts_withMissingDirectory_returnsEmptyList() {
+        assertTrue(SerialPortDiscovery.listCandidatePorts(folder.getRoot().toPath().resolve("missing")).isEmpty());
+    }
+
+    // Discover:
+
+    @Test
+    public void discover_probesWithBoundedParallelism() throws Exception {
+        CompletableFuture<Map<String, ModelInformation>> result = discovery.discover();
+
+        // Only two probes run at once:
+        assertEquals(2, probes.size());
+        assertTrue(probes.containsKey("/dev/ttyACM0"));
+        assertTrue(probes.containsKey("/dev/ttyACM1"));
+
+        probes.get("/dev/ttyACM1").complete(s4);
+        assertEquals(3, probes.size());
+        assertTrue(probes.containsKey("/dev/ttyACM2"));
+
+        probes.get("/dev/ttyACM0").completeExceptionally(new IOException("not a WaterRower"));
+        probes.get("/dev/ttyACM2").completeExceptionally(new IOException("timeout"));
+        assertEquals(5, probes.size());
+        assertFalse(result.isDone());
+
+        probes.get("/dev/ttyUSB1").complete(s5);
+        probes.get("/dev/ttyUSB0").completeExceptionally(new IOException("timeout"));
+
+        assertTrue(result.isDone());
+        Map<String, ModelInformation> rowers = result.get();
+        assertEquals(asList("/dev/ttyACM1", "/dev/ttyUSB1"), new ArrayList<>(rowers.keySet()));
+        assertSame(s4, rowers.get("/dev/ttyACM1"));
+        assertSame(s5, rowers.get("/dev/ttyUSB1"));
+    }
+
+    @Test
+    public void discover_withoutCandidatePorts_returnsEmptyResult() throws Exception {
+        ports.clear();
+
+        CompletableFuture<Map<String, ModelInformation>> result = discovery.discover();
+
+        assertTrue(result.isDone());
+        assertTrue(result.get().isEmpty());
+    }
+
+    @Test
+    public void discover_withFailingProber_skipsPort() throws Exception {
+        discovery = new SerialPortDiscovery(() -> Arrays.asList("/dev/ttyACM0"), port -> { throw new IllegalStateException("no RXTX"); }, 2, null);
+
+        CompletableFuture<Map<String, ModelInformation>> result = discovery.discover();
+
+        assertTrue(result.isDone());
+        assertTrue(result.get().isEmpty());
+    }
+
+    @Test
+    public void discover_withCache_probesCachedPortsFirstAndStoresCache() throws Exception {
+        when(cache.get(anyString())).thenReturn(null);
+        when(cache.get("/dev/ttyACM2")).thenReturn(s4);
+        discovery = new SerialPortDiscovery(() -> asList("/dev/ttyACM0", "/dev/ttyACM1", "/dev/ttyACM2"), prober, 1, cache);
+
+        CompletableFuture<Map<String, ModelInformation>> result = discovery.discover();
+
+        // The cached port is probed first:
+        assertEquals(1, probes.size());
+        assertTrue(probes.containsKey("/dev/ttyACM2"));
+
+        probes.get("/dev/ttyACM2").complete(s4);
+        probes.get("/dev/ttyACM0").completeExceptionally(new IOException("timeout"));
+        probes.get("/dev/ttyACM1").complete(s5);
+
+        verify(cache, times(1)).retainAll(asList("/dev/ttyACM0", "/dev/ttyACM1", "/dev/ttyACM2"));
+        verify(cache, times(1)).put("/dev/ttyACM2", s4);
+        verify(cache, times(1)).put("/dev/ttyACM1", s5);
+        verify(cache, times(1)).store();
+        assertEquals(2, result.get().size());
+        assertSame(s4, result.get().get("/dev/ttyACM2"));
+    }
+
+    @Test
+    public void discover_withCachedPortWhichFailsProbe_removesPortFromCacheAndResult() throws Exception {
+        when(cache.get(anyString())).thenReturn(null);
+        when(cache.get("/dev/ttyACM0")).thenReturn(s4);
+        discovery = new SerialPortDiscovery(() -> asList("/dev/ttyACM0"), prober, 2, cache);
+
+        CompletableFuture<Map<String, ModelInformation>> result = discovery.discover();
+
+        // The port was re-numbered, another device is connected now:
+        probes.get("/dev/ttyACM0").completeExceptionally(new IOException("not a WaterRower"));
+
+        verify(cache, times(1)).remove("/dev/ttyACM0");
+        verify(cache, never()).put(anyString(), any(ModelInformation.class));
+        verify(cache, times(1)).store();
+        assertTrue(result.get().isEmpty());
+    }
+
+    @Test
+    public void discover_whenCacheCantBeStored_returnsResult() throws Exception {
+        doThrow(new IOException("read-only")).when(cache).store();
+        discovery = new SerialPortDiscovery(() -> asList("/dev/ttyACM0"), prober, 2, cache);
+
+        CompletableFuture<Map<String, ModelInformation>> result = discovery.discover();
+        probes.get("/dev/ttyACM0").complete(s4);
+
+        assertEquals(1, result.get().size());
+    }
+
+}
@@ -0,0 +1,112 @@
+package de.tbressler.waterrower.io;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.oio.OioEventLoopGroup;
+import io.netty.channel.rxtx.RxtxChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for class ChannelTransport.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestChannelTransport {
+
+    // Mocks:
+    private EventLoopGroup group = mock(EventLoopGroup.class, "group");
+
+
+    // Constructor:
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullGroup_throwsNPE() {
+        new ChannelTransport(null, LocalChannel.class);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullChannelClass_throwsNPE() {
+        new ChannelTransport(group, null);
+    }
+
+    @Test
+    public void new_withGroupAndChannelClass_returnsTransport() {
+        ChannelTransport transport = new ChannelTransport(group, LocalChannel.class);
+        assertSame(group, transport.getGroup());
+        assertEquals(LocalChannel.class, transport.getChannelClass());
+    }
+
+    // RXTX:
+
+    @Test
+    public void rxtx_returnsTransportWithOwnOioGroup() {
+        ChannelTransport transport1 = ChannelTransport.rxtx();
+        ChannelTransport transport2 = ChannelTransport.rxtx();
+
+        assertTrue(transport1.getGroup() instanceof OioEventLoopGroup);
+        assertNotSame(transport1.getGroup(), transport2.getGroup());
+        assertEquals(RxtxChannel.class, transport1.getChannelClass());
+
+        transport1.getGroup().shutdownGracefully();
+        transport2.getGroup().shutdownGracefully();
+    }
+
+    @Test
+    public void rxtx_withGroup_returnsTransportWithGivenGroup() {
+        ChannelTransport transport = ChannelTransport.rxtx(group);
+        assertSame(group, transport.getGroup());
+        assertEquals(RxtxChannel.class, transport.getChannelClass());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void rxtx_withNullGroup_throwsNPE() {
+        ChannelTransport.rxtx(null);
+    }
+
+    // TCP:
+
+    @Test
+    public void tcp_returnsTransportWithOwnNonBlockingGroup() {
+        ChannelTransport transport = ChannelTransport.tcp();
+
+        if (Epoll.isAvailable())
+            assertEquals(EpollSocketChannel.class, transport.getChannelClass());
+        else
+            assertEquals(NioSocketChannel.class, transport.getChannelClass());
+
+        transport.getGroup().shutdownGracefully();
+    }
+
+    @Test
+    public void tcp_withNioGroup_returnsNioTransport() {
+        EventLoopGroup nioGroup = new NioEventLoopGroup(1);
+
+        ChannelTransport transport = ChannelTransport.tcp(nioGroup);
+
+        assertSame(nioGroup, transport.getGroup());
+        assertEquals(NioSocketChannel.class, transport.getChannelClass());
+
+        nioGroup.shutdownGracefully();
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void tcp_withNullGroup_throwsNPE() {
+        ChannelTransport.tcp(null);
+    }
+
+    // To string:
+
+    @Test
+    public void toString_returnsObjectInfo() {
+        assertTrue(new ChannelTransport(group, LocalChannel.class).toString().startsWith("ChannelTransport"));
+    }
+
+}
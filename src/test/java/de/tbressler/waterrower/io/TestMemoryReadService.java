@@ -0,0 +1,369 @@
+package de.tbressler.waterrower.io;
+
+import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.Memory;
+import de.tbressler.waterrower.io.msg.in.DataMemoryMessage;
+import de.tbressler.waterrower.io.msg.in.DataMemoryMessagePool;
+import de.tbressler.waterrower.io.msg.in.PingMessage;
+import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeoutException;
+
+import static de.tbressler.waterrower.io.MessagePriority.INTERACTIVE;
+import static de.tbressler.waterrower.io.msg.Memory.DOUBLE_MEMORY;
+import static de.tbressler.waterrower.io.msg.Memory.SINGLE_MEMORY;
+import static de.tbressler.waterrower.model.MemoryLocation.MS_DISTANCE_DEC;
+import static de.tbressler.waterrower.model.MemoryLocation.MS_DISTANCE_LOW;
+import static java.time.Duration.ofSeconds;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentCaptor.forClass;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for class MemoryReadService.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestMemoryReadService {
+
+    // Class under test.
+    private MemoryReadService memoryReadService;
+
+    // Mocks:
+    private WaterRowerConnector connector = mock(WaterRowerConnector.class, "connector");
+    private ScheduledExecutorService executorService = mock(ScheduledExecutorService.class, "executorService");
+    private ScheduledFuture timeoutFuture = mock(ScheduledFuture.class, "timeoutFuture");
+
+    // Capture:
+    private ArgumentCaptor<IRxtxConnectionListener> listener = forClass(IRxtxConnectionListener.class);
+    private ArgumentCaptor<Runnable> timeoutTask = forClass(Runnable.class);
+
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        when(executorService.schedule(any(Runnable.class), anyLong(), eq(MILLISECONDS))).thenReturn(timeoutFuture);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArguments()[0]).run();
+            return null;
+        }).when(executorService).execute(any(Runnable.class));
+        memoryReadService = new MemoryReadService(connector, executorService, ofSeconds(1));
+        verify(connector).addConnectionListener(listener.capture());
+
+        // The requests are written immediately:
+        try {
+            doAnswer(invocation -> {
+                listener.getValue().onMessageSent((AbstractMessage) invocation.getArguments()[0]);
+                return null;
+            }).when(connector).send(any(AbstractMessage.class), eq(INTERACTIVE));
+        } catch (IOException e) {
+            fail("Unexpected exception!");
+        }
+    }
+
+    // Constructor:
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullConnector_throwsNPE() {
+        new MemoryReadService(null, executorService, ofSeconds(1));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullExecutorService_throwsNPE() {
+        new MemoryReadService(connector, null, ofSeconds(1));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullTimeout_throwsNPE() {
+        new MemoryReadService(connector, executorService, null);
+    }
+
+    // Read:
+
+    @Test(expected = NullPointerException.class)
+    public void read_withNullMemory_throwsNPE() {
+        memoryReadService.read(null, MS_DISTANCE_LOW);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void read_withNullLocation_throwsNPE() {
+        memoryReadService.read(SINGLE_MEMORY, null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void read_withNullTimeout_throwsNPE() {
+        memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW, null);
+    }
+
+    @Test
+    public void read_sendsReadMemoryMessageAndSchedulesTimeout() throws Exception {
+        CompletableFuture<DataMemoryMessage> future = memoryReadService.read(DOUBLE_MEMORY, MS_DISTANCE_LOW, ofSeconds(3));
+
+        verify(connector, times(1)).send(argThat(isReadMemoryMessage(DOUBLE_MEMORY, MS_DISTANCE_LOW.getLocation())), eq(INTERACTIVE));
+        verify(executorService, times(1)).schedule(any(Runnable.class), eq(3000L), eq(MILLISECONDS));
+        assertFalse(future.isDone());
+        assertEquals(1, memoryReadService.getInFlightCount());
+    }
+
+    @Test
+    public void read_whenResponseIsReceived_completesFuture() throws Exception {
+        CompletableFuture<DataMemoryMessage> future = memoryReadService.read(DOUBLE_MEMORY, MS_DISTANCE_LOW);
+
+        DataMemoryMessage response = new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x01, 0x02);
+        listener.getValue().onMessageReceived(response);
+
+        assertSame(response, future.get());
+        verify(timeoutFuture, times(1)).cancel(false);
+        assertEquals(0, memoryReadService.getInFlightCount());
+    }
+
+    @Test
+    public void read_whenResponseIsReceived_completesFutureOnExecutor() throws Exception {
+        doNothing().when(executorService).execute(any(Runnable.class));
+        CompletableFuture<DataMemoryMessage> future = memoryReadService.read(DOUBLE_MEMORY, MS_DISTANCE_LOW);
+
+        DataMemoryMessage response = new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x01, 0x02);
+        listener.getValue().onMessageReceived(response);
+
+        assertFalse(future.isDone());
+
+        ArgumentCaptor<Runnable> completion = forClass(Runnable.class);
+        verify(executorService, times(1)).execute(completion.capture());
+        completion.getValue().run();
+
+        assertSame(response, future.get());
+    }
+
+    @Test
+    public void read_withPipelinedReads_completesEachReadWithItsLocation() throws Exception {
+        CompletableFuture<DataMemoryMessage> future1 = memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW);
+        CompletableFuture<DataMemoryMessage> future2 = memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_DEC);
+        assertEquals(2, memoryReadService.getInFlightCount());
+
+        DataMemoryMessage response2 = new DataMemoryMessage(MS_DISTANCE_DEC.getLocation(), 0x05);
+        listener.getValue().onMessageReceived(response2);
+
+        assertFalse(future1.isDone());
+        assertSame(response2, future2.get());
+
+        DataMemoryMessage response1 = new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x07);
+        listener.getValue().onMessageReceived(response1);
+
+        assertSame(response1, future1.get());
+        assertEquals(0, memoryReadService.getInFlightCount());
+    }
+
+    @Test
+    public void read_withSameLocationTwice_completesEachReadWithItsOwnResponse() throws Exception {
+        CompletableFuture<DataMemoryMessage> future1 = memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW);
+        CompletableFuture<DataMemoryMessage> future2 = memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW);
+
+        DataMemoryMessage response1 = new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x07);
+        listener.getValue().onMessageReceived(response1);
+
+        assertSame(response1, future1.get());
+        assertFalse(future2.isDone());
+
+        DataMemoryMessage response2 = new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x08);
+        listener.getValue().onMessageReceived(response2);
+
+        assertSame(response2, future2.get());
+        assertEquals(0, memoryReadService.getInFlightCount());
+    }
+
+    @Test
+    public void read_afterPollOfSameLocation_ignoresResponseToPoll() throws Exception {
+        listener.getValue().onMessageSent(new ReadMemoryMessage(SINGLE_MEMORY, MS_DISTANCE_LOW.getLocation()));
+        CompletableFuture<DataMemoryMessage> future = memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW);
+
+        listener.getValue().onMessageReceived(new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x07));
+
+        assertFalse(future.isDone());
+
+        DataMemoryMessage response = new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x08);
+        listener.getValue().onMessageReceived(response);
+
+        assertSame(response, future.get());
+    }
+
+    @Test
+    public void read_whenPollOfSameLocationIsSentAfterRead_completesReadWithFirstResponse() throws Exception {
+        CompletableFuture<DataMemoryMessage> future = memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW);
+        listener.getValue().onMessageSent(new ReadMemoryMessage(SINGLE_MEMORY, MS_DISTANCE_LOW.getLocation()));
+
+        DataMemoryMessage response = new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x07);
+        listener.getValue().onMessageReceived(response);
+        listener.getValue().onMessageReceived(new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x08));
+
+        assertSame(response, future.get());
+    }
+
+    @Test
+    public void read_whenResponseToPollIsReceivedBeforeReadIsWritten_doesntCompleteFuture() throws Exception {
+        doNothing().when(connector).send(any(AbstractMessage.class), eq(INTERACTIVE));
+        listener.getValue().onMessageSent(new ReadMemoryMessage(SINGLE_MEMORY, MS_DISTANCE_LOW.getLocation()));
+        CompletableFuture<DataMemoryMessage> future = memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW);
+
+        listener.getValue().onMessageReceived(new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x07));
+
+        assertFalse(future.isDone());
+        assertEquals(1, memoryReadService.getInFlightCount());
+    }
+
+    @Test
+    public void read_afterTimeoutOfPreviousRead_completesReadWithNextResponse() throws Exception {
+        CompletableFuture<DataMemoryMessage> future1 = memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW);
+        verify(executorService).schedule(timeoutTask.capture(), eq(1000L), eq(MILLISECONDS));
+        timeoutTask.getValue().run();
+
+        // The response to the first read was lost:
+        CompletableFuture<DataMemoryMessage> future2 = memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW);
+        DataMemoryMessage response = new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x07);
+        listener.getValue().onMessageReceived(response);
+
+        assertFailedWith(future1, TimeoutException.class);
+        assertSame(response, future2.get());
+    }
+
+    @Test
+    public void read_whenResponseWithOtherMemoryTypeIsReceived_doesntCompleteFuture() throws Exception {
+        CompletableFuture<DataMemoryMessage> future = memoryReadService.read(DOUBLE_MEMORY, MS_DISTANCE_LOW);
+
+        listener.getValue().onMessageReceived(new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x07));
+        listener.getValue().onMessageReceived(new PingMessage());
+
+        assertFalse(future.isDone());
+        assertEquals(1, memoryReadService.getInFlightCount());
+    }
+
+    @Test
+    public void read_whenRecycledResponseIsReceived_completesFutureWithCopy() throws Exception {
+        CompletableFuture<DataMemoryMessage> future = memoryReadService.read(DOUBLE_MEMORY, MS_DISTANCE_LOW);
+
+        DataMemoryMessage response = new DataMemoryMessagePool().acquire(MS_DISTANCE_LOW.getLocation(), 0x01, 0x02);
+        listener.getValue().onMessageReceived(response);
+        ReferenceCountUtil.release(response);
+
+        DataMemoryMessage result = future.get();
+        assertNotSame(response, result);
+        assertEquals(DOUBLE_MEMORY, result.getMemory());
+        assertEquals(MS_DISTANCE_LOW.getLocation(), result.getLocation());
+        assertEquals(0x01, result.getValue2());
+        assertEquals(0x02, result.getValue1());
+    }
+
+    @Test
+    public void read_whenResponseIsReceivedWithoutRead_discardsResponse() throws Exception {
+        listener.getValue().onMessageReceived(new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x07));
+        assertEquals(0, memoryReadService.getInFlightCount());
+    }
+
+    @Test
+    public void read_whenSendFails_failsFuture() throws Exception {
+        doThrow(new IOException("some-io-exception")).when(connector).send(any(ReadMemoryMessage.class), eq(INTERACTIVE));
+
+        CompletableFuture<DataMemoryMessage> future = memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW);
+
+        assertFailedWith(future, IOException.class);
+        assertEquals(0, memoryReadService.getInFlightCount());
+    }
+
+    @Test
+    public void read_whenTimeoutExpires_failsFutureWithTimeoutException() throws Exception {
+        CompletableFuture<DataMemoryMessage> future = memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW);
+        verify(executorService).schedule(timeoutTask.capture(), eq(1000L), eq(MILLISECONDS));
+
+        timeoutTask.getValue().run();
+
+        assertFailedWith(future, TimeoutException.class);
+        assertEquals(0, memoryReadService.getInFlightCount());
+
+        // A late response is discarded:
+        listener.getValue().onMessageReceived(new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x07));
+        assertFailedWith(future, TimeoutException.class);
+    }
+
+    @Test
+    public void read_whenDisconnected_failsFuture() throws Exception {
+        CompletableFuture<DataMemoryMessage> future = memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW);
+
+        listener.getValue().onDisconnected();
+
+        assertFailedWith(future, IOException.class);
+        verify(timeoutFuture, times(1)).cancel(false);
+        assertEquals(0, memoryReadService.getInFlightCount());
+    }
+
+    @Test
+    public void read_whenConnectionFails_failsFuture() throws Exception {
+        CompletableFuture<DataMemoryMessage> future = memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW);
+
+        listener.getValue().onError();
+
+        assertFailedWith(future, IOException.class);
+    }
+
+    @Test
+    public void read_whenReconnected_failsFutureAndDiscardsStaleResponse() throws Exception {
+        CompletableFuture<DataMemoryMessage> future = memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW);
+
+        listener.getValue().onConnected();
+        listener.getValue().onMessageReceived(new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x07));
+
+        assertFailedWith(future, IOException.class);
+        assertEquals(0, memoryReadService.getInFlightCount());
+    }
+
+    @Test
+    public void read_afterReconnect_completesReadWithResponse() throws Exception {
+        listener.getValue().onMessageSent(new ReadMemoryMessage(SINGLE_MEMORY, MS_DISTANCE_LOW.getLocation()));
+        listener.getValue().onConnected();
+
+        CompletableFuture<DataMemoryMessage> future = memoryReadService.read(SINGLE_MEMORY, MS_DISTANCE_LOW);
+        DataMemoryMessage response = new DataMemoryMessage(MS_DISTANCE_LOW.getLocation(), 0x07);
+        listener.getValue().onMessageReceived(response);
+
+        assertSame(response, future.get());
+    }
+
+
+    // Helper methods:
+
+    private void assertFailedWith(CompletableFuture<DataMemoryMessage> future, Class<? extends Exception> exceptionClass) throws InterruptedException {
+        assertTrue(future.isCompletedExceptionally());
+        try {
+            future.get();
+            fail("Exception expected!");
+        } catch (ExecutionException e) {
+            assertTrue(exceptionClass.isInstance(e.getCause()));
+        }
+    }
+
+    private ArgumentMatcher<ReadMemoryMessage> isReadMemoryMessage(Memory memory, int location) {
+        return new ArgumentMatcher<ReadMemoryMessage>() {
+            @Override
+            public boolean matches(Object argument) {
+                if (!(argument instanceof ReadMemoryMessage))
+                    return false;
+                ReadMemoryMessage msg = (ReadMemoryMessage) argument;
+                return (msg.getMemory() == memory) && (msg.getLocation() == location);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,49 @@
+package de.tbressler.waterrower.io;
+
+import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.out.*;
+import org.junit.Test;
+
+import static de.tbressler.waterrower.io.MessagePriority.*;
+import static de.tbressler.waterrower.io.msg.Memory.SINGLE_MEMORY;
+import static de.tbressler.waterrower.io.msg.out.ConfigureWorkoutMessage.MessageType.SINGLE_WORKOUT;
+import static de.tbressler.waterrower.workout.WorkoutUnit.METERS;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for class MessagePriority.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestMessagePriority {
+
+    @Test(expected = NullPointerException.class)
+    public void of_withNull_throwsNPE() {
+        MessagePriority.of(null);
+    }
+
+    @Test
+    public void of_withControlMessages_returnsControl() {
+        assertEquals(CONTROL, MessagePriority.of(new StartCommunicationMessage()));
+        assertEquals(CONTROL, MessagePriority.of(new RequestModelInformationMessage()));
+        assertEquals(CONTROL, MessagePriority.of(new ExitCommunicationMessage()));
+        assertEquals(CONTROL, MessagePriority.of(new ResetMessage()));
+    }
+
+    @Test
+    public void of_withWorkout_returnsInteractive() {
+        assertEquals(INTERACTIVE, MessagePriority.of(new ConfigureWorkoutMessage(SINGLE_WORKOUT, 1000, METERS)));
+    }
+
+    @Test
+    public void of_withUnknownMessage_returnsInteractive() {
+        assertEquals(INTERACTIVE, MessagePriority.of(new AbstractMessage()));
+    }
+
+    @Test
+    public void of_withReadMemory_returnsPoll() {
+        assertEquals(POLL, MessagePriority.of(new ReadMemoryMessage(SINGLE_MEMORY, 0x055)));
+    }
+
+}
@@ -0,0 +1,149 @@
+package de.tbressler.waterrower.io;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static de.tbressler.waterrower.io.MessagePriority.*;
+import static java.time.Duration.ofMillis;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for class OutboundQueue.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestOutboundQueue {
+
+    // Class under test.
+    private OutboundQueue outboundQueue;
+
+    // The clock in nanoseconds:
+    private AtomicLong clock = new AtomicLong();
+
+
+    @Before
+    public void setUp() {
+        outboundQueue = new OutboundQueue(ofMillis(250), clock::get);
+    }
+
+    // Constructor:
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullMaxDelay_throwsNPE() {
+        new OutboundQueue(null);
+    }
+
+    // Offer / take:
+
+    @Test(expected = NullPointerException.class)
+    public void offer_withNullMessage_throwsNPE() {
+        outboundQueue.offer(null, POLL);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void offer_withNullPriority_throwsNPE() {
+        outboundQueue.offer("poll", null);
+    }
+
+    @Test
+    public void take_withEmptyQueue_returnsNull() {
+        assertTrue(outboundQueue.isEmpty());
+        assertNull(outboundQueue.take());
+    }
+
+    @Test
+    public void take_returnsMessagesByPriorityAndInOrder() {
+        outboundQueue.offer("poll1", POLL);
+        outboundQueue.offer("workout1", INTERACTIVE);
+        outboundQueue.offer("poll2", POLL);
+        outboundQueue.offer("reset", CONTROL);
+        outboundQueue.offer("workout2", INTERACTIVE);
+
+        assertEquals(2, outboundQueue.size(POLL));
+        assertEquals("reset", outboundQueue.take());
+        assertEquals("workout1", outboundQueue.take());
+        assertEquals("workout2", outboundQueue.take());
+        assertEquals("poll1", outboundQueue.take());
+        assertEquals("poll2", outboundQueue.take());
+        assertTrue(outboundQueue.isEmpty());
+    }
+
+    @Test
+    public void take_withStarvingMessage_returnsStarvingMessageFirst() {
+        outboundQueue.offer("poll1", POLL);
+        clock.addAndGet(ofMillis(100).toNanos());
+        outboundQueue.offer("poll2", POLL);
+        clock.addAndGet(ofMillis(150).toNanos());
+        outboundQueue.offer("workout", INTERACTIVE);
+        outboundQueue.offer("reset", CONTROL);
+
+        // poll1 waits 250 ms:
+        assertEquals("poll1", outboundQueue.take());
+        assertEquals("reset", outboundQueue.take());
+        assertEquals("workout", outboundQueue.take());
+        assertEquals("poll2", outboundQueue.take());
+    }
+
+    @Test
+    public void take_withManyStarvingMessages_returnsOldestFirst() {
+        outboundQueue.offer("poll", POLL);
+        clock.addAndGet(ofMillis(10).toNanos());
+        outboundQueue.offer("workout", INTERACTIVE);
+        clock.addAndGet(ofMillis(500).toNanos());
+        outboundQueue.offer("reset", CONTROL);
+
+        assertEquals("poll", outboundQueue.take());
+        assertEquals("workout", outboundQueue.take());
+        assertEquals("reset", outboundQueue.take());
+    }
+
+    @Test
+    public void clear_removesAllMessages() {
+        outboundQueue.offer("poll", POLL);
+        outboundQueue.offer("reset", CONTROL);
+
+        outboundQueue.clear();
+
+        assertTrue(outboundQueue.isEmpty());
+        assertNull(outboundQueue.take());
+    }
+
+    // Latency:
+
+    @Test
+    public void getLatency_withoutMessages_returnsZero() {
+        assertEquals(0, outboundQueue.getTakenMessages(POLL));
+        assertEquals(ofMillis(0), outboundQueue.getAverageLatency(POLL));
+        assertEquals(ofMillis(0), outboundQueue.getMaxLatency(POLL));
+    }
+
+    @Test
+    public void getLatency_returnsQueueingLatencyPerPriority() {
+        outboundQueue.offer("poll1", POLL);
+        outboundQueue.offer("poll2", POLL);
+        clock.addAndGet(ofMillis(10).toNanos());
+        outboundQueue.offer("reset", CONTROL);
+        clock.addAndGet(ofMillis(2).toNanos());
+
+        outboundQueue.take();
+        outboundQueue.take();
+        clock.addAndGet(ofMillis(8).toNanos());
+        outboundQueue.take();
+
+        assertEquals(1, outboundQueue.getTakenMessages(CONTROL));
+        assertEquals(ofMillis(2), outboundQueue.getAverageLatency(CONTROL));
+        assertEquals(2, outboundQueue.getTakenMessages(POLL));
+        assertEquals(ofMillis(16), outboundQueue.getAverageLatency(POLL));
+        assertEquals(ofMillis(20), outboundQueue.getMaxLatency(POLL));
+        assertEquals(0, outboundQueue.getTakenMessages(INTERACTIVE));
+    }
+
+    @Test
+    public void toString_returnsObjectInfo() {
+        assertTrue(outboundQueue.toString().startsWith("OutboundQueue"));
+    }
+
+}
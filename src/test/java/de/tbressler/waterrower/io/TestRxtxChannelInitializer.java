@@ -2,13 +2,17 @@ package de.tbressler.waterrower.io;
 
 import de.tbressler.waterrower.io.codec.RxtxMessageFrameDecoder;
 import de.tbressler.waterrower.io.codec.RxtxMessageFrameEncoder;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.SocketChannelConfig;
 import io.netty.channel.rxtx.RxtxChannel;
 import io.netty.channel.rxtx.RxtxChannelConfig;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
 import org.junit.Before;
 import org.junit.Test;
 
+import static io.netty.channel.ChannelOption.TCP_NODELAY;
 import static io.netty.channel.rxtx.RxtxChannelConfig.Databits.DATABITS_8;
 import static io.netty.channel.rxtx.RxtxChannelConfig.Paritybit.NONE;
 import static io.netty.channel.rxtx.RxtxChannelConfig.Stopbits.STOPBITS_1;
@@ -67,10 +71,40 @@ public class TestRxtxChannelInitializer {
         verify(config, times(1)).setParitybit(NONE);
 
         // Check if encoders, decoders and handlers are set:
-        verify(pipeline, times(1)).addLast(eq("framer"), any(DelimiterBasedFrameDecoder.class));
+        verify(pipeline, never()).addLast(eq("framer"), any(ChannelHandler.class));
         verify(pipeline, times(1)).addLast(eq("decoder"), any(RxtxMessageFrameDecoder.class));
         verify(pipeline, times(1)).addLast(eq("encoder"), any(RxtxMessageFrameEncoder.class));
         verify(pipeline, times(1)).addLast(eq("handler"), eq(handler));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void initChannel_withOtherChannel_configuresPipelineOnly() throws Exception {
+        Channel otherChannel = mock(Channel.class, "otherChannel");
+        when(otherChannel.pipeline()).thenReturn(pipeline);
+        initializer.setRxTxSerialHandler(handler);
+
+        initializer.initChannel(otherChannel);
+
+        verify(otherChannel, never()).config();
+        verify(pipeline, times(1)).addLast(eq("decoder"), any(RxtxMessageFrameDecoder.class));
+        verify(pipeline, times(1)).addLast(eq("encoder"), any(RxtxMessageFrameEncoder.class));
+        verify(pipeline, times(1)).addLast(eq("handler"), eq(handler));
+    }
+
+    @Test
+    public void initChannel_withSocketChannel_disablesNagleAndConfiguresPipeline() throws Exception {
+        SocketChannel socketChannel = mock(SocketChannel.class, "socketChannel");
+        SocketChannelConfig socketConfig = mock(SocketChannelConfig.class, "socketConfig");
+        when(socketChannel.config()).thenReturn(socketConfig);
+        when(socketChannel.pipeline()).thenReturn(pipeline);
+        initializer.setRxTxSerialHandler(handler);
+
+        initializer.initChannel(socketChannel);
+
+        verify(socketConfig, times(1)).setOption(TCP_NODELAY, true);
+        verify(pipeline, times(1)).addLast(eq("decoder"), any(RxtxMessageFrameDecoder.class));
+        verify(pipeline, times(1)).addLast(eq("encoder"), any(RxtxMessageFrameEncoder.class));
+        verify(pipeline, times(1)).addLast(eq("handler"), eq(handler));
+    }
+
+}
@@ -1,16 +1,46 @@
 package de.tbressler.waterrower.io;
 
+import de.tbressler.waterrower.io.codec.RxtxMessageBatch;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.in.HardwareTypeMessage;
+import de.tbressler.waterrower.io.msg.out.ConfigureWorkoutMessage;
+import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
+import de.tbressler.waterrower.io.msg.out.ResetMessage;
+import de.tbressler.waterrower.io.msg.out.StartCommunicationMessage;
 import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.*;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.rxtx.RxtxDeviceAddress;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
 import java.io.IOException;
-
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.tbressler.waterrower.io.ConnectionState.CLOSED;
+import static de.tbressler.waterrower.io.ConnectionState.OPEN;
+import static de.tbressler.waterrower.io.msg.Memory.SINGLE_MEMORY;
+import static de.tbressler.waterrower.io.msg.out.ConfigureWorkoutMessage.MessageType.SINGLE_WORKOUT;
+import static de.tbressler.waterrower.workout.WorkoutUnit.METERS;
+import static io.netty.buffer.Unpooled.copiedBuffer;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentCaptor.forClass;
 import static org.mockito.Mockito.*;
@@ -32,13 +62,24 @@ public class TestRxtxCommunicationService {
     private RxtxDeviceAddress address = new RxtxDeviceAddress("some-port");
     private ChannelFuture channelFuture = mock(ChannelFuture.class, "channelFuture");
     private Channel channel = mock(Channel.class, "channel");
+    private EventLoop eventLoop = mock(EventLoop.class, "eventLoop");
+
+    // The tasks, which were executed by the event loop (if not executed directly):
+    private List<Runnable> eventLoopTasks = new ArrayList<>();
+    private boolean executeDirectly = true;
+
+    // The writes, which were not completed yet (if not completed directly):
+    private List<ChannelPromise> pendingWrites = new ArrayList<>();
+    private boolean completeWritesDirectly = true;
 
     private IRxtxConnectionListener connectionListener = mock(IRxtxConnectionListener.class, "connectionListener");
 
-    private AbstractMessage message = mock(AbstractMessage.class, "message");
+    private AbstractMessage message = new AbstractMessage();
+    private AbstractMessage message2 = new AbstractMessage();
 
     // Capture:
     private ArgumentCaptor<RxtxSerialHandler> callback = forClass(RxtxSerialHandler.class);
+    private ArgumentCaptor<RxtxMessageBatch> batch = forClass(RxtxMessageBatch.class);
 
 
     @Before
@@ -68,6 +109,22 @@ public class TestRxtxCommunicationService {
         assertNotNull(rxTxCommunicationService);
     }
 
+    @Test(expected = NullPointerException.class)
+    public void new_withNullTransport_throwsException() {
+        new RxtxCommunicationService(bootstrap, channelInitializer, null);
+    }
+
+    @Test
+    public void new_withTransport_configuresBootstrapWithGroupAndChannelOfTransport() {
+        EventLoopGroup group = mock(EventLoopGroup.class, "group");
+        Bootstrap otherBootstrap = mock(Bootstrap.class, "otherBootstrap");
+
+        new RxtxCommunicationService(otherBootstrap, channelInitializer, new ChannelTransport(group, LocalChannel.class));
+
+        verify(otherBootstrap, times(1)).group(group);
+        verify(otherBootstrap, times(1)).channel(LocalChannel.class);
+    }
+
     // Open / close:
 
     @Test(expected = NullPointerException.class)
@@ -138,6 +195,113 @@ public class TestRxtxCommunicationService {
         rxTxCommunicationService.close();
     }
 
+    // State:
+
+    @Test
+    public void getState_initially_returnsClosed() {
+        assertEquals(CLOSED, rxTxCommunicationService.getState());
+    }
+
+    @Test
+    public void getState_afterSuccessfulConnect_returnsOpen() throws IOException {
+        mockSuccessfulConnect();
+        assertEquals(OPEN, rxTxCommunicationService.getState());
+    }
+
+    @Test
+    public void getState_afterUnsuccessfulConnect_returnsClosed() throws IOException {
+        try {
+            mockUnsuccessfulConnect();
+        } catch (IOException e) {
+            // Ignore IOException.
+        }
+
+        assertEquals(CLOSED, rxTxCommunicationService.getState());
+    }
+
+    @Test
+    public void getState_afterClose_returnsClosed() throws IOException {
+        mockSuccessfulConnect();
+        when(channel.close()).thenReturn(channelFuture);
+
+        rxTxCommunicationService.close();
+
+        assertEquals(CLOSED, rxTxCommunicationService.getState());
+        assertFalse(rxTxCommunicationService.isConnected());
+    }
+
+    @Test
+    public void callDisconnected_whenConnected_closesConnectionBeforeListenersAreNotified() throws IOException {
+        mockSuccessfulConnect();
+        when(channel.isOpen()).thenReturn(true);
+        executeDirectly = false;
+        rxTxCommunicationService.send(message);
+
+        doAnswer(invocation -> {
+            assertEquals(CLOSED, rxTxCommunicationService.getState());
+            assertTrue(rxTxCommunicationService.getOutboundQueue().isEmpty());
+            return null;
+        }).when(connectionListener).onDisconnected();
+
+        callback.getValue().onDisconnected();
+        runEventLoopTasks();
+
+        verify(connectionListener, times(1)).onDisconnected();
+        verify(channel, never()).writeAndFlush(any());
+        assertFalse(rxTxCommunicationService.isConnected());
+    }
+
+    @Test
+    public void channelInactive_ofPreviousChannel_doesntCloseConnection() throws Exception {
+        mockSuccessfulConnect();
+        ChannelHandlerContext context = mock(ChannelHandlerContext.class, "context");
+        when(context.channel()).thenReturn(mock(Channel.class, "previousChannel"));
+
+        callback.getValue().channelInactive(context);
+
+        verify(context, times(1)).fireChannelInactive();
+        verify(connectionListener, never()).onDisconnected();
+        assertEquals(OPEN, rxTxCommunicationService.getState());
+    }
+
+    @Test
+    public void channelInactive_ofCurrentChannel_closesConnectionAndNotifiesListeners() throws Exception {
+        mockSuccessfulConnect();
+        ChannelHandlerContext context = mock(ChannelHandlerContext.class, "context");
+        when(context.channel()).thenReturn(channel);
+
+        callback.getValue().channelInactive(context);
+
+        verify(connectionListener, times(1)).onDisconnected();
+        assertEquals(CLOSED, rxTxCommunicationService.getState());
+    }
+
+    @Test
+    public void open_afterRemoteDisconnect_opensChannelAgain() throws IOException {
+        mockSuccessfulConnect();
+        callback.getValue().onDisconnected();
+
+        rxTxCommunicationService.open(address);
+
+        verify(bootstrap, times(2)).connect(address);
+        assertEquals(OPEN, rxTxCommunicationService.getState());
+    }
+
+    @Test
+    public void open_whenAlreadyOpen_throwsExceptionAndDoesntConnectAgain() throws IOException {
+        mockSuccessfulConnect();
+
+        try {
+            rxTxCommunicationService.open(address);
+            fail("IOException expected!");
+        } catch (IOException e) {
+            // Expected.
+        }
+
+        verify(bootstrap, times(1)).connect(address);
+        assertEquals(OPEN, rxTxCommunicationService.getState());
+    }
+
     // Send:
 
     @Test
@@ -148,7 +312,145 @@ public class TestRxtxCommunicationService {
 
         rxTxCommunicationService.send(message);
 
-        verify(channel, times(1)).write(message);
+        verify(channel, times(1)).writeAndFlush(message);
+    }
+
+    @Test
+    public void send_whenConnected_notifiesListenerBeforeMessageIsWritten() throws IOException {
+
+        mockSuccessfulConnect();
+        when(channel.isOpen()).thenReturn(true);
+
+        rxTxCommunicationService.send(message);
+
+        InOrder inOrder = inOrder(connectionListener, channel);
+        inOrder.verify(connectionListener, times(1)).onMessageSent(message);
+        inOrder.verify(channel, times(1)).writeAndFlush(message);
+    }
+
+    @Test
+    public void send_withQueuedPolls_writesControlAndInteractiveMessagesFirst() throws IOException {
+        mockSuccessfulConnect();
+        when(channel.isOpen()).thenReturn(true);
+        executeDirectly = false;
+
+        AbstractMessage poll1 = new ReadMemoryMessage(SINGLE_MEMORY, 0x055);
+        AbstractMessage poll2 = new ReadMemoryMessage(SINGLE_MEMORY, 0x057);
+        AbstractMessage workout = new ConfigureWorkoutMessage(SINGLE_WORKOUT, 1000, METERS);
+        AbstractMessage reset = new ResetMessage();
+
+        rxTxCommunicationService.send(poll1);
+        rxTxCommunicationService.send(poll2);
+        rxTxCommunicationService.send(workout);
+        rxTxCommunicationService.send(reset);
+
+        runEventLoopTasks();
+
+        InOrder order = inOrder(channel);
+        order.verify(channel).writeAndFlush(reset);
+        order.verify(channel).writeAndFlush(workout);
+        order.verify(channel).writeAndFlush(poll1);
+        order.verify(channel).writeAndFlush(poll2);
+
+        OutboundQueue outboundQueue = rxTxCommunicationService.getOutboundQueue();
+        assertEquals(1, outboundQueue.getTakenMessages(MessagePriority.CONTROL));
+        assertEquals(1, outboundQueue.getTakenMessages(MessagePriority.INTERACTIVE));
+        assertEquals(2, outboundQueue.getTakenMessages(MessagePriority.POLL));
+    }
+
+    @Test
+    public void send_duringDrain_writesHigherPriorityBeforeRemainingPolls() throws IOException {
+        mockSuccessfulConnect();
+        when(channel.isOpen()).thenReturn(true);
+        executeDirectly = false;
+
+        AbstractMessage poll1 = new ReadMemoryMessage(SINGLE_MEMORY, 0x055);
+        AbstractMessage poll2 = new ReadMemoryMessage(SINGLE_MEMORY, 0x057);
+        AbstractMessage reset = new ResetMessage();
+
+        rxTxCommunicationService.send(poll1);
+        rxTxCommunicationService.send(poll2);
+
+        // The drain writes one message and yields:
+        runNextEventLoopTask();
+        verify(channel, times(1)).writeAndFlush(poll1);
+
+        rxTxCommunicationService.send(reset);
+        runEventLoopTasks();
+
+        InOrder order = inOrder(channel);
+        order.verify(channel).writeAndFlush(poll1);
+        order.verify(channel).writeAndFlush(reset);
+        order.verify(channel).writeAndFlush(poll2);
+    }
+
+    @Test
+    public void send_whileWriteIsInFlight_writesNextMessageWhenWriteWasCompleted() throws IOException {
+        mockSuccessfulConnect();
+        when(channel.isOpen()).thenReturn(true);
+        completeWritesDirectly = false;
+
+        AbstractMessage poll = new ReadMemoryMessage(SINGLE_MEMORY, 0x055);
+        AbstractMessage reset = new ResetMessage();
+
+        rxTxCommunicationService.send(poll);
+        rxTxCommunicationService.send(message);
+        rxTxCommunicationService.send(reset);
+
+        // Only the first message is in flight, the other messages are still queued:
+        verify(channel, times(1)).writeAndFlush(any());
+        assertFalse(rxTxCommunicationService.getOutboundQueue().isEmpty());
+
+        pendingWrites.remove(0).setSuccess();
+
+        // The higher priority class is written first, although it was queued after the message:
+        InOrder order = inOrder(channel);
+        order.verify(channel).writeAndFlush(poll);
+        order.verify(channel).writeAndFlush(reset);
+        verify(channel, never()).writeAndFlush(message);
+
+        pendingWrites.remove(0).setSuccess();
+        verify(channel, times(1)).writeAndFlush(message);
+    }
+
+    @Test
+    public void send_afterFailedWrite_writesNextMessage() throws IOException {
+        mockSuccessfulConnect();
+        when(channel.isOpen()).thenReturn(true);
+        completeWritesDirectly = false;
+
+        rxTxCommunicationService.send(message);
+        rxTxCommunicationService.send(message2);
+
+        pendingWrites.remove(0).setFailure(new IOException("Write failed."));
+
+        verify(channel, times(1)).writeAndFlush(message2);
+    }
+
+    @Test
+    public void send_withPriority_usesGivenPriority() throws IOException {
+        mockSuccessfulConnect();
+        when(channel.isOpen()).thenReturn(true);
+        executeDirectly = false;
+
+        rxTxCommunicationService.send(message, MessagePriority.POLL);
+
+        assertEquals(1, rxTxCommunicationService.getOutboundQueue().size(MessagePriority.POLL));
+    }
+
+    @Test
+    public void send_whileClosed_discardsQueuedMessages() throws IOException {
+        mockSuccessfulConnect();
+        when(channel.isOpen()).thenReturn(true);
+        when(channel.close()).thenReturn(channelFuture);
+        executeDirectly = false;
+
+        rxTxCommunicationService.send(message);
+        rxTxCommunicationService.close();
+        runEventLoopTasks();
+
+        verify(channel, never()).writeAndFlush(any());
+        assertTrue(rxTxCommunicationService.getOutboundQueue().isEmpty());
     }
 
     @Test(expected = IOException.class)
@@ -156,6 +458,42 @@ public class TestRxtxCommunicationService {
         rxTxCommunicationService.send(message);
     }
 
+    @Test
+    public void sendBatch_whenConnected_writesAndFlushesBatchOnce() throws IOException {
+
+        mockSuccessfulConnect();
+        when(channel.isOpen()).thenReturn(true);
+
+        rxTxCommunicationService.sendBatch(asList(message, message2));
+
+        verify(channel, times(1)).writeAndFlush(batch.capture());
+        verify(channel, never()).write(any());
+        assertEquals(asList(message, message2), batch.getValue().getMessages());
+    }
+
+    @Test
+    public void sendBatch_whenConnected_notifiesListenerAboutEachMessage() throws IOException {
+
+        mockSuccessfulConnect();
+        when(channel.isOpen()).thenReturn(true);
+
+        rxTxCommunicationService.sendBatch(asList(message, message2));
+
+        InOrder inOrder = inOrder(connectionListener);
+        inOrder.verify(connectionListener, times(1)).onMessageSent(message);
+        inOrder.verify(connectionListener, times(1)).onMessageSent(message2);
+    }
+
+    @Test(expected = IOException.class)
+    public void sendBatch_whenNotConnected_throwsException() throws IOException {
+        rxTxCommunicationService.sendBatch(asList(message, message2));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void sendBatch_withNull_throwsNPE() throws IOException {
+        rxTxCommunicationService.sendBatch(null);
+    }
+
     // Message received:
 
     @Test
@@ -188,6 +526,274 @@ public class TestRxtxCommunicationService {
     }
 
 
+    // Transport:
+
+    /**
+     * Checks if two connections share a single event loop and exchange messages over the same
+     * pipeline, with a local channel as stand-in for the serial port.
+     */
+    @Test
+    public void open_withLocalTransport_exchangesMessagesOverSharedEventLoop() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+        LocalAddress monitorAddress = new LocalAddress("waterrower-monitor");
+        BlockingQueue<String> receivedByMonitor = new LinkedBlockingQueue<>();
+
+        Channel monitor = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel channel) {
+                        channel.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelActive(ChannelHandlerContext ctx) {
+                                ctx.writeAndFlush(copiedBuffer("_WR_\r\n", US_ASCII));
+                            }
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                ByteBuf buffer = (ByteBuf) msg;
+                                receivedByMonitor.add(buffer.toString(US_ASCII));
+                                buffer.release();
+                            }
+                        });
+                    }
+                })
+                .bind(monitorAddress).syncUninterruptibly().channel();
+
+        try {
+            ChannelTransport transport = new ChannelTransport(group, LocalChannel.class);
+            BlockingQueue<AbstractMessage> received = new LinkedBlockingQueue<>();
+            IRxtxConnectionListener listener = new RxtxConnectionListener() {
+                @Override
+                public void onMessageReceived(AbstractMessage msg) {
+                    received.add(msg);
+                }
+            };
+
+            RxtxCommunicationService service1 = new RxtxCommunicationService(new Bootstrap(), new RxtxChannelInitializer(), transport);
+            RxtxCommunicationService service2 = new RxtxCommunicationService(new Bootstrap(), new RxtxChannelInitializer(), transport);
+            service1.addRxtxConnectionListener(listener);
+            service2.addRxtxConnectionListener(listener);
+
+            service1.open(monitorAddress);
+            service2.open(monitorAddress);
+
+            assertTrue(received.poll(5, SECONDS) instanceof HardwareTypeMessage);
+            assertTrue(received.poll(5, SECONDS) instanceof HardwareTypeMessage);
+
+            service1.send(new StartCommunicationMessage());
+            service2.send(new ResetMessage());
+
+            Set<String> frames = new HashSet<>();
+            frames.add(receivedByMonitor.poll(5, SECONDS));
+            frames.add(receivedByMonitor.poll(5, SECONDS));
+            assertEquals(new HashSet<>(asList("USB\r\n", "RESET\r\n")), frames);
+
+            service1.close();
+            service2.close();
+
+        } finally {
+            monitor.close().syncUninterruptibly();
+            group.shutdownGracefully(0, 1, SECONDS).syncUninterruptibly();
+        }
+    }
+
+    /**
+     * Checks if a listener can send a message as soon as it is notified about the connection,
+     * while open() is still waiting for the connect.
+     */
+    @Test
+    public void open_withLocalTransport_sendsMessageFromOnConnected() throws Exception {
+        int connects = 100;
+
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+        LocalAddress monitorAddress = new LocalAddress("waterrower-connecting-monitor");
+        BlockingQueue<String> receivedByMonitor = new LinkedBlockingQueue<>();
+
+        Channel monitor = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel channel) {
+                        channel.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                ByteBuf buffer = (ByteBuf) msg;
+                                receivedByMonitor.add(buffer.toString(US_ASCII));
+                                buffer.release();
+                            }
+                        });
+                    }
+                })
+                .bind(monitorAddress).syncUninterruptibly().channel();
+
+        try {
+            RxtxCommunicationService service = new RxtxCommunicationService(new Bootstrap(), new RxtxChannelInitializer(), new ChannelTransport(group, LocalChannel.class));
+            AtomicInteger errors = new AtomicInteger();
+            service.addRxtxConnectionListener(new RxtxConnectionListener() {
+                @Override
+                public void onConnected() {
+                    try {
+                        service.send(new StartCommunicationMessage());
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+
+            for (int i = 0; i < connects; i++) {
+                service.open(monitorAddress);
+                assertEquals("USB\r\n", receivedByMonitor.poll(5, SECONDS));
+                service.close();
+            }
+
+            assertEquals(0, errors.get());
+
+        } finally {
+            monitor.close().syncUninterruptibly();
+            group.shutdownGracefully(0, 1, SECONDS).syncUninterruptibly();
+        }
+    }
+
+    /**
+     * Checks if two connections to a serial-to-TCP bridge share a single non-blocking event loop and
+     * exchange messages over the same pipeline, with a loopback server as stand-in for the bridge.
+     */
+    @Test
+    public void open_withTcpTransport_exchangesMessagesOverSharedEventLoop() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(1);
+        BlockingQueue<String> receivedByBridge = new LinkedBlockingQueue<>();
+
+        Channel bridge = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel channel) {
+                        channel.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelActive(ChannelHandlerContext ctx) {
+                                ctx.writeAndFlush(copiedBuffer("_WR_\r\n", US_ASCII));
+                            }
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                ByteBuf buffer = (ByteBuf) msg;
+                                receivedByBridge.add(buffer.toString(US_ASCII));
+                                buffer.release();
+                            }
+                        });
+                    }
+                })
+                .bind(new InetSocketAddress("127.0.0.1", 0)).syncUninterruptibly().channel();
+
+        try {
+            ChannelTransport transport = ChannelTransport.tcp(group);
+            InetSocketAddress bridgeAddress = (InetSocketAddress) bridge.localAddress();
+            BlockingQueue<AbstractMessage> received = new LinkedBlockingQueue<>();
+            IRxtxConnectionListener listener = new RxtxConnectionListener() {
+                @Override
+                public void onMessageReceived(AbstractMessage msg) {
+                    received.add(msg);
+                }
+            };
+
+            RxtxCommunicationService service1 = new RxtxCommunicationService(new Bootstrap(), new RxtxChannelInitializer(), transport);
+            RxtxCommunicationService service2 = new RxtxCommunicationService(new Bootstrap(), new RxtxChannelInitializer(), transport);
+            service1.addRxtxConnectionListener(listener);
+            service2.addRxtxConnectionListener(listener);
+
+            service1.open(bridgeAddress);
+            service2.open(bridgeAddress);
+
+            assertTrue(received.poll(5, SECONDS) instanceof HardwareTypeMessage);
+            assertTrue(received.poll(5, SECONDS) instanceof HardwareTypeMessage);
+
+            service1.send(new StartCommunicationMessage());
+            service2.send(new ResetMessage());
+
+            Set<String> frames = new HashSet<>();
+            frames.add(receivedByBridge.poll(5, SECONDS));
+            frames.add(receivedByBridge.poll(5, SECONDS));
+            assertEquals(new HashSet<>(asList("USB\r\n", "RESET\r\n")), frames);
+
+            service1.close();
+            service2.close();
+
+        } finally {
+            bridge.close().syncUninterruptibly();
+            group.shutdownGracefully(0, 1, SECONDS).syncUninterruptibly();
+        }
+    }
+
+    /**
+     * Checks if messages, which are sent concurrently by many threads without a lock, are all
+     * written to the channel.
+     */
+    @Test
+    public void send_withContendedSenders_writesAllMessages() throws Exception {
+        int senders = 8;
+        int messagesPerSender = 500;
+
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+        LocalAddress monitorAddress = new LocalAddress("waterrower-contended-monitor");
+        AtomicInteger receivedFrames = new AtomicInteger();
+        CountDownLatch allReceived = new CountDownLatch(1);
+
+        Channel monitor = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel channel) {
+                        channel.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                ByteBuf buffer = (ByteBuf) msg;
+                                for (int i = buffer.readerIndex(); i < buffer.writerIndex(); i++) {
+                                    if ((buffer.getByte(i) == '\n') && (receivedFrames.incrementAndGet() == senders * messagesPerSender))
+                                        allReceived.countDown();
+                                }
+                                buffer.release();
+                            }
+                        });
+                    }
+                })
+                .bind(monitorAddress).syncUninterruptibly().channel();
+
+        ExecutorService executor = Executors.newFixedThreadPool(senders);
+
+        try {
+            RxtxCommunicationService service = new RxtxCommunicationService(new Bootstrap(), new RxtxChannelInitializer(), new ChannelTransport(group, LocalChannel.class));
+            service.open(monitorAddress);
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < senders; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < messagesPerSender; j++)
+                        service.send(new ResetMessage());
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures)
+                future.get(10, SECONDS);
+
+            assertTrue(allReceived.await(10, SECONDS));
+            assertEquals(senders * messagesPerSender, receivedFrames.get());
+
+            service.close();
+
+        } finally {
+            executor.shutdownNow();
+            monitor.close().syncUninterruptibly();
+            group.shutdownGracefully(0, 1, SECONDS).syncUninterruptibly();
+        }
+    }
+
+
     // Helper methods:
 
     private void mockUnsuccessfulConnect() throws IOException {
@@ -198,10 +804,36 @@ public class TestRxtxCommunicationService {
         rxTxCommunicationService.open(address);
     }
 
+    private void runNextEventLoopTask() {
+        eventLoopTasks.remove(0).run();
+    }
+
+    private void runEventLoopTasks() {
+        while (!eventLoopTasks.isEmpty())
+            runNextEventLoopTask();
+    }
+
     private void mockSuccessfulConnect() throws IOException {
         when(channelFuture.syncUninterruptibly()).thenReturn(channelFuture);
         when(channelFuture.isSuccess()).thenReturn(true);
         when(channelFuture.channel()).thenReturn(channel);
+        when(channel.eventLoop()).thenReturn(eventLoop);
+        when(channel.writeAndFlush(any())).thenAnswer(invocation -> {
+            ChannelPromise promise = new DefaultChannelPromise(channel, ImmediateEventExecutor.INSTANCE);
+            if (completeWritesDirectly)
+                promise.setSuccess();
+            else
+                pendingWrites.add(promise);
+            return promise;
+        });
+        doAnswer(invocation -> {
+            Runnable task = (Runnable) invocation.getArguments()[0];
+            if (executeDirectly)
+                task.run();
+            else
+                eventLoopTasks.add(task);
+            return null;
+        }).when(eventLoop).execute(any(Runnable.class));
         when(bootstrap.connect(address)).thenReturn(channelFuture);
         rxTxCommunicationService.open(address);
         callback.getValue().onConnected();
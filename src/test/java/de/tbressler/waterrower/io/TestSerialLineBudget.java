@@ -0,0 +1,92 @@
+package de.tbressler.waterrower.io;
+
+import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
+import de.tbressler.waterrower.io.msg.out.StartCommunicationMessage;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static de.tbressler.waterrower.io.SerialLineBudget.BYTES_PER_SECOND;
+import static de.tbressler.waterrower.io.SerialLineBudget.costOf;
+import static de.tbressler.waterrower.io.msg.Memory.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for class SerialLineBudget.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestSerialLineBudget {
+
+    // Clock:
+    private AtomicLong nanos = new AtomicLong();
+
+
+    // Constructor:
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullBucket_throwsNPE() {
+        new SerialLineBudget(null);
+    }
+
+    @Test
+    public void new_withDefaults_allowsLineRateAsBurst() {
+        assertEquals(1920, BYTES_PER_SECOND);
+        assertEquals(BYTES_PER_SECOND, new SerialLineBudget().getAvailableBytes());
+    }
+
+    // Cost:
+
+    @Test(expected = NullPointerException.class)
+    public void costOf_withNull_throwsNPE() {
+        costOf(null);
+    }
+
+    @Test
+    public void costOf_withReadMemoryMessage_returnsRequestAndResponseSize() {
+        // "IRS" + XXX + CRLF and "IDS" + XXX + YY + CRLF:
+        assertEquals(8 + 10, costOf(new ReadMemoryMessage(SINGLE_MEMORY, 0x055)));
+        // "IRD" + XXX + CRLF and "IDD" + XXX + YYYY + CRLF:
+        assertEquals(8 + 12, costOf(new ReadMemoryMessage(DOUBLE_MEMORY, 0x055)));
+        // "IRT" + XXX + CRLF and "IDT" + XXX + YYYYYY + CRLF:
+        assertEquals(8 + 14, costOf(new ReadMemoryMessage(TRIPLE_MEMORY, 0x055)));
+    }
+
+    @Test
+    public void costOf_withOtherMessage_returnsEstimatedSize() {
+        assertEquals(16, costOf(new StartCommunicationMessage()));
+    }
+
+    // Acquire:
+
+    @Test
+    public void tryAcquire_withinBudget_returnsTrue() {
+        SerialLineBudget budget = new SerialLineBudget(new TokenBucket(100, 40, nanos::get));
+
+        assertTrue(budget.tryAcquire(new ReadMemoryMessage(SINGLE_MEMORY, 0x055)));
+        assertTrue(budget.tryAcquire(new ReadMemoryMessage(SINGLE_MEMORY, 0x055)));
+        assertEquals(4, budget.getAvailableBytes());
+    }
+
+    @Test
+    public void tryAcquire_whenBudgetIsExhausted_returnsFalseUntilRefilled() {
+        SerialLineBudget budget = new SerialLineBudget(new TokenBucket(100, 40, nanos::get));
+
+        assertTrue(budget.tryAcquire(new ReadMemoryMessage(TRIPLE_MEMORY, 0x055)));
+        assertFalse(budget.tryAcquire(new ReadMemoryMessage(TRIPLE_MEMORY, 0x055)));
+
+        // 40 ms = 4 bytes:
+        nanos.addAndGet(40_000_000L);
+
+        assertTrue(budget.tryAcquire(new ReadMemoryMessage(TRIPLE_MEMORY, 0x055)));
+    }
+
+    // To string:
+
+    @Test
+    public void toString_returnsObjectInfo() {
+        assertTrue(new SerialLineBudget().toString().startsWith("SerialLineBudget"));
+    }
+
+}
@@ -0,0 +1,116 @@
+package de.tbressler.waterrower.io;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for class TokenBucket.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestTokenBucket {
+
+    // Class under test.
+    private TokenBucket bucket;
+
+    // Clock:
+    private AtomicLong nanos = new AtomicLong(1_000L);
+
+
+    @Before
+    public void setUp() {
+        bucket = new TokenBucket(100, 50, nanos::get);
+    }
+
+    // Constructor:
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_withTokensPerSecond0_throwsIAE() {
+        new TokenBucket(0, 50);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_withCapacity0_throwsIAE() {
+        new TokenBucket(100, 0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullClock_throwsNPE() {
+        new TokenBucket(100, 50, null);
+    }
+
+    @Test
+    public void new_returnsFullBucket() {
+        assertEquals(50, bucket.getAvailableTokens());
+        assertEquals(100, bucket.getTokensPerSecond());
+        assertEquals(50, bucket.getCapacity());
+    }
+
+    // Acquire:
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tryAcquire_withNegativeCount_throwsIAE() {
+        bucket.tryAcquire(-1);
+    }
+
+    @Test
+    public void tryAcquire_withEnoughTokens_takesTokens() {
+        assertTrue(bucket.tryAcquire(30));
+        assertEquals(20, bucket.getAvailableTokens());
+    }
+
+    @Test
+    public void tryAcquire_withoutEnoughTokens_returnsFalseAndKeepsTokens() {
+        assertTrue(bucket.tryAcquire(30));
+        assertFalse(bucket.tryAcquire(30));
+        assertEquals(20, bucket.getAvailableTokens());
+    }
+
+    @Test
+    public void tryAcquire_afterTimeElapsed_refillsTokensWithRate() {
+        assertTrue(bucket.tryAcquire(50));
+
+        // 100 ms = 10 tokens:
+        nanos.addAndGet(100_000_000L);
+
+        assertEquals(10, bucket.getAvailableTokens());
+        assertTrue(bucket.tryAcquire(10));
+        assertFalse(bucket.tryAcquire(1));
+    }
+
+    @Test
+    public void tryAcquire_afterLongTimeElapsed_refillsUpToCapacity() {
+        assertTrue(bucket.tryAcquire(50));
+
+        nanos.addAndGet(10_000_000_000L);
+
+        assertEquals(50, bucket.getAvailableTokens());
+        assertFalse(bucket.tryAcquire(51));
+    }
+
+    @Test
+    public void tryAcquire_afterShortTimesElapsed_keepsFractionsOfTokens() {
+        assertTrue(bucket.tryAcquire(50));
+
+        // 4 x 2.5 ms = 4 x 0.25 tokens = 1 token:
+        for (int i = 0; i < 4; i++) {
+            nanos.addAndGet(2_500_000L);
+            bucket.getAvailableTokens();
+        }
+
+        assertTrue(bucket.tryAcquire(1));
+    }
+
+    // To string:
+
+    @Test
+    public void toString_returnsObjectInfo() {
+        assertTrue(bucket.toString().startsWith("TokenBucket"));
+    }
+
+}
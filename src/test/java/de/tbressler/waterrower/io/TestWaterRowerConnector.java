@@ -6,7 +6,13 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 
+import static de.tbressler.waterrower.io.MessagePriority.INTERACTIVE;
+import static de.tbressler.waterrower.io.MessagePriority.POLL;
+import static java.time.Duration.ofMillis;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.*;
 
 /**
@@ -24,7 +30,7 @@ public class TestWaterRowerConnector {
     private RxtxCommunicationService communicationService = mock(RxtxCommunicationService.class, "communicationService");
     private RxtxDeviceAddress address = mock(RxtxDeviceAddress.class, "address");
     private IRxtxConnectionListener connectionListener = mock(IRxtxConnectionListener.class, "connectionListener");
-    private AbstractMessage message = mock(AbstractMessage.class, "message");
+    private AbstractMessage message = new AbstractMessage();
 
 
     @Before
@@ -62,6 +68,16 @@ public class TestWaterRowerConnector {
         verify(communicationService, times(1)).open(address);
     }
 
+    @Test
+    public void connect_withSocketAddress_opensConnection() throws IOException {
+        InetSocketAddress bridgeAddress = new InetSocketAddress("127.0.0.1", 2001);
+        when(communicationService.isConnected()).thenReturn(false);
+
+        connector.connect(bridgeAddress);
+
+        verify(communicationService, times(1)).open(bridgeAddress);
+    }
+
 
     // Send:
 
@@ -82,7 +98,49 @@ public class TestWaterRowerConnector {
 
         connector.send(message);
 
-        verify(communicationService, times(1)).send(message);
+        verify(communicationService, times(1)).send(message, INTERACTIVE);
+    }
+
+    @Test
+    public void send_withPriority_sendsMessageWithPriority() throws Exception {
+        when(communicationService.isConnected()).thenReturn(true);
+
+        connector.send(message, POLL);
+
+        verify(communicationService, times(1)).send(message, POLL);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void send_withNullPriority_throwsException() throws Exception {
+        connector.send(message, null);
+    }
+
+    @Test
+    public void getOutboundQueue_returnsQueueOfCommunicationService() {
+        OutboundQueue outboundQueue = new OutboundQueue(ofMillis(250));
+        when(communicationService.getOutboundQueue()).thenReturn(outboundQueue);
+
+        assertSame(outboundQueue, connector.getOutboundQueue());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void sendBatch_withNullMessages_throwsException() throws Exception {
+        connector.sendBatch(null);
+    }
+
+    @Test(expected = IOException.class)
+    public void sendBatch_whenNotConnected_throwsException() throws Exception {
+        when(communicationService.isConnected()).thenReturn(false);
+        connector.sendBatch(singletonList(message));
+    }
+
+    @Test
+    public void sendBatch_withValidMessages_sendsBatch() throws Exception {
+        when(communicationService.isConnected()).thenReturn(true);
+
+        connector.sendBatch(singletonList(message));
+
+        verify(communicationService, times(1)).sendBatch(singletonList(message));
     }
 
     // Disconnect:
@@ -0,0 +1,167 @@
+package de.tbressler.waterrower.io.codec;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Fuzz corpus for the codec tests. The corpus is derived from the frames of the recorded
+ * simulation data (docs/simulationdata.txt), which are mutated with a seeded random generator,
+ * so failures are reproducible.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+class FuzzCorpus {
+
+    /* The random generator for the mutations. */
+    private final Random random;
+
+
+    /**
+     * Fuzz corpus for the codec tests.
+     *
+     * @param seed The seed of the random generator.
+     */
+    FuzzCorpus(long seed) {
+        this.random = new Random(seed);
+    }
+
+
+    /**
+     * Returns the frames (without delimiters) of the simulation data.
+     *
+     * @return The frames, never null.
+     * @throws IOException If the simulation data couldn't be read.
+     */
+    static List<String> readSimulationFrames() throws IOException {
+        Pattern pattern = Pattern.compile("\"data\":\"([^\"]*)\"");
+        List<String> frames = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get("docs/simulationdata.txt"), UTF_8)) {
+            Matcher matcher = pattern.matcher(line);
+            if (matcher.find())
+                frames.add(matcher.group(1).replace("\\r", "").replace("\\n", ""));
+        }
+        return frames;
+    }
+
+
+    /**
+     * Returns a randomly mutated copy of the given frame (without delimiter). The mutation flips,
+     * inserts or deletes single bytes, truncates the frame or appends a long run of garbage. The
+     * result may contain any byte, including line delimiters.
+     *
+     * @param frame The frame, must not be null.
+     * @return The mutated bytes, never null.
+     */
+    byte[] mutate(String frame) {
+        byte[] bytes = frame.getBytes(US_ASCII);
+        switch (random.nextInt(6)) {
+            case 0:
+                return flipByte(bytes);
+            case 1:
+                return insertByte(bytes);
+            case 2:
+                return deleteByte(bytes);
+            case 3:
+                return truncate(bytes);
+            case 4:
+                return append(bytes, garbage(32 + random.nextInt(200)));
+            default:
+                return garbage(random.nextInt(64));
+        }
+    }
+
+    /**
+     * Returns random bytes, which don't contain a line feed.
+     *
+     * @param length The number of bytes.
+     * @return The bytes, never null.
+     */
+    byte[] garbage(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        for (int i = 0; i < length; i++)
+            if (bytes[i] == '\n')
+                bytes[i] = 0;
+        return bytes;
+    }
+
+    /**
+     * Returns random bytes with the high bit set, which never start a valid message.
+     *
+     * @param length The number of bytes.
+     * @return The bytes, never null.
+     */
+    byte[] binaryGarbage(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        for (int i = 0; i < length; i++)
+            bytes[i] |= 0x80;
+        return bytes;
+    }
+
+    /**
+     * Returns a random int between 0 (inclusive) and the given bound (exclusive).
+     *
+     * @param bound The upper bound, must be positive.
+     * @return The random int.
+     */
+    int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+
+    /* Replaces a random byte by a random value. */
+    private byte[] flipByte(byte[] bytes) {
+        if (bytes.length == 0)
+            return bytes;
+        bytes[random.nextInt(bytes.length)] = (byte) random.nextInt(256);
+        return bytes;
+    }
+
+    /* Inserts a random byte at a random position. */
+    private byte[] insertByte(byte[] bytes) {
+        int position = random.nextInt(bytes.length + 1);
+        byte[] result = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, result, 0, position);
+        result[position] = (byte) random.nextInt(256);
+        System.arraycopy(bytes, position, result, position + 1, bytes.length - position);
+        return result;
+    }
+
+    /* Deletes the byte at a random position. */
+    private byte[] deleteByte(byte[] bytes) {
+        if (bytes.length == 0)
+            return bytes;
+        int position = random.nextInt(bytes.length);
+        byte[] result = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, result, 0, position);
+        System.arraycopy(bytes, position + 1, result, position, bytes.length - position - 1);
+        return result;
+    }
+
+    /* Cuts the frame at a random position. */
+    private byte[] truncate(byte[] bytes) {
+        byte[] result = new byte[random.nextInt(bytes.length + 1)];
+        System.arraycopy(bytes, 0, result, 0, result.length);
+        return result;
+    }
+
+    /* Returns the concatenation of both arrays. */
+    private byte[] append(byte[] bytes, byte[] suffix) {
+        byte[] result = new byte[bytes.length + suffix.length];
+        System.arraycopy(bytes, 0, result, 0, bytes.length);
+        System.arraycopy(suffix, 0, result, bytes.length, suffix.length);
+        return result;
+    }
+
+}
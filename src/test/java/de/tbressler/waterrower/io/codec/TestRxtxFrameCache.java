@@ -0,0 +1,101 @@
+package de.tbressler.waterrower.io.codec;
+
+import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
+import io.netty.buffer.ByteBuf;
+import org.junit.Before;
+import org.junit.Test;
+
+import static de.tbressler.waterrower.io.msg.Memory.*;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for class RxtxFrameCache.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestRxtxFrameCache {
+
+    /* Class under test. */
+    private RxtxFrameCache frameCache;
+
+    // Mocks:
+    private RxtxMessageParser parser = spy(new RxtxMessageParser());
+
+
+    @Before
+    public void setUp() {
+        frameCache = new RxtxFrameCache(parser);
+    }
+
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullParser_throwsNPE() {
+        new RxtxFrameCache(null);
+    }
+
+
+    @Test
+    public void getFrame_withSingleMemory_returnsFrame() {
+        assertFrame("IRS03E\r\n", frameCache.getFrame(new ReadMemoryMessage(SINGLE_MEMORY, 0x03E)));
+    }
+
+    @Test
+    public void getFrame_withDoubleMemory_returnsFrame() {
+        assertFrame("IRD055\r\n", frameCache.getFrame(new ReadMemoryMessage(DOUBLE_MEMORY, 0x055)));
+    }
+
+    @Test
+    public void getFrame_withTripleMemory_returnsFrame() {
+        assertFrame("IRTFFF\r\n", frameCache.getFrame(new ReadMemoryMessage(TRIPLE_MEMORY, 0xFFF)));
+    }
+
+    @Test
+    public void getFrame_calledTwice_encodesMessageOnlyOnce() {
+        ByteBuf frame1 = frameCache.getFrame(new ReadMemoryMessage(DOUBLE_MEMORY, 0x055));
+        ByteBuf frame2 = frameCache.getFrame(new ReadMemoryMessage(DOUBLE_MEMORY, 0x055));
+
+        verify(parser, times(1)).encode(any(ReadMemoryMessage.class), any(ByteBuf.class));
+        assertFrame("IRD055\r\n", frame1);
+        assertFrame("IRD055\r\n", frame2);
+    }
+
+    @Test
+    public void getFrame_withDifferentMemory_returnsDifferentFrames() {
+        assertFrame("IRS055\r\n", frameCache.getFrame(new ReadMemoryMessage(SINGLE_MEMORY, 0x055)));
+        assertFrame("IRD055\r\n", frameCache.getFrame(new ReadMemoryMessage(DOUBLE_MEMORY, 0x055)));
+    }
+
+    @Test
+    public void getFrame_returnsReadOnlySlice() {
+        ByteBuf frame = frameCache.getFrame(new ReadMemoryMessage(DOUBLE_MEMORY, 0x055));
+        assertTrue(frame.isReadOnly());
+        frame.release();
+    }
+
+    @Test
+    public void getFrame_afterSliceWasReleased_returnsValidFrame() {
+        ByteBuf frame = frameCache.getFrame(new ReadMemoryMessage(DOUBLE_MEMORY, 0x055));
+        frame.readBytes(frame.readableBytes());
+        frame.release();
+
+        assertFrame("IRD055\r\n", frameCache.getFrame(new ReadMemoryMessage(DOUBLE_MEMORY, 0x055)));
+    }
+
+    @Test
+    public void getFrame_whenMessageCantBeEncoded_returnsNull() {
+        doReturn(false).when(parser).encode(any(ReadMemoryMessage.class), any(ByteBuf.class));
+        assertNull(frameCache.getFrame(new ReadMemoryMessage(DOUBLE_MEMORY, 0x055)));
+    }
+
+
+    /* Checks the content of the frame and releases it. */
+    private void assertFrame(String expected, ByteBuf frame) {
+        assertEquals(expected, frame.toString(US_ASCII));
+        frame.release();
+    }
+
+}
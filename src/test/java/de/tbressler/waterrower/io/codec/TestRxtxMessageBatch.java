@@ -0,0 +1,59 @@
+package de.tbressler.waterrower.io.codec;
+
+import de.tbressler.waterrower.io.msg.AbstractMessage;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for class RxtxMessageBatch.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestRxtxMessageBatch {
+
+    // Mocks:
+    private AbstractMessage message1 = mock(AbstractMessage.class, "message1");
+    private AbstractMessage message2 = mock(AbstractMessage.class, "message2");
+
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullMessages_throwsNPE() {
+        new RxtxMessageBatch(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullMessage_throwsNPE() {
+        new RxtxMessageBatch(asList(message1, null));
+    }
+
+    @Test
+    public void getMessages_returnsMessages() {
+        RxtxMessageBatch batch = new RxtxMessageBatch(asList(message1, message2));
+
+        assertEquals(asList(message1, message2), batch.getMessages());
+        assertEquals(2, batch.size());
+    }
+
+    @Test
+    public void getMessages_whenListIsChangedAfterwards_returnsOriginalMessages() {
+        List<AbstractMessage> messages = new ArrayList<>(asList(message1, message2));
+        RxtxMessageBatch batch = new RxtxMessageBatch(messages);
+
+        messages.clear();
+
+        assertEquals(asList(message1, message2), batch.getMessages());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getMessages_returnsUnmodifiableList() {
+        new RxtxMessageBatch(asList(message1, message2)).getMessages().clear();
+    }
+
+}
@@ -1,18 +1,34 @@
 package de.tbressler.waterrower.io.codec;
 
+import de.tbressler.waterrower.io.RxtxSerialHandler;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.in.*;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import de.tbressler.waterrower.log.Log;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 import java.util.List;
 
 import static com.google.common.base.Charsets.UTF_8;
+import static de.tbressler.waterrower.io.codec.FuzzCorpus.readSimulationFrames;
+import static de.tbressler.waterrower.log.Log.MESSAGES;
+import static de.tbressler.waterrower.log.Log.SERIAL;
+import static io.netty.buffer.Unpooled.buffer;
 import static io.netty.buffer.Unpooled.wrappedBuffer;
-import static org.junit.Assert.assertTrue;
-import static org.mockito.AdditionalMatchers.aryEq;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.*;
 
 /**
@@ -23,10 +39,14 @@ import static org.mockito.Mockito.*;
  */
 public class TestRxtxMessageFrameDecoder {
 
+    /* Line delimiter. */
+    private static final byte[] CRLF = {'\r', '\n'};
+
     /* Class under test. */
     private RxtxMessageFrameDecoder messageFrameDecoder;
 
     private List<Object> out = new ArrayList<>();
+    private List<String> decodedFrames = new ArrayList<>();
 
     // Mocks:
     private RxtxMessageParser parser = mock(RxtxMessageParser.class, "parser");
@@ -46,7 +66,12 @@ public class TestRxtxMessageFrameDecoder {
 
     @Test(expected = NullPointerException.class)
     public void new_withNullParser_throwsException() {
-        new RxtxMessageFrameEncoder(null);
+        new RxtxMessageFrameDecoder(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_withMaxFrameLength0_throwsException() {
+        new RxtxMessageFrameDecoder(parser, 0);
     }
 
     // Decode:
@@ -54,52 +79,350 @@ public class TestRxtxMessageFrameDecoder {
     @Test
     public void decode_withFrameAndReaderPosition0AndSuccessfulDecoding_outputsMessage() throws Exception {
 
-        when(parser.decode(bytesEq("MESSAGE1"))).thenReturn(message1);
+        mockDecode(message1);
 
-        ByteBuf in = newBuffer("MESSAGE1");
+        ByteBuf in = newBuffer("MESSAGE1\r\n");
 
         messageFrameDecoder.decode(ctx, in, out);
 
-        verify(parser, times(1)).decode(bytesEq("MESSAGE1"));
+        assertEquals(singletonList("MESSAGE1"), decodedFrames);
         assertTrue(out.contains(message1));
+        assertFalse(in.isReadable());
     }
 
     @Test
     public void decode_withFrameAndReaderPosition1AndSuccessfulDecoding_outputsMessage() throws Exception {
 
-        when(parser.decode(bytesEq("MESSAGE1"))).thenReturn(message1);
+        mockDecode(message1);
 
-        ByteBuf in = newBuffer("XMESSAGE1");
+        ByteBuf in = newBuffer("XMESSAGE1\r\n");
         in.readByte();
 
         messageFrameDecoder.decode(ctx, in, out);
 
-        verify(parser, times(1)).decode(bytesEq("MESSAGE1"));
+        assertEquals(singletonList("MESSAGE1"), decodedFrames);
+        assertTrue(out.contains(message1));
+        assertFalse(in.isReadable());
+    }
+
+    @Test
+    public void decode_withFrame_decodesFrameInPlace() throws Exception {
+
+        ByteBuf in = newBuffer("MESSAGE1\r\n");
+        when(parser.decode(in, 0, 8)).thenReturn(message1);
+
+        messageFrameDecoder.decode(ctx, in, out);
+
+        verify(parser, times(1)).decode(in, 0, 8);
+        assertTrue(out.contains(message1));
+    }
+
+    @Test
+    public void decode_withLineFeedOnly_outputsMessage() throws Exception {
+
+        mockDecode(message1);
+
+        ByteBuf in = newBuffer("MESSAGE1\n");
+
+        messageFrameDecoder.decode(ctx, in, out);
+
+        assertEquals(singletonList("MESSAGE1"), decodedFrames);
         assertTrue(out.contains(message1));
+        assertFalse(in.isReadable());
+    }
+
+    @Test
+    public void decode_withTwoFrames_outputsFirstMessageAndKeepsSecondFrame() throws Exception {
+
+        mockDecode(message1);
+
+        ByteBuf in = newBuffer("MESSAGE1\r\nMESSAGE2\r\n");
+
+        messageFrameDecoder.decode(ctx, in, out);
+
+        assertEquals(singletonList("MESSAGE1"), decodedFrames);
+        assertEquals(singletonList(message1), out);
+        assertEquals(10, in.readableBytes());
+    }
+
+    @Test
+    public void decode_withoutDelimiter_doesntOutputMessage() throws Exception {
+
+        ByteBuf in = newBuffer("MESSAGE1\r");
+
+        messageFrameDecoder.decode(ctx, in, out);
+
+        verify(parser, never()).decode(any(ByteBuf.class), anyInt(), anyInt());
+        assertTrue(out.isEmpty());
+        assertEquals(9, in.readableBytes());
     }
 
     @Test
     public void decode_withFrameAndDecodeFails_doesntOutputMessage() throws Exception {
 
-        when(parser.decode(bytesEq("MESSAGE1"))).thenReturn(null);
+        mockDecode(null);
 
-        ByteBuf in = newBuffer("MESSAGE1");
+        ByteBuf in = newBuffer("MESSAGE1\r\n");
 
         messageFrameDecoder.decode(ctx, in, out);
 
-        verify(parser, times(1)).decode(bytesEq("MESSAGE1"));
+        assertEquals(singletonList("MESSAGE1"), decodedFrames);
         assertTrue(out.isEmpty());
+        assertFalse(in.isReadable());
     }
 
     @Test
     public void decode_withEmptyFrameAndDecodeFails_doesntOutputMessage() throws Exception {
 
-        ByteBuf in = newBuffer("");
+        ByteBuf in = newBuffer("\r\n");
+
+        messageFrameDecoder.decode(ctx, in, out);
+
+        verify(parser, never()).decode(any(ByteBuf.class), anyInt(), anyInt());
+        assertTrue(out.isEmpty());
+        assertFalse(in.isReadable());
+    }
+
+    @Test
+    public void decode_withTooLongFrame_skipsFrameAndCountsDiscardedBytes() throws Exception {
+
+        messageFrameDecoder = new RxtxMessageFrameDecoder(parser, 4);
+
+        ByteBuf in = newBuffer("MESSAGE1\r\n");
+
+        messageFrameDecoder.decode(ctx, in, out);
+
+        verify(parser, never()).decode(any(ByteBuf.class), anyInt(), anyInt());
+        verify(ctx, never()).fireExceptionCaught(any(Throwable.class));
+        assertTrue(out.isEmpty());
+        assertFalse(in.isReadable());
+        assertEquals(10, messageFrameDecoder.getDiscardedBytes());
+        assertEquals(1, messageFrameDecoder.getMalformedFrames());
+    }
+
+    @Test
+    public void decode_withTooLongFrameWithoutDelimiter_discardsFrameUntilDelimiter() throws Exception {
+
+        mockDecode(message1);
+        messageFrameDecoder = new RxtxMessageFrameDecoder(parser, 4);
+
+        ByteBuf in = newBuffer("MESSAGE1");
+        messageFrameDecoder.decode(ctx, in, out);
+
+        assertFalse(in.isReadable());
+        assertEquals(8, messageFrameDecoder.getDiscardedBytes());
+        assertEquals(0, messageFrameDecoder.getMalformedFrames());
+
+        in = newBuffer("REST\r\nMSG2\r\n");
+        messageFrameDecoder.decode(ctx, in, out);
+
+        assertTrue(out.isEmpty());
+        assertEquals(6, in.readableBytes());
+        assertEquals(14, messageFrameDecoder.getDiscardedBytes());
+        assertEquals(1, messageFrameDecoder.getMalformedFrames());
+
+        messageFrameDecoder.decode(ctx, in, out);
+
+        assertEquals(singletonList("MSG2"), decodedFrames);
+        assertEquals(singletonList(message1), out);
+        assertEquals(14, messageFrameDecoder.getDiscardedBytes());
+        assertEquals(1, messageFrameDecoder.getMalformedFrames());
+        verify(ctx, never()).fireExceptionCaught(any(Throwable.class));
+    }
+
+    @Test
+    public void decode_withFrameAndParserThrowsException_skipsFrameAndCountsIt() throws Exception {
+
+        when(parser.decode(any(ByteBuf.class), anyInt(), anyInt())).thenThrow(new IndexOutOfBoundsException());
+
+        ByteBuf in = newBuffer("MESSAGE1\r\n");
 
         messageFrameDecoder.decode(ctx, in, out);
 
-        verify(parser, never()).decode(any());
         assertTrue(out.isEmpty());
+        assertFalse(in.isReadable());
+        assertEquals(10, messageFrameDecoder.getDiscardedBytes());
+        assertEquals(1, messageFrameDecoder.getMalformedFrames());
+    }
+
+    @Test
+    public void decode_withFrameAndDecodeError_outputsDecodeErrorAndCountsIt() throws Exception {
+
+        DecodeErrorMessage errorMessage = new DecodeErrorMessage("GARBAGE");
+        mockDecode(errorMessage);
+
+        ByteBuf in = newBuffer("GARBAGE\r\n");
+
+        messageFrameDecoder.decode(ctx, in, out);
+
+        assertEquals(singletonList(errorMessage), out);
+        assertEquals(0, messageFrameDecoder.getDiscardedBytes());
+        assertEquals(1, messageFrameDecoder.getMalformedFrames());
+    }
+
+    @Test
+    public void decode_withValidFrames_doesntCountMalformedFrames() throws Exception {
+
+        mockDecode(message1);
+
+        messageFrameDecoder.decode(ctx, newBuffer("MESSAGE1\r\n"), out);
+
+        assertEquals(0, messageFrameDecoder.getDiscardedBytes());
+        assertEquals(0, messageFrameDecoder.getMalformedFrames());
+    }
+
+    // Pipeline:
+
+    @Test
+    public void channel_withFramesSplitAcrossBuffers_outputsAllMessages() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RxtxMessageFrameDecoder(new RxtxMessageParser()));
+
+        channel.writeInbound(newBuffer("PING\r\nP1"));
+        channel.writeInbound(newBuffer("A\r\nSS\r\nOK\r"));
+        channel.writeInbound(newBuffer("\nIDD0550102\r\n"));
+
+        assertTrue(channel.readInbound() instanceof PingMessage);
+        assertTrue(channel.readInbound() instanceof PulseCountMessage);
+        assertTrue(channel.readInbound() instanceof StrokeMessage);
+        assertTrue(channel.readInbound() instanceof AcknowledgeMessage);
+        assertTrue(channel.readInbound() instanceof DataMemoryMessage);
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    // Fuzzing:
+
+    /**
+     * Checks if mutated frames of the simulation data, which are received in random chunks, never
+     * cause an exception and never close the channel.
+     */
+    @Test
+    public void channel_withFuzzedSimulationData_neverFailsAndStaysOpen() throws IOException {
+        RxtxMessageFrameDecoder decoder = new RxtxMessageFrameDecoder(new RxtxMessageParser());
+        EmbeddedChannel channel = new EmbeddedChannel(decoder);
+        FuzzCorpus corpus = new FuzzCorpus(42);
+
+        ByteBuf stream = buffer();
+        for (String frame : readSimulationFrames()) {
+            stream.writeBytes(corpus.mutate(frame));
+            stream.writeBytes(CRLF);
+        }
+
+        while (stream.isReadable()) {
+            int chunkSize = 1 + corpus.nextInt(Math.min(64, stream.readableBytes()));
+            channel.writeInbound(stream.readRetainedSlice(chunkSize));
+            channel.checkException();
+            assertTrue(channel.isOpen());
+            while (channel.readInbound() != null) {
+                // Drain the decoded messages.
+            }
+        }
+
+        assertTrue(decoder.getMalformedFrames() > 0);
+        assertTrue(decoder.getDiscardedBytes() > 0);
+        assertFalse(channel.finish());
+        stream.release();
+    }
+
+    /**
+     * Checks if the decoder resynchronizes after each garbage line (short and too long), so all
+     * frames of the simulation data are decoded in order.
+     */
+    @Test
+    public void channel_withGarbageBetweenSimulationFrames_resynchronizesAndDecodesAllFrames() throws IOException {
+        RxtxMessageParser parser = new RxtxMessageParser();
+        RxtxMessageFrameDecoder decoder = new RxtxMessageFrameDecoder(parser);
+        EmbeddedChannel channel = new EmbeddedChannel(decoder);
+        FuzzCorpus corpus = new FuzzCorpus(815);
+
+        List<String> frames = readSimulationFrames();
+        assertFalse(frames.isEmpty());
+
+        int expectedMalformedFrames = 0;
+        for (String frame : frames) {
+            ByteBuf in = buffer();
+            in.writeBytes(corpus.binaryGarbage(1 + corpus.nextInt(100)));
+            in.writeBytes(CRLF);
+            in.writeBytes(frame.getBytes(US_ASCII));
+            in.writeBytes(CRLF);
+            channel.writeInbound(in);
+            expectedMalformedFrames++;
+
+            AbstractMessage expected = parser.decode(frame.getBytes(US_ASCII));
+            if (expected instanceof DecodeErrorMessage)
+                expectedMalformedFrames++;
+
+            // Short garbage lines are passed on as decode errors:
+            AbstractMessage result = channel.readInbound();
+            if (result instanceof DecodeErrorMessage)
+                result = channel.readInbound();
+
+            assertNotNull(frame, result);
+            assertEquals(frame, expected.getClass(), result.getClass());
+            if (expected instanceof DataMemoryMessage)
+                assertEquals(frame, expected.toString(), result.toString());
+            assertNull(frame, channel.readInbound());
+        }
+
+        assertTrue(channel.isOpen());
+        assertEquals(expectedMalformedFrames, decoder.getMalformedFrames());
+        assertFalse(channel.finish());
+    }
+
+    // Allocation:
+
+    /**
+     * Checks if decoding and receiving frames doesn't create garbage (e.g. log messages), if
+     * debug logging is disabled.
+     */
+    @Test
+    public void decode_whenDebugIsDisabled_isGarbageFree() throws Exception {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        assumeTrue(allocationMXBean.isThreadAllocatedMemorySupported());
+        allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+        assumeFalse(Log.isDebugEnabled(SERIAL) || Log.isDebugEnabled(MESSAGES));
+
+        messageFrameDecoder = new RxtxMessageFrameDecoder(new RxtxMessageParser(true));
+        RxtxSerialHandler serialHandler = new RxtxSerialHandler() {
+            @Override
+            protected void onConnected() {}
+            @Override
+            protected void onMessageReceived(AbstractMessage message) {}
+            @Override
+            protected void onDisconnected() {}
+            @Override
+            protected void onError() {}
+        };
+        ByteBuf in = newBuffer("IDD0550102\r\nIDS05603\r\nSS\r\nSE\r\nP1A\r\nPING\r\nOK\r\n");
+
+        // Warm up, so all messages are pooled:
+        decodeAndReceive(in, serialHandler, 20000);
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = allocationMXBean.getThreadAllocatedBytes(threadId);
+
+        decodeAndReceive(in, serialHandler, 10000);
+
+        long allocated = allocationMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        // Allow a few bytes for the measurement itself:
+        assertTrue("Decoding allocated " + allocated + " bytes!", allocated < 1024);
+    }
+
+    /* Decodes all frames of the buffer and passes the messages to the serial handler. */
+    private void decodeAndReceive(ByteBuf in, RxtxSerialHandler serialHandler, int iterations) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            in.readerIndex(0);
+            while (in.isReadable()) {
+                messageFrameDecoder.decode(null, in, out);
+                // Don't use an iterator here, it would allocate memory:
+                for (int j = 0; j < out.size(); j++)
+                    serialHandler.channelRead(null, out.get(j));
+                out.clear();
+            }
+        }
     }
 
     // Helper methods:
@@ -108,8 +431,15 @@ public class TestRxtxMessageFrameDecoder {
         return wrappedBuffer(content.getBytes(UTF_8));
     }
 
-    private byte[] bytesEq(String message) {
-        return aryEq(message.getBytes(UTF_8));
+    /* Mocks the parser, which returns the given message and records the decoded frames. */
+    private void mockDecode(AbstractMessage message) {
+        when(parser.decode(any(ByteBuf.class), anyInt(), anyInt())).thenAnswer(invocation -> {
+            ByteBuf buffer = (ByteBuf) invocation.getArguments()[0];
+            int index = (Integer) invocation.getArguments()[1];
+            int length = (Integer) invocation.getArguments()[2];
+            decodedFrames.add(buffer.toString(index, length, UTF_8));
+            return message;
+        });
     }
 
 }
@@ -1,17 +1,24 @@
 package de.tbressler.waterrower.io.codec;
 
+import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
 import de.tbressler.waterrower.io.msg.out.StartCommunicationMessage;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
 import org.junit.Before;
 import org.junit.Test;
 
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertTrue;
+import java.util.Iterator;
+
+import static de.tbressler.waterrower.io.msg.Memory.DOUBLE_MEMORY;
+import static de.tbressler.waterrower.io.msg.Memory.SINGLE_MEMORY;
+import static java.util.Arrays.asList;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 /**
  * Tests for class RxtxMessageFrameEncoder.
@@ -58,7 +65,7 @@ public class TestRxtxMessageFrameEncoder {
      */
     @Test
     public void encode_withValidStartCommunicationMessage_returnsCorrectBytes() throws Exception {
-        when(parser.encode(any(StartCommunicationMessage.class))).thenReturn("USB".getBytes());
+        mockEncode("USB");
 
         ByteBuf out = Unpooled.buffer();
         messageFrameEncoder.encode(ctx, new StartCommunicationMessage(), out);
@@ -66,12 +73,25 @@ public class TestRxtxMessageFrameEncoder {
         assertTrue(new String(out.array()).startsWith("USB\r\n"));
     }
 
+    /**
+     * Checks if the encoder doesn't write or flush the buffer by itself.
+     */
+    @Test
+    public void encode_withValidStartCommunicationMessage_doesntFlush() throws Exception {
+        mockEncode("USB");
+
+        messageFrameEncoder.encode(ctx, new StartCommunicationMessage(), Unpooled.buffer());
+
+        verify(ctx, never()).writeAndFlush(any());
+        verify(ctx, never()).flush();
+    }
+
     /**
      * Checks if no message is written, if the message couldn't be parsed.
      */
     @Test
     public void encode_whenMessageCantBeParsed_dontWriteToBuffer() throws Exception {
-        when(parser.encode(any(StartCommunicationMessage.class))).thenReturn(null);
+        mockEncode((String) null);
 
         ByteBuf out = Unpooled.buffer();
         messageFrameEncoder.encode(ctx, new StartCommunicationMessage(), out);
@@ -79,4 +99,96 @@ public class TestRxtxMessageFrameEncoder {
         assertFalse(new String(out.array()).contains("\r\n"));
     }
 
+
+    /**
+     * Checks if the cached frame is written for read memory messages.
+     */
+    @Test
+    public void write_withReadMemoryMessage_writesCachedFrame() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RxtxMessageFrameEncoder(new RxtxMessageParser()));
+        ReadMemoryMessage msg = new ReadMemoryMessage(DOUBLE_MEMORY, 0x055);
+
+        channel.writeOutbound(msg);
+        channel.writeOutbound(msg);
+
+        ByteBuf frame1 = channel.readOutbound();
+        ByteBuf frame2 = channel.readOutbound();
+
+        assertEquals("IRD055\r\n", frame1.toString(US_ASCII));
+        assertEquals("IRD055\r\n", frame2.toString(US_ASCII));
+        assertTrue(frame1.isReadOnly());
+        assertTrue(frame2.isReadOnly());
+
+        frame1.release();
+        frame2.release();
+    }
+
+    /**
+     * Checks if nothing is written, if the read memory message couldn't be parsed.
+     */
+    @Test
+    public void write_whenReadMemoryMessageCantBeParsed_writesNothing() {
+        mockEncode((String) null);
+        EmbeddedChannel channel = new EmbeddedChannel(messageFrameEncoder);
+
+        channel.writeOutbound(new ReadMemoryMessage(DOUBLE_MEMORY, 0x055));
+
+        assertNull(channel.readOutbound());
+    }
+
+
+    /**
+     * Checks if all messages of a batch are written in a single buffer.
+     */
+    @Test
+    public void write_withBatch_writesSingleBuffer() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RxtxMessageFrameEncoder(new RxtxMessageParser()));
+
+        channel.writeOutbound(new RxtxMessageBatch(asList(
+                new ReadMemoryMessage(DOUBLE_MEMORY, 0x055),
+                new StartCommunicationMessage(),
+                new ReadMemoryMessage(SINGLE_MEMORY, 0x03E))));
+
+        ByteBuf frame = channel.readOutbound();
+
+        assertEquals("IRD055\r\nUSB\r\nIRS03E\r\n", frame.toString(US_ASCII));
+        assertNull(channel.readOutbound());
+
+        frame.release();
+    }
+
+    /**
+     * Checks if messages of a batch, that couldn't be parsed, are skipped.
+     */
+    @Test
+    public void write_withBatchWhenMessageCantBeParsed_skipsMessage() {
+        mockEncode(null, "IRD055");
+        EmbeddedChannel channel = new EmbeddedChannel(messageFrameEncoder);
+
+        channel.writeOutbound(new RxtxMessageBatch(asList(
+                new StartCommunicationMessage(),
+                new ReadMemoryMessage(DOUBLE_MEMORY, 0x055))));
+
+        ByteBuf frame = channel.readOutbound();
+
+        assertEquals("IRD055\r\n", frame.toString(US_ASCII));
+
+        frame.release();
+    }
+
+
+    // Helper methods:
+
+    /* Mocks the parser, which writes the given strings (one per call) or returns false for null. */
+    private void mockEncode(String... encodedMessages) {
+        Iterator<String> iterator = asList(encodedMessages).iterator();
+        when(parser.encode(any(AbstractMessage.class), any(ByteBuf.class))).thenAnswer(invocation -> {
+            String encodedMessage = iterator.hasNext() ? iterator.next() : encodedMessages[encodedMessages.length - 1];
+            if (encodedMessage == null)
+                return false;
+            ((ByteBuf) invocation.getArguments()[1]).writeCharSequence(encodedMessage, US_ASCII);
+            return true;
+        });
+    }
+
 }
@@ -2,18 +2,49 @@ package de.tbressler.waterrower.io.codec;
 
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.IMessageInterpreter;
+import de.tbressler.waterrower.io.msg.Memory;
 import de.tbressler.waterrower.io.msg.in.AcknowledgeMessage;
+import de.tbressler.waterrower.io.msg.in.DataMemoryMessage;
 import de.tbressler.waterrower.io.msg.in.DecodeErrorMessage;
+import de.tbressler.waterrower.io.msg.in.PingMessage;
+import de.tbressler.waterrower.io.msg.in.PulseCountMessage;
+import de.tbressler.waterrower.io.msg.out.*;
+import de.tbressler.waterrower.model.MemoryLocation;
+import de.tbressler.waterrower.model.StrokeType;
+import de.tbressler.waterrower.subscriptions.DebugSubscription;
+import de.tbressler.waterrower.subscriptions.ISubscription;
+import de.tbressler.waterrower.subscriptions.PulseCountSubscription;
+import de.tbressler.waterrower.subscriptions.StrokeSubscription;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCounted;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 import java.util.List;
 
 import static com.google.common.base.Charsets.UTF_8;
+import static de.tbressler.waterrower.io.codec.FuzzCorpus.readSimulationFrames;
+import static de.tbressler.waterrower.io.msg.Memory.DOUBLE_MEMORY;
+import static de.tbressler.waterrower.io.msg.Memory.SINGLE_MEMORY;
+import static de.tbressler.waterrower.io.msg.Memory.TRIPLE_MEMORY;
+import static de.tbressler.waterrower.io.msg.out.ConfigureWorkoutMessage.MessageType.*;
+import static de.tbressler.waterrower.utils.MessageUtils.intToAch;
+import static io.netty.util.ReferenceCountUtil.release;
+import static de.tbressler.waterrower.workout.WorkoutUnit.*;
+import static io.netty.buffer.Unpooled.buffer;
+import static io.netty.buffer.Unpooled.wrappedBuffer;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.*;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
 
 /**
  * Tests for class RxtxMessageParser.
@@ -30,7 +61,7 @@ public class TestRxtxMessageParser {
     private IMessageInterpreter interpreter1 = mock(IMessageInterpreter.class, "interpreter1");
     private IMessageInterpreter interpreter2 = mock(IMessageInterpreter.class, "interpreter2");
 
-    private List<IMessageInterpreter> interpreters = new ArrayList<>();
+    private List<IMessageInterpreter<?>> interpreters = new ArrayList<>();
 
     private AbstractMessage message = mock(AcknowledgeMessage.class, "message");
 
@@ -54,7 +85,7 @@ public class TestRxtxMessageParser {
     @Test
     public void checkInterpreters() {
         parser = new RxtxMessageParser();
-        List<IMessageInterpreter> interpreters = parser.getInterpreters();
+        List<IMessageInterpreter<?>> interpreters = parser.getInterpreters();
         assertEquals(11, interpreters.size());
     }
 
@@ -108,6 +139,265 @@ public class TestRxtxMessageParser {
         assertEquals("XYZ", errorMessage.getMessage());
     }
 
+    // Decode from buffer:
+
+    @Test
+    public void decodeBuffer_withSuccessfulInterpreter1_returnsMessage() {
+
+        mockBufferInterpreter(interpreter1, "T", message);
+        mockBufferInterpreter(interpreter2, "X", null);
+
+        AbstractMessage result = parser.decode(newBuffer("TEST"));
+
+        assertEquals(message, result);
+    }
+
+    @Test
+    public void decodeBuffer_withSuccessfulInterpreter2_returnsMessage() {
+
+        mockBufferInterpreter(interpreter1, "T", null);
+        mockBufferInterpreter(interpreter2, "X", message);
+
+        AbstractMessage result = parser.decode(newBuffer("XYZ"));
+
+        assertEquals(message, result);
+        verify(interpreter1, never()).decode(any(ByteBuf.class), anyInt(), anyInt());
+    }
+
+    @Test
+    public void decodeBuffer_withInterpreterThatReturnsNullAsIdentifier_returnsMessage() {
+
+        mockBufferInterpreter(interpreter1, null, null);
+        mockBufferInterpreter(interpreter2, "X", message);
+
+        AbstractMessage result = parser.decode(newBuffer("XYZ"));
+
+        assertEquals(message, result);
+    }
+
+    @Test
+    public void decodeBuffer_withIndexAndLength_passesRegionToInterpreter() {
+
+        mockBufferInterpreter(interpreter1, "X", message);
+
+        ByteBuf buffer = newBuffer("--XYZ--");
+        AbstractMessage result = parser.decode(buffer, 2, 3);
+
+        assertEquals(message, result);
+        verify(interpreter1, times(1)).decode(eq(buffer), eq(2), eq(3));
+    }
+
+    @Test
+    public void decodeBuffer_withInterpretersReturningNull_returnsDecodeErrorMessage() {
+
+        mockBufferInterpreter(interpreter1, "Y", null);
+        mockBufferInterpreter(interpreter2, "X", null);
+
+        AbstractMessage result = parser.decode(newBuffer("XYZ"));
+
+        assertNotNull(result);
+        assertTrue(result instanceof DecodeErrorMessage);
+
+        DecodeErrorMessage errorMessage = (DecodeErrorMessage) result;
+        assertEquals("XYZ", errorMessage.getMessage());
+    }
+
+    @Test
+    public void decodeBuffer_doesntModifyReaderIndex() {
+
+        mockBufferInterpreter(interpreter1, "T", message);
+
+        ByteBuf buffer = newBuffer("TEST");
+        parser.decode(buffer);
+
+        assertEquals(0, buffer.readerIndex());
+        assertEquals(4, buffer.readableBytes());
+    }
+
+    @Test
+    public void decodeBuffer_withNonAsciiFirstByte_returnsDecodeErrorMessage() {
+
+        mockBufferInterpreter(interpreter1, "T", message);
+
+        ByteBuf buffer = newBuffer("TEST");
+        buffer.setByte(0, 0xD4);
+
+        AbstractMessage result = parser.decode(buffer);
+
+        assertTrue(result instanceof DecodeErrorMessage);
+        verify(interpreter1, never()).decode(any(ByteBuf.class), anyInt(), anyInt());
+    }
+
+    @Test
+    public void decodeBuffer_withEmptyBuffer_returnsDecodeErrorMessage() {
+
+        mockBufferInterpreter(interpreter1, "T", message);
+
+        AbstractMessage result = parser.decode(newBuffer(""));
+
+        assertTrue(result instanceof DecodeErrorMessage);
+    }
+
+    @Test
+    public void decodeBuffer_withLongerIdentifier_checksLongerIdentifierFirst() {
+
+        AbstractMessage pingMessage = mock(AbstractMessage.class, "pingMessage");
+
+        mockBufferInterpreter(interpreter1, "P", message);
+        mockBufferInterpreter(interpreter2, "PING", pingMessage);
+
+        assertEquals(pingMessage, parser.decode(newBuffer("PING")));
+        verify(interpreter1, never()).decode(any(ByteBuf.class), anyInt(), anyInt());
+    }
+
+    @Test
+    public void decodeBuffer_withShorterIdentifier_fallsBackToShorterIdentifier() {
+
+        AbstractMessage pingMessage = mock(AbstractMessage.class, "pingMessage");
+
+        mockBufferInterpreter(interpreter1, "P", message);
+        mockBufferInterpreter(interpreter2, "PING", pingMessage);
+
+        assertEquals(message, parser.decode(newBuffer("P1A")));
+        verify(interpreter2, never()).decode(any(ByteBuf.class), anyInt(), anyInt());
+    }
+
+    @Test
+    public void decode_withPingAndPulseCountMessages_usesCorrectInterpreters() {
+        parser = new RxtxMessageParser();
+
+        assertTrue(parser.decode(newBuffer("PING")) instanceof PingMessage);
+        assertTrue(parser.decode(newBuffer("P1A")) instanceof PulseCountMessage);
+        assertTrue(parser.decode(newBytes("PING")) instanceof PingMessage);
+        assertTrue(parser.decode(newBytes("P1A")) instanceof PulseCountMessage);
+    }
+
+    /**
+     * Checks if the frames of the simulation data are decoded to the same messages by the
+     * String based and the buffer based decoding.
+     */
+    @Test
+    public void decode_withSimulationData_decodesBufferAndBytesEqually() throws IOException {
+        parser = new RxtxMessageParser();
+
+        List<String> frames = readSimulationFrames();
+        assertFalse(frames.isEmpty());
+
+        for (String frame : frames) {
+            AbstractMessage expected = parser.decode(newBytes(frame));
+            AbstractMessage result = parser.decode(newBuffer(frame));
+
+            assertEquals(frame, expected.getClass(), result.getClass());
+            assertEquals(frame, expected.toString(), result.toString());
+        }
+    }
+
+    /**
+     * Checks if mutated frames of the simulation data never cause an exception, neither in the
+     * String based nor in the buffer based decoding.
+     */
+    @Test
+    public void decode_withFuzzedSimulationData_neverThrowsException() throws IOException {
+        parser = new RxtxMessageParser();
+        FuzzCorpus corpus = new FuzzCorpus(4711);
+
+        for (String frame : readSimulationFrames()) {
+            byte[] bytes = corpus.mutate(frame);
+
+            assertNotNull(parser.decode(bytes));
+            assertNotNull(parser.decode(wrappedBuffer(bytes)));
+        }
+    }
+
+    // Recycling mode:
+
+    @Test
+    public void decodeBuffer_inRecyclingMode_reusesReleasedDataMemoryMessages() {
+        parser = new RxtxMessageParser(true);
+
+        AbstractMessage msg1 = parser.decode(newBuffer("IDD0550007"));
+        assertTrue(msg1 instanceof ReferenceCounted);
+        release(msg1);
+
+        AbstractMessage msg2 = parser.decode(newBuffer("IDD0550008"));
+
+        assertSame(msg1, msg2);
+        assertEquals(8, ((DataMemoryMessage) msg2).getValue1());
+    }
+
+    @Test
+    public void decodeBuffer_withoutRecyclingMode_createsNewDataMemoryMessages() {
+        parser = new RxtxMessageParser();
+
+        AbstractMessage msg1 = parser.decode(newBuffer("IDD0550007"));
+        assertFalse(msg1 instanceof ReferenceCounted);
+        release(msg1);
+
+        AbstractMessage msg2 = parser.decode(newBuffer("IDD0550008"));
+
+        assertNotSame(msg1, msg2);
+    }
+
+    @Test
+    public void decodeBuffer_withFixedContentMessages_returnsSingleInstances() {
+        parser = new RxtxMessageParser();
+
+        assertSame(parser.decode(newBuffer("PING")), parser.decode(newBuffer("PING")));
+        assertSame(parser.decode(newBuffer("OK")), parser.decode(newBuffer("OK")));
+        assertSame(parser.decode(newBuffer("SS")), parser.decode(newBuffer("SS")));
+        assertSame(parser.decode(newBuffer("P1A")), parser.decode(newBuffer("P1A")));
+        assertSame(parser.decode(newBuffer("_WR_")), parser.decode(newBuffer("_WR_")));
+    }
+
+    /**
+     * Checks if decoding and delivering messages to 24 memory subscriptions (plus stroke and
+     * pulse count subscriptions) doesn't allocate memory in recycling mode, once all messages
+     * are pooled.
+     */
+    @Test
+    public void decodeBuffer_inRecyclingModeWithActiveSubscriptions_isGarbageFree() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        assumeTrue(allocationMXBean.isThreadAllocatedMemorySupported());
+        allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        parser = new RxtxMessageParser(true);
+
+        List<ISubscription> subscriptions = new ArrayList<>();
+        List<ByteBuf> frames = new ArrayList<>();
+
+        MemoryLocation[] locations = MemoryLocation.values();
+        for (int i = 0; i < 24; i++) {
+            Memory memory = (i % 2 == 0) ? DOUBLE_MEMORY : SINGLE_MEMORY;
+            subscriptions.add(newDebugSubscription(memory, locations[i]));
+            String values = (memory == DOUBLE_MEMORY) ? "0102" : "03";
+            frames.add(newBuffer("ID" + ((memory == DOUBLE_MEMORY) ? "D" : "S") + intToAch(locations[i].getLocation(), 3) + values));
+        }
+        subscriptions.add(newStrokeSubscription());
+        subscriptions.add(newPulseCountSubscription());
+        frames.add(newBuffer("SS"));
+        frames.add(newBuffer("SE"));
+        frames.add(newBuffer("P1A"));
+        frames.add(newBuffer("PING"));
+
+        ISubscription[] subscriptionArray = subscriptions.toArray(new ISubscription[subscriptions.size()]);
+        ByteBuf[] frameArray = frames.toArray(new ByteBuf[frames.size()]);
+
+        // Warm up, so all messages are pooled:
+        decodeAndDeliver(frameArray, subscriptionArray, 20000);
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = allocationMXBean.getThreadAllocatedBytes(threadId);
+
+        decodeAndDeliver(frameArray, subscriptionArray, 10000);
+
+        long allocated = allocationMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        // Allow a few bytes for the measurement itself:
+        assertTrue("Decoding allocated " + allocated + " bytes!", allocated < 1024);
+    }
+
     // Encoder:
 
     @Test
@@ -130,6 +420,20 @@ public class TestRxtxMessageParser {
         assertArrayEquals("TEST".getBytes(UTF_8), result);
     }
 
+    @Test
+    public void encode_withSameMessageTypeTwice_looksUpInterpreterOnce() {
+        mockInterpreter(interpreter1, false, message, null);
+        mockInterpreter(interpreter2, true, message, "TEST");
+
+        parser.encode(message);
+        byte[] result = parser.encode(message);
+
+        assertArrayEquals("TEST".getBytes(UTF_8), result);
+        verify(interpreter1, times(1)).isSupported(message);
+        verify(interpreter2, times(1)).isSupported(message);
+        verify(interpreter2, times(2)).encode(eq(message), any(ByteBuf.class));
+    }
+
     @Test
     public void encode_withUnsupportedMessageType1_returnsMessage() {
         mockInterpreter(interpreter1, false, message, null);
@@ -140,21 +444,182 @@ public class TestRxtxMessageParser {
         assertNull(result);
     }
 
+    // Encode to buffer:
+
+    @Test
+    public void encodeBuffer_withSupportedMessageType_writesMessage() {
+        mockInterpreter(interpreter1, false, message, null);
+        mockInterpreter(interpreter2, true, message, null);
+        mockEncodeBuffer(interpreter2, "TEST", true);
+
+        ByteBuf buffer = buffer();
+
+        assertTrue(parser.encode(message, buffer));
+        assertEquals("TEST", buffer.toString(US_ASCII));
+    }
+
+    @Test
+    public void encodeBuffer_withUnsupportedMessageType_returnsFalse() {
+        mockInterpreter(interpreter1, false, message, null);
+        mockInterpreter(interpreter2, false, message, null);
+
+        ByteBuf buffer = buffer();
+
+        assertFalse(parser.encode(message, buffer));
+        assertFalse(buffer.isReadable());
+    }
+
+    @Test
+    public void encodeBuffer_whenInterpreterFailsAfterWriting_removesWrittenBytes() {
+        mockInterpreter(interpreter1, true, message, null);
+        mockEncodeBuffer(interpreter1, "PARTIAL", false);
+
+        ByteBuf buffer = buffer();
+        buffer.writeCharSequence("X", US_ASCII);
+
+        assertFalse(parser.encode(message, buffer));
+        assertEquals("X", buffer.toString(US_ASCII));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void encodeBuffer_whenInterpreterThrowsException_removesWrittenBytes() {
+        mockInterpreter(interpreter1, true, message, null);
+        when(interpreter1.encode(eq(message), any(ByteBuf.class))).thenAnswer(invocation -> {
+            ((ByteBuf) invocation.getArguments()[1]).writeCharSequence("PARTIAL", US_ASCII);
+            throw new NumberFormatException("some-exception");
+        });
+
+        ByteBuf buffer = buffer();
+
+        try {
+            parser.encode(message, buffer);
+            fail("NumberFormatException expected!");
+        } catch (NumberFormatException e) {
+            assertFalse(buffer.isReadable());
+        }
+    }
+
+    /**
+     * Checks if all outgoing messages are encoded to the same bytes, no matter if they are encoded
+     * to a byte array or directly to a buffer.
+     */
+    @Test
+    public void encodeBuffer_withAllOutgoingMessages_writesSameBytesAsEncode() {
+        parser = new RxtxMessageParser();
+
+        List<AbstractMessage> messages = asList(
+                new StartCommunicationMessage(),
+                new ResetMessage(),
+                new ExitCommunicationMessage(),
+                new RequestModelInformationMessage(),
+                new ReadMemoryMessage(SINGLE_MEMORY, 0x001),
+                new ReadMemoryMessage(DOUBLE_MEMORY, 0x0A5),
+                new ReadMemoryMessage(TRIPLE_MEMORY, 0xFFF),
+                new ConfigureWorkoutMessage(SINGLE_WORKOUT, 1000, METERS),
+                new ConfigureWorkoutMessage(SINGLE_WORKOUT, 1, SECONDS),
+                new ConfigureWorkoutMessage(START_INTERVAL_WORKOUT, 4321, KMS),
+                new ConfigureWorkoutMessage(START_INTERVAL_WORKOUT, 5000, STROKES),
+                new ConfigureWorkoutMessage(ADD_INTERVAL_WORKOUT, 1234, MILES, 1000),
+                new ConfigureWorkoutMessage(END_INTERVAL_WORKOUT, 0xFFFF, METERS, 0xFFFF));
+
+        for (AbstractMessage msg : messages) {
+            ByteBuf buffer = buffer();
+            assertTrue(parser.encode(msg, buffer));
+            assertEquals(new String(parser.encode(msg), US_ASCII), buffer.toString(US_ASCII));
+        }
+    }
+
     // Helper methods:
 
+    @SuppressWarnings("unchecked")
+    private void mockEncodeBuffer(IMessageInterpreter interpreter, String content, boolean result) {
+        when(interpreter.encode(eq(message), any(ByteBuf.class))).thenAnswer(invocation -> {
+            ((ByteBuf) invocation.getArguments()[1]).writeCharSequence(content, US_ASCII);
+            return result;
+        });
+    }
+
     private byte[] newBytes(String content) {
         return content.getBytes(UTF_8);
     }
 
+    /* Decodes the frames, passes them to the subscriptions and releases them. */
+    private void decodeAndDeliver(ByteBuf[] frames, ISubscription[] subscriptions, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            for (ByteBuf frame : frames) {
+                AbstractMessage msg = parser.decode(frame);
+                for (ISubscription subscription : subscriptions)
+                    subscription.handle(msg);
+                release(msg);
+            }
+        }
+    }
+
+    private ISubscription newDebugSubscription(Memory memory, MemoryLocation location) {
+        return new DebugSubscription(memory, location) {
+            @Override
+            protected void handle(DataMemoryMessage msg) {
+                // Don't use assertEquals here, it boxes the values:
+                if (msg.getLocation() != location.getLocation())
+                    fail("Unexpected location!");
+            }
+        };
+    }
+
+    private ISubscription newStrokeSubscription() {
+        return new StrokeSubscription() {
+            @Override
+            protected void onStroke(StrokeType strokeType) {
+                assertNotNull(strokeType);
+            }
+        };
+    }
+
+    private ISubscription newPulseCountSubscription() {
+        return new PulseCountSubscription() {
+            @Override
+            protected void onPulseCount(int pulsesCount) {
+                if (pulsesCount != 0x1A)
+                    fail("Unexpected pulse count!");
+            }
+        };
+    }
+
+    private ByteBuf newBuffer(String content) {
+        return wrappedBuffer(newBytes(content));
+    }
+
+    private void mockBufferInterpreter(IMessageInterpreter interpreter, String identifier, AbstractMessage msg) {
+        when(interpreter.getMessageIdentifier()).thenReturn(identifier);
+        when(interpreter.decode(any(ByteBuf.class), anyInt(), anyInt())).thenReturn(msg);
+        recreateParser();
+    }
+
     private void mockInterpreter(IMessageInterpreter interpreter, String identifier, String decodeMsg, AbstractMessage msg) {
         when(interpreter.getMessageIdentifier()).thenReturn(identifier);
-        when(interpreter.decode(decodeMsg)).thenReturn(msg);
+        when(interpreter.decode(any(ByteBuf.class), anyInt(), anyInt())).thenAnswer(invocation -> {
+            Object[] args = invocation.getArguments();
+            String content = ((ByteBuf) args[0]).toString((int) args[1], (int) args[2], US_ASCII);
+            return content.equals(decodeMsg) ? msg : null;
+        });
+        recreateParser();
+    }
+
+    /* The dispatch table is created on construction, after the identifiers were mocked. */
+    private void recreateParser() {
+        parser = new RxtxMessageParser(interpreters);
     }
 
     @SuppressWarnings("unchecked")
     private void mockInterpreter(IMessageInterpreter interpreter, boolean isSupported, AbstractMessage encodeMsg, String msg) {
         when(interpreter.isSupported(encodeMsg)).thenReturn(isSupported);
-        when(interpreter.encode(encodeMsg)).thenReturn(msg);
+        when(interpreter.encode(eq(encodeMsg), any(ByteBuf.class))).thenAnswer(invocation -> {
+            if (msg == null)
+                return false;
+            ((ByteBuf) invocation.getArguments()[1]).writeCharSequence(msg, US_ASCII);
+            return true;
+        });
     }
 
 }
\ No newline at end of file
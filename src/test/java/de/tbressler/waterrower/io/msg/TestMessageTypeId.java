@@ -0,0 +1,76 @@
+package de.tbressler.waterrower.io.msg;
+
+import de.tbressler.waterrower.io.msg.in.*;
+import de.tbressler.waterrower.io.msg.out.*;
+import de.tbressler.waterrower.model.ModelInformation;
+import org.junit.Test;
+
+import static de.tbressler.waterrower.io.msg.Memory.SINGLE_MEMORY;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.*;
+import static de.tbressler.waterrower.io.msg.out.ConfigureWorkoutMessage.MessageType.SINGLE_WORKOUT;
+import static de.tbressler.waterrower.model.MonitorType.WATER_ROWER_S4;
+import static de.tbressler.waterrower.model.StrokeType.START_OF_STROKE;
+import static de.tbressler.waterrower.workout.WorkoutUnit.METERS;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for class MessageTypeId.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestMessageTypeId {
+
+    // Messages (S4/S5 -> PC):
+
+    @Test
+    public void getTypeId_withIncomingMessages_returnsTypeIdOfMessage() {
+        assertEquals(ACKNOWLEDGE, new AcknowledgeMessage().getTypeId());
+        assertEquals(DATA_MEMORY, new DataMemoryMessage(1, 2).getTypeId());
+        assertEquals(DATA_MEMORY, new DataMemoryMessage(1, 2, 3).getTypeId());
+        assertEquals(DATA_MEMORY, new DataMemoryMessage(1, 2, 3, 4).getTypeId());
+        assertEquals(DATA_MEMORY, new DataMemoryMessagePool().acquire(1, 2).getTypeId());
+        assertEquals(DECODE_ERROR, new DecodeErrorMessage("XYZ").getTypeId());
+        assertEquals(ERROR, new ErrorMessage().getTypeId());
+        assertEquals(HARDWARE_TYPE, new HardwareTypeMessage(true).getTypeId());
+        assertEquals(MODEL_INFORMATION, new ModelInformationMessage(new ModelInformation(WATER_ROWER_S4, "02.10")).getTypeId());
+        assertEquals(PING, new PingMessage().getTypeId());
+        assertEquals(PULSE_COUNT, new PulseCountMessage(1).getTypeId());
+        assertEquals(STROKE, new StrokeMessage(START_OF_STROKE).getTypeId());
+    }
+
+    // Messages (PC -> S4/S5):
+
+    @Test
+    public void getTypeId_withOutgoingMessages_returnsTypeIdOfMessage() {
+        assertEquals(CONFIGURE_WORKOUT, new ConfigureWorkoutMessage(SINGLE_WORKOUT, 100, METERS).getTypeId());
+        assertEquals(EXIT_COMMUNICATION, new ExitCommunicationMessage().getTypeId());
+        assertEquals(READ_MEMORY, new ReadMemoryMessage(SINGLE_MEMORY, 1).getTypeId());
+        assertEquals(REQUEST_MODEL_INFORMATION, new RequestModelInformationMessage().getTypeId());
+        assertEquals(RESET, new ResetMessage().getTypeId());
+        assertEquals(START_COMMUNICATION, new StartCommunicationMessage().getTypeId());
+    }
+
+    // Unknown messages:
+
+    @Test
+    public void getTypeId_withAbstractMessage_returnsUnknown() {
+        assertEquals(UNKNOWN, new AbstractMessage().getTypeId());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullTypeId_throwsNPE() {
+        new AbstractMessage(null) {};
+    }
+
+    @Test
+    public void typeOf_withMessage_returnsTypeIdOfMessage() {
+        assertEquals(PING, typeOf(new PingMessage()));
+    }
+
+    @Test
+    public void typeOf_withMessageOfUnknownType_returnsUnknown() {
+        assertEquals(UNKNOWN, typeOf(new AbstractMessage()));
+    }
+
+}
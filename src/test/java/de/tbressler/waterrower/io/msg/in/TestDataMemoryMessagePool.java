@@ -0,0 +1,160 @@
+package de.tbressler.waterrower.io.msg.in;
+
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.ReferenceCounted;
+import org.junit.Before;
+import org.junit.Test;
+
+import static de.tbressler.waterrower.io.msg.Memory.*;
+import static io.netty.util.ReferenceCountUtil.release;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for class DataMemoryMessagePool.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestDataMemoryMessagePool {
+
+    /* Class under test. */
+    private DataMemoryMessagePool pool;
+
+
+    @Before
+    public void setUp() {
+        pool = new DataMemoryMessagePool();
+    }
+
+
+    // Acquire:
+
+    @Test
+    public void acquire_withSingleMemory_returnsMessageWithValues() {
+        DataMemoryMessage msg = pool.acquire(0x0a9, 12);
+
+        assertEquals(SINGLE_MEMORY, msg.getMemory());
+        assertEquals(0x0a9, msg.getLocation());
+        assertEquals(-1, msg.getValue3());
+        assertEquals(-1, msg.getValue2());
+        assertEquals(12, msg.getValue1());
+    }
+
+    @Test
+    public void acquire_withDoubleMemory_returnsMessageWithValues() {
+        DataMemoryMessage msg = pool.acquire(0x055, 1, 2);
+
+        assertEquals(DOUBLE_MEMORY, msg.getMemory());
+        assertEquals(0x055, msg.getLocation());
+        assertEquals(-1, msg.getValue3());
+        assertEquals(1, msg.getValue2());
+        assertEquals(2, msg.getValue1());
+    }
+
+    @Test
+    public void acquire_withTripleMemory_returnsMessageWithValues() {
+        DataMemoryMessage msg = pool.acquire(0x1e1, 1, 2, 3);
+
+        assertEquals(TRIPLE_MEMORY, msg.getMemory());
+        assertEquals(0x1e1, msg.getLocation());
+        assertEquals(1, msg.getValue3());
+        assertEquals(2, msg.getValue2());
+        assertEquals(3, msg.getValue1());
+    }
+
+    @Test
+    public void acquire_returnsReferenceCountedMessage() {
+        DataMemoryMessage msg = pool.acquire(0x055, 1, 2);
+
+        assertTrue(msg instanceof ReferenceCounted);
+        assertEquals(1, ((ReferenceCounted) msg).refCnt());
+    }
+
+    @Test
+    public void acquire_afterRelease_returnsSameMessageWithNewValues() {
+        DataMemoryMessage msg1 = pool.acquire(0x055, 1, 2);
+        assertTrue(release(msg1));
+
+        DataMemoryMessage msg2 = pool.acquire(0x055, 3, 4);
+
+        assertSame(msg1, msg2);
+        assertEquals(3, msg2.getValue2());
+        assertEquals(4, msg2.getValue1());
+    }
+
+    @Test
+    public void acquire_whenMessageIsStillInUse_returnsNewMessage() {
+        DataMemoryMessage msg1 = pool.acquire(0x055, 1, 2);
+
+        DataMemoryMessage msg2 = pool.acquire(0x055, 3, 4);
+
+        assertNotSame(msg1, msg2);
+        assertEquals(1, msg1.getValue2());
+        assertEquals(2, msg1.getValue1());
+        assertEquals(3, msg2.getValue2());
+        assertEquals(4, msg2.getValue1());
+    }
+
+    @Test
+    public void acquire_whenMessageWasRetained_returnsNewMessage() {
+        DataMemoryMessage msg1 = pool.acquire(0x055, 1, 2);
+        ((ReferenceCounted) msg1).retain();
+        release(msg1);
+
+        DataMemoryMessage msg2 = pool.acquire(0x055, 3, 4);
+
+        assertNotSame(msg1, msg2);
+        assertEquals(2, msg1.getValue1());
+    }
+
+    @Test
+    public void acquire_withDifferentMemoryTypes_returnsDifferentMessages() {
+        DataMemoryMessage msg1 = pool.acquire(0x055, 1);
+        release(msg1);
+
+        DataMemoryMessage msg2 = pool.acquire(0x055, 1, 2);
+
+        assertNotSame(msg1, msg2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void acquire_withLocationGreaterThan4095_throwsIAE() {
+        pool.acquire(4096, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void acquire_withValueGreaterThan255_throwsIAE() {
+        pool.acquire(0x055, 1, 256);
+    }
+
+    @Test
+    public void acquire_afterInvalidValue_messageIsFreeAgain() {
+        try {
+            pool.acquire(0x055, 1, 256);
+            fail("IllegalArgumentException expected!");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+
+        DataMemoryMessage msg = pool.acquire(0x055, 1, 2);
+
+        assertEquals(1, ((ReferenceCounted) msg).refCnt());
+    }
+
+    // Release:
+
+    @Test(expected = IllegalReferenceCountException.class)
+    public void release_twice_throwsException() {
+        DataMemoryMessage msg = pool.acquire(0x055, 1, 2);
+        release(msg);
+        release(msg);
+    }
+
+    @Test(expected = IllegalReferenceCountException.class)
+    public void retain_afterRelease_throwsException() {
+        DataMemoryMessage msg = pool.acquire(0x055, 1, 2);
+        release(msg);
+        ((ReferenceCounted) msg).retain();
+    }
+
+}
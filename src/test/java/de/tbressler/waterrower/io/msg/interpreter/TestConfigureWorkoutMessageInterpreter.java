@@ -2,11 +2,14 @@ package de.tbressler.waterrower.io.msg.interpreter;
 
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.out.ConfigureWorkoutMessage;
+import io.netty.buffer.ByteBuf;
 import org.junit.Before;
 import org.junit.Test;
 
 import static de.tbressler.waterrower.io.msg.out.ConfigureWorkoutMessage.MessageType.*;
 import static de.tbressler.waterrower.workout.WorkoutUnit.*;
+import static io.netty.buffer.Unpooled.buffer;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
 
@@ -156,4 +159,48 @@ public class TestConfigureWorkoutMessageInterpreter {
         assertEquals("WINFFFFFFFF", interpreter.encode(new ConfigureWorkoutMessage(END_INTERVAL_WORKOUT, 0xFFFF, METERS, 0xFFFF)));
     }
 
-}
\ No newline at end of file
+    // Encode to buffer:
+
+    @Test
+    public void encodeBuffer_withSingleWorkoutWithDistance1000AndUnitMeters_writesWSI103E8() {
+        assertEquals("WSI103E8", encodeBuffer(new ConfigureWorkoutMessage(SINGLE_WORKOUT, 1000, METERS)));
+    }
+
+    @Test
+    public void encodeBuffer_withSingleWorkoutWithDuration1AndUnitSeconds_writesWSU0001() {
+        assertEquals("WSU0001", encodeBuffer(new ConfigureWorkoutMessage(SINGLE_WORKOUT, 1, SECONDS)));
+    }
+
+    @Test
+    public void encodeBuffer_startIntervalWorkoutWithDistance1234AndMiles_writesWII204D2() {
+        assertEquals("WII204D2", encodeBuffer(new ConfigureWorkoutMessage(START_INTERVAL_WORKOUT, 1234, MILES)));
+    }
+
+    @Test
+    public void encodeBuffer_startIntervalWorkoutWithDistance4321AndKms_writesWII310E1() {
+        assertEquals("WII310E1", encodeBuffer(new ConfigureWorkoutMessage(START_INTERVAL_WORKOUT, 4321, KMS)));
+    }
+
+    @Test
+    public void encodeBuffer_startIntervalWorkoutWithDistance5000AndStrokes_writesWII41388() {
+        assertEquals("WII41388", encodeBuffer(new ConfigureWorkoutMessage(START_INTERVAL_WORKOUT, 5000, STROKES)));
+    }
+
+    @Test
+    public void encodeBuffer_addIntervalWorkoutWithDistance5000AndRestInterval3600AndStrokes_writesWIN0E101388() {
+        assertEquals("WIN0E101388", encodeBuffer(new ConfigureWorkoutMessage(ADD_INTERVAL_WORKOUT, 5000, STROKES, 3600)));
+    }
+
+    @Test
+    public void encodeBuffer_endIntervalWorkoutWithDistanceFFFF_writesWINFFFFFFFF() {
+        assertEquals("WINFFFFFFFF", encodeBuffer(new ConfigureWorkoutMessage(END_INTERVAL_WORKOUT, 0xFFFF, METERS, 0xFFFF)));
+    }
+
+    /* Encodes the given message to a buffer and returns the content. */
+    private String encodeBuffer(ConfigureWorkoutMessage msg) {
+        ByteBuf buffer = buffer();
+        assertTrue(interpreter.encode(msg, buffer));
+        return buffer.toString(US_ASCII);
+    }
+
+}
@@ -8,11 +8,15 @@ import de.tbressler.waterrower.io.msg.in.ModelInformationMessage;
 import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
 import de.tbressler.waterrower.io.msg.out.RequestModelInformationMessage;
 import de.tbressler.waterrower.model.MonitorType;
+import io.netty.buffer.ByteBuf;
 import org.junit.Before;
 import org.junit.Test;
 
 import static de.tbressler.waterrower.io.msg.Memory.*;
 import static de.tbressler.waterrower.model.MonitorType.*;
+import static io.netty.buffer.Unpooled.buffer;
+import static io.netty.buffer.Unpooled.copiedBuffer;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
 
@@ -189,6 +193,81 @@ public class TestInformationRequestMessageInterpreter {
         assertNull(msg);
     }
 
+    @Test
+    public void decode_withTooShortMessage_returnsNull() {
+        assertNull(interpreter.decode("IDD00001"));
+    }
+
+    @Test
+    public void decode_withTooShortModelInformation_returnsNull() {
+        assertNull(interpreter.decode("IV"));
+    }
+
+    @Test
+    public void decode_withInvalidHexValue_returnsNull() {
+        assertNull(interpreter.decode("IDD0000X02"));
+    }
+
+    // Decode from buffer:
+
+    @Test
+    public void decodeBuffer_withIV40200_returnsValidMessage() {
+        InformationRequestMessage msg = decodeBuffer("IV40200");
+
+        assertNotNull(msg);
+        assertModelInformationMessage(msg, WATER_ROWER_S4, "02.00");
+    }
+
+    @Test
+    public void decodeBuffer_withIDSFFF00_returnsValidMessage() {
+        InformationRequestMessage msg = decodeBuffer("IDSFFF00");
+
+        assertNotNull(msg);
+        assertDataMemoryMessage(msg, SINGLE_MEMORY, 4095, -1, -1, 0);
+    }
+
+    @Test
+    public void decodeBuffer_withIDD0000102_returnsValidMessage() {
+        InformationRequestMessage msg = decodeBuffer("IDD0000102");
+
+        assertNotNull(msg);
+        assertDataMemoryMessage(msg, DOUBLE_MEMORY, 0, -1, 1, 2);
+    }
+
+    @Test
+    public void decodeBuffer_withIDT000010203_returnsValidMessage() {
+        InformationRequestMessage msg = decodeBuffer("IDT000010203");
+
+        assertNotNull(msg);
+        assertDataMemoryMessage(msg, TRIPLE_MEMORY, 0, 1, 2, 3);
+    }
+
+    @Test
+    public void decodeBuffer_withOffsetInBuffer_returnsValidMessage() {
+        ByteBuf buffer = copiedBuffer("XXIDD1400001XX", US_ASCII);
+
+        InformationRequestMessage msg = interpreter.decode(buffer, 2, 10);
+
+        assertNotNull(msg);
+        assertDataMemoryMessage(msg, DOUBLE_MEMORY, 0x140, -1, 0, 1);
+        assertEquals(0, buffer.readerIndex());
+    }
+
+    @Test
+    public void decodeBuffer_withTooShortMessage_returnsNull() {
+        assertNull(decodeBuffer("IDD00001"));
+    }
+
+    @Test
+    public void decodeBuffer_withInvalidHexValue_returnsNull() {
+        assertNull(decodeBuffer("IDD0000X02"));
+    }
+
+    @Test
+    public void decodeBuffer_withInvalidMessage_returnsNull() {
+        assertNull(decodeBuffer("INVALID"));
+    }
+
     // Encode single memory location messages:
 
     @Test
@@ -278,6 +357,50 @@ public class TestInformationRequestMessageInterpreter {
         assertNull(result);
     }
 
+    // Encode to buffer:
+
+    @Test
+    public void encodeBuffer_withSingleMemoryLocation001_writesIRS001() {
+        assertEquals("IRS001", encodeBuffer(new ReadMemoryMessage(SINGLE_MEMORY, 0x001)));
+    }
+
+    @Test
+    public void encodeBuffer_withDoubleMemoryLocationFFF_writesIRDFFF() {
+        assertEquals("IRDFFF", encodeBuffer(new ReadMemoryMessage(DOUBLE_MEMORY, 0xFFF)));
+    }
+
+    @Test
+    public void encodeBuffer_withTripleMemoryLocation0A5_writesIRT0A5() {
+        assertEquals("IRT0A5", encodeBuffer(new ReadMemoryMessage(TRIPLE_MEMORY, 0x0A5)));
+    }
+
+    @Test
+    public void encodeBuffer_withRequestModelInformationMessage_writesIV() {
+        assertEquals("IV?", encodeBuffer(new RequestModelInformationMessage()));
+    }
+
+    @Test
+    public void encodeBuffer_withInvalidMessage_returnsFalse() {
+        InformationRequestMessage msg = mock(InformationRequestMessage.class, "msg");
+        ByteBuf buffer = buffer();
+
+        assertFalse(interpreter.encode(msg, buffer));
+        assertFalse(buffer.isReadable());
+    }
+
+    /* Encodes the given message to a buffer and returns the content. */
+    private String encodeBuffer(InformationRequestMessage msg) {
+        ByteBuf buffer = buffer();
+        assertTrue(interpreter.encode(msg, buffer));
+        return buffer.toString(US_ASCII);
+    }
+
+    /* Decodes the given message from a buffer. */
+    private InformationRequestMessage decodeBuffer(String message) {
+        ByteBuf buffer = copiedBuffer(message, US_ASCII);
+        return interpreter.decode(buffer, buffer.readerIndex(), buffer.readableBytes());
+    }
+
     /* Assert the content of the DataMemoryMessage. */
     private void assertDataMemoryMessage(InformationRequestMessage msg, Memory expectedMemory, int expectedLocation, int expectedValue3, int expectedValue2, int expectedValue1) {
         assertEquals(DataMemoryMessage.class, msg.getClass());
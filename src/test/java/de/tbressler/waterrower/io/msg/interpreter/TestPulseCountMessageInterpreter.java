@@ -2,9 +2,12 @@ package de.tbressler.waterrower.io.msg.interpreter;
 
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.in.PulseCountMessage;
+import io.netty.buffer.ByteBuf;
 import org.junit.Before;
 import org.junit.Test;
 
+import static io.netty.buffer.Unpooled.copiedBuffer;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
 
@@ -107,9 +110,43 @@ public class TestPulseCountMessageInterpreter {
     }
 
 
+    // Decode from buffer:
+
+    @Test
+    public void decodeBuffer_withPingMessage_returnsNull() {
+        assertNull(decodeBuffer("PING"));
+    }
+
+    @Test
+    public void decodeBuffer_withPulsesCount10_returnsMessageWith16() {
+        PulseCountMessage msg = decodeBuffer("P10");
+
+        assertNotNull(msg);
+        assertEquals(16, msg.getPulsesCounted());
+    }
+
+    @Test
+    public void decodeBuffer_withInvalidHexadecimal_returnsNull() {
+        assertNull(decodeBuffer("PXY"));
+    }
+
+    @Test
+    public void decodeBuffer_withTooShortMessage_returnsNull() {
+        assertNull(decodeBuffer("P0"));
+    }
+
+
     @Test(expected = IllegalStateException.class)
     public void encode_throwsIllegalStateException() {
         interpreter.encode(new PulseCountMessage(12));
     }
 
+
+    // Helper methods:
+
+    private PulseCountMessage decodeBuffer(String message) {
+        ByteBuf buffer = copiedBuffer(message, US_ASCII);
+        return interpreter.decode(buffer, buffer.readerIndex(), buffer.readableBytes());
+    }
+
 }
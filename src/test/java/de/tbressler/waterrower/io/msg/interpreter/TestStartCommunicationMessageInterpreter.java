@@ -2,9 +2,12 @@ package de.tbressler.waterrower.io.msg.interpreter;
 
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.out.StartCommunicationMessage;
+import io.netty.buffer.ByteBuf;
 import org.junit.Before;
 import org.junit.Test;
 
+import static io.netty.buffer.Unpooled.buffer;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
 
@@ -58,4 +61,12 @@ public class TestStartCommunicationMessageInterpreter {
         assertEquals("USB", result);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void encodeBuffer_withValidMessage_writesUSB() {
+        ByteBuf buffer = buffer();
+
+        assertTrue(interpreter.encode(new StartCommunicationMessage(), buffer));
+        assertEquals("USB", buffer.toString(US_ASCII));
+    }
+
+}
@@ -2,11 +2,14 @@ package de.tbressler.waterrower.io.msg.interpreter;
 
 import de.tbressler.waterrower.io.msg.AbstractMessage;
 import de.tbressler.waterrower.io.msg.in.StrokeMessage;
+import io.netty.buffer.ByteBuf;
 import org.junit.Before;
 import org.junit.Test;
 
 import static de.tbressler.waterrower.model.StrokeType.END_OF_STROKE;
 import static de.tbressler.waterrower.model.StrokeType.START_OF_STROKE;
+import static io.netty.buffer.Unpooled.copiedBuffer;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
 
@@ -77,10 +80,46 @@ public class TestStrokeMessageInterpreter {
         assertNull(msg);
     }
 
+    // Decode from buffer:
+
+    @Test
+    public void decodeBuffer_withStrokeStart_returnsStrokeStartMessage() {
+        StrokeMessage msg = decodeBuffer("SS");
+
+        assertNotNull(msg);
+        assertEquals(START_OF_STROKE, msg.getStrokeType());
+    }
+
+    @Test
+    public void decodeBuffer_withStrokeEnd_returnsStrokeEndMessage() {
+        StrokeMessage msg = decodeBuffer("SE");
+
+        assertNotNull(msg);
+        assertEquals(END_OF_STROKE, msg.getStrokeType());
+    }
+
+    @Test
+    public void decodeBuffer_withInvalidMessage_returnsNull() {
+        assertNull(decodeBuffer("SB"));
+    }
+
+    @Test
+    public void decodeBuffer_withTooShortMessage_returnsNull() {
+        assertNull(decodeBuffer("S"));
+    }
+
 
     @Test(expected = IllegalStateException.class)
     public void encode_throwsIllegalStateException() {
         interpreter.encode(new StrokeMessage(START_OF_STROKE));
     }
 
+
+    // Helper methods:
+
+    private StrokeMessage decodeBuffer(String message) {
+        ByteBuf buffer = copiedBuffer(message, US_ASCII);
+        return interpreter.decode(buffer, buffer.readerIndex(), buffer.readableBytes());
+    }
+
 }
@@ -0,0 +1,48 @@
+package de.tbressler.waterrower.log;
+
+import org.junit.Test;
+
+import java.util.function.Supplier;
+
+import static de.tbressler.waterrower.log.Log.*;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for class Log.
+ *
+ * The tests run without log4j configuration, so only errors are logged.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestLog {
+
+    // Mocks:
+    @SuppressWarnings("unchecked")
+    private Supplier<String> supplier = mock(Supplier.class, "supplier");
+    private Object parameter = mock(Object.class, "parameter");
+
+
+    @Test
+    public void isDebugEnabled_withoutConfiguration_returnsFalse() {
+        assertFalse(Log.isDebugEnabled(SERIAL));
+        assertFalse(Log.isDebugEnabled(MESSAGES));
+        assertFalse(Log.isDebugEnabled(LIBRARY));
+    }
+
+    @Test
+    public void debug_withSupplierWhenDebugIsDisabled_doesntCallSupplier() {
+        Log.debug(SERIAL, supplier);
+        verify(supplier, never()).get();
+    }
+
+    @Test
+    public void debug_withParametersWhenDebugIsDisabled_doesntFormatParameters() {
+        Log.debug(SERIAL, "{}", parameter);
+        Log.debug(SERIAL, "{} {}", parameter, parameter);
+        Log.debug(SERIAL, "{} {} {}", parameter, parameter, parameter);
+        verifyZeroInteractions(parameter);
+    }
+
+}
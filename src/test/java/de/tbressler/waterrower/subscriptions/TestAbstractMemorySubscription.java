@@ -11,8 +11,11 @@ import org.mockito.Mockito;
 
 import static de.tbressler.waterrower.io.msg.Memory.DOUBLE_MEMORY;
 import static de.tbressler.waterrower.io.msg.Memory.SINGLE_MEMORY;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.DATA_MEMORY;
 import static de.tbressler.waterrower.model.MemoryLocation.*;
+import static java.util.Collections.singleton;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.*;
 
 /**
@@ -64,6 +67,21 @@ public class TestAbstractMemorySubscription {
         assertEquals(M_S_PROJH_AVG.getLocation(), msg.getLocation());
     }
 
+    @Test
+    public void poll_calledTwice_returnsSameMessage() {
+        subscription = newAbstractMemorySubscription(DOUBLE_MEMORY, M_S_PROJH_AVG);
+
+        assertSame(subscription.poll(), subscription.poll());
+    }
+
+
+    // Message types:
+
+    @Test
+    public void getMessageTypes_returnsDataMemory() {
+        subscription = newAbstractMemorySubscription(SINGLE_MEMORY, FEXTENDED);
+        assertEquals(singleton(DATA_MEMORY), subscription.getMessageTypes());
+    }
 
     // Handle:
 
@@ -0,0 +1,152 @@
+package de.tbressler.waterrower.subscriptions;
+
+import de.tbressler.waterrower.io.msg.in.DataMemoryMessage;
+import de.tbressler.waterrower.io.msg.in.PingMessage;
+import de.tbressler.waterrower.io.msg.in.StrokeMessage;
+import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static de.tbressler.waterrower.io.msg.Memory.*;
+import static de.tbressler.waterrower.model.MemoryLocation.*;
+import static de.tbressler.waterrower.model.StrokeType.START_OF_STROKE;
+import static de.tbressler.waterrower.subscriptions.PollingProfile.*;
+import static java.time.Duration.ofSeconds;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for class ActivityMonitor.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestActivityMonitor {
+
+    // Class under test.
+    private ActivityMonitor activityMonitor;
+
+    private AtomicLong clock = new AtomicLong();
+
+
+    @Before
+    public void setUp() {
+        activityMonitor = new ActivityMonitor(ofSeconds(30), ofSeconds(300), clock::get);
+    }
+
+    // Constructor:
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullCoolDownTime_throwsNPE() {
+        new ActivityMonitor(null, ofSeconds(300));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullIdleTime_throwsNPE() {
+        new ActivityMonitor(ofSeconds(30), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_withIdleTimeLessThanCoolDownTime_throwsIAE() {
+        new ActivityMonitor(ofSeconds(30), ofSeconds(29));
+    }
+
+    // Profile:
+
+    @Test
+    public void getProfile_afterCreation_returnsACTIVE() {
+        assertEquals(ACTIVE, activityMonitor.getProfile());
+    }
+
+    @Test
+    public void getProfile_afterCoolDownTime_returnsCOOLING_DOWN() {
+        clock.set(ofSeconds(30).toNanos());
+        assertEquals(COOLING_DOWN, activityMonitor.getProfile());
+    }
+
+    @Test
+    public void getProfile_afterIdleTime_returnsIDLE() {
+        clock.set(ofSeconds(300).toNanos());
+        assertEquals(IDLE, activityMonitor.getProfile());
+    }
+
+    @Test
+    public void reset_whenIdle_returnsACTIVE() {
+        clock.set(ofSeconds(300).toNanos());
+        activityMonitor.reset();
+        assertEquals(ACTIVE, activityMonitor.getProfile());
+    }
+
+    // Activity:
+
+    @Test
+    public void onMessageReceived_withStrokeWhenActive_returnsFalse() {
+        assertFalse(activityMonitor.onMessageReceived(new StrokeMessage(START_OF_STROKE)));
+    }
+
+    @Test
+    public void onMessageReceived_withStrokeWhenIdle_returnsTrueAndProfileIsACTIVE() {
+        clock.set(ofSeconds(300).toNanos());
+
+        assertTrue(activityMonitor.onMessageReceived(new StrokeMessage(START_OF_STROKE)));
+        assertEquals(ACTIVE, activityMonitor.getProfile());
+    }
+
+    @Test
+    public void onMessageReceived_withOtherMessageWhenIdle_returnsFalse() {
+        clock.set(ofSeconds(300).toNanos());
+
+        assertFalse(activityMonitor.onMessageReceived(new PingMessage()));
+        assertFalse(activityMonitor.onMessageReceived(new DataMemoryMessage(TANK_VOLUME.getLocation(), 0x01)));
+        assertEquals(IDLE, activityMonitor.getProfile());
+    }
+
+    @Test
+    public void onMessageReceived_withFirstDistance_returnsFalse() {
+        clock.set(ofSeconds(300).toNanos());
+
+        assertFalse(activityMonitor.onMessageReceived(new DataMemoryMessage(DISTANCE_LOW.getLocation(), 0x00, 0x10)));
+        assertEquals(IDLE, activityMonitor.getProfile());
+    }
+
+    @Test
+    public void onMessageReceived_withSameDistance_returnsFalse() {
+        activityMonitor.onMessageReceived(new DataMemoryMessage(DISTANCE_LOW.getLocation(), 0x00, 0x10));
+        clock.set(ofSeconds(30).toNanos());
+
+        assertFalse(activityMonitor.onMessageReceived(new DataMemoryMessage(DISTANCE_LOW.getLocation(), 0x00, 0x10)));
+        assertEquals(COOLING_DOWN, activityMonitor.getProfile());
+    }
+
+    @Test
+    public void onMessageReceived_withChangedDistance_returnsTrue() {
+        activityMonitor.onMessageReceived(new DataMemoryMessage(MS_DISTANCE_DEC.getLocation(), 0x00, 0x10, 0x01));
+        clock.set(ofSeconds(30).toNanos());
+
+        assertTrue(activityMonitor.onMessageReceived(new DataMemoryMessage(MS_DISTANCE_DEC.getLocation(), 0x00, 0x10, 0x02)));
+        assertEquals(ACTIVE, activityMonitor.getProfile());
+    }
+
+    // Activity indicators:
+
+    @Test
+    public void isActivityIndicator_withReadOfDistance_returnsTrue() {
+        assertTrue(activityMonitor.isActivityIndicator(new ReadMemoryMessage(DOUBLE_MEMORY, DISTANCE_LOW.getLocation())));
+        assertTrue(activityMonitor.isActivityIndicator(new ReadMemoryMessage(TRIPLE_MEMORY, MS_DISTANCE_DEC.getLocation())));
+        assertTrue(activityMonitor.isActivityIndicator(new ReadMemoryMessage(TRIPLE_MEMORY, MS_DISTANCE_DEC.getLocation() - 2)));
+    }
+
+    @Test
+    public void isActivityIndicator_withOtherRead_returnsFalse() {
+        assertFalse(activityMonitor.isActivityIndicator(new ReadMemoryMessage(SINGLE_MEMORY, TANK_VOLUME.getLocation())));
+        assertFalse(activityMonitor.isActivityIndicator(new ReadMemoryMessage(DOUBLE_MEMORY, MS_DISTANCE_DEC.getLocation() - 2)));
+        assertFalse(activityMonitor.isActivityIndicator(new ReadMemoryMessage(SINGLE_MEMORY, DISTANCE_HI.getLocation() + 1)));
+    }
+
+    @Test
+    public void isActivityIndicator_withOtherMessage_returnsFalse() {
+        assertFalse(activityMonitor.isActivityIndicator(new PingMessage()));
+    }
+
+}
@@ -0,0 +1,142 @@
+package de.tbressler.waterrower.subscriptions;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.time.Duration.ofMillis;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for class PollPipeline.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestPollPipeline {
+
+    // Class under test.
+    private PollPipeline pipeline;
+
+    // The clock in nanoseconds:
+    private AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+
+    @Before
+    public void setUp() {
+        pipeline = new PollPipeline(2, clock::get);
+    }
+
+    // Constructor:
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_withWindowSize0_throwsIAE() {
+        new PollPipeline(0, clock::get);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void new_withNullClock_throwsNPE() {
+        new PollPipeline(1, null);
+    }
+
+    // Window:
+
+    @Test
+    public void sent_occupiesSlotsOfWindow() {
+        assertTrue(pipeline.hasCapacity());
+
+        pipeline.sent(0x055);
+        assertTrue(pipeline.hasCapacity());
+        assertTrue(pipeline.isOutstanding(0x055));
+        assertFalse(pipeline.isOutstanding(0x057));
+
+        pipeline.sent(0x057);
+        assertFalse(pipeline.hasCapacity());
+        assertEquals(2, pipeline.getOutstandingReads());
+        assertEquals(2, pipeline.getWindowSize());
+    }
+
+    @Test
+    public void received_freesSlotOfWindow() {
+        pipeline.sent(0x055);
+        pipeline.sent(0x057);
+
+        assertTrue(pipeline.received(0x055));
+
+        assertTrue(pipeline.hasCapacity());
+        assertFalse(pipeline.isOutstanding(0x055));
+    }
+
+    @Test
+    public void received_withoutOutstandingRead_returnsFalse() {
+        assertFalse(pipeline.received(0x055));
+    }
+
+    @Test
+    public void clear_freesAllSlots() {
+        pipeline.sent(0x055);
+        pipeline.sent(0x057);
+
+        pipeline.clear();
+
+        assertEquals(0, pipeline.getOutstandingReads());
+    }
+
+    // Expire:
+
+    @Test
+    public void expire_freesSlotsOfReadsOlderThanTimeout() {
+        pipeline.sent(0x055);
+        clock.addAndGet(ofMillis(600).toNanos());
+        pipeline.sent(0x057);
+        clock.addAndGet(ofMillis(500).toNanos());
+
+        assertEquals(1, pipeline.expire(ofMillis(1000)));
+
+        assertFalse(pipeline.isOutstanding(0x055));
+        assertTrue(pipeline.isOutstanding(0x057));
+        assertFalse(pipeline.received(0x055));
+    }
+
+    // Round-trip time and samples per second:
+
+    @Test
+    public void getRoundTripTime_returnsMovingAverage() {
+        assertNull(pipeline.getRoundTripTime(0x055));
+
+        pipeline.sent(0x055);
+        clock.addAndGet(ofMillis(16).toNanos());
+        pipeline.received(0x055);
+        assertEquals(ofMillis(16), pipeline.getRoundTripTime(0x055));
+
+        pipeline.sent(0x055);
+        clock.addAndGet(ofMillis(24).toNanos());
+        pipeline.received(0x055);
+        assertEquals(ofMillis(17), pipeline.getRoundTripTime(0x055));
+
+        assertNull(pipeline.getRoundTripTime(0x057));
+    }
+
+    @Test
+    public void getSamplesPerSecond_returnsSamplesOfLastSecond() {
+        assertEquals(0, pipeline.getSamplesPerSecond(), 0.001);
+
+        // 50 samples in one second:
+        for (int i = 0; i < 50; i++) {
+            pipeline.sent(0x055);
+            clock.addAndGet(ofMillis(20).toNanos());
+            pipeline.received(0x055);
+        }
+
+        assertEquals(50, pipeline.getSamplesPerSecond(), 0.001);
+
+        // Expired reads are not counted:
+        pipeline.sent(0x055);
+        clock.addAndGet(ofMillis(2000).toNanos());
+        pipeline.expire(ofMillis(1000));
+
+        assertEquals(50, pipeline.getSamplesPerSecond(), 0.001);
+    }
+
+}
@@ -5,6 +5,9 @@ import de.tbressler.waterrower.io.msg.in.PulseCountMessage;
 import org.junit.Before;
 import org.junit.Test;
 
+import static de.tbressler.waterrower.io.msg.MessageTypeId.PULSE_COUNT;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.*;
 
@@ -41,6 +44,13 @@ public class TestPulseCountSubscription {
         assertNull(subscription.poll());
     }
 
+    // Message types:
+
+    @Test
+    public void getMessageTypes_returnsPulseCount() {
+        assertEquals(singleton(PULSE_COUNT), subscription.getMessageTypes());
+    }
+
     // Handle:
 
     @Test
@@ -0,0 +1,276 @@
+package de.tbressler.waterrower.subscriptions;
+
+import de.tbressler.waterrower.io.msg.Memory;
+import de.tbressler.waterrower.io.msg.in.DataMemoryMessage;
+import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
+import io.netty.util.ReferenceCounted;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static de.tbressler.waterrower.io.msg.Memory.*;
+import static java.time.Duration.ofMillis;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for class ReadPlanner.
+ *
+ * @author Tobias Bressler
+ * @version 1.0
+ */
+public class TestReadPlanner {
+
+    // The current time in nanoseconds:
+    private long now = 0L;
+
+    // Class under test.
+    private ReadPlanner planner = new ReadPlanner(ofMillis(200), () -> now);
+
+    private ReadMemoryMessage single140 = new ReadMemoryMessage(SINGLE_MEMORY, 0x140);
+    private ReadMemoryMessage single141 = new ReadMemoryMessage(SINGLE_MEMORY, 0x141);
+    private ReadMemoryMessage double141 = new ReadMemoryMessage(DOUBLE_MEMORY, 0x141);
+    private ReadMemoryMessage single142 = new ReadMemoryMessage(SINGLE_MEMORY, 0x142);
+    private ReadMemoryMessage single143 = new ReadMemoryMessage(SINGLE_MEMORY, 0x143);
+    private ReadMemoryMessage triple141 = new ReadMemoryMessage(TRIPLE_MEMORY, 0x141);
+    private ReadMemoryMessage double057 = new ReadMemoryMessage(DOUBLE_MEMORY, 0x057);
+
+
+    // Plan:
+
+    @Test(expected = NullPointerException.class)
+    public void plan_withNull_throwsNPE() {
+        planner.plan(null, 0, new ReadMemoryMessage[0]);
+    }
+
+    @Test
+    public void plan_withNoReads_returnsEmptyList() {
+        assertTrue(plan().isEmpty());
+    }
+
+    @Test
+    public void plan_withDistantReads_returnsRequestedReads() {
+        List<ReadMemoryMessage> planned = plan(single140, double057);
+
+        assertSame(single140, planned.get(0));
+        assertSame(double057, planned.get(1));
+    }
+
+    @Test
+    public void plan_withAdjacentReads_returnsMergedReadAtFirstPosition() {
+        List<ReadMemoryMessage> planned = plan(double057, single141, single140);
+
+        assertEquals(3, planned.size());
+        assertSame(double057, planned.get(0));
+        assertRead(DOUBLE_MEMORY, 0x140, planned.get(1));
+        assertNull(planned.get(2));
+    }
+
+    @Test
+    public void plan_withReadsOfFourLocations_returnsTwoReads() {
+        List<ReadMemoryMessage> planned = plan(single140, single141, single142, single143);
+
+        assertRead(TRIPLE_MEMORY, 0x140, planned.get(0));
+        assertNull(planned.get(1));
+        assertNull(planned.get(2));
+        assertSame(single143, planned.get(3));
+    }
+
+    @Test
+    public void plan_withGap_returnsReadOverGap() {
+        List<ReadMemoryMessage> planned = plan(single140, single142);
+
+        assertRead(TRIPLE_MEMORY, 0x140, planned.get(0));
+        assertNull(planned.get(1));
+    }
+
+    @Test
+    public void plan_withReadExceedingMaxSize_coversReadWithSeparateRead() {
+        List<ReadMemoryMessage> planned = plan(single140, triple141, single141);
+
+        assertRead(DOUBLE_MEMORY, 0x140, planned.get(0));
+        assertSame(triple141, planned.get(1));
+        assertNull(planned.get(2));
+    }
+
+    @Test
+    public void plan_withSameReadTwice_returnsRequestedRead() {
+        ReadMemoryMessage otherSingle140 = new ReadMemoryMessage(SINGLE_MEMORY, 0x140);
+
+        List<ReadMemoryMessage> planned = plan(single140, otherSingle140);
+
+        assertSame(single140, planned.get(0));
+        assertNull(planned.get(1));
+    }
+
+    @Test
+    public void plan_inNextCycle_reusesMergedRead() {
+        ReadMemoryMessage merged = plan(single140, single141).get(0);
+
+        List<ReadMemoryMessage> planned = plan(double057, single141, single140);
+
+        assertSame(merged, planned.get(1));
+        assertNull(planned.get(2));
+    }
+
+    @Test
+    public void plan_withMoreReadsThanInPreviousCycle_plansAllReads() {
+        plan(single140);
+
+        List<ReadMemoryMessage> planned = plan(single143, single142, double057, single141, single140);
+
+        assertSame(single143, planned.get(0));
+        assertRead(TRIPLE_MEMORY, 0x140, planned.get(1));
+        assertSame(double057, planned.get(2));
+        assertNull(planned.get(3));
+        assertNull(planned.get(4));
+    }
+
+
+    // Split:
+
+    @Test
+    public void split_withResponseOfUnmergedRead_returnsNull() {
+        plan(single140, double057);
+
+        assertNull(split(new DataMemoryMessage(0x140, 0x01)));
+    }
+
+    @Test
+    public void split_withResponseOfMergedRead_returnsResponsesOfRequestedReads() {
+        plan(single140, double141);
+
+        List<DataMemoryMessage> responses = split(new DataMemoryMessage(0x140, 0x03, 0x02, 0x01));
+
+        assertEquals(2, responses.size());
+        assertRead(SINGLE_MEMORY, 0x140, responses.get(0));
+        assertEquals(0x01, responses.get(0).getValue1());
+        assertRead(DOUBLE_MEMORY, 0x141, responses.get(1));
+        assertEquals(0x03, responses.get(1).getValue2());
+        assertEquals(0x02, responses.get(1).getValue1());
+    }
+
+    @Test
+    public void split_withResponseOfMergedTripleRead_returnsResponseOfTripleRead() {
+        ReadMemoryMessage triple140 = new ReadMemoryMessage(TRIPLE_MEMORY, 0x140);
+        plan(single141, triple140);
+
+        List<DataMemoryMessage> responses = split(new DataMemoryMessage(0x140, 0x03, 0x02, 0x01));
+
+        assertEquals(2, responses.size());
+        assertRead(TRIPLE_MEMORY, 0x140, responses.get(0));
+        assertEquals(0x03, responses.get(0).getValue3());
+        assertEquals(0x02, responses.get(0).getValue2());
+        assertEquals(0x01, responses.get(0).getValue1());
+        assertRead(SINGLE_MEMORY, 0x141, responses.get(1));
+        assertEquals(0x02, responses.get(1).getValue1());
+    }
+
+    @Test
+    public void split_withOtherMemoryType_returnsNull() {
+        plan(single140, single141);
+
+        assertNull(split(new DataMemoryMessage(0x140, 0x01)));
+    }
+
+    @Test
+    public void split_afterClear_returnsNull() {
+        plan(single140, single141);
+
+        planner.clear();
+
+        assertNull(split(new DataMemoryMessage(0x140, 0x02, 0x01)));
+    }
+
+    @Test
+    public void split_withLateResponseAfterNextPlan_returnsResponsesOfRequestedReads() {
+        plan(single140, single141);
+        now += ofMillis(100).toNanos();
+        plan(single140, single141, double057);
+
+        // The response of the first and the second plan:
+        assertEquals(2, split(new DataMemoryMessage(0x140, 0x02, 0x01)).size());
+        assertEquals(2, split(new DataMemoryMessage(0x140, 0x02, 0x01)).size());
+    }
+
+    @Test
+    public void split_afterAllResponsesWereReceived_returnsNull() {
+        plan(single140, single141);
+
+        split(new DataMemoryMessage(0x140, 0x02, 0x01));
+
+        assertNull(split(new DataMemoryMessage(0x140, 0x02, 0x01)));
+    }
+
+    @Test
+    public void split_afterMergedReadExpired_returnsNull() {
+        plan(single140, single141);
+        now += ofMillis(201).toNanos();
+        plan(double057);
+
+        assertNull(split(new DataMemoryMessage(0x140, 0x02, 0x01)));
+    }
+
+    @Test
+    public void split_withResponseOfMergedRead_passesNewResponsesWhichAreNotPooled() {
+        plan(single140, double141);
+        List<DataMemoryMessage> responses = new ArrayList<>();
+
+        planner.split(new DataMemoryMessage(0x140, 0x03, 0x02, 0x01), responses::add);
+
+        assertEquals(2, responses.size());
+        for (DataMemoryMessage response : responses)
+            assertFalse(response instanceof ReferenceCounted);
+        assertEquals(0x01, responses.get(0).getValue1());
+        assertEquals(0x03, responses.get(1).getValue2());
+        assertEquals(0x02, responses.get(1).getValue1());
+    }
+
+    @Test
+    public void split_inRecyclingMode_passesPooledResponsesWhichAreReleasedAfterwards() {
+        planner.setRecycleMessages(true);
+        plan(single140, double141);
+        List<DataMemoryMessage> responses = new ArrayList<>();
+
+        planner.split(new DataMemoryMessage(0x140, 0x03, 0x02, 0x01), responses::add);
+
+        assertEquals(2, responses.size());
+        for (DataMemoryMessage response : responses)
+            assertEquals(0, ((ReferenceCounted) response).refCnt());
+    }
+
+
+    // Helper methods:
+
+    private List<ReadMemoryMessage> plan(ReadMemoryMessage... reads) {
+        ReadMemoryMessage[] planned = new ReadMemoryMessage[reads.length];
+        planner.plan(reads, reads.length, planned);
+        return asList(planned);
+    }
+
+    /* Returns copies of the split responses, because the split responses are only valid while
+     * they are handled. Returns null, if the response was not split. */
+    private List<DataMemoryMessage> split(DataMemoryMessage msg) {
+        List<DataMemoryMessage> responses = new ArrayList<>();
+        boolean isSplit = planner.split(msg, response -> responses.add(copyOf(response)));
+        return isSplit ? responses : null;
+    }
+
+    private DataMemoryMessage copyOf(DataMemoryMessage msg) {
+        switch (msg.getMemory()) {
+            case SINGLE_MEMORY:
+                return new DataMemoryMessage(msg.getLocation(), msg.getValue1());
+            case DOUBLE_MEMORY:
+                return new DataMemoryMessage(msg.getLocation(), msg.getValue2(), msg.getValue1());
+            default:
+                return new DataMemoryMessage(msg.getLocation(), msg.getValue3(), msg.getValue2(), msg.getValue1());
+        }
+    }
+
+    private void assertRead(Memory memory, int location, ReadMemoryMessage read) {
+        assertEquals(memory, read.getMemory());
+        assertEquals(location, read.getLocation());
+    }
+
+}
@@ -6,8 +6,11 @@ import de.tbressler.waterrower.model.StrokeType;
 import org.junit.Before;
 import org.junit.Test;
 
+import static de.tbressler.waterrower.io.msg.MessageTypeId.STROKE;
 import static de.tbressler.waterrower.model.StrokeType.END_OF_STROKE;
 import static de.tbressler.waterrower.model.StrokeType.START_OF_STROKE;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.*;
 
@@ -44,6 +47,13 @@ public class TestStrokeSubscription {
         assertNull(subscription.poll());
     }
 
+    // Message types:
+
+    @Test
+    public void getMessageTypes_returnsStroke() {
+        assertEquals(singleton(STROKE), subscription.getMessageTypes());
+    }
+
     // Handle:
 
     @Test
@@ -1,20 +1,50 @@
 package de.tbressler.waterrower.subscriptions;
 
 import de.tbressler.waterrower.io.IRxtxConnectionListener;
+import de.tbressler.waterrower.io.SerialLineBudget;
 import de.tbressler.waterrower.io.WaterRowerConnector;
 import de.tbressler.waterrower.io.msg.AbstractMessage;
+import de.tbressler.waterrower.io.msg.Memory;
+import de.tbressler.waterrower.io.msg.in.DataMemoryMessage;
+import de.tbressler.waterrower.io.msg.in.PingMessage;
+import de.tbressler.waterrower.io.msg.in.PulseCountMessage;
+import de.tbressler.waterrower.io.msg.in.StrokeMessage;
+import de.tbressler.waterrower.io.msg.out.ReadMemoryMessage;
+import de.tbressler.waterrower.model.MemoryLocation;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
-
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static de.tbressler.waterrower.io.msg.Memory.DOUBLE_MEMORY;
+import static de.tbressler.waterrower.io.msg.Memory.SINGLE_MEMORY;
+import static de.tbressler.waterrower.io.msg.Memory.TRIPLE_MEMORY;
+import static de.tbressler.waterrower.io.msg.MessageTypeId.*;
+import static de.tbressler.waterrower.model.MemoryLocation.*;
+import static de.tbressler.waterrower.model.StrokeType.START_OF_STROKE;
+import static de.tbressler.waterrower.subscriptions.PollingProfile.*;
 import static java.time.Duration.ofSeconds;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentCaptor.forClass;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -37,9 +67,19 @@ public class TestSubscriptionPollingService {
     private ISubscription subscription1 = mock(ISubscription.class, "subscription1");
     private ISubscription subscription2 = mock(ISubscription.class, "subscription2");
 
-    private AbstractMessage someMessage1 = mock(AbstractMessage.class, "someMessage1");
-    private AbstractMessage someMessage2 = mock(AbstractMessage.class, "someMessage2");
-    private AbstractMessage someMessage3 = mock(AbstractMessage.class, "someMessage3");
+    private AbstractMessage someMessage1 = new AbstractMessage();
+    private AbstractMessage someMessage2 = new AbstractMessage();
+    private AbstractMessage someMessage3 = new AbstractMessage();
+
+    private SerialLineBudget budget = mock(SerialLineBudget.class, "budget");
+
+    private ISubscription subscription3 = mock(ISubscription.class, "subscription3");
+
+    private ReadMemoryMessage read1 = new ReadMemoryMessage(SINGLE_MEMORY, 0x055);
+    private ReadMemoryMessage read2 = new ReadMemoryMessage(DOUBLE_MEMORY, 0x057);
+    private ReadMemoryMessage read3 = new ReadMemoryMessage(SINGLE_MEMORY, 0x140);
+
+    private AtomicLong clock = new AtomicLong();
 
     // Capture:
     private ArgumentCaptor<Runnable> task = forClass(Runnable.class);
@@ -69,6 +109,51 @@ public class TestSubscriptionPollingService {
         new SubscriptionPollingService(duration, connector, null);
     }
 
+    // Polling mode:
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setMaxBatchSize_with0_throwsIAE() {
+        pollingService.setMaxBatchSize(0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setMaxBatchSize_whenStarted_throwsException() {
+        pollingService.start();
+        pollingService.setMaxBatchSize(5);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setBudget_whenStarted_throwsException() {
+        pollingService.start();
+        pollingService.setBudget(budget);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setPipelineWindow_whenStarted_throwsException() {
+        pollingService.start();
+        pollingService.setPipelineWindow(2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setActivityMonitor_whenStarted_throwsException() {
+        pollingService.start();
+        pollingService.setActivityMonitor(new ActivityMonitor(ofSeconds(30), ofSeconds(300), clock::get));
+    }
+
+    @Test
+    public void setMaxBatchSize_whenStopped_changesPollingMode() throws IOException {
+        pollingService.start();
+        pollingService.stop();
+        pollingService.setMaxBatchSize(5);
+        subscribe(subscription1, someMessage1);
+        subscribe(subscription2, someMessage2);
+        pollingService.start();
+
+        runPollingCycle();
+
+        verify(connector, times(1)).sendBatch(asList(someMessage1, someMessage2));
+    }
+
     // Start:
 
     @Test
@@ -113,6 +198,24 @@ public class TestSubscriptionPollingService {
         verify(connector, never()).send(someMessage2);
     }
 
+    @Test
+    public void callRunnable_ofPreviousStartAfterRestart_doesntPollOrReschedule() throws IOException {
+
+        subscribe(subscription1, someMessage1);
+
+        pollingService.start();
+        verify(executorService, times(1)).schedule(task.capture(), eq((long)2000), eq(MILLISECONDS));
+        Runnable previousTask = task.getValue();
+
+        pollingService.stop();
+        pollingService.start();
+
+        previousTask.run();
+
+        verify(connector, never()).send(someMessage1);
+        verify(executorService, times(2)).schedule(any(Runnable.class), eq((long)2000), eq(MILLISECONDS));
+    }
+
     @Test
     public void callRunnable_whenSendFails() throws IOException {
 
@@ -126,6 +229,917 @@ public class TestSubscriptionPollingService {
         task.getValue().run();
     }
 
+    @Test
+    public void callRunnable_whenPollReturnsNull_skipsSubscription() throws IOException {
+
+        subscribe(subscription1, null);
+        subscribe(subscription2, someMessage2);
+
+        pollingService.start();
+
+        verify(executorService, times(1)).schedule(task.capture(), eq((long)2000), eq(MILLISECONDS));
+
+        task.getValue().run();
+
+        verify(connector, never()).send(null);
+        verify(connector, times(1)).send(someMessage2);
+    }
+
+    // Batching:
+
+    @Test
+    public void callRunnable_inBatchingMode_sendsSingleBatch() throws IOException {
+
+        pollingService = newBatchingPollingService(5);
+
+        subscribe(subscription1, someMessage1);
+        subscribe(subscription2, someMessage2);
+
+        pollingService.start();
+
+        verify(executorService, times(1)).schedule(task.capture(), eq((long)2000), eq(MILLISECONDS));
+
+        task.getValue().run();
+
+        verify(connector, times(1)).sendBatch(asList(someMessage1, someMessage2));
+        verify(connector, never()).send(any(AbstractMessage.class));
+    }
+
+    @Test
+    public void callRunnable_inBatchingModeWithMoreMessagesThanBatchSize_splitsBatches() throws IOException {
+
+        pollingService = newBatchingPollingService(2);
+
+        subscribe(subscription1, someMessage1);
+        subscribe(subscription2, someMessage2);
+        subscribe(mock(ISubscription.class, "subscription3"), someMessage3);
+
+        pollingService.start();
+
+        verify(executorService, times(1)).schedule(task.capture(), eq((long)2000), eq(MILLISECONDS));
+
+        task.getValue().run();
+
+        verify(connector, times(1)).sendBatch(asList(someMessage1, someMessage2));
+        verify(connector, times(1)).sendBatch(singletonList(someMessage3));
+    }
+
+    @Test
+    public void callRunnable_inBatchingModeWhenPollReturnsNull_skipsSubscription() throws IOException {
+
+        pollingService = newBatchingPollingService(5);
+
+        subscribe(subscription1, null);
+        subscribe(subscription2, someMessage2);
+
+        pollingService.start();
+
+        verify(executorService, times(1)).schedule(task.capture(), eq((long)2000), eq(MILLISECONDS));
+
+        task.getValue().run();
+
+        verify(connector, times(1)).sendBatch(singletonList(someMessage2));
+    }
+
+    @Test
+    public void callRunnable_inBatchingModeWhenSendFails_reschedulesTask() throws IOException {
+
+        pollingService = newBatchingPollingService(5);
+
+        subscribe(subscription1, someMessage1);
+        doThrow(new IOException("some-io-exception")).when(connector).sendBatch(singletonList(someMessage1));
+
+        pollingService.start();
+
+        verify(executorService, times(1)).schedule(task.capture(), eq((long)2000), eq(MILLISECONDS));
+
+        task.getValue().run();
+
+        verify(executorService, times(2)).schedule(any(Runnable.class), eq((long)2000), eq(MILLISECONDS));
+    }
+
+    // Bandwidth budget:
+
+    @Test
+    public void callRunnable_whenBudgetIsExhausted_defersPoll() throws IOException {
+
+        pollingService = newPollingServiceWithBudget();
+        when(budget.tryAcquire(someMessage1)).thenReturn(true);
+        when(budget.tryAcquire(someMessage2)).thenReturn(false);
+
+        subscribe(subscription1, someMessage1);
+        subscribe(subscription2, someMessage2);
+
+        pollingService.start();
+        runPollingCycle();
+
+        verify(connector, times(1)).send(someMessage1);
+        verify(connector, never()).send(someMessage2);
+        assertEquals(1, pollingService.getQueueDepth());
+        assertEquals(1, pollingService.getDeferredPolls());
+        assertEquals(0, pollingService.getDroppedPolls());
+    }
+
+    @Test
+    public void callRunnable_withDeferredPoll_pollsDeferredSubscriptionFirstInNextCycle() throws IOException {
+
+        pollingService = newPollingServiceWithBudget();
+        when(budget.tryAcquire(someMessage1)).thenReturn(true);
+        when(budget.tryAcquire(someMessage2)).thenReturn(false, true);
+
+        subscribe(subscription1, someMessage1);
+        subscribe(subscription2, someMessage2);
+
+        pollingService.start();
+        runPollingCycle();
+        runPollingCycle();
+
+        InOrder inOrder = inOrder(connector);
+        inOrder.verify(connector).send(someMessage1);
+        inOrder.verify(connector).send(someMessage2);
+        inOrder.verify(connector).send(someMessage1);
+        assertEquals(0, pollingService.getQueueDepth());
+        assertEquals(1, pollingService.getDeferredPolls());
+        assertEquals(0, pollingService.getDroppedPolls());
+    }
+
+    @Test
+    public void callRunnable_whenBudgetIsStillExhaustedInNextCycle_dropsDeferredPoll() throws IOException {
+
+        pollingService = newPollingServiceWithBudget();
+        when(budget.tryAcquire(someMessage1)).thenReturn(false);
+
+        subscribe(subscription1, someMessage1);
+
+        pollingService.start();
+        runPollingCycle();
+        runPollingCycle();
+        runPollingCycle();
+
+        verify(connector, never()).send(someMessage1);
+        assertEquals(1, pollingService.getQueueDepth());
+        assertEquals(1, pollingService.getDeferredPolls());
+        assertEquals(2, pollingService.getDroppedPolls());
+    }
+
+    @Test
+    public void callRunnable_withDeferredPollAfterUnsubscribe_forgetsDeferredSubscription() throws IOException {
+
+        pollingService = newPollingServiceWithBudget();
+        when(budget.tryAcquire(someMessage1)).thenReturn(false);
+        when(budget.tryAcquire(someMessage2)).thenReturn(true);
+
+        subscribe(subscription1, someMessage1);
+        subscribe(subscription2, someMessage2);
+
+        pollingService.start();
+        runPollingCycle();
+        pollingService.unsubscribe(subscription1);
+        runPollingCycle();
+
+        verify(connector, never()).send(someMessage1);
+        verify(connector, times(2)).send(someMessage2);
+        assertEquals(0, pollingService.getQueueDepth());
+    }
+
+    @Test
+    public void callRunnable_inBatchingModeWhenBudgetIsExhausted_defersPoll() throws IOException {
+
+        pollingService = new SubscriptionPollingService(duration, connector, executorService);
+        pollingService.setMaxBatchSize(5);
+        pollingService.setBudget(budget);
+        when(budget.tryAcquire(someMessage1)).thenReturn(false);
+        when(budget.tryAcquire(someMessage2)).thenReturn(true);
+
+        subscribe(subscription1, someMessage1);
+        subscribe(subscription2, someMessage2);
+
+        pollingService.start();
+        runPollingCycle();
+
+        verify(connector, times(1)).sendBatch(singletonList(someMessage2));
+        assertEquals(1, pollingService.getDeferredPolls());
+    }
+
+    @Test
+    public void callRunnable_withoutBudget_neverDefersPolls() throws IOException {
+
+        subscribe(subscription1, someMessage1);
+
+        pollingService.start();
+        runPollingCycle();
+
+        verify(connector, times(1)).send(someMessage1);
+        assertEquals(0, pollingService.getQueueDepth());
+        assertEquals(0, pollingService.getDeferredPolls());
+        assertEquals(0, pollingService.getDroppedPolls());
+    }
+
+    // Deduplication:
+
+    @Test
+    public void callRunnable_withSameLocationTwice_sendsSingleReadPerCycle() throws IOException {
+        subscribe(subscription1, read1);
+        subscribe(subscription2, new ReadMemoryMessage(SINGLE_MEMORY, read1.getLocation()));
+        subscribe(subscription3, read2);
+        pollingService.start();
+
+        runPollingCycle();
+        runPollingCycle();
+
+        verify(connector, times(2)).send(read1);
+        verify(connector, times(2)).send(read2);
+        verify(connector, times(4)).send(any(AbstractMessage.class));
+        assertEquals(2, pollingService.getSavedReads());
+    }
+
+    @Test
+    public void callRunnable_withSameLocationAndOtherMemory_sendsMergedRead() throws IOException {
+        subscribe(subscription1, read1);
+        subscribe(subscription2, new ReadMemoryMessage(DOUBLE_MEMORY, read1.getLocation()));
+        pollingService.start();
+
+        runPollingCycle();
+
+        ArgumentCaptor<AbstractMessage> sent = forClass(AbstractMessage.class);
+        verify(connector, times(1)).send(sent.capture());
+        assertRead(DOUBLE_MEMORY, read1.getLocation(), sent.getValue());
+        assertEquals(0, pollingService.getSavedReads());
+        assertEquals(1, pollingService.getMergedReads());
+    }
+
+    @Test
+    public void callRunnable_withOtherMessagesTwice_sendsAllMessages() throws IOException {
+        subscribe(subscription1, someMessage1);
+        subscribe(subscription2, someMessage1);
+        pollingService.start();
+
+        runPollingCycle();
+
+        verify(connector, times(2)).send(someMessage1);
+        assertEquals(0, pollingService.getSavedReads());
+    }
+
+    @Test
+    public void callRunnable_withSameLocationTwiceInBatchingMode_sendsSingleRead() throws IOException {
+        pollingService = newBatchingPollingService(5);
+        subscribe(subscription1, read1);
+        subscribe(subscription2, new ReadMemoryMessage(SINGLE_MEMORY, read1.getLocation()));
+        subscribe(subscription3, read2);
+        pollingService.start();
+
+        runPollingCycle();
+
+        verify(connector, times(1)).sendBatch(asList(read1, read2));
+        assertEquals(1, pollingService.getSavedReads());
+    }
+
+    @Test
+    public void onMessageReceived_withResponseOfDeduplicatedRead_notifiesAllSubscriptions() throws IOException {
+        subscribe(subscription1, read1);
+        subscribe(subscription2, new ReadMemoryMessage(SINGLE_MEMORY, read1.getLocation()));
+        pollingService.start();
+        runPollingCycle();
+
+        DataMemoryMessage response = new DataMemoryMessage(read1.getLocation(), 1);
+        listener.getValue().onMessageReceived(response);
+
+        verify(subscription1, times(1)).handle(response);
+        verify(subscription2, times(1)).handle(response);
+    }
+
+
+    // Read planning:
+
+    @Test
+    public void callRunnable_withAdjacentLocations_sendsMergedRead() throws IOException {
+        subscribe(subscription1, new ReadMemoryMessage(SINGLE_MEMORY, 0x140));
+        subscribe(subscription2, new ReadMemoryMessage(SINGLE_MEMORY, 0x142));
+        subscribe(subscription3, new ReadMemoryMessage(SINGLE_MEMORY, 0x141));
+        pollingService.start();
+
+        runPollingCycle();
+
+        ArgumentCaptor<AbstractMessage> sent = forClass(AbstractMessage.class);
+        verify(connector, times(1)).send(sent.capture());
+        assertRead(TRIPLE_MEMORY, 0x140, sent.getValue());
+        assertEquals(2, pollingService.getMergedReads());
+    }
+
+    @Test
+    public void callRunnable_withReadMergingDisabled_sendsSeparateReads() throws IOException {
+        ReadMemoryMessage single140 = new ReadMemoryMessage(SINGLE_MEMORY, 0x140);
+        ReadMemoryMessage single141 = new ReadMemoryMessage(SINGLE_MEMORY, 0x141);
+        subscribe(subscription1, single140);
+        subscribe(subscription2, single141);
+        pollingService.setReadMerging(false);
+        pollingService.start();
+
+        runPollingCycle();
+
+        verify(connector, times(1)).send(single140);
+        verify(connector, times(1)).send(single141);
+        assertEquals(0, pollingService.getMergedReads());
+        assertFalse(pollingService.isReadMerging());
+    }
+
+    @Test
+    public void callRunnable_withAdjacentLocationsInBatchingMode_sendsMergedRead() throws IOException {
+        pollingService = newBatchingPollingService(5);
+        subscribe(subscription1, read1);
+        subscribe(subscription2, read2);
+        subscribe(subscription3, new ReadMemoryMessage(SINGLE_MEMORY, 0x056));
+        pollingService.start();
+
+        runPollingCycle();
+
+        ArgumentCaptor<List> batch = forClass(List.class);
+        verify(connector, times(1)).sendBatch(batch.capture());
+        assertEquals(2, batch.getValue().size());
+        assertRead(DOUBLE_MEMORY, 0x055, (AbstractMessage) batch.getValue().get(0));
+        assertSame(read2, batch.getValue().get(1));
+        assertEquals(1, pollingService.getMergedReads());
+    }
+
+    @Test
+    public void onMessageReceived_withResponseOfMergedRead_notifiesSubscriptionsWithSplitResponses() throws IOException {
+        subscribe(subscription1, new ReadMemoryMessage(SINGLE_MEMORY, 0x140));
+        subscribe(subscription2, new ReadMemoryMessage(DOUBLE_MEMORY, 0x141));
+        pollingService.start();
+        runPollingCycle();
+
+        listener.getValue().onMessageReceived(new DataMemoryMessage(0x140, 0x03, 0x02, 0x01));
+
+        ArgumentCaptor<AbstractMessage> received = forClass(AbstractMessage.class);
+        verify(subscription1, times(2)).handle(received.capture());
+        DataMemoryMessage single = (DataMemoryMessage) received.getAllValues().get(0);
+        assertRead(SINGLE_MEMORY, 0x140, single);
+        assertEquals(0x01, single.getValue1());
+        DataMemoryMessage dual = (DataMemoryMessage) received.getAllValues().get(1);
+        assertRead(DOUBLE_MEMORY, 0x141, dual);
+        assertEquals(0x03, dual.getValue2());
+        assertEquals(0x02, dual.getValue1());
+    }
+
+
+    // Polling intervals:
+
+    @Test
+    public void callRunnable_withPollingInterval_pollsSubscriptionInNearestCycle() throws IOException {
+        pollingService = newPollingServiceWithClock(null);
+        subscribe(subscription1, someMessage1, ofSeconds(6));
+        subscribe(subscription2, someMessage2);
+        pollingService.start();
+
+        for (int cycle = 0; cycle < 4; cycle++) {
+            clock.set(cycle * duration.toNanos());
+            runPollingCycle();
+        }
+
+        verify(connector, times(2)).send(someMessage1);
+        verify(connector, times(4)).send(someMessage2);
+    }
+
+    @Test
+    public void callRunnable_withPollingIntervalNearNextCycle_pollsSubscriptionInNextCycle() throws IOException {
+        pollingService = newPollingServiceWithClock(null);
+        subscribe(subscription1, someMessage1, ofSeconds(5));
+        pollingService.start();
+
+        for (int cycle = 0; cycle < 3; cycle++) {
+            clock.set(cycle * duration.toNanos());
+            runPollingCycle();
+        }
+
+        verify(connector, times(2)).send(someMessage1);
+    }
+
+    @Test
+    public void callRunnable_withPollingIntervals_pollsSubscriptionWithShortestIntervalFirst() throws IOException {
+        pollingService = newPollingServiceWithClock(budget);
+        when(budget.tryAcquire(any(AbstractMessage.class))).thenReturn(true);
+        subscribe(subscription1, someMessage1, ofSeconds(60));
+        subscribe(subscription2, someMessage2, ofSeconds(10));
+        subscribe(subscription3, someMessage3);
+        pollingService.start();
+
+        runPollingCycle();
+
+        InOrder inOrder = inOrder(connector);
+        inOrder.verify(connector).send(someMessage3);
+        inOrder.verify(connector).send(someMessage2);
+        inOrder.verify(connector).send(someMessage1);
+    }
+
+    @Test
+    public void callRunnable_withPollingIntervalAndDeferredPoll_pollsDeferredSubscriptionInNextCycle() throws IOException {
+        pollingService = newPollingServiceWithClock(budget);
+        when(budget.tryAcquire(someMessage1)).thenReturn(false, true);
+        subscribe(subscription1, someMessage1, ofSeconds(60));
+        pollingService.start();
+
+        runPollingCycle();
+        clock.addAndGet(duration.toNanos());
+        runPollingCycle();
+
+        verify(connector, times(1)).send(someMessage1);
+    }
+
+    @Test
+    public void start_afterRestart_pollsSubscriptionWithPollingIntervalAgain() throws IOException {
+        pollingService = newPollingServiceWithClock(null);
+        subscribe(subscription1, someMessage1, ofSeconds(60));
+        pollingService.start();
+        runPollingCycle();
+
+        pollingService.stop();
+        pollingService.start();
+        runPollingCycle();
+
+        verify(connector, times(2)).send(someMessage1);
+    }
+
+    @Test
+    public void callRunnable_withPipelineAndPollingInterval_readsLocationWhenDue() throws IOException {
+        pollingService = newPipelinedPollingService(1);
+        subscribe(subscription1, read1, ofSeconds(60));
+        pollingService.start();
+        runPollingCycle();
+
+        listener.getValue().onMessageReceived(new DataMemoryMessage(read1.getLocation(), 1));
+        clock.addAndGet(duration.toNanos());
+        runPollingCycle();
+
+        verify(connector, times(1)).send(read1);
+
+        clock.addAndGet(ofSeconds(60).toNanos());
+        runPollingCycle();
+
+        verify(connector, times(2)).send(read1);
+    }
+
+
+    // Activity-adaptive polling:
+
+    @Test
+    public void callRunnable_whenCoolingDown_stretchesPollingInterval() throws IOException {
+        pollingService = newAdaptivePollingService();
+        subscribe(subscription1, read1);
+        pollingService.start();
+
+        clock.set(ofSeconds(30).toNanos());
+        runPollingCycle();
+
+        assertEquals(COOLING_DOWN, pollingService.getProfile());
+        verify(connector, times(1)).send(read1);
+        verify(executorService, times(1)).schedule(task.capture(), eq((long)4000), eq(MILLISECONDS));
+
+        // The stretched cycle is counted, when it was completed:
+        assertEquals(0, pollingService.getSavedCycles());
+        task.getValue().run();
+        assertEquals(1, pollingService.getSavedCycles());
+    }
+
+    @Test
+    public void onMessageReceived_withStrokeBeforeStretchedCycle_doesntCountSavedCycle() throws IOException {
+        pollingService = newAdaptivePollingService();
+        subscribe(subscription1, read1);
+        pollingService.start();
+        clock.set(ofSeconds(30).toNanos());
+        runPollingCycle();
+        verify(executorService, times(1)).schedule(task.capture(), eq((long)4000), eq(MILLISECONDS));
+        Runnable stretchedCycle = task.getValue();
+
+        listener.getValue().onMessageReceived(new StrokeMessage(START_OF_STROKE));
+        stretchedCycle.run();
+
+        assertEquals(0, pollingService.getSavedCycles());
+    }
+
+    @Test
+    public void onMessageReceived_withResponseOfMergedRead_checksSplitResponsesForActivity() throws IOException {
+        pollingService = newAdaptivePollingService();
+        subscribe(subscription1, new ReadMemoryMessage(DOUBLE_MEMORY, 0x057));
+        subscribe(subscription2, new ReadMemoryMessage(SINGLE_MEMORY, 0x059));
+        pollingService.start();
+        clock.set(ofSeconds(30).toNanos());
+        runPollingCycle();
+        verify(connector, times(1)).send(isA(ReadMemoryMessage.class));
+
+        // Only the location next to the distance changed:
+        listener.getValue().onMessageReceived(new DataMemoryMessage(0x057, 0x01, 0x00, 0x10));
+        runStretchedPollingCycle();
+        listener.getValue().onMessageReceived(new DataMemoryMessage(0x057, 0x02, 0x00, 0x10));
+        assertEquals(COOLING_DOWN, pollingService.getProfile());
+
+        // The distance changed:
+        runStretchedPollingCycle();
+        listener.getValue().onMessageReceived(new DataMemoryMessage(0x057, 0x02, 0x00, 0x11));
+        assertEquals(ACTIVE, pollingService.getProfile());
+    }
+
+    @Test
+    public void callRunnable_whenIdle_pollsOnlyActivityIndicators() throws IOException {
+        ReadMemoryMessage distance = new ReadMemoryMessage(DOUBLE_MEMORY, 0x057);
+        pollingService = newAdaptivePollingService();
+        subscribe(subscription1, read3);
+        subscribe(subscription2, distance);
+        subscribe(subscription3, someMessage1);
+        pollingService.start();
+
+        clock.set(ofSeconds(300).toNanos());
+        runPollingCycle();
+
+        assertEquals(IDLE, pollingService.getProfile());
+        verify(connector, times(1)).send(any(AbstractMessage.class));
+        verify(connector, times(1)).send(distance);
+        assertEquals(2, pollingService.getSkippedPolls());
+        verify(executorService, times(1)).schedule(any(Runnable.class), eq((long)20000), eq(MILLISECONDS));
+    }
+
+    @Test
+    public void onMessageReceived_withStrokeWhenIdle_returnsToFullRate() throws IOException {
+        pollingService = newAdaptivePollingService();
+        subscribe(subscription1, read3);
+        pollingService.start();
+        clock.set(ofSeconds(300).toNanos());
+        runPollingCycle();
+
+        listener.getValue().onMessageReceived(new StrokeMessage(START_OF_STROKE));
+
+        assertEquals(ACTIVE, pollingService.getProfile());
+        verify(executorService, times(2)).schedule(task.capture(), eq((long)2000), eq(MILLISECONDS));
+        task.getValue().run();
+        verify(connector, times(1)).send(read3);
+    }
+
+    @Test
+    public void getProfile_withoutActivityMonitor_returnsACTIVE() {
+        clock.set(ofSeconds(300).toNanos());
+        assertEquals(ACTIVE, pollingService.getProfile());
+    }
+
+    @Test
+    public void callRunnable_withDayLongReplay_savesCyclesAndPolls() throws IOException {
+        long second = ofSeconds(1).toNanos();
+        long day = 24 * 3600 * second;
+        long[][] sessions = {{7 * 3600 * second, 8 * 3600 * second}, {18 * 3600 * second, 18 * 3600 * second + 1800 * second}};
+
+        duration = ofSeconds(1);
+        pollingService = new SubscriptionPollingService(duration, connector, executorService, clock::get);
+        pollingService.setActivityMonitor(new ActivityMonitor(ofSeconds(30), ofSeconds(300), clock::get));
+        verify(connector, times(2)).addConnectionListener(listener.capture());
+        subscribe(subscription1, new ReadMemoryMessage(DOUBLE_MEMORY, 0x057));
+        subscribe(subscription2, new ReadMemoryMessage(SINGLE_MEMORY, 0x0a9));
+        subscribe(subscription3, read3);
+
+        AtomicLong sentPolls = new AtomicLong();
+        doAnswer(invocation -> sentPolls.incrementAndGet()).when(connector).send(any(AbstractMessage.class));
+
+        Runnable[] nextTask = new Runnable[1];
+        long[] nextTaskTime = new long[1];
+        when(executorService.schedule(any(Runnable.class), anyLong(), eq(MILLISECONDS))).thenAnswer(invocation -> {
+            nextTask[0] = (Runnable) invocation.getArguments()[0];
+            nextTaskTime[0] = clock.get() + MILLISECONDS.toNanos((Long) invocation.getArguments()[1]);
+            return null;
+        });
+
+        // Replays a day with two sessions (a stroke every 2 seconds), the cycles are counted:
+        clock.set(0);
+        pollingService.start();
+        long cycles = 0;
+        long nextStroke = sessions[0][0];
+        int session = 0;
+
+        while (nextTaskTime[0] < day) {
+            if ((session < sessions.length) && (nextStroke <= nextTaskTime[0])) {
+                clock.set(nextStroke);
+                listener.getValue().onMessageReceived(new StrokeMessage(START_OF_STROKE));
+                nextStroke += 2 * second;
+                if (nextStroke >= sessions[session][1]) {
+                    session++;
+                    if (session < sessions.length)
+                        nextStroke = sessions[session][0];
+                }
+                continue;
+            }
+            clock.set(nextTaskTime[0]);
+            nextTask[0].run();
+            cycles++;
+        }
+
+        long fullRateCycles = day / second;
+        long fullRatePolls = 3 * fullRateCycles;
+
+        assertTrue("Polling cycles: " + cycles, cycles < fullRateCycles / 5);
+        assertTrue("Sent polls: " + sentPolls.get(), sentPolls.get() < fullRatePolls / 8);
+        assertTrue(pollingService.getSavedCycles() > fullRateCycles / 2);
+        assertTrue(pollingService.getSkippedPolls() > 0);
+    }
+
+
+    // Routing:
+
+    @Test
+    public void onMessageReceived_withMemoryMessage_onlyNotifiesSubscriptionsOfLocation() {
+        List<DataMemoryMessage> received1 = new ArrayList<>();
+        List<DataMemoryMessage> received2 = new ArrayList<>();
+        pollingService.subscribe(newMemorySubscription(TANK_VOLUME, received1));
+        pollingService.subscribe(newMemorySubscription(STROKES_CNT_LOW, received2));
+        pollingService.start();
+
+        DataMemoryMessage msg = new DataMemoryMessage(TANK_VOLUME.getLocation(), 0x10);
+        listener.getValue().onMessageReceived(msg);
+
+        assertEquals(singletonList(msg), received1);
+        assertTrue(received2.isEmpty());
+    }
+
+    @Test
+    public void onMessageReceived_withMemoryMessageOfOtherMemoryType_doesntNotifySubscriptionOfLocation() {
+        List<DataMemoryMessage> received = new ArrayList<>();
+        pollingService.subscribe(newMemorySubscription(TANK_VOLUME, received));
+        pollingService.start();
+
+        // E.g. the response of a single read of another memory type:
+        listener.getValue().onMessageReceived(new DataMemoryMessage(TANK_VOLUME.getLocation(), 0x10, 0x20));
+
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void onMessageReceived_withMemoryMessage_notifiesAllSubscriptionsOfLocation() {
+        List<DataMemoryMessage> received = new ArrayList<>();
+        pollingService.subscribe(newMemorySubscription(TANK_VOLUME, received));
+        pollingService.subscribe(newMemorySubscription(TANK_VOLUME, received));
+        pollingService.start();
+
+        listener.getValue().onMessageReceived(new DataMemoryMessage(TANK_VOLUME.getLocation(), 0x10));
+
+        assertEquals(2, received.size());
+    }
+
+    @Test
+    public void onMessageReceived_withMemoryMessage_notifiesOtherSubscriptionsOfMemoryMessages() {
+        when(subscription1.getMessageTypes()).thenReturn(EnumSet.of(DATA_MEMORY));
+        pollingService.subscribe(subscription1);
+        pollingService.subscribe(newMemorySubscription(TANK_VOLUME, new ArrayList<>()));
+        pollingService.start();
+
+        DataMemoryMessage msg = new DataMemoryMessage(STROKES_CNT_LOW.getLocation(), 0x10);
+        listener.getValue().onMessageReceived(msg);
+
+        verify(subscription1, times(1)).handle(msg);
+    }
+
+    @Test
+    public void onMessageReceived_afterUnsubscribe_doesntNotifySubscriptionOfLocation() {
+        List<DataMemoryMessage> received = new ArrayList<>();
+        ISubscription subscription = newMemorySubscription(TANK_VOLUME, received);
+        pollingService.subscribe(subscription);
+        pollingService.start();
+
+        pollingService.unsubscribe(subscription);
+        listener.getValue().onMessageReceived(new DataMemoryMessage(TANK_VOLUME.getLocation(), 0x10));
+
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void onMessageReceived_afterUnsubscribeOfOtherSubscriptionOfLocation_notifiesRemainingSubscription() {
+        List<DataMemoryMessage> received1 = new ArrayList<>();
+        List<DataMemoryMessage> received2 = new ArrayList<>();
+        ISubscription memorySubscription1 = newMemorySubscription(TANK_VOLUME, received1);
+        ISubscription memorySubscription2 = newMemorySubscription(TANK_VOLUME, received2);
+        pollingService.subscribe(memorySubscription1);
+        pollingService.subscribe(memorySubscription2);
+        pollingService.start();
+
+        pollingService.unsubscribe(memorySubscription1);
+        listener.getValue().onMessageReceived(new DataMemoryMessage(TANK_VOLUME.getLocation(), 0x10));
+
+        assertTrue(received1.isEmpty());
+        assertEquals(1, received2.size());
+    }
+
+    @Test
+    public void onMessageReceived_withSubscriptionAddedTwiceAndUnsubscribedOnce_notifiesSubscriptionOnce() {
+        List<DataMemoryMessage> received = new ArrayList<>();
+        ISubscription subscription = newMemorySubscription(TANK_VOLUME, received);
+        pollingService.subscribe(subscription);
+        pollingService.subscribe(subscription);
+        pollingService.start();
+
+        pollingService.unsubscribe(subscription);
+        listener.getValue().onMessageReceived(new DataMemoryMessage(TANK_VOLUME.getLocation(), 0x10));
+
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    public void subscribe_whileMessagesAreReceived_notifiesAllSubscriptionsAfterwards() throws InterruptedException {
+        List<DataMemoryMessage> received = new CopyOnWriteArrayList<>();
+        pollingService.start();
+
+        // Subscribe from several threads, while another thread receives messages:
+        AtomicBoolean isReceiving = new AtomicBoolean(true);
+        Thread receiver = new Thread(() -> {
+            while (isReceiving.get())
+                listener.getValue().onMessageReceived(new DataMemoryMessage(STROKES_CNT_LOW.getLocation(), 0x10));
+        });
+        receiver.start();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 25; j++)
+                    pollingService.subscribe(newMemorySubscription(TANK_VOLUME, received));
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        isReceiving.set(false);
+        receiver.join();
+
+        listener.getValue().onMessageReceived(new DataMemoryMessage(TANK_VOLUME.getLocation(), 0x10));
+
+        assertEquals(100, received.size());
+    }
+
+    @Test
+    public void onMessageReceived_withResponseOfMergedRead_notifiesSubscriptionsOfLocations() {
+        List<DataMemoryMessage> received1 = new ArrayList<>();
+        List<DataMemoryMessage> received2 = new ArrayList<>();
+        pollingService.subscribe(newMemorySubscription(STROKES_CNT_LOW, received1));
+        pollingService.subscribe(newMemorySubscription(STROKE_AVERAGE, received2));
+        pollingService.start();
+        runPollingCycle();
+
+        listener.getValue().onMessageReceived(new DataMemoryMessage(STROKES_CNT_LOW.getLocation(), 0x03, 0x02, 0x01));
+
+        assertEquals(1, received1.size());
+        assertEquals(0x01, received1.get(0).getValue1());
+        assertEquals(1, received2.size());
+        assertEquals(0x03, received2.get(0).getValue1());
+    }
+
+
+    // Pipelined polling:
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setPipelineWindow_withNegativeWindow_throwsIAE() {
+        pollingService.setPipelineWindow(-1);
+    }
+
+    @Test
+    public void callRunnable_withPipeline_fillsWindow() throws IOException {
+        pollingService = newPipelinedPollingService(2);
+        subscribe(subscription1, read1);
+        subscribe(subscription2, read2);
+        subscribe(subscription3, read3);
+        pollingService.start();
+
+        runPollingCycle();
+
+        verify(connector, times(1)).send(read2);
+        verify(connector, times(1)).send(read3);
+        verify(connector, never()).send(read1);
+        assertEquals(2, pollingService.getOutstandingReads());
+    }
+
+    @Test
+    public void onMessageReceived_withResponseOfOutstandingRead_sendsNextReadRoundRobin() throws IOException {
+        pollingService = newPipelinedPollingService(2);
+        subscribe(subscription1, read1);
+        subscribe(subscription2, read2);
+        subscribe(subscription3, read3);
+        pollingService.start();
+        runPollingCycle();
+
+        listener.getValue().onMessageReceived(new DataMemoryMessage(read2.getLocation(), 1));
+        verify(connector, times(1)).send(read1);
+
+        listener.getValue().onMessageReceived(new DataMemoryMessage(read3.getLocation(), 1));
+        verify(connector, times(2)).send(read2);
+
+        // The responses were passed to the subscriptions:
+        verify(subscription2, times(2)).handle(any(DataMemoryMessage.class));
+        assertEquals(2, pollingService.getOutstandingReads());
+    }
+
+    @Test
+    public void onMessageReceived_withResponseWithoutOutstandingRead_doesntSendRead() throws IOException {
+        pollingService = newPipelinedPollingService(1);
+        subscribe(subscription1, read1);
+        subscribe(subscription2, read2);
+        pollingService.start();
+        runPollingCycle();
+
+        listener.getValue().onMessageReceived(new DataMemoryMessage(read1.getLocation(), 1));
+
+        verify(connector, times(1)).send(any(AbstractMessage.class));
+    }
+
+    @Test
+    public void onMessageReceived_afterStop_doesntSendRead() throws IOException {
+        pollingService = newPipelinedPollingService(1);
+        subscribe(subscription1, read1);
+        pollingService.start();
+        runPollingCycle();
+        pollingService.stop();
+
+        listener.getValue().onMessageReceived(new DataMemoryMessage(read1.getLocation(), 1));
+
+        verify(connector, times(1)).send(read1);
+    }
+
+    @Test
+    public void callRunnable_withPipelineAndSameLocationTwice_readsLocationOnce() throws IOException {
+        pollingService = newPipelinedPollingService(4);
+        subscribe(subscription1, read1);
+        subscribe(subscription2, new ReadMemoryMessage(SINGLE_MEMORY, read1.getLocation()));
+        pollingService.start();
+
+        runPollingCycle();
+
+        verify(connector, times(1)).send(any(AbstractMessage.class));
+        assertEquals(1, pollingService.getOutstandingReads());
+    }
+
+    @Test
+    public void callRunnable_withPipeline_sendsOtherPollsInEachCycle() throws IOException {
+        pollingService = newPipelinedPollingService(1);
+        subscribe(subscription1, someMessage1);
+        subscribe(subscription2, read2);
+        pollingService.start();
+
+        runPollingCycle();
+        runPollingCycle();
+
+        verify(connector, times(2)).send(someMessage1);
+        verify(connector, times(1)).send(read2);
+    }
+
+    @Test
+    public void callRunnable_withPipelineAndLostResponse_expiresReadAndSendsAgain() throws IOException {
+        clock.set(0);
+        pollingService = newPipelinedPollingService(1);
+        subscribe(subscription1, read1);
+        pollingService.start();
+        runPollingCycle();
+
+        clock.addAndGet(duration.toNanos());
+        runPollingCycle();
+
+        verify(connector, times(2)).send(read1);
+    }
+
+    @Test
+    public void callRunnable_withPipelineAndExhaustedBudget_stopsFilling() throws IOException {
+        pollingService = new SubscriptionPollingService(duration, connector, executorService, clock::get);
+        pollingService.setBudget(budget);
+        pollingService.setPipelineWindow(2);
+        verify(connector, times(2)).addConnectionListener(listener.capture());
+        subscribe(subscription1, read1);
+        subscribe(subscription2, read2);
+        when(budget.tryAcquire(read2)).thenReturn(true);
+        when(budget.tryAcquire(read1)).thenReturn(false);
+        pollingService.start();
+
+        runPollingCycle();
+
+        verify(connector, times(1)).send(read2);
+        verify(connector, never()).send(read1);
+    }
+
+    @Test
+    public void getSamplesPerSecond_withPipeline_returnsMeasuredRate() throws IOException {
+        clock.set(0);
+        pollingService = newPipelinedPollingService(1);
+        subscribe(subscription1, read1);
+        pollingService.start();
+        runPollingCycle();
+
+        for (int i = 0; i < 25; i++) {
+            clock.addAndGet(40_000_000L);
+            listener.getValue().onMessageReceived(new DataMemoryMessage(read1.getLocation(), 1));
+        }
+
+        assertEquals(25, pollingService.getSamplesPerSecond(), 0.001);
+        assertEquals(Duration.ofMillis(40), pollingService.getRoundTripTime(read1.getLocation()));
+    }
+
+    @Test
+    public void getSamplesPerSecond_withoutPipeline_returns0() {
+        assertEquals(0, pollingService.getSamplesPerSecond(), 0.001);
+        assertNull(pollingService.getRoundTripTime(read1.getLocation()));
+        assertEquals(0, pollingService.getOutstandingReads());
+    }
+
+
     // Message received:
 
     @Test
@@ -162,6 +1176,46 @@ public class TestSubscriptionPollingService {
         verify(subscription2, never()).handle(someMessage3);
     }
 
+    @Test
+    public void callMessageReceived_withMessageTypes_passesMessageToMatchingSubscriptionsOnly() throws IOException {
+
+        when(subscription1.getMessageTypes()).thenReturn(EnumSet.of(STROKE));
+        pollingService.subscribe(subscription1);
+        when(subscription2.getMessageTypes()).thenReturn(EnumSet.of(PING, DATA_MEMORY));
+        pollingService.subscribe(subscription2);
+
+        pollingService.start();
+
+        AbstractMessage stroke = new StrokeMessage(START_OF_STROKE);
+        AbstractMessage ping = new PingMessage();
+        AbstractMessage pulseCount = new PulseCountMessage(1);
+        listener.getValue().onMessageReceived(stroke);
+        listener.getValue().onMessageReceived(ping);
+        listener.getValue().onMessageReceived(pulseCount);
+
+        verify(subscription1, times(1)).handle(stroke);
+        verify(subscription1, never()).handle(ping);
+        verify(subscription2, never()).handle(stroke);
+        verify(subscription2, times(1)).handle(ping);
+        verify(subscription1, never()).handle(pulseCount);
+        verify(subscription2, never()).handle(pulseCount);
+    }
+
+    @Test
+    public void callMessageReceived_afterUnsubscribe_doesntPassMessageToSubscription() throws IOException {
+
+        subscribe(subscription1, someMessage1);
+        subscribe(subscription2, someMessage2);
+
+        pollingService.start();
+        pollingService.unsubscribe(subscription1);
+
+        listener.getValue().onMessageReceived(someMessage3);
+
+        verify(subscription1, never()).handle(someMessage3);
+        verify(subscription2, times(1)).handle(someMessage3);
+    }
+
     // Subscriptions:
 
     @Test(expected = NullPointerException.class)
@@ -194,8 +1248,73 @@ public class TestSubscriptionPollingService {
 
     // Helper methods:
 
+    private SubscriptionPollingService newBatchingPollingService(int maxBatchSize) {
+        SubscriptionPollingService service = new SubscriptionPollingService(duration, connector, executorService);
+        service.setMaxBatchSize(maxBatchSize);
+        verify(connector, times(2)).addConnectionListener(listener.capture());
+        return service;
+    }
+
+    private SubscriptionPollingService newPollingServiceWithBudget() {
+        SubscriptionPollingService service = new SubscriptionPollingService(duration, connector, executorService);
+        service.setBudget(budget);
+        return service;
+    }
+
+    private SubscriptionPollingService newAdaptivePollingService() {
+        SubscriptionPollingService service = new SubscriptionPollingService(duration, connector, executorService, clock::get);
+        service.setActivityMonitor(new ActivityMonitor(ofSeconds(30), ofSeconds(300), clock::get));
+        verify(connector, times(2)).addConnectionListener(listener.capture());
+        return service;
+    }
+
+    private SubscriptionPollingService newPipelinedPollingService(int pipelineWindow) {
+        SubscriptionPollingService service = new SubscriptionPollingService(duration, connector, executorService, clock::get);
+        service.setPipelineWindow(pipelineWindow);
+        verify(connector, times(2)).addConnectionListener(listener.capture());
+        return service;
+    }
+
+    private SubscriptionPollingService newPollingServiceWithClock(SerialLineBudget budget) {
+        SubscriptionPollingService service = new SubscriptionPollingService(duration, connector, executorService, clock::get);
+        service.setBudget(budget);
+        verify(connector, times(2)).addConnectionListener(listener.capture());
+        return service;
+    }
+
+    private void runPollingCycle() {
+        verify(executorService, atLeastOnce()).schedule(task.capture(), eq((long)2000), eq(MILLISECONDS));
+        task.getValue().run();
+    }
+
+    private void runStretchedPollingCycle() {
+        verify(executorService, atLeastOnce()).schedule(task.capture(), eq((long)4000), eq(MILLISECONDS));
+        task.getValue().run();
+    }
+
+    private void subscribe(ISubscription subscription, AbstractMessage msg, Duration pollingInterval) {
+        when(subscription.getPollingInterval()).thenReturn(pollingInterval);
+        subscribe(subscription, msg);
+    }
+
+    private ISubscription newMemorySubscription(MemoryLocation location, List<DataMemoryMessage> received) {
+        return new DebugSubscription(SINGLE_MEMORY, location) {
+            @Override
+            protected void handle(DataMemoryMessage msg) {
+                received.add(msg);
+            }
+        };
+    }
+
+    private void assertRead(Memory memory, int location, AbstractMessage msg) {
+        ReadMemoryMessage read = (ReadMemoryMessage) msg;
+        assertEquals(memory, read.getMemory());
+        assertEquals(location, read.getLocation());
+    }
+
     private void subscribe(ISubscription subscription, AbstractMessage msg) {
         when(subscription.poll()).thenReturn(msg);
+        when(subscription.getMessageTypes()).thenReturn(null);
         pollingService.subscribe(subscription);
     }
 
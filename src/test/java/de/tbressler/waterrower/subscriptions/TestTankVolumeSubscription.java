@@ -7,6 +7,7 @@ import org.junit.Test;
 
 import static de.tbressler.waterrower.io.msg.Memory.SINGLE_MEMORY;
 import static de.tbressler.waterrower.model.MemoryLocation.TANK_VOLUME;
+import static java.time.Duration.ofMinutes;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
@@ -38,6 +39,13 @@ public class TestTankVolumeSubscription {
     }
 
 
+    @Test
+    public void getPollingInterval_returns1Minute() {
+        subscription = newTankVolumeSubscription();
+        assertEquals(ofMinutes(1), subscription.getPollingInterval());
+    }
+
+
     // Handle:
 
     @Test
@@ -10,6 +10,7 @@ import static de.tbressler.waterrower.io.msg.Memory.DOUBLE_MEMORY;
 import static de.tbressler.waterrower.model.MemoryLocation.*;
 import static de.tbressler.waterrower.subscriptions.WorkoutIntervalSubscription.IntervalType.REST_INTERVAL;
 import static de.tbressler.waterrower.subscriptions.WorkoutIntervalSubscription.IntervalType.ROW_INTERVAL;
+import static java.time.Duration.ofSeconds;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.*;
@@ -92,6 +93,12 @@ public class TestWorkoutIntervalSubscription {
         assertEquals(expectedLocation.getLocation(), msg.getLocation());
     }
 
+    @Test
+    public void getPollingInterval_returns1Second() {
+        subscription = newWorkoutIntervalSubscription(ROW_INTERVAL, 0);
+        assertEquals(ofSeconds(1), subscription.getPollingInterval());
+    }
+
     // Handle:
 
     @Test
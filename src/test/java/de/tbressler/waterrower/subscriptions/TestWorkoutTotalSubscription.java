@@ -10,6 +10,7 @@ import org.mockito.Mockito;
 import static de.tbressler.waterrower.io.msg.Memory.DOUBLE_MEMORY;
 import static de.tbressler.waterrower.model.MemoryLocation.*;
 import static de.tbressler.waterrower.subscriptions.WorkoutTotalSubscription.ValueType.*;
+import static java.time.Duration.ofSeconds;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.times;
@@ -56,6 +57,13 @@ public class TestWorkoutTotalSubscription {
         assertEquals(expectedLocation.getLocation(), msg.getLocation());
     }
 
+    @Test
+    public void getPollingInterval_returns1Second() {
+        subscription = newWorkoutTotalSubscription(TIME);
+        assertEquals(ofSeconds(1), subscription.getPollingInterval());
+    }
+
+
     // Handle:
 
     @Test
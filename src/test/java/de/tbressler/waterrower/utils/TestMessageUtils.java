@@ -1,8 +1,12 @@
 package de.tbressler.waterrower.utils;
 
+import io.netty.buffer.ByteBuf;
 import org.junit.Test;
 
 import static de.tbressler.waterrower.utils.MessageUtils.*;
+import static io.netty.buffer.Unpooled.buffer;
+import static io.netty.buffer.Unpooled.copiedBuffer;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 import static org.junit.Assert.*;
 
 /**
@@ -132,6 +136,86 @@ public class TestMessageUtils {
     }
 
 
+    // ACH to int (from char sequence):
+
+    @Test(expected = NullPointerException.class)
+    public void achToInt_withNullCharSequence_throwsNPE() {
+        achToInt((CharSequence) null, 0, 2);
+    }
+
+    @Test
+    public void achToInt_withInvalidHexValuesInCharSequence_returnsMinus1() {
+        assertEquals(-1, achToInt("YZ", 0, 2));
+    }
+
+    @Test
+    public void achToInt_withNonAsciiCharInCharSequence_returnsMinus1() {
+        assertEquals(-1, achToInt("\u00B0F", 0, 2));
+    }
+
+    @Test
+    public void achToInt_withTooShortCharSequence_returnsMinus1() {
+        assertEquals(-1, achToInt("IDS1", 3, 3));
+    }
+
+    @Test
+    public void achToInt_withNegativeIndexInCharSequence_returnsMinus1() {
+        assertEquals(-1, achToInt("FF", -1, 2));
+    }
+
+    @Test
+    public void achToInt_withD00AtIndex3InCharSequence_returns3328() {
+        assertEquals(3328, achToInt("IDSD0001", 3, 3));
+    }
+
+    @Test
+    public void achToInt_withLowerCaseFfInCharSequence_returns255() {
+        assertEquals(255, achToInt("ff", 0, 2));
+    }
+
+
+    // ACH to int (from buffer):
+
+    @Test(expected = NullPointerException.class)
+    public void achToInt_withNullBuffer_throwsNPE() {
+        achToInt((ByteBuf) null, 0, 2);
+    }
+
+    @Test
+    public void achToInt_withInvalidHexValuesInBuffer_returnsMinus1() {
+        assertEquals(-1, achToInt(newBuffer("YZ"), 0, 2));
+    }
+
+    @Test
+    public void achToInt_withNonAsciiByteInBuffer_returnsMinus1() {
+        ByteBuf buffer = newBuffer("0F");
+        buffer.setByte(0, 0xB0);
+        assertEquals(-1, achToInt(buffer, 0, 2));
+    }
+
+    @Test
+    public void achToInt_withFFInBuffer_returns255() {
+        assertEquals(255, achToInt(newBuffer("FF"), 0, 2));
+    }
+
+    @Test
+    public void achToInt_withLowerCaseFfInBuffer_returns255() {
+        assertEquals(255, achToInt(newBuffer("ff"), 0, 2));
+    }
+
+    @Test
+    public void achToInt_withD00AtIndex3InBuffer_returns3328() {
+        assertEquals(3328, achToInt(newBuffer("IDSD0001"), 3, 3));
+    }
+
+    @Test
+    public void achToInt_withBuffer_doesntModifyReaderIndex() {
+        ByteBuf buffer = newBuffer("IDS14300");
+        achToInt(buffer, 3, 3);
+        assertEquals(0, buffer.readerIndex());
+    }
+
+
     // Int to ACH:
 
     @Test
@@ -174,6 +258,79 @@ public class TestMessageUtils {
         assertEquals("010", intToAch(16, 3));
     }
 
+    @Test
+    public void intToAch_withNegativeValueAnd8Chars_returnsFFFFFFFF() {
+        assertEquals("FFFFFFFF", intToAch(-1, 8));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void intToAch_withNegativeValueAnd4Chars_throwsNumberFormatException() {
+        intToAch(-1, 4);
+    }
+
+    @Test
+    public void intToAch_withAllValuesAnd3Chars_returnsSameAsToHexString() {
+        for (int value = 0; value <= 0xFFF; value++)
+            assertEquals(String.format("%03X", value), intToAch(value, 3));
+    }
+
+
+    // Write ACH to buffer:
+
+    @Test(expected = NullPointerException.class)
+    public void writeAch_withNullBuffer_throwsNPE() {
+        writeAch(null, 0, 1);
+    }
+
+    @Test
+    public void writeAch_with0ValueAnd1Chars_writes0() {
+        assertEquals("0", writeAchToBuffer(0, 1));
+    }
+
+    @Test
+    public void writeAch_with15ValueAnd2Chars_writes0F() {
+        assertEquals("0F", writeAchToBuffer(15, 2));
+    }
+
+    @Test
+    public void writeAch_with3328ValueAnd3Chars_writesD00() {
+        assertEquals("D00", writeAchToBuffer(3328, 3));
+    }
+
+    @Test
+    public void writeAch_with0xFFFFValueAnd4Chars_writesFFFF() {
+        assertEquals("FFFF", writeAchToBuffer(0xFFFF, 4));
+    }
+
+    @Test
+    public void writeAch_with16ValueAnd10Chars_writes0000000010() {
+        assertEquals("0000000010", writeAchToBuffer(16, 10));
+    }
+
+    @Test
+    public void writeAch_with3328ValueAnd2Chars_throwsNumberFormatExceptionAndWritesNothing() {
+        ByteBuf buffer = buffer();
+        try {
+            writeAch(buffer, 3328, 2);
+            fail("NumberFormatException expected!");
+        } catch (NumberFormatException e) {
+            assertFalse(buffer.isReadable());
+        }
+    }
+
+    @Test
+    public void writeAch_withAllValuesAnd3Chars_writesSameAsIntToAch() {
+        for (int value = 0; value <= 0xFFF; value++)
+            assertEquals(intToAch(value, 3), writeAchToBuffer(value, 3));
+    }
+
+    /* Writes the ACH to a buffer and returns the content of the buffer. */
+    private String writeAchToBuffer(int value, int chars) {
+        ByteBuf buffer = buffer();
+        writeAch(buffer, value, chars);
+        return buffer.toString(US_ASCII);
+    }
+
 
     // Boolean from Byte:
 
@@ -304,4 +461,11 @@ public class TestMessageUtils {
         assertEquals(0xFFFF, intFromHighAndLow(0xFF, 0xFF));
     }
 
+
+    // Helper methods:
+
+    private ByteBuf newBuffer(String content) {
+        return copiedBuffer(content, US_ASCII);
+    }
+
 }
@@ -115,6 +115,23 @@ public class TestWatchdog {
         verify(executor, times(2)).schedule(task.capture(), eq((long)3000), eq(MILLISECONDS));
     }
 
+    @Test
+    public void callRunnable_ofPreviousStartAfterRestart_doesntExecuteWakeUpAndCheckOrReschedule() {
+        watchdog = newWatchdog(ofSeconds(3), true);
+
+        watchdog.start();
+        verify(executor, times(1)).schedule(task.capture(), eq((long)3000), eq(MILLISECONDS));
+        Runnable previousTask = task.getValue();
+
+        watchdog.stop();
+        watchdog.start();
+
+        previousTask.run();
+
+        verify(internalWatchdog, never()).wakeUpAndCheck();
+        verify(executor, times(2)).schedule(any(Runnable.class), eq((long)3000), eq(MILLISECONDS));
+    }
+
 
     // Helper methods:
 